@@ -0,0 +1,138 @@
+package com.example.aicodehelper.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 基准测试结果对比
+ * 读取两份 JMH JSON 结果（-rf json），按“基准方法 + 参数”逐项对比得分，
+ * 变化超过阈值且超出两次结果误差之和的项记为退化，存在退化时以退出码 1 结束（可用于 CI）。
+ * 耗时类模式（avgt、sample、ss）得分越低越好，吞吐量模式（thrpt）越高越好。
+ *
+ * 基线文件 src/jmh/baseline.json 只在同一台机器上对比才有意义；更换机器或有意改变性能后，用新结果覆盖即可。
+ *
+ * 运行（默认参数会把全部基准的结果写入 target/jmh-result.json）：
+ * mvn -Pbenchmark compile exec:exec
+ * mvn -Pbenchmark exec:exec -Djmh.main=com.example.aicodehelper.benchmark.BenchmarkComparison \
+ *     -Djmh.args="src/jmh/baseline.json target/jmh-result.json [--threshold 0.15]"
+ */
+public class BenchmarkComparison {
+
+    private static final double DEFAULT_THRESHOLD = 0.15;
+
+    /**
+     * 单项结果
+     */
+    record Score(String mode, double score, double error, String unit) {
+
+        boolean lowerIsBetter() {
+            return !"thrpt".equals(mode);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("用法: BenchmarkComparison <基线.json> <当前结果.json> [--threshold 0.15]");
+            System.exit(2);
+        }
+        double threshold = DEFAULT_THRESHOLD;
+        for (int i = 2; i + 1 < args.length; i++) {
+            if ("--threshold".equals(args[i])) {
+                threshold = Double.parseDouble(args[i + 1]);
+            }
+        }
+
+        Map<String, Score> baseline = read(new File(args[0]));
+        Map<String, Score> current = read(new File(args[1]));
+        int regressions = compare(baseline, current, threshold);
+        if (regressions > 0) {
+            System.out.printf("%n%d 项退化超过 %.0f%%%n", regressions, threshold * 100);
+            System.exit(1);
+        }
+        System.out.printf("%n没有超过 %.0f%% 的退化%n", threshold * 100);
+    }
+
+    /**
+     * 打印对比表
+     *
+     * @return 退化的项数
+     */
+    static int compare(Map<String, Score> baseline, Map<String, Score> current, double threshold) {
+        int regressions = 0;
+        System.out.printf("%-70s %16s %16s %9s%n", "基准", "基线", "当前", "变化");
+        for (Map.Entry<String, Score> entry : current.entrySet()) {
+            Score now = entry.getValue();
+            Score before = baseline.get(entry.getKey());
+            if (before == null || !before.unit().equals(now.unit())) {
+                System.out.printf("%-70s %16s %16s %9s%n", entry.getKey(), "-", format(now), "新增");
+                continue;
+            }
+            String verdict = "";
+            if (isRegression(before, now, threshold)) {
+                verdict = "  ← 退化";
+                regressions++;
+            } else if (isRegression(now, before, threshold)) {
+                verdict = "  ← 提升";
+            }
+            double change = (now.score() - before.score()) / before.score() * 100;
+            System.out.printf("%-70s %16s %16s %+8.1f%%%s%n",
+                    entry.getKey(), format(before), format(now), change, verdict);
+        }
+        for (String key : baseline.keySet()) {
+            if (!current.containsKey(key)) {
+                System.out.printf("%-70s %16s %16s %9s%n", key, format(baseline.get(key)), "-", "未运行");
+            }
+        }
+        return regressions;
+    }
+
+    /**
+     * after 相对 before 是否变差：相对变化超过阈值，且差值大于两次结果的误差之和（排除噪声）
+     */
+    static boolean isRegression(Score before, Score after, double threshold) {
+        double worse = before.lowerIsBetter() ? after.score() - before.score() : before.score() - after.score();
+        return worse > before.score() * threshold && worse > finite(before.error()) + finite(after.error());
+    }
+
+    /**
+     * 读取 JMH JSON 结果，键为“基准方法 [参数]”
+     */
+    static Map<String, Score> read(File file) throws IOException {
+        Map<String, Score> scores = new LinkedHashMap<>();
+        for (JsonNode result : new ObjectMapper().readTree(file)) {
+            String benchmark = result.path("benchmark").asText()
+                    .replaceFirst("^com\\.example\\.aicodehelper\\.benchmark\\.", "");
+            Map<String, String> params = new TreeMap<>();
+            Iterator<Map.Entry<String, JsonNode>> fields = result.path("params").fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                params.put(field.getKey(), field.getValue().asText());
+            }
+            List<String> parts = new ArrayList<>();
+            params.forEach((name, value) -> parts.add(name + "=" + value));
+            String key = parts.isEmpty() ? benchmark : benchmark + " [" + String.join(",", parts) + "]";
+
+            JsonNode metric = result.path("primaryMetric");
+            scores.put(key, new Score(result.path("mode").asText(), metric.path("score").asDouble(),
+                    metric.path("scoreError").asDouble(Double.NaN), metric.path("scoreUnit").asText()));
+        }
+        return scores;
+    }
+
+    private static String format(Score score) {
+        return String.format("%.3f %s", score.score(), score.unit());
+    }
+
+    private static double finite(double value) {
+        return Double.isFinite(value) ? value : 0;
+    }
+}
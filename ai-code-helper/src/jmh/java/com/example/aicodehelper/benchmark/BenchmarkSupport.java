@@ -0,0 +1,66 @@
+package com.example.aicodehelper.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * 基准测试的公共工具
+ */
+final class BenchmarkSupport {
+
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * 关闭 INFO/DEBUG 日志：基准测试不经过 Spring Boot，logback 默认以 DEBUG 级别输出到控制台，会掩盖被测代码的耗时
+     */
+    static void quietLogging() {
+        ((Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+    }
+
+    /**
+     * 生成带有大量重复行（空行、大括号）的代码行，接近真实 Java 文件的分布
+     */
+    static String javaLine(int i) {
+        return switch (i % 8) {
+            case 0 -> "    public int method" + i + "(int value) {";
+            case 1 -> "        int result = value * " + i + ";";
+            case 2 -> "        if (result > 0) {";
+            case 3 -> "            return result;";
+            case 4 -> "        }";
+            case 5 -> "        return -result;";
+            case 6 -> "    }";
+            default -> "";
+        };
+    }
+
+    /**
+     * 递归删除目录（用于清理 @TearDown 中的临时项目）
+     */
+    static void deleteRecursively(Path root) throws IOException {
+        if (root == null || !Files.exists(root)) {
+            return;
+        }
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.aicodehelper.benchmark;
+
+import com.example.aicodehelper.util.DiffUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 模型输出清理基准测试
+ * 测量 DiffUtils.cleanCode 去除 markdown 代码块标记的耗时（每次代码修改都会对完整模型输出调用一次）
+ *
+ * 运行：mvn -Pbenchmark compile exec:exec -Djmh.args="CleanCodeBenchmark -f 1"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CleanCodeBenchmark {
+
+    @Param({"100", "5000"})
+    public int lines;
+
+    private String fenced;
+
+    @Setup
+    public void setUp() {
+        StringBuilder builder = new StringBuilder("```java\n");
+        for (int i = 0; i < lines; i++) {
+            builder.append(BenchmarkSupport.javaLine(i)).append('\n');
+        }
+        fenced = builder.append("```\n").toString();
+    }
+
+    @Benchmark
+    public String cleanCode() {
+        return DiffUtils.cleanCode(fenced);
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.aicodehelper.benchmark;
+
+import com.example.aicodehelper.util.DiffUtils;
+import com.example.aicodehelper.util.diff.DiffAlgorithm;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 差异算法基准测试
+ * 在 1k ~ 50k 行的 Java 风格代码上测量 Myers / Histogram 两种算法，
+ * 修改方式模拟模型输出：约 1% 的行被改写、插入或删除，分散在整个文件中。
+ *
+ * 运行：mvn -Pbenchmark compile exec:exec -Djmh.args="DiffBenchmark -f 1"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DiffBenchmark {
+
+    @Param({"1000", "10000", "50000"})
+    public int lines;
+
+    @Param({"MYERS", "HISTOGRAM"})
+    public DiffAlgorithm algorithm;
+
+    private String original;
+    private String modified;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(20240601L);
+        StringBuilder originalBuilder = new StringBuilder();
+        StringBuilder modifiedBuilder = new StringBuilder();
+
+        for (int i = 0; i < lines; i++) {
+            String line = BenchmarkSupport.javaLine(i);
+            originalBuilder.append(line).append('\n');
+
+            int roll = random.nextInt(300);
+            if (roll == 0) {
+                modifiedBuilder.append(line).append(" // changed").append('\n');
+            } else if (roll == 1) {
+                modifiedBuilder.append(line).append('\n').append("        log.debug(\"added\");").append('\n');
+            } else if (roll != 2) {
+                modifiedBuilder.append(line).append('\n');
+            }
+        }
+        original = originalBuilder.toString();
+        modified = modifiedBuilder.toString();
+    }
+
+    @Benchmark
+    public Object compareCode() {
+        return DiffUtils.compareCode(original, modified, "", "", algorithm);
+    }
+}
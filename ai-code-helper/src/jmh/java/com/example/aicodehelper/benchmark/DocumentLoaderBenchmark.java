@@ -0,0 +1,51 @@
+package com.example.aicodehelper.benchmark;
+
+import com.example.aicodehelper.ai.rag.EnhancedDocumentLoader;
+import dev.langchain4j.data.document.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 文档解析基准测试
+ * 测量 EnhancedDocumentLoader 加载随附文档（src/main/resources/docs 下的 PDF 和 Markdown）的耗时，
+ * 即每次启动时 RAG 初始化在向量化之前的开销。需要在 ai-code-helper 目录下运行。
+ *
+ * 运行：mvn -Pbenchmark compile exec:exec -Djmh.args="DocumentLoaderBenchmark -f 1"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class DocumentLoaderBenchmark {
+
+    private static final String DOCUMENTS_PATH = "src/main/resources/docs";
+
+    private EnhancedDocumentLoader loader;
+
+    @Setup
+    public void setUp() {
+        BenchmarkSupport.quietLogging();
+        loader = new EnhancedDocumentLoader();
+        if (loader.loadAllDocuments(DOCUMENTS_PATH).isEmpty()) {
+            throw new IllegalStateException("未找到文档目录 " + DOCUMENTS_PATH + "，请在 ai-code-helper 目录下运行");
+        }
+    }
+
+    @Benchmark
+    public List<Document> loadAllDocuments() {
+        return loader.loadAllDocuments(DOCUMENTS_PATH);
+    }
+}
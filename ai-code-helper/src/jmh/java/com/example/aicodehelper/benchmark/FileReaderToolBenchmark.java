@@ -0,0 +1,100 @@
+package com.example.aicodehelper.benchmark;
+
+import com.example.aicodehelper.ai.tools.FileReaderTool;
+import com.example.aicodehelper.ai.tools.ToolResultCache;
+import dev.langchain4j.store.memory.chat.InMemoryChatMemoryStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 项目文件工具基准测试
+ * 在临时目录中生成合成的 Maven 项目（每个包 20 个类、每个类约 150 行），测量：
+ * - searchCodeInProject：全项目文本搜索（不经过缓存）
+ * - searchCodeInProjectCached：同一会话重复搜索，缓存命中时只计算目录树指纹
+ * - readProjectFile：读取一个 3000 行的大文件并添加行号
+ *
+ * 运行：mvn -Pbenchmark compile exec:exec -Djmh.args="FileReaderToolBenchmark -f 1"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FileReaderToolBenchmark {
+
+    private static final int FILES_PER_PACKAGE = 20;
+    private static final String LARGE_FILE = "src/main/java/com/example/LargeService.java";
+
+    @Param({"200", "2000"})
+    public int files;
+
+    private Path projectRoot;
+    private FileReaderTool tool;
+    private FileReaderTool cachedTool;
+
+    @Setup
+    public void setUp() throws IOException {
+        BenchmarkSupport.quietLogging();
+        projectRoot = Files.createTempDirectory("filereader-bench");
+        for (int i = 0; i < files; i++) {
+            Path dir = projectRoot.resolve("src/main/java/com/example/pkg" + (i / FILES_PER_PACKAGE));
+            Files.createDirectories(dir);
+            Files.writeString(dir.resolve("Class" + i + ".java"), javaClass("Class" + i, 150, i % 97 == 0));
+        }
+        Files.writeString(projectRoot.resolve(LARGE_FILE), javaClass("LargeService", 3000, false));
+
+        tool = new FileReaderTool(projectRoot.toString());
+        cachedTool = new FileReaderTool(projectRoot.toString(),
+                new ToolResultCache(new InMemoryChatMemoryStore(), null, 100, 1_000_000));
+        // 预先填充缓存，之后每次调用都是命中
+        cachedTool.searchCodeInProject(1, "OrderRepository", ".java");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchmarkSupport.deleteRecursively(projectRoot);
+    }
+
+    @Benchmark
+    public String searchCodeInProject() {
+        return tool.searchCodeInProject(null, "OrderRepository", ".java");
+    }
+
+    @Benchmark
+    public String searchCodeInProjectCached() {
+        return cachedTool.searchCodeInProject(1, "OrderRepository", ".java");
+    }
+
+    @Benchmark
+    public String readProjectFile() {
+        return tool.readProjectFile(null, LARGE_FILE);
+    }
+
+    private static String javaClass(String name, int lines, boolean withNeedle) {
+        StringBuilder builder = new StringBuilder("package com.example;\n\npublic class ")
+                .append(name).append(" {\n");
+        if (withNeedle) {
+            builder.append("    private OrderRepository orderRepository;\n");
+        }
+        for (int i = 0; i < lines; i++) {
+            builder.append(BenchmarkSupport.javaLine(i)).append('\n');
+        }
+        return builder.append("}\n").toString();
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.aicodehelper.benchmark;
+
+import com.example.aicodehelper.ai.rag.DocumentSegmentTransformer;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.segment.TextSegment;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RAG 片段转换基准测试
+ * 测量 RagConfig 入库时对每个片段调用的 DocumentSegmentTransformer（添加来源标注、重建 metadata）
+ *
+ * 运行：mvn -Pbenchmark compile exec:exec -Djmh.args="SegmentTransformerBenchmark -f 1"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SegmentTransformerBenchmark {
+
+    private static final int SEGMENTS = 64;
+
+    private final DocumentSegmentTransformer transformer = new DocumentSegmentTransformer();
+    private TextSegment[] segments;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        // 与 DocumentByParagraphSplitter(1000, 200) 切出的片段大小相当
+        String paragraph = "Java 中的多态是指同一方法调用在不同对象上表现出不同的行为。".repeat(30);
+        segments = new TextSegment[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = TextSegment.from(paragraph, Metadata.from(Map.of(
+                    "file_name", "Lec-0" + (i % 9) + "-Lecture.pdf",
+                    "file_path", "/docs/Lec-0" + (i % 9) + "-Lecture.pdf",
+                    "page_number", String.valueOf(i + 1),
+                    "total_pages", "64",
+                    "index", String.valueOf(i))));
+        }
+    }
+
+    @Benchmark
+    public TextSegment transform() {
+        next = (next + 1) % SEGMENTS;
+        return transformer.transform(segments[next]);
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.aicodehelper.benchmark;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 向量检索基准测试
+ * 使用与 AiModelConfig 相同的 InMemoryEmbeddingStore，维度与 text-embedding-v4 默认的 1024 一致，
+ * 检索参数与 RagConfig 的 EmbeddingStoreContentRetriever 相同（最多 5 条、最低分 0.75）。
+ * 随机向量的相似度基本都低于 0.75，因此测得的是完整扫描加过滤的耗时。
+ *
+ * 运行：mvn -Pbenchmark compile exec:exec -Djmh.args="VectorSearchBenchmark -f 1"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VectorSearchBenchmark {
+
+    private static final int DIMENSION = 1024;
+    private static final int QUERIES = 32;
+
+    // 当前随附文档切分后约 200 个片段，10000 用于评估文档扩充后的情况
+    @Param({"200", "10000"})
+    public int segments;
+
+    private InMemoryEmbeddingStore<TextSegment> store;
+    private Embedding[] queries;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(20240601L);
+        store = new InMemoryEmbeddingStore<>();
+        List<Embedding> embeddings = new ArrayList<>(segments);
+        List<TextSegment> texts = new ArrayList<>(segments);
+        for (int i = 0; i < segments; i++) {
+            embeddings.add(randomEmbedding(random));
+            texts.add(TextSegment.from("片段 " + i));
+        }
+        store.addAll(embeddings, texts);
+
+        queries = new Embedding[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            queries[i] = randomEmbedding(random);
+        }
+    }
+
+    @Benchmark
+    public EmbeddingSearchResult<TextSegment> search() {
+        next = (next + 1) % QUERIES;
+        return store.search(EmbeddingSearchRequest.builder()
+                .queryEmbedding(queries[next])
+                .maxResults(5)
+                .minScore(0.75)
+                .build());
+    }
+
+    private static Embedding randomEmbedding(Random random) {
+        float[] vector = new float[DIMENSION];
+        double norm = 0;
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = (float) random.nextGaussian();
+            norm += vector[i] * vector[i];
+        }
+        float scale = (float) (1 / Math.sqrt(norm));
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] *= scale;
+        }
+        return Embedding.from(vector);
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.aicodehelper.loadtest;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 命令行参数：支持 --key value 和 --key=value 两种写法，其余参数按顺序作为位置参数
+ */
+class Args {
+
+    private final Map<String, String> options = new HashMap<>();
+    private final List<String> positional = new ArrayList<>();
+
+    Args(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (!arg.startsWith("--")) {
+                positional.add(arg);
+                continue;
+            }
+            int eq = arg.indexOf('=');
+            if (eq > 0) {
+                options.put(arg.substring(2, eq), arg.substring(eq + 1));
+            } else if (i + 1 < args.length && !args[i + 1].startsWith("--")) {
+                options.put(arg.substring(2), args[++i]);
+            } else {
+                options.put(arg.substring(2), "true");
+            }
+        }
+    }
+
+    String positional(int index, String defaultValue) {
+        return index < positional.size() ? positional.get(index) : defaultValue;
+    }
+
+    boolean has(String key) {
+        return options.containsKey(key);
+    }
+
+    String get(String key, String defaultValue) {
+        return options.getOrDefault(key, defaultValue);
+    }
+
+    int getInt(String key, int defaultValue) {
+        String value = options.get(key);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    double getDouble(String key, double defaultValue) {
+        String value = options.get(key);
+        return value == null ? defaultValue : Double.parseDouble(value);
+    }
+
+    /**
+     * 时长参数，支持 500ms、30s、2m 或纯数字（秒）
+     */
+    Duration getDuration(String key, Duration defaultValue) {
+        String value = options.get(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        if (value.endsWith("ms")) {
+            return Duration.ofMillis(Long.parseLong(value.substring(0, value.length() - 2)));
+        }
+        if (value.endsWith("s")) {
+            return Duration.ofSeconds(Long.parseLong(value.substring(0, value.length() - 1)));
+        }
+        if (value.endsWith("m")) {
+            return Duration.ofMinutes(Long.parseLong(value.substring(0, value.length() - 1)));
+        }
+        return Duration.ofSeconds(Long.parseLong(value));
+    }
+}
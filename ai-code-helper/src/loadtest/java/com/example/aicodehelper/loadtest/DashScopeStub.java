@@ -0,0 +1,298 @@
+package com.example.aicodehelper.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * DashScope 桩服务
+ * 在本地模拟通义千问的文本生成（普通 / SSE 流式）和文本向量接口，协议与 dashscope-sdk-java 一致，
+ * 后端只需把 base-url 指向 http://localhost:端口/api/v1 即可离线运行。
+ *
+ * 可配置首 token 延迟、生成速率、输出长度、向量接口延迟、错误注入比例和延迟分布（见 {@link Options}）。
+ */
+class DashScopeStub implements AutoCloseable {
+
+    static final String GENERATION_PATH = "/services/aigc/text-generation/generation";
+    static final String EMBEDDING_PATH = "/services/embeddings/text-embedding/text-embedding";
+
+    // 生成内容循环使用的片段（每个片段计为一个 token）
+    private static final String[] TOKENS = {
+            "Java", " 中", "的", "多态", "是指", "同一", "方法", "调用", "在", "不同", "对象", "上",
+            "表现", "出", "不同", "的", "行为", "。", "\n"
+    };
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * 桩服务参数
+     *
+     * @param port            监听端口（0 表示随机端口）
+     * @param ttftMillis      首 token 延迟中位数
+     * @param tokensPerSecond 首 token 之后的生成速率
+     * @param outputTokens    每次回复的 token 数
+     * @param embeddingMillis 向量接口延迟中位数
+     * @param errorRate       返回 500 错误的请求比例（0 ~ 1）
+     * @param latency         延迟分布（首 token 和向量接口延迟按此取样）
+     */
+    record Options(int port, long ttftMillis, double tokensPerSecond, int outputTokens,
+                   long embeddingMillis, double errorRate, LatencyModel latency) {
+
+        static Options from(Args args) {
+            return new Options(
+                    args.getInt("stub-port", 18080),
+                    args.getDuration("ttft", Duration.ofMillis(800)).toMillis(),
+                    args.getDouble("token-rate", 40),
+                    args.getInt("output-tokens", 200),
+                    args.getDuration("embedding-latency", Duration.ofMillis(30)).toMillis(),
+                    args.getDouble("error-rate", 0),
+                    LatencyModel.parse(args.get("latency-dist", "lognormal"),
+                            args.getDouble("latency-sigma", 0.5),
+                            args.getDouble("tail-probability", 0.01),
+                            args.getDouble("tail-multiplier", 8)));
+        }
+
+        @Override
+        public String toString() {
+            return String.format("首 token %d ms，%.0f token/s，每次 %d token，向量 %d ms，错误率 %.1f%%，分布 %s",
+                    ttftMillis, tokensPerSecond, outputTokens, embeddingMillis, errorRate * 100, latency);
+        }
+    }
+
+    private final Options options;
+    private final AtomicLong generationRequests = new AtomicLong();
+    private final AtomicLong embeddingRequests = new AtomicLong();
+    private final AtomicLong injectedErrors = new AtomicLong();
+    private HttpServer server;
+
+    DashScopeStub(Options options) {
+        this.options = options;
+    }
+
+    /**
+     * 启动桩服务
+     *
+     * @return 实际监听的端口
+     */
+    int start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", options.port()), 1024);
+        // 每个请求一个虚拟线程，模拟延迟时的 sleep 不占用平台线程
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/", this::handle);
+        server.start();
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    long generationRequests() {
+        return generationRequests.get();
+    }
+
+    long embeddingRequests() {
+        return embeddingRequests.get();
+    }
+
+    long injectedErrors() {
+        return injectedErrors.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String path = exchange.getRequestURI().getPath();
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                sendJson(exchange, 405, error("MethodNotAllowed", "只支持 POST"));
+            } else if (path.endsWith(GENERATION_PATH)) {
+                generationRequests.incrementAndGet();
+                handleGeneration(exchange);
+            } else if (path.endsWith(EMBEDDING_PATH)) {
+                embeddingRequests.incrementAndGet();
+                handleEmbedding(exchange);
+            } else {
+                sendJson(exchange, 404, error("NotFound", "桩服务未实现接口 " + path));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            // 客户端提前断开（如后端取消流式请求）
+        }
+    }
+
+    private void handleGeneration(HttpExchange exchange) throws IOException, InterruptedException {
+        JsonNode request = MAPPER.readTree(exchange.getRequestBody());
+        if (injectError()) {
+            Thread.sleep(options.latency().sampleMillis(options.ttftMillis()) / 4);
+            sendJson(exchange, 500, error("InternalError", "桩服务注入的错误"));
+            return;
+        }
+
+        JsonNode parameters = request.path("parameters");
+        boolean incremental = parameters.path("incremental_output").asBoolean(false);
+        String accept = exchange.getRequestHeaders().getFirst("Accept");
+        boolean stream = "enable".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("X-DashScope-SSE"))
+                || (accept != null && accept.contains("text/event-stream"));
+        int inputTokens = estimateTokens(request.path("input").path("messages"));
+        String requestId = UUID.randomUUID().toString();
+        long ttft = options.latency().sampleMillis(options.ttftMillis());
+        double tokenIntervalMillis = options.tokensPerSecond() > 0 ? 1000.0 / options.tokensPerSecond() : 0;
+
+        if (!stream) {
+            Thread.sleep(ttft + Math.round(tokenIntervalMillis * options.outputTokens()));
+            StringBuilder content = new StringBuilder();
+            for (int i = 0; i < options.outputTokens(); i++) {
+                content.append(TOKENS[i % TOKENS.length]);
+            }
+            sendJson(exchange, 200, generationResult(requestId, content.toString(), "stop",
+                    inputTokens, options.outputTokens()));
+            return;
+        }
+
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream;charset=UTF-8");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        Thread.sleep(ttft);
+
+        StringBuilder content = new StringBuilder();
+        long start = System.nanoTime();
+        int total = Math.max(options.outputTokens(), 1);
+        for (int i = 0; i < total; i++) {
+            String token = TOKENS[i % TOKENS.length];
+            content.append(token);
+            boolean last = i == total - 1;
+            ObjectNode result = generationResult(requestId, incremental ? token : content.toString(),
+                    last ? "stop" : "null", inputTokens, i + 1);
+            writeEvent(out, i + 1, result);
+            if (!last && tokenIntervalMillis > 0) {
+                // 按生成速率的绝对时间点发送，避免 sleep 误差累积
+                long dueNanos = start + Math.round((i + 1) * tokenIntervalMillis * 1_000_000);
+                long waitNanos = dueNanos - System.nanoTime();
+                if (waitNanos > 0) {
+                    Thread.sleep(waitNanos / 1_000_000, (int) (waitNanos % 1_000_000));
+                }
+            }
+        }
+    }
+
+    private void handleEmbedding(HttpExchange exchange) throws IOException, InterruptedException {
+        JsonNode request = MAPPER.readTree(exchange.getRequestBody());
+        Thread.sleep(options.latency().sampleMillis(options.embeddingMillis()));
+        if (injectError()) {
+            sendJson(exchange, 500, error("InternalError", "桩服务注入的错误"));
+            return;
+        }
+
+        int dimension = request.path("parameters").path("dimension").asInt(1024);
+        ObjectNode response = MAPPER.createObjectNode();
+        ArrayNode embeddings = response.putObject("output").putArray("embeddings");
+        int tokens = 0;
+        int index = 0;
+        for (JsonNode text : request.path("input").path("texts")) {
+            ObjectNode item = embeddings.addObject();
+            item.put("text_index", index++);
+            ArrayNode vector = item.putArray("embedding");
+            for (float value : embed(text.asText(), dimension)) {
+                vector.add(value);
+            }
+            tokens += text.asText().length();
+        }
+        response.putObject("usage").put("total_tokens", tokens);
+        response.put("request_id", UUID.randomUUID().toString());
+        sendJson(exchange, 200, response);
+    }
+
+    private boolean injectError() {
+        if (options.errorRate() > 0 && ThreadLocalRandom.current().nextDouble() < options.errorRate()) {
+            injectedErrors.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 确定性的“向量”：字符二元组哈希到各维度后归一化，相同文本得到相同向量，相似文本余弦相似度较高
+     */
+    static float[] embed(String text, int dimension) {
+        float[] vector = new float[dimension];
+        for (int i = 0; i + 1 < text.length(); i++) {
+            int hash = text.charAt(i) * 31 + text.charAt(i + 1);
+            vector[Math.floorMod(hash * 0x9E3779B1, dimension)] += 1;
+        }
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        if (norm == 0) {
+            vector[0] = 1;
+            return vector;
+        }
+        float scale = (float) (1 / Math.sqrt(norm));
+        for (int i = 0; i < dimension; i++) {
+            vector[i] *= scale;
+        }
+        return vector;
+    }
+
+    private static int estimateTokens(JsonNode messages) {
+        int chars = 0;
+        for (JsonNode message : messages) {
+            chars += message.path("content").asText().length();
+        }
+        // 与 DashScope 的中文计费大致相当：约 1.5 个字符一个 token
+        return (int) Math.ceil(chars / 1.5);
+    }
+
+    private static ObjectNode generationResult(String requestId, String content, String finishReason,
+                                               int inputTokens, int outputTokens) {
+        ObjectNode result = MAPPER.createObjectNode();
+        ObjectNode choice = result.putObject("output").putArray("choices").addObject();
+        choice.put("finish_reason", finishReason);
+        ObjectNode message = choice.putObject("message");
+        message.put("role", "assistant");
+        message.put("content", content);
+        ObjectNode usage = result.putObject("usage");
+        usage.put("input_tokens", inputTokens);
+        usage.put("output_tokens", outputTokens);
+        usage.put("total_tokens", inputTokens + outputTokens);
+        result.put("request_id", requestId);
+        return result;
+    }
+
+    private static ObjectNode error(String code, String message) {
+        ObjectNode error = MAPPER.createObjectNode();
+        error.put("code", code);
+        error.put("message", message);
+        error.put("request_id", UUID.randomUUID().toString());
+        return error;
+    }
+
+    private static void writeEvent(OutputStream out, int id, JsonNode data) throws IOException {
+        String event = "id:" + id + "\nevent:result\n:HTTP_STATUS/200\ndata:" + MAPPER.writeValueAsString(data) + "\n\n";
+        out.write(event.getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private static void sendJson(HttpExchange exchange, int status, JsonNode body) throws IOException {
+        byte[] bytes = MAPPER.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json;charset=UTF-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+}
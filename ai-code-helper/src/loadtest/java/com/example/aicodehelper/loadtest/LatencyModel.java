@@ -0,0 +1,58 @@
+package com.example.aicodehelper.loadtest;
+
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 桩服务的延迟模型
+ * 每次取样以给定的中位数为基准，按分布加入随机波动；另以 tailProbability 的概率乘以 tailMultiplier，模拟上游偶发的长尾
+ *
+ * @param distribution   分布类型
+ * @param sigma          对数正态分布的形状参数（越大波动越大）
+ * @param tailProbability 长尾出现的概率（0 ~ 1）
+ * @param tailMultiplier 长尾时延迟的放大倍数
+ */
+record LatencyModel(Distribution distribution, double sigma, double tailProbability, double tailMultiplier) {
+
+    enum Distribution {
+        FIXED,       // 固定为中位数
+        LOGNORMAL,   // 对数正态分布，中位数为给定值
+        EXPONENTIAL  // 指数分布，中位数为给定值
+    }
+
+    static LatencyModel parse(String distribution, double sigma, double tailProbability, double tailMultiplier) {
+        return new LatencyModel(Distribution.valueOf(distribution.toUpperCase(Locale.ROOT)),
+                sigma, tailProbability, tailMultiplier);
+    }
+
+    /**
+     * 按模型取一次延迟
+     *
+     * @param medianMillis 中位数（毫秒）
+     * @return 延迟（毫秒）
+     */
+    long sampleMillis(long medianMillis) {
+        if (medianMillis <= 0) {
+            return 0;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        double value = switch (distribution) {
+            case FIXED -> medianMillis;
+            case LOGNORMAL -> medianMillis * Math.exp(sigma * random.nextGaussian());
+            // 指数分布的中位数为 ln2 / λ
+            case EXPONENTIAL -> -medianMillis / Math.log(2) * Math.log(1 - random.nextDouble());
+        };
+        if (tailProbability > 0 && random.nextDouble() < tailProbability) {
+            value *= tailMultiplier;
+        }
+        return Math.round(value);
+    }
+
+    @Override
+    public String toString() {
+        String base = distribution == Distribution.LOGNORMAL
+                ? "lognormal(σ=" + sigma + ")"
+                : distribution.name().toLowerCase(Locale.ROOT);
+        return tailProbability > 0 ? base + "，长尾 " + tailProbability * 100 + "% ×" + tailMultiplier : base;
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.aicodehelper.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * 延迟样本记录（毫秒），保留全部样本以计算精确分位数
+ * 负载测试一次运行的请求数在十万以内，直接排序即可
+ */
+class LatencyRecorder {
+
+    private long[] samples = new long[1024];
+    private int count;
+
+    synchronized void record(long millis) {
+        if (count == samples.length) {
+            samples = Arrays.copyOf(samples, count * 2);
+        }
+        samples[count++] = millis;
+    }
+
+    synchronized Snapshot snapshot() {
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        return new Snapshot(sorted);
+    }
+
+    /**
+     * 某一时刻的样本快照
+     */
+    record Snapshot(long[] sorted) {
+
+        int count() {
+            return sorted.length;
+        }
+
+        /**
+         * 分位数（最近秩法），无样本时返回 0
+         *
+         * @param quantile 0 ~ 1
+         */
+        long percentile(double quantile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int rank = (int) Math.ceil(quantile * sorted.length);
+            return sorted[Math.min(Math.max(rank, 1), sorted.length) - 1];
+        }
+
+        long max() {
+            return sorted.length == 0 ? 0 : sorted[sorted.length - 1];
+        }
+
+        double mean() {
+            return Arrays.stream(sorted).average().orElse(0);
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package com.example.aicodehelper.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 后端负载测试入口（无需网络，所有模型调用由本地 {@link DashScopeStub} 应答）
+ *
+ * 运行：mvn -Ploadtest compile exec:exec [-Dloadtest.args="run --duration 60s --chat-users 16"]
+ *
+ * 子命令：
+ * - run（默认）：启动桩服务，以 loadtest 配置启动后端子进程，运行场景后输出报告并关闭后端
+ * - stub：只启动桩服务，供手动以 --spring.profiles.active=loadtest 启动的后端使用
+ * - drive：只对已启动的后端（--target）运行场景
+ *
+ * 桩服务参数：--stub-port 18080 --ttft 800ms --token-rate 40 --output-tokens 200 --embedding-latency 30ms
+ *            --error-rate 0 --latency-dist lognormal|exponential|fixed --latency-sigma 0.5
+ *            --tail-probability 0.01 --tail-multiplier 8
+ * 场景参数：--warmup 10s --duration 60s --chat-users 8 --modify-users 2 --rag-users 2 --report 报告.json
+ * 高并发流式场景（指定 --streams 时代替上面的场景，见 StreamSoak）：--streams 2000 --ramp 20s，
+ *            桩服务需配合较长的输出，如 --token-rate 10 --output-tokens 400
+ * 后端参数（run）：--backend-port 18081 --backend-jvm-args "-Xmx1g" --startup-timeout 180s --docs 文档目录
+ *            --reactive（以 WebFlux/Netty 方式启动后端，即 reactive 配置）
+ * 虚拟线程钉住诊断：--backend-jvm-args "-XX:StartFlightRecording=filename=backend.jfr,jdk.VirtualThreadPinned#threshold=0ms"
+ *            （写在后端工作目录 target/loadtest 下），结束后 jfr print --stack-depth 64 --events jdk.VirtualThreadPinned；
+ *            与平台线程对比时在 --backend-jvm-args 中加 -Dspring.threads.virtual.enabled=false -Dblocking.virtual-threads=false
+ */
+public class LoadTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    // 后端子进程的工作目录：向量库、响应缓存、会话记录都写在这里，不影响开发环境的数据
+    private static final Path WORK_DIR = Path.of("target", "loadtest");
+
+    public static void main(String[] argv) throws Exception {
+        Args args = new Args(argv);
+        String command = args.positional(0, "run");
+        switch (command) {
+            case "stub" -> runStub(args);
+            case "drive" -> drive(args, args.get("target", "http://localhost:8081"));
+            case "run" -> runAll(args);
+            default -> {
+                System.err.println("未知子命令: " + command + "（可选 run、stub、drive）");
+                System.exit(2);
+            }
+        }
+    }
+
+    private static void runStub(Args args) throws Exception {
+        DashScopeStub.Options options = DashScopeStub.Options.from(args);
+        try (DashScopeStub stub = new DashScopeStub(options)) {
+            int port = stub.start();
+            System.out.println("DashScope 桩服务已启动: http://localhost:" + port + "/api/v1（" + options + "）");
+            System.out.println("按 Ctrl+C 停止");
+            Thread.currentThread().join();
+        }
+    }
+
+    private static void runAll(Args args) throws Exception {
+        DashScopeStub.Options options = DashScopeStub.Options.from(args);
+        try (DashScopeStub stub = new DashScopeStub(options)) {
+            int stubPort = stub.start();
+            System.out.println("DashScope 桩服务: http://localhost:" + stubPort + "/api/v1（" + options + "）");
+
+            int backendPort = args.getInt("backend-port", 18081);
+            Process backend = startBackend(args, stubPort, backendPort);
+            Runtime.getRuntime().addShutdownHook(new Thread(backend::destroyForcibly));
+            try {
+                String target = "http://localhost:" + backendPort;
+                waitForHealthy(target, backend, args.getDuration("startup-timeout", Duration.ofSeconds(180)));
+                drive(args, target);
+                System.out.printf("桩服务共收到 %d 次生成请求、%d 次向量请求，注入错误 %d 次%n",
+                        stub.generationRequests(), stub.embeddingRequests(), stub.injectedErrors());
+            } finally {
+                backend.destroy();
+                if (!backend.waitFor(15, TimeUnit.SECONDS)) {
+                    backend.destroyForcibly();
+                }
+            }
+        }
+    }
+
+    /**
+     * 以 loadtest 配置启动后端子进程，类路径与当前进程相同（exec:exec 传入的 %classpath）
+     */
+    private static Process startBackend(Args args, int stubPort, int backendPort) throws IOException {
+        Files.createDirectories(WORK_DIR);
+        String stubUrl = "http://localhost:" + stubPort + "/api/v1";
+        String docs = Path.of(args.get("docs", "src/main/resources/docs")).toAbsolutePath().toString();
+
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        for (String jvmArg : args.get("backend-jvm-args", "").split("\\s+")) {
+            if (!jvmArg.isBlank()) {
+                command.add(jvmArg);
+            }
+        }
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add("com.example.aicodehelper.AiCodeHelperApplication");
+        command.add("--spring.profiles.active=" + (args.has("reactive") ? "reactive,loadtest" : "loadtest"));
+        command.add("--server.port=" + backendPort);
+        command.add("--rag.documents-path=" + docs);
+        for (String model : List.of("chat-model", "streaming-chat-model", "embedding-model")) {
+            command.add("--langchain4j.community.dashscope." + model + ".base-url=" + stubUrl);
+        }
+
+        File log = WORK_DIR.resolve("backend.log").toFile();
+        System.out.println("启动后端（端口 " + backendPort + "，日志 " + log.getPath() + "）...");
+        return new ProcessBuilder(command)
+                .directory(WORK_DIR.toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(log)
+                .start();
+    }
+
+    private static void waitForHealthy(String target, Process backend, Duration timeout) throws Exception {
+        HttpClient client = HttpClient.newHttpClient();
+        HttpRequest request = HttpRequest.newBuilder(URI.create(target + "/actuator/health"))
+                .timeout(Duration.ofSeconds(2))
+                .build();
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (System.nanoTime() < deadline) {
+            if (!backend.isAlive()) {
+                throw new IllegalStateException("后端启动失败，退出码 " + backend.exitValue() + "，详见 backend.log");
+            }
+            try {
+                if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    System.out.println("后端已就绪");
+                    return;
+                }
+            } catch (IOException e) {
+                // 尚未开始监听
+            }
+            Thread.sleep(500);
+        }
+        throw new IllegalStateException("后端在 " + timeout.toSeconds() + " 秒内未就绪，详见 backend.log");
+    }
+
+    private static void drive(Args args, String target) throws Exception {
+        if (args.has("streams")) {
+            driveStreams(args, target);
+            return;
+        }
+        Duration warmup = args.getDuration("warmup", Duration.ofSeconds(10));
+        Duration duration = args.getDuration("duration", Duration.ofSeconds(60));
+        Map<String, Integer> users = new LinkedHashMap<>();
+        users.put("chat", args.getInt("chat-users", 8));
+        users.put("modify", args.getInt("modify-users", 2));
+        users.put("rag", args.getInt("rag-users", 2));
+
+        System.out.printf("压测 %s：预热 %d 秒，统计 %d 秒，虚拟用户 %s%n",
+                target, warmup.toSeconds(), duration.toSeconds(), users);
+        List<ScenarioDriver.Result> results;
+        Map<String, ResourceSampler.Summary> resources;
+        try (ResourceSampler sampler = new ResourceSampler(target, Duration.ofSeconds(1))) {
+            sampler.start();
+            results = new ScenarioDriver(target, warmup, duration, users).run();
+            resources = sampler.summaries();
+        }
+
+        printReport(results, resources);
+        if (args.has("report")) {
+            Path report = Path.of(args.get("report", "loadtest-report.json"));
+            MAPPER.writerWithDefaultPrettyPrinter().writeValue(report.toFile(), toJson(results, resources));
+            System.out.println("报告已写入 " + report.toAbsolutePath());
+        }
+    }
+
+    private static void driveStreams(Args args, String target) throws Exception {
+        int streams = args.getInt("streams", 2000);
+        Duration ramp = args.getDuration("ramp", Duration.ofSeconds(20));
+        System.out.printf("压测 %s：%d 秒内打开 %d 个 /chat 流并保持到回答结束%n", target, ramp.toSeconds(), streams);
+
+        StreamSoak.Result result;
+        Map<String, ResourceSampler.Summary> resources;
+        try (ResourceSampler sampler = new ResourceSampler(target, Duration.ofSeconds(1))) {
+            sampler.start();
+            result = new StreamSoak(target, streams, ramp).run();
+            resources = sampler.summaries();
+        }
+
+        System.out.println();
+        System.out.printf("计划 %d 个流，建立 %d 个，同时打开峰值 %d 个，完整接收 %d 个，失败 %d 个%n",
+                result.streams(), result.opened(), result.peakOpen(), result.completed(), result.errors());
+        System.out.printf("%-12s %8s %8s %8s %8s%n", "", "p50", "p90", "p99", "max");
+        printStreamRow("首个数据块", result.ttft());
+        printStreamRow("总耗时", result.duration());
+        System.out.println("（单位 ms）");
+        if (result.firstError() != null) {
+            System.out.println("第一个错误: " + result.firstError());
+        }
+        System.out.println();
+        resources.forEach((label, summary) -> {
+            if (summary.count() > 0) {
+                System.out.printf("%-14s 平均 %8.1f   峰值 %8.1f%n", label, summary.mean(), summary.max());
+            }
+        });
+
+        if (args.has("report")) {
+            Map<String, Object> json = new LinkedHashMap<>();
+            json.put("streams", result.streams());
+            json.put("opened", result.opened());
+            json.put("peakOpen", result.peakOpen());
+            json.put("completed", result.completed());
+            json.put("errors", result.errors());
+            json.put("firstChunkMs", percentiles(result.ttft()));
+            json.put("durationMs", percentiles(result.duration()));
+            if (result.firstError() != null) {
+                json.put("firstError", result.firstError());
+            }
+            Map<String, Object> usage = new LinkedHashMap<>();
+            resources.forEach((label, summary) -> usage.put(label, Map.of("mean", summary.mean(), "max", summary.max())));
+            json.put("resources", usage);
+            Path report = Path.of(args.get("report", "loadtest-report.json"));
+            MAPPER.writerWithDefaultPrettyPrinter().writeValue(report.toFile(), json);
+            System.out.println("报告已写入 " + report.toAbsolutePath());
+        }
+    }
+
+    private static void printStreamRow(String name, LatencyRecorder.Snapshot snapshot) {
+        System.out.printf("%-12s %8d %8d %8d %8d%n", name, snapshot.percentile(0.5), snapshot.percentile(0.9),
+                snapshot.percentile(0.99), snapshot.max());
+    }
+
+    private static void printReport(List<ScenarioDriver.Result> results, Map<String, ResourceSampler.Summary> resources) {
+        System.out.println();
+        System.out.printf("%-12s %6s %8s %10s %8s %8s %8s %8s %6s%n",
+                "场景", "用户", "请求数", "吞吐(/s)", "p50", "p90", "p99", "max", "错误");
+        for (ScenarioDriver.Result result : results) {
+            printRow(result.scenario(), result.users(), result.requests(), result.throughput(),
+                    result.latency(), result.errors());
+            if (result.ttft().count() > 0) {
+                printRow("  └ 首个数据块", result.users(), result.ttft().count(), Double.NaN, result.ttft(), 0);
+            }
+        }
+        System.out.println("（延迟单位 ms，只统计成功请求）");
+        results.stream()
+                .filter(result -> result.firstError() != null)
+                .forEach(result -> System.out.println(result.scenario() + " 第一个错误: " + result.firstError()));
+
+        System.out.println();
+        resources.forEach((label, summary) -> {
+            if (summary.count() > 0) {
+                System.out.printf("%-14s 平均 %8.1f   峰值 %8.1f%n", label, summary.mean(), summary.max());
+            } else {
+                System.out.printf("%-14s 无数据（/actuator/metrics 不可用）%n", label);
+            }
+        });
+    }
+
+    private static void printRow(String name, int users, long requests, double throughput,
+                                 LatencyRecorder.Snapshot latency, long errors) {
+        System.out.printf("%-12s %6d %8d %10s %8d %8d %8d %8d %6d%n",
+                name, users, requests, Double.isNaN(throughput) ? "" : String.format("%.2f", throughput),
+                latency.percentile(0.5), latency.percentile(0.9), latency.percentile(0.99), latency.max(), errors);
+    }
+
+    private static Map<String, Object> toJson(List<ScenarioDriver.Result> results,
+                                              Map<String, ResourceSampler.Summary> resources) {
+        Map<String, Object> scenarios = new LinkedHashMap<>();
+        for (ScenarioDriver.Result result : results) {
+            Map<String, Object> json = new LinkedHashMap<>();
+            json.put("users", result.users());
+            json.put("requests", result.requests());
+            json.put("errors", result.errors());
+            json.put("throughput", result.throughput());
+            json.put("latencyMs", percentiles(result.latency()));
+            if (result.ttft().count() > 0) {
+                json.put("firstChunkMs", percentiles(result.ttft()));
+            }
+            if (result.firstError() != null) {
+                json.put("firstError", result.firstError());
+            }
+            scenarios.put(result.scenario(), json);
+        }
+        Map<String, Object> usage = new LinkedHashMap<>();
+        resources.forEach((label, summary) -> usage.put(label, Map.of("mean", summary.mean(), "max", summary.max())));
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("scenarios", scenarios);
+        report.put("resources", usage);
+        return report;
+    }
+
+    private static Map<String, Object> percentiles(LatencyRecorder.Snapshot snapshot) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("mean", snapshot.mean());
+        json.put("p50", snapshot.percentile(0.5));
+        json.put("p90", snapshot.percentile(0.9));
+        json.put("p99", snapshot.percentile(0.99));
+        json.put("max", snapshot.max());
+        return json;
+    }
+}
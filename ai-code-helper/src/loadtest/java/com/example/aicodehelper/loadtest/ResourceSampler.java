@@ -0,0 +1,144 @@
+package com.example.aicodehelper.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 后端资源占用采样
+ * 压测期间按固定间隔读取 /actuator/metrics 中的 CPU、内存和线程数，结束时给出平均值和峰值
+ */
+class ResourceSampler implements AutoCloseable {
+
+    /**
+     * 采样的指标：名称 -> 显示名；内存按字节读取，汇总时换算为 MB
+     */
+    static final Map<String, String> METRICS = new LinkedHashMap<>();
+
+    static {
+        METRICS.put("process.cpu.usage", "进程 CPU(%)");
+        METRICS.put("jvm.memory.used", "JVM 内存(MB)");
+        METRICS.put("jvm.threads.live", "存活线程数");
+    }
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(2)).build();
+    private final String baseUrl;
+    private final Duration interval;
+    private final Map<String, Summary> summaries = new LinkedHashMap<>();
+    private volatile boolean running = true;
+    private Thread thread;
+
+    ResourceSampler(String baseUrl, Duration interval) {
+        this.baseUrl = baseUrl;
+        this.interval = interval;
+        METRICS.values().forEach(label -> summaries.put(label, new Summary()));
+    }
+
+    void start() {
+        thread = Thread.ofVirtual().name("resource-sampler").start(() -> {
+            while (running) {
+                sampleOnce();
+                try {
+                    Thread.sleep(interval);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    /**
+     * 各指标的平均值和峰值，显示名 -> 汇总
+     */
+    synchronized Map<String, Summary> summaries() {
+        Map<String, Summary> copy = new LinkedHashMap<>();
+        summaries.forEach((label, summary) -> copy.put(label, summary.copy()));
+        return copy;
+    }
+
+    private void sampleOnce() {
+        METRICS.forEach((metric, label) -> {
+            Double value = read(metric);
+            if (value == null) {
+                return;
+            }
+            if (metric.equals("process.cpu.usage")) {
+                value *= 100;
+            } else if (metric.equals("jvm.memory.used")) {
+                value /= 1024 * 1024;
+            }
+            synchronized (this) {
+                summaries.get(label).add(value);
+            }
+        });
+    }
+
+    private Double read(String metric) {
+        try {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/actuator/metrics/" + metric))
+                    .timeout(Duration.ofSeconds(2))
+                    .build();
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                return null;
+            }
+            // measurements 中第一项为 VALUE（jvm.memory.used 已按所有内存区域求和）
+            JsonNode measurements = MAPPER.readTree(response.body()).path("measurements");
+            return measurements.isEmpty() ? null : measurements.get(0).path("value").asDouble();
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * 单个指标的汇总
+     */
+    static class Summary {
+        private int count;
+        private double sum;
+        private double max;
+
+        void add(double value) {
+            count++;
+            sum += value;
+            max = Math.max(max, value);
+        }
+
+        double mean() {
+            return count == 0 ? 0 : sum / count;
+        }
+
+        double max() {
+            return max;
+        }
+
+        int count() {
+            return count;
+        }
+
+        Summary copy() {
+            Summary copy = new Summary();
+            copy.count = count;
+            copy.sum = sum;
+            copy.max = max;
+            return copy;
+        }
+    }
+}
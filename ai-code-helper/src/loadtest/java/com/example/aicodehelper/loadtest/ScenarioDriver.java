@@ -0,0 +1,272 @@
+package com.example.aicodehelper.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+/**
+ * 场景驱动
+ * 按场景启动固定数量的虚拟用户（每个用户一个虚拟线程，收到响应后立即发起下一次请求），对 AiController 施压：
+ * - chat：流式对话（/api/ai/chat，SSE），每次使用新的会话ID，记录首个 delta 事件的延迟和总耗时，未以 done 事件结束算失败
+ * - modify：代码修改（/api/ai/modify-code-with-diff），每次使用不同的修改指令，避免被请求合并
+ * - rag：RAG 问答（/api/ai/chat-with-rag），每次使用不同的问题
+ *
+ * 预热期内完成的请求不计入结果。
+ */
+class ScenarioDriver {
+
+    static final List<String> SCENARIOS = List.of("chat", "modify", "rag");
+
+    // chat-with-rag 出错时不返回错误状态码，而是返回以此开头的文本
+    private static final String RAG_ERROR_PREFIX = "抱歉，处理您的请求时遇到了问题";
+
+    private static final String SAMPLE_CODE = """
+            public class Counter {
+                private int count;
+
+                public void increment() {
+                    count++;
+                }
+
+                public int getCount() {
+                    return count;
+                }
+            }
+            """;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * 单个场景的结果
+     *
+     * @param scenario   场景名
+     * @param users      虚拟用户数
+     * @param errors     失败请求数
+     * @param throughput 每秒完成的请求数（含失败）
+     * @param latency    成功请求的总耗时
+     * @param ttft       成功请求的首个数据块延迟（仅 chat）
+     * @param firstError 第一个错误的描述
+     */
+    record Result(String scenario, int users, long errors, double throughput,
+                  LatencyRecorder.Snapshot latency, LatencyRecorder.Snapshot ttft, String firstError) {
+
+        long requests() {
+            return latency.count() + errors;
+        }
+    }
+
+    private final String baseUrl;
+    private final Duration warmup;
+    private final Duration duration;
+    private final Map<String, Integer> users;
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    // 会话ID从较大的值开始，避免与手工测试的会话混在一起
+    private final AtomicInteger memoryIds = new AtomicInteger(1_000_000);
+    // 请求序号（所有用户共享），拼入消息中使每个请求都不相同
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * @param baseUrl  后端地址，如 http://localhost:8081
+     * @param warmup   预热时长
+     * @param duration 统计时长
+     * @param users    场景 -> 虚拟用户数（为 0 的场景不运行）
+     */
+    ScenarioDriver(String baseUrl, Duration warmup, Duration duration, Map<String, Integer> users) {
+        this.baseUrl = baseUrl;
+        this.warmup = warmup;
+        this.duration = duration;
+        this.users = users;
+    }
+
+    /**
+     * 运行全部场景（同时进行），到时后等待进行中的请求结束
+     */
+    List<Result> run() throws InterruptedException {
+        long startNanos = System.nanoTime();
+        long measureFrom = startNanos + warmup.toNanos();
+        long deadline = measureFrom + duration.toNanos();
+
+        Map<String, Stats> stats = new LinkedHashMap<>();
+        List<Thread> threads = new ArrayList<>();
+        for (String scenario : SCENARIOS) {
+            int count = users.getOrDefault(scenario, 0);
+            if (count <= 0) {
+                continue;
+            }
+            Stats scenarioStats = new Stats();
+            stats.put(scenario, scenarioStats);
+            for (int user = 0; user < count; user++) {
+                threads.add(Thread.ofVirtual().name(scenario + "-user-" + user).start(() -> {
+                    while (System.nanoTime() < deadline) {
+                        if (!execute(scenario, sequence.incrementAndGet(), measureFrom, scenarioStats)) {
+                            // 失败后稍作等待，避免后端不可用时空转
+                            sleepQuietly(100);
+                        }
+                    }
+                }));
+            }
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        double seconds = duration.toNanos() / 1e9;
+        List<Result> results = new ArrayList<>();
+        stats.forEach((scenario, s) -> {
+            LatencyRecorder.Snapshot latency = s.latency.snapshot();
+            results.add(new Result(scenario, users.get(scenario), s.errors.get(),
+                    (latency.count() + s.errors.get()) / seconds, latency, s.ttft.snapshot(), s.firstError.get()));
+        });
+        return results;
+    }
+
+    /**
+     * 执行一次请求并记录结果
+     *
+     * @return 请求是否成功
+     */
+    private boolean execute(String scenario, long seq, long measureFrom, Stats stats) {
+        long start = System.nanoTime();
+        long ttftNanos = -1;
+        String error = null;
+        try {
+            ttftNanos = switch (scenario) {
+                case "chat" -> chat(seq, start);
+                case "modify" -> modify(seq);
+                case "rag" -> rag(seq);
+                default -> throw new IllegalArgumentException("未知场景: " + scenario);
+            };
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            error = e.getClass().getSimpleName() + ": " + e.getMessage();
+        }
+        if (start < measureFrom) {
+            return error == null;
+        }
+        if (error != null) {
+            stats.errors.incrementAndGet();
+            stats.firstError.compareAndSet(null, error);
+            return false;
+        }
+        stats.latency.record((System.nanoTime() - start) / 1_000_000);
+        if (ttftNanos >= 0) {
+            stats.ttft.record(ttftNanos / 1_000_000);
+        }
+        return true;
+    }
+
+    /**
+     * 流式对话，返回首个数据块的延迟（纳秒）
+     */
+    private long chat(long seq, long start) throws IOException, InterruptedException {
+        String form = "memoryId=" + memoryIds.incrementAndGet()
+                + "&message=" + URLEncoder.encode("请解释 Java 中的多态（" + seq + "）", StandardCharsets.UTF_8);
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/ai/chat"))
+                .timeout(Duration.ofMinutes(2))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .header("Accept", "text/event-stream")
+                .POST(HttpRequest.BodyPublishers.ofString(form))
+                .build();
+        HttpResponse<Stream<String>> response = client.send(request, HttpResponse.BodyHandlers.ofLines());
+        check(response.statusCode());
+
+        long ttft = -1;
+        String lastEvent = null;
+        try (Stream<String> lines = response.body()) {
+            Iterator<String> iterator = lines.iterator();
+            while (iterator.hasNext()) {
+                String line = iterator.next();
+                if (line.startsWith("event:")) {
+                    lastEvent = line.substring("event:".length()).trim();
+                    if ("delta".equals(lastEvent) && ttft < 0) {
+                        ttft = System.nanoTime() - start;
+                    }
+                }
+            }
+        }
+        // 只有以 done 事件结束的响应才是完整的
+        if (!"done".equals(lastEvent)) {
+            throw new IOException("流式响应未正常结束（最后的事件: " + lastEvent + "）");
+        }
+        if (ttft < 0) {
+            throw new IOException("流式响应没有数据");
+        }
+        return ttft;
+    }
+
+    private long modify(long seq) throws IOException, InterruptedException {
+        String body = MAPPER.writeValueAsString(Map.of(
+                "originalCode", SAMPLE_CODE,
+                "instruction", "为 increment 方法添加溢出检查（" + seq + "）",
+                "fileName", "Counter.java"));
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/ai/modify-code-with-diff"))
+                .timeout(Duration.ofMinutes(2))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        check(response.statusCode());
+        JsonNode result = MAPPER.readTree(response.body());
+        if (result.hasNonNull("error")) {
+            throw new IOException(result.get("error").asText());
+        }
+        return -1;
+    }
+
+    private long rag(long seq) throws IOException, InterruptedException {
+        String message = URLEncoder.encode("Java 面试中常见的集合问题有哪些（" + seq + "）", StandardCharsets.UTF_8);
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/ai/chat-with-rag?message=" + message))
+                .timeout(Duration.ofMinutes(2))
+                .GET()
+                .build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        check(response.statusCode());
+        if (response.body().startsWith(RAG_ERROR_PREFIX)) {
+            throw new IOException(response.body());
+        }
+        return -1;
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void check(int status) throws IOException {
+        if (status != 200) {
+            throw new IOException("HTTP " + status);
+        }
+    }
+
+    private static class Stats {
+        final LatencyRecorder latency = new LatencyRecorder();
+        final LatencyRecorder ttft = new LatencyRecorder();
+        final AtomicLong errors = new AtomicLong();
+        final AtomicReference<String> firstError = new AtomicReference<>();
+    }
+}
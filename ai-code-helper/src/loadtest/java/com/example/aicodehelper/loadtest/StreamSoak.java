@@ -0,0 +1,170 @@
+package com.example.aicodehelper.loadtest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+/**
+ * 高并发流式场景
+ * 在 ramp 时间内均匀地打开指定数量的 /chat 流（每个流一个虚拟线程、一个连接、不同的会话和消息），
+ * 每个流一直读到 done 事件为止，统计同时打开的流数峰值、首个 delta 事件的延迟和完整接收的流数。
+ * 桩服务的输出应足够长（如 --token-rate 10 --output-tokens 400，约 40 秒），使所有流在 ramp 结束时仍未结束。
+ */
+class StreamSoak {
+
+    /**
+     * @param streams    计划打开的流数
+     * @param opened     收到响应头（连接已建立）的流数
+     * @param completed  以 done 事件结束的流数
+     * @param errors     失败的流数
+     * @param peakOpen   同时打开的流数峰值
+     * @param ttft       首个 delta 事件的延迟（从发出请求算起）
+     * @param duration   完整接收的流的总耗时
+     * @param firstError 第一个错误的描述
+     */
+    record Result(int streams, int opened, int completed, long errors, int peakOpen,
+                  LatencyRecorder.Snapshot ttft, LatencyRecorder.Snapshot duration, String firstError) {
+    }
+
+    private final String baseUrl;
+    private final int streams;
+    private final Duration ramp;
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+
+    private final AtomicInteger opened = new AtomicInteger();
+    private final AtomicInteger completed = new AtomicInteger();
+    private final AtomicInteger open = new AtomicInteger();
+    private final AtomicInteger peakOpen = new AtomicInteger();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicReference<String> firstError = new AtomicReference<>();
+    private final LatencyRecorder ttft = new LatencyRecorder();
+    private final LatencyRecorder duration = new LatencyRecorder();
+
+    /**
+     * @param baseUrl 后端地址
+     * @param streams 要打开的流数
+     * @param ramp    打开全部流所用的时间
+     */
+    StreamSoak(String baseUrl, int streams, Duration ramp) {
+        this.baseUrl = baseUrl;
+        this.streams = streams;
+        this.ramp = ramp;
+    }
+
+    /**
+     * 打开全部流并等待它们结束，期间每秒输出一次进度
+     */
+    Result run() throws InterruptedException {
+        long startNanos = System.nanoTime();
+        long intervalNanos = streams > 1 ? ramp.toNanos() / (streams - 1) : 0;
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < streams; i++) {
+            int index = i;
+            long openAt = startNanos + intervalNanos * i;
+            threads.add(Thread.ofVirtual().name("stream-" + i).start(() -> {
+                sleepUntil(openAt);
+                stream(index);
+            }));
+        }
+
+        Thread progress = Thread.ofVirtual().name("stream-progress").start(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                System.out.printf("[%3ds] 打开中 %5d  峰值 %5d  已完成 %5d  失败 %5d%n",
+                        (System.nanoTime() - startNanos) / 1_000_000_000, open.get(), peakOpen.get(),
+                        completed.get(), errors.get());
+            }
+        });
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        progress.interrupt();
+
+        return new Result(streams, opened.get(), completed.get(), errors.get(), peakOpen.get(),
+                ttft.snapshot(), duration.snapshot(), firstError.get());
+    }
+
+    private void stream(int index) {
+        long start = System.nanoTime();
+        boolean counted = false;
+        try {
+            String form = "memoryId=" + (2_000_000 + index)
+                    + "&message=" + URLEncoder.encode("请解释 Java 中的多态（流 " + index + "）", StandardCharsets.UTF_8);
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/ai/chat"))
+                    .timeout(Duration.ofMinutes(2))
+                    .header("Content-Type", "application/x-www-form-urlencoded")
+                    .header("Accept", "text/event-stream")
+                    .POST(HttpRequest.BodyPublishers.ofString(form))
+                    .build();
+            HttpResponse<Stream<String>> response = client.send(request, HttpResponse.BodyHandlers.ofLines());
+            if (response.statusCode() != 200) {
+                response.body().close();
+                throw new IOException("HTTP " + response.statusCode());
+            }
+            opened.incrementAndGet();
+            peakOpen.accumulateAndGet(open.incrementAndGet(), Math::max);
+            counted = true;
+
+            boolean firstDelta = true;
+            String lastEvent = null;
+            try (Stream<String> lines = response.body()) {
+                Iterator<String> iterator = lines.iterator();
+                while (iterator.hasNext()) {
+                    String line = iterator.next();
+                    if (line.startsWith("event:")) {
+                        lastEvent = line.substring("event:".length()).trim();
+                        if (firstDelta && "delta".equals(lastEvent)) {
+                            firstDelta = false;
+                            ttft.record((System.nanoTime() - start) / 1_000_000);
+                        }
+                    }
+                }
+            }
+            if (!"done".equals(lastEvent)) {
+                throw new IOException("流式响应未正常结束（最后的事件: " + lastEvent + "）");
+            }
+            completed.incrementAndGet();
+            duration.record((System.nanoTime() - start) / 1_000_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            errors.incrementAndGet();
+            firstError.compareAndSet(null, e.getClass().getSimpleName() + ": " + e.getMessage());
+        } finally {
+            if (counted) {
+                open.decrementAndGet();
+            }
+        }
+    }
+
+    private static void sleepUntil(long nanoTime) {
+        long remaining = nanoTime - System.nanoTime();
+        if (remaining <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(Duration.ofNanos(remaining));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
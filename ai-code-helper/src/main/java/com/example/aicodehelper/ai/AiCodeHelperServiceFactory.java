@@ -1,12 +1,17 @@
 package com.example.aicodehelper.ai;
 
 import com.example.aicodehelper.ai.tools.FileReaderTool;
-import dev.langchain4j.memory.ChatMemory;
+import com.example.aicodehelper.ai.tools.ToolResultCache;
+import com.example.aicodehelper.ai.trace.StageTracer;
+import com.example.aicodehelper.ai.trace.TracingChatMemoryStore;
 import dev.langchain4j.memory.chat.MessageWindowChatMemory;
 import dev.langchain4j.model.chat.ChatModel;
 import dev.langchain4j.model.chat.StreamingChatModel;
 import dev.langchain4j.rag.content.retriever.ContentRetriever;
 import dev.langchain4j.service.AiServices;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+import dev.langchain4j.store.memory.chat.InMemoryChatMemoryStore;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.annotation.Resource;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -22,27 +27,60 @@ public class AiCodeHelperServiceFactory {
     private ContentRetriever contentRetriever;
 
     @Resource
-    private StreamingChatModel qwenStreamingChatModel;
+    private StreamingChatModel myQwenStreamingChatModel;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Resource
+    private StageTracer stageTracer;
+
+    // 会话记忆存储（所有会话共享，工具结果缓存据此判断结果是否已在会话中）
+    @Bean
+    public ChatMemoryStore chatMemoryStore() {
+        return new InMemoryChatMemoryStore();
+    }
+
+    // 工具结果缓存：最多 200 个会话，每个会话最多缓存 20 万字符
+    @Bean
+    public ToolResultCache toolResultCache() {
+        return new ToolResultCache(chatMemoryStore(), meterRegistry, 200, 200_000);
+    }
 
     // 文件读取工具Bean
     @Bean
     public FileReaderTool fileReaderTool() {
         // 初始化时使用默认路径，后续会动态更新
-        return new FileReaderTool(".");
+        return new FileReaderTool(".", toolResultCache(), stageTracer);
     }
 
+    // 多轮对话使用的 AI 服务：按 @MemoryId 为每个会话保存独立的记忆
     @Bean
     public AiCodeHelperService aiCodeHelperService() {
-        // 会话记忆
-        ChatMemory chatMemory = MessageWindowChatMemory.withMaxMessages(10);
-        // 构造 AI 服务并直接返回
         return AiServices.builder(AiCodeHelperService.class)
                 .chatModel(myQwenChatModel)
-                .streamingChatModel(qwenStreamingChatModel) // 流式输出
-                .chatMemory(chatMemory)
-                .chatMemoryProvider(memoryId -> MessageWindowChatMemory.withMaxMessages(10)) // 独立存储会话
+                .streamingChatModel(myQwenStreamingChatModel) // 流式输出
+                .chatMemoryProvider(memoryId -> MessageWindowChatMemory.builder() // 独立存储会话
+                        .id(memoryId)
+                        .maxMessages(10)
+                        .chatMemoryStore(new TracingChatMemoryStore(chatMemoryStore(), stageTracer)) // 记录记忆读取耗时
+                        .build())
                 .contentRetriever(contentRetriever) // RAG 检索增强生成
                 .tools(fileReaderTool())// 工具调用
                 .build();
     }
-}
\ No newline at end of file
+
+    // 单轮调用使用的 AI 服务（chatWithRag、modifyCode、detectIntent 等）：不带会话记忆
+    // 否则这些调用会共用同一个 "default" 记忆：并发调用互相看到对方的提示词、并发读写记忆窗口，
+    // 请求中还带着之前的对话，相同的提示词也无法被请求合并
+    // 工具收到的是共用的默认会话ID，工具结果不缓存（见 FileReaderTool）
+    @Bean
+    public StatelessAiCodeHelperService statelessAiCodeHelperService() {
+        return AiServices.builder(StatelessAiCodeHelperService.class)
+                .chatModel(myQwenChatModel)
+                .streamingChatModel(myQwenStreamingChatModel)
+                .contentRetriever(contentRetriever)
+                .tools(fileReaderTool())
+                .build();
+    }
+}
@@ -0,0 +1,313 @@
+package com.example.aicodehelper.ai.assist;
+
+import com.example.aicodehelper.ai.AiCodeHelperService;
+import com.example.aicodehelper.ai.cancel.CancellationToken;
+import com.example.aicodehelper.ai.intent.IntentClassifier;
+import com.example.aicodehelper.ai.modify.CodeModificationService;
+import com.example.aicodehelper.ai.repomap.RepoMapService;
+import com.example.aicodehelper.ai.tools.FileReaderTool;
+import com.example.aicodehelper.dto.AssistRequest;
+import com.example.aicodehelper.dto.BatchFileResult;
+import com.example.aicodehelper.dto.BatchModifyRequest;
+import com.example.aicodehelper.dto.CodeDiffResult;
+import com.example.aicodehelper.util.SseEvents;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * 统一助手服务
+ * 在一个 SSE 连接上完成“意图判断 + 对话/修改”，客户端无需先调用意图识别接口：
+ * - 没有上下文代码时直接对话
+ * - 本地意图分类器足够确定时，直接进入对应流程（只有一次模型调用）
+ * - 否则在对话调用中让模型先输出 [MODIFY] / [CHAT] 标签：
+ * 对话意图直接继续流式输出回答；修改意图在标签处取消该调用（中止上游生成），转入代码修改流程。
+ * 会话记忆中只保留用户的原始消息和去掉标签的回答，修改意图时不保留这一轮
+ *
+ * 事件：
+ * - intent  判断结果（intent: modify/chat，source: local/llm/no-context）
+ * - message 对话内容片段
+ * - hunk    单文件修改时的差异块（index 为文件下标）
+ * - file    单个文件的修改结果（BatchFileResult）
+ * - done    流程结束（修改时包含成功/失败统计）
+ * - error   错误信息
+ */
+@Service
+@Slf4j
+public class AssistService {
+
+    // 意图不确定时附加在用户消息前的回复格式要求
+    private static final String ROUTING_INSTRUCTION = "【回复格式】先判断用户是否要求修改上面提供的代码："
+            + "如果是，只输出一行 " + IntentTagParser.MODIFY_TAG + " 并立即结束，不要输出其他任何内容；"
+            + "否则第一行输出 " + IntentTagParser.CHAT_TAG + "，然后正常回答。\n";
+
+    @Resource
+    private AiCodeHelperService aiCodeHelperService;
+
+    @Resource
+    private CodeModificationService codeModificationService;
+
+    @Resource
+    private IntentClassifier intentClassifier;
+
+    @Resource
+    private FileReaderTool fileReaderTool;
+
+    @Resource
+    private RepoMapService repoMapService;
+
+    @Resource
+    private ChatMemoryStore chatMemoryStore;
+
+    /**
+     * 处理一次用户请求
+     */
+    public Flux<ServerSentEvent<Object>> assist(AssistRequest request) {
+        String message = request.getMessage();
+        if (message == null || message.trim().isEmpty()) {
+            return Flux.just(SseEvents.error("消息不能为空"));
+        }
+
+        int memoryId = request.getMemoryId();
+        List<BatchModifyRequest.FileItem> files = request.getFiles() == null ? List.of() : request.getFiles();
+
+        if (files.isEmpty()) {
+            return chat(memoryId, prepareChatMessage(memoryId, message, request.getProjectPath()), "no-context");
+        }
+
+        IntentClassifier.Prediction prediction = intentClassifier.classify(message);
+        if (intentClassifier.isConfident(prediction) && IntentClassifier.MODIFY.equals(prediction.intent())) {
+            log.info("助手请求由本地分类器判断为修改意图（置信度 {}）", String.format("%.2f", prediction.confidence()));
+            return Flux.just(intentEvent(IntentClassifier.MODIFY, "local")).concatWith(modify(message, files));
+        }
+
+        String chatMessage = prepareChatMessage(memoryId, buildContextMessage(message, files), request.getProjectPath());
+        if (intentClassifier.isConfident(prediction)) {
+            log.info("助手请求由本地分类器判断为对话意图（置信度 {}）", String.format("%.2f", prediction.confidence()));
+            return chat(memoryId, chatMessage, "local");
+        }
+        return routeWithModel(memoryId, chatMessage, message, files);
+    }
+
+    /**
+     * 为对话消息补充项目信息：设置文件读取工具的工作目录，并在需要时附上项目结构概览
+     *
+     * @param memoryId    会话ID
+     * @param message     用户消息
+     * @param projectPath 项目根目录路径（可选）
+     * @return 发送给模型的消息
+     */
+    public String prepareChatMessage(int memoryId, String message, String projectPath) {
+        if (projectPath == null || projectPath.trim().isEmpty()) {
+            return message;
+        }
+        fileReaderTool.setProjectRootPath(projectPath);
+
+        // 预先提供项目结构概览，减少探索性的工具调用
+        String repoMap = repoMapService.getMapIfNeeded(memoryId, projectPath);
+        if (repoMap != null) {
+            return "【项目结构概览（自动生成，可据此直接读取相关文件）】\n" + repoMap
+                    + "\n【用户问题】\n" + message;
+        }
+        return message;
+    }
+
+    /**
+     * 批量修改多个文件，每个文件完成后发出 file 事件，最后发出 done 事件
+     */
+    public Flux<ServerSentEvent<Object>> batchEvents(BatchModifyRequest request) {
+        return Flux.defer(() -> {
+            long start = System.currentTimeMillis();
+            AtomicInteger failed = new AtomicInteger();
+
+            Flux<ServerSentEvent<Object>> files = codeModificationService.modifyBatch(request)
+                    .map(fileResult -> {
+                        if (fileResult.getResult().getError() != null) {
+                            failed.incrementAndGet();
+                        }
+                        return SseEvents.of("file", fileResult);
+                    });
+
+            return files.concatWith(Flux.defer(() ->
+                    Flux.just(doneEvent(request.getFiles().size(), failed.get(), start))));
+        });
+    }
+
+    private Flux<ServerSentEvent<Object>> chat(int memoryId, String chatMessage, String source) {
+        return Flux.just(intentEvent(IntentClassifier.CHAT, source))
+                .concatWith(aiCodeHelperService.chatStream(memoryId, chatMessage).map(this::messageEvent))
+                .concatWith(Flux.just(SseEvents.of("done", Map.of("intent", IntentClassifier.CHAT))));
+    }
+
+    /**
+     * 由模型在对话调用的开头判断意图：对话意图直接沿用该调用的输出，修改意图在标签处取消该调用
+     * 模型调用在取消令牌绑定的情况下发起，取消 Flux（判断为修改意图或客户端断开）时取消令牌，中止上游生成。
+     * 会话记忆只整理一次，且等上游调用结束（取消前已开始的完成回调、工具执行写完记忆）后再整理。
+     */
+    private Flux<ServerSentEvent<Object>> routeWithModel(int memoryId, String chatMessage, String instruction,
+            List<BatchModifyRequest.FileItem> files) {
+        return Flux.defer(() -> {
+            IntentTagParser parser = new IntentTagParser();
+            AtomicBoolean intentSent = new AtomicBoolean(false);
+            CancellationToken token = new CancellationToken();
+            AtomicBoolean cleanedUp = new AtomicBoolean(false);
+            Consumer<Boolean> cleanUp = answered -> token.whenIdle(() -> {
+                if (cleanedUp.compareAndSet(false, true)) {
+                    cleanUpRoutedTurn(memoryId, answered);
+                }
+            });
+
+            // chatStream 在调用时就发起模型调用，因此在调用时绑定令牌
+            AtomicReference<Flux<String>> answer = new AtomicReference<>();
+            CancellationToken.runWith(token, () ->
+                    answer.set(aiCodeHelperService.chatStream(memoryId, ROUTING_INSTRUCTION + chatMessage)));
+
+            Flux<ServerSentEvent<Object>> routed = answer.get()
+                    .doOnCancel(() -> token.cancel(
+                            IntentClassifier.MODIFY.equals(parser.intent()) ? "intent-modify" : "disconnect"))
+                    .concatMap(chunk -> {
+                        String text = parser.accept(chunk);
+                        return Flux.fromIterable(routedEvents(parser, text, intentSent));
+                    })
+                    // 判断为修改意图后立即结束对话调用
+                    .takeUntil(event -> IntentClassifier.MODIFY.equals(parser.intent()));
+
+            Flux<ServerSentEvent<Object>> rest = Flux.defer(() -> {
+                boolean modifyIntent = IntentClassifier.MODIFY.equals(parser.intent());
+                cleanUp.accept(!modifyIntent);
+                if (modifyIntent) {
+                    return modify(instruction, files);
+                }
+                List<ServerSentEvent<Object>> events = routedEvents(parser, parser.finish(), intentSent);
+                events.add(SseEvents.of("done", Map.of("intent", IntentClassifier.CHAT)));
+                return Flux.fromIterable(events);
+            });
+
+            // 回答完成前客户端断开：这一轮没有完整的回答，从记忆中删除
+            return routed.concatWith(rest)
+                    .doOnCancel(() -> cleanUp.accept(false));
+        });
+    }
+
+    /**
+     * 整理意图判断调用写入会话记忆的这一轮：
+     * 有回答时（对话意图）把用户消息还原为不带回复格式要求的原始消息、去掉回答开头的标签；
+     * 没有回答时（修改意图或客户端断开）删除这一轮
+     */
+    void cleanUpRoutedTurn(int memoryId, boolean answered) {
+        List<ChatMessage> messages = new ArrayList<>(chatMemoryStore.getMessages(memoryId));
+        int userIndex = -1;
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            if (messages.get(i) instanceof UserMessage user && user.hasSingleText()
+                    && user.singleText().startsWith(ROUTING_INSTRUCTION)) {
+                userIndex = i;
+                break;
+            }
+        }
+        if (userIndex < 0) {
+            return;
+        }
+
+        if (!answered) {
+            messages.subList(userIndex, messages.size()).clear();
+        } else {
+            String original = ((UserMessage) messages.get(userIndex)).singleText().substring(ROUTING_INSTRUCTION.length());
+            messages.set(userIndex, UserMessage.from(original));
+            for (int i = userIndex + 1; i < messages.size(); i++) {
+                if (messages.get(i) instanceof AiMessage ai && ai.text() != null) {
+                    messages.set(i, AiMessage.from(IntentTagParser.stripChatTag(ai.text()), ai.toolExecutionRequests()));
+                }
+            }
+        }
+        chatMemoryStore.updateMessages(memoryId, messages);
+    }
+
+    private List<ServerSentEvent<Object>> routedEvents(IntentTagParser parser, String text, AtomicBoolean intentSent) {
+        List<ServerSentEvent<Object>> events = new ArrayList<>();
+        if (parser.intent() != null && intentSent.compareAndSet(false, true)) {
+            events.add(intentEvent(parser.intent(), "llm"));
+        }
+        if (!text.isEmpty()) {
+            events.add(messageEvent(text));
+        }
+        return events;
+    }
+
+    /**
+     * 修改代码：单个文件流式返回差异块，多个文件并行修改
+     */
+    private Flux<ServerSentEvent<Object>> modify(String instruction, List<BatchModifyRequest.FileItem> files) {
+        if (files.size() > 1) {
+            BatchModifyRequest batch = new BatchModifyRequest();
+            batch.setInstruction(instruction);
+            batch.setFiles(files);
+            return batchEvents(batch);
+        }
+
+        BatchModifyRequest.FileItem file = files.get(0);
+        String fileName = file.getFileName() == null ? "" : file.getFileName();
+        if (file.getOriginalCode() == null || file.getOriginalCode().trim().isEmpty()) {
+            CodeDiffResult errorResult = new CodeDiffResult();
+            errorResult.setError("原始代码不能为空");
+            errorResult.setFileName(fileName);
+            return Flux.just(SseEvents.of("file", new BatchFileResult(0, null, 0, errorResult)),
+                    doneEvent(1, 1, System.currentTimeMillis()));
+        }
+
+        return Flux.defer(() -> {
+            long start = System.currentTimeMillis();
+            return codeModificationService.modifyStream(file.getOriginalCode(), instruction, fileName)
+                    .map(item -> item instanceof CodeDiffResult result
+                            ? SseEvents.of("file", new BatchFileResult(0, CodeModificationService.MODE_FULL,
+                                    System.currentTimeMillis() - start, result))
+                            : SseEvents.of("hunk", Map.of("index", 0, "hunk", item)))
+                    .concatWith(Flux.defer(() -> Flux.just(doneEvent(1, 0, start))));
+        });
+    }
+
+    /**
+     * 构建包含上下文代码的对话消息（与插件原有的消息格式一致）
+     */
+    private static String buildContextMessage(String message, List<BatchModifyRequest.FileItem> files) {
+        if (files.isEmpty()) {
+            return message;
+        }
+        StringBuilder builder = new StringBuilder();
+        for (BatchModifyRequest.FileItem file : files) {
+            builder.append("文件: ").append(file.getFileName()).append("\n");
+            builder.append("代码:\n").append(file.getOriginalCode()).append("\n\n");
+        }
+        builder.append("用户问题:\n").append(message);
+        return builder.toString();
+    }
+
+    private ServerSentEvent<Object> intentEvent(String intent, String source) {
+        return SseEvents.of("intent", Map.of("intent", intent, "source", source));
+    }
+
+    private ServerSentEvent<Object> messageEvent(String text) {
+        return SseEvents.of("message", Map.of("content", text));
+    }
+
+    private static ServerSentEvent<Object> doneEvent(int total, int failed, long start) {
+        return SseEvents.of("done", Map.of(
+                "total", total,
+                "succeeded", total - failed,
+                "failed", failed,
+                "elapsedMs", System.currentTimeMillis() - start));
+    }
+}
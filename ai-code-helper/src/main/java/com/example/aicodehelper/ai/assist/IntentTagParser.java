@@ -0,0 +1,81 @@
+package com.example.aicodehelper.ai.assist;
+
+import com.example.aicodehelper.ai.intent.IntentClassifier;
+
+/**
+ * 意图标签解析器
+ * 解析模型回复开头的 [MODIFY] / [CHAT] 标签。标签之后的内容按对话内容原样返回；
+ * 如果模型没有按格式输出标签，则把已缓冲的内容全部当作对话内容。
+ * 非线程安全，每个请求使用独立实例（Flux 信号是串行的）。
+ */
+class IntentTagParser {
+
+    static final String MODIFY_TAG = "[MODIFY]";
+    static final String CHAT_TAG = "[CHAT]";
+
+    private final StringBuilder buffer = new StringBuilder();
+
+    // 已确定的意图，null 表示尚未确定
+    private String intent;
+
+    /**
+     * 接收一段模型输出
+     *
+     * @return 需要作为对话内容输出的文本（可能为空串）
+     */
+    String accept(String chunk) {
+        if (intent != null) {
+            return IntentClassifier.CHAT.equals(intent) ? chunk : "";
+        }
+        buffer.append(chunk);
+
+        String text = stripLeading(buffer);
+        if (text.startsWith(MODIFY_TAG)) {
+            intent = IntentClassifier.MODIFY;
+            return "";
+        }
+        if (text.startsWith(CHAT_TAG)) {
+            intent = IntentClassifier.CHAT;
+            return stripLeading(text.substring(CHAT_TAG.length()));
+        }
+        if (!MODIFY_TAG.startsWith(text) && !CHAT_TAG.startsWith(text)) {
+            // 模型没有输出标签，按普通对话处理
+            intent = IntentClassifier.CHAT;
+            return buffer.toString();
+        }
+        return "";
+    }
+
+    /**
+     * 模型输出结束：仍未确定意图时按普通对话处理
+     *
+     * @return 尚未输出的对话内容
+     */
+    String finish() {
+        if (intent != null) {
+            return "";
+        }
+        intent = IntentClassifier.CHAT;
+        return buffer.toString();
+    }
+
+    String intent() {
+        return intent;
+    }
+
+    /**
+     * 去掉完整回复开头的对话标签（写回会话记忆时使用）；没有标签时原样返回
+     */
+    static String stripChatTag(String text) {
+        String stripped = stripLeading(text);
+        return stripped.startsWith(CHAT_TAG) ? stripLeading(stripped.substring(CHAT_TAG.length())) : text;
+    }
+
+    private static String stripLeading(CharSequence text) {
+        int start = 0;
+        while (start < text.length() && Character.isWhitespace(text.charAt(start))) {
+            start++;
+        }
+        return text.subSequence(start, text.length()).toString();
+    }
+}
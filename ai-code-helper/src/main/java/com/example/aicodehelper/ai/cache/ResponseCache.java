@@ -0,0 +1,281 @@
+package com.example.aicodehelper.ai.cache;
+
+import com.example.aicodehelper.util.CompactDiff;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * 无状态接口的模型响应缓存（精确匹配，按内容寻址）
+ *
+ * 键为 SHA-256(接口名 + 输入)，输入中的自然语言部分由调用方用 {@link #normalizeText} 规范化，代码保持原样。
+ * 所有条目都归属于一个“版本”（模型名 + 系统提示词的哈希），版本变化时旧条目自然失效，启动时会删除磁盘上其他版本的目录。
+ *
+ * 两级存储：
+ * - 内存：按最近最少使用淘汰，最多 {@code maxMemoryEntries} 条
+ * - 磁盘：{@code <目录>/<版本>/<键前两位>/<键>.txt}，首行为写入时间（毫秒），其余为响应内容；
+ * 磁盘命中后提升到内存
+ * 两级都按 TTL 过期。
+ */
+@Slf4j
+public class ResponseCache {
+
+    private final boolean enabled;
+    private final Path versionDir;
+    private final int maxMemoryEntries;
+    private final Duration ttl;
+    private final Clock clock;
+    private final MeterRegistry meterRegistry;
+
+    // 键 -> 条目（访问顺序，用于LRU淘汰）
+    private final LinkedHashMap<String, Entry> memory;
+
+    private record Entry(long createdAt, String value) {
+    }
+
+    /**
+     * @param diskDir          磁盘缓存根目录（为 null 时只使用内存）
+     * @param version          缓存版本（模型名和提示词变化时应随之变化）
+     * @param maxMemoryEntries 内存中最多保留的条目数
+     * @param ttl              条目有效期
+     */
+    public ResponseCache(Path diskDir, String version, int maxMemoryEntries, Duration ttl,
+                         Clock clock, MeterRegistry meterRegistry) {
+        this.enabled = true;
+        this.versionDir = diskDir == null ? null : diskDir.resolve(CompactDiff.sha256(version).substring(0, 16));
+        this.maxMemoryEntries = maxMemoryEntries;
+        this.ttl = ttl;
+        this.clock = clock;
+        this.meterRegistry = meterRegistry;
+        this.memory = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > ResponseCache.this.maxMemoryEntries;
+            }
+        };
+        if (diskDir != null) {
+            cleanDisk(diskDir);
+        }
+    }
+
+    private ResponseCache() {
+        this.enabled = false;
+        this.versionDir = null;
+        this.maxMemoryEntries = 0;
+        this.ttl = Duration.ZERO;
+        this.clock = Clock.systemUTC();
+        this.meterRegistry = null;
+        this.memory = new LinkedHashMap<>();
+    }
+
+    /**
+     * 不缓存任何内容的实例（关闭缓存时使用）
+     */
+    public static ResponseCache disabled() {
+        return new ResponseCache();
+    }
+
+    /**
+     * 获取缓存的响应，未命中时调用模型并缓存结果
+     *
+     * @param endpoint 接口名（不同接口的相同输入互不影响）
+     * @param input    规范化后的输入
+     * @param loader   实际调用模型
+     */
+    public String getOrCompute(String endpoint, String input, Supplier<String> loader) {
+        String cached = get(endpoint, input);
+        if (cached != null) {
+            return cached;
+        }
+        String value = loader.get();
+        put(endpoint, input, value);
+        return value;
+    }
+
+    /**
+     * 查询缓存的响应
+     *
+     * @return 缓存的响应，未命中或已过期时返回 null
+     */
+    public String get(String endpoint, String input) {
+        if (!enabled) {
+            return null;
+        }
+        String value = lookup(key(endpoint, input));
+        count(endpoint, value != null ? "hit" : "miss");
+        return value;
+    }
+
+    /**
+     * 缓存响应（空响应不缓存）
+     */
+    public void put(String endpoint, String input, String value) {
+        if (!enabled || value == null || value.isBlank()) {
+            return;
+        }
+        String key = key(endpoint, input);
+        Entry entry = new Entry(clock.millis(), value);
+        synchronized (memory) {
+            memory.put(key, entry);
+        }
+        writeDisk(key, entry);
+    }
+
+    /**
+     * 规范化文本输入：统一换行符、去掉首尾空白并合并连续空白（用于自然语言消息）
+     */
+    public static String normalizeText(String text) {
+        return text == null ? "" : text.replace("\r\n", "\n").trim().replaceAll("\\s+", " ");
+    }
+
+    private String lookup(String key) {
+        long now = clock.millis();
+        synchronized (memory) {
+            Entry entry = memory.get(key);
+            if (entry != null) {
+                if (!isExpired(entry, now)) {
+                    return entry.value();
+                }
+                memory.remove(key);
+            }
+        }
+
+        Entry entry = readDisk(key);
+        if (entry == null) {
+            return null;
+        }
+        if (isExpired(entry, now)) {
+            deleteQuietly(diskPath(key));
+            return null;
+        }
+        synchronized (memory) {
+            memory.put(key, entry);
+        }
+        return entry.value();
+    }
+
+    private static String key(String endpoint, String input) {
+        return CompactDiff.sha256(endpoint + "\n" + input);
+    }
+
+    private boolean isExpired(Entry entry, long now) {
+        return now - entry.createdAt() > ttl.toMillis();
+    }
+
+    private Path diskPath(String key) {
+        return versionDir.resolve(key.substring(0, 2)).resolve(key + ".txt");
+    }
+
+    private Entry readDisk(String key) {
+        if (versionDir == null) {
+            return null;
+        }
+        Path path = diskPath(key);
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        try {
+            String content = Files.readString(path, StandardCharsets.UTF_8);
+            int newline = content.indexOf('\n');
+            return new Entry(Long.parseLong(content.substring(0, newline)), content.substring(newline + 1));
+        } catch (IOException | RuntimeException e) {
+            log.warn("读取响应缓存失败，删除损坏的条目 {}: {}", path, e.getMessage());
+            deleteQuietly(path);
+            return null;
+        }
+    }
+
+    private void writeDisk(String key, Entry entry) {
+        if (versionDir == null) {
+            return;
+        }
+        Path path = diskPath(key);
+        try {
+            Files.createDirectories(path.getParent());
+            // 先写临时文件再原子替换，避免并发读取到写了一半的内容
+            Path temp = Files.createTempFile(path.getParent(), key, ".tmp");
+            Files.writeString(temp, entry.createdAt() + "\n" + entry.value(), StandardCharsets.UTF_8);
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("写入响应缓存失败 {}: {}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * 删除其他版本的目录和当前版本中已过期的条目
+     */
+    private void cleanDisk(Path diskDir) {
+        if (!Files.isDirectory(diskDir)) {
+            return;
+        }
+        try (DirectoryStream<Path> versions = Files.newDirectoryStream(diskDir)) {
+            for (Path dir : versions) {
+                if (!dir.equals(versionDir)) {
+                    log.info("模型或系统提示词已变化，删除旧版本响应缓存: {}", dir);
+                    deleteRecursively(dir);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("清理响应缓存目录失败: {}", e.getMessage());
+        }
+
+        if (!Files.isDirectory(versionDir)) {
+            return;
+        }
+        long now = clock.millis();
+        try (Stream<Path> files = Files.walk(versionDir)) {
+            files.filter(Files::isRegularFile).forEach(file -> {
+                String name = file.getFileName().toString();
+                if (name.endsWith(".tmp")) {
+                    deleteQuietly(file);
+                } else if (name.endsWith(".txt")) {
+                    Entry entry = readDisk(name.substring(0, name.length() - 4));
+                    if (entry != null && isExpired(entry, now)) {
+                        deleteQuietly(file);
+                    }
+                }
+            });
+        } catch (IOException e) {
+            log.warn("清理过期响应缓存失败: {}", e.getMessage());
+        }
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(ResponseCache::deleteQuietly);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.debug("删除文件失败 {}: {}", path, e.getMessage());
+        }
+    }
+
+    private void count(String endpoint, String result) {
+        if (meterRegistry != null) {
+            Counter.builder("ai.response.cache.requests")
+                    .description("响应缓存的命中/未命中次数")
+                    .tag("endpoint", endpoint)
+                    .tag("result", result)
+                    .register(meterRegistry)
+                    .increment();
+        }
+    }
+}
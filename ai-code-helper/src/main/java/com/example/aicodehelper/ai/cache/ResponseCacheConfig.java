@@ -0,0 +1,101 @@
+package com.example.aicodehelper.ai.cache;
+
+import com.example.aicodehelper.ai.AiCodeHelperService;
+import com.example.aicodehelper.ai.model.ModelRoutingProperties;
+import com.example.aicodehelper.ai.rag.RagConfig;
+import dev.langchain4j.service.SystemMessage;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.TreeSet;
+
+/**
+ * 响应缓存配置
+ * 缓存版本由模型名（启用模型路由时包括快速模型和降级模型）、RAG 知识库的文档指纹、
+ * system-prompt.txt 内容和 AiCodeHelperService 上的全部系统提示词共同决定，任一项变化后重启即会丢弃旧缓存
+ */
+@Configuration
+@Slf4j
+public class ResponseCacheConfig {
+
+    @Value("${response-cache.enabled:true}")
+    private boolean enabled;
+
+    // 内存中最多缓存的响应数
+    @Value("${response-cache.memory-entries:500}")
+    private int memoryEntries;
+
+    @Value("${response-cache.ttl:24h}")
+    private Duration ttl;
+
+    // 磁盘缓存目录（为空时只缓存在内存中）
+    @Value("${response-cache.disk-path:response-cache}")
+    private String diskPath;
+
+    @Value("${langchain4j.community.dashscope.chat-model.model-name:}")
+    private String modelName;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Resource
+    private ModelRoutingProperties modelRoutingProperties;
+
+    @Resource
+    private RagConfig ragConfig;
+
+    // 文档指纹在 contentRetriever 初始化（加载文档）时计算
+    @Bean
+    @DependsOn("contentRetriever")
+    public ResponseCache responseCache() throws IOException {
+        if (!enabled) {
+            return ResponseCache.disabled();
+        }
+        String version = cacheVersion(models(), ragConfig.getDocumentFingerprint());
+        log.info("响应缓存已启用：内存 {} 条，有效期 {}，磁盘目录 {}",
+                memoryEntries, ttl, diskPath.isBlank() ? "（无）" : diskPath);
+        return new ResponseCache(diskPath.isBlank() ? null : Path.of(diskPath), version,
+                memoryEntries, ttl, Clock.systemUTC(), meterRegistry);
+    }
+
+    /**
+     * 可能生成回答的模型：主模型，启用模型路由时加上快速模型和降级模型
+     */
+    private String models() {
+        if (!modelRoutingProperties.isEnabled()) {
+            return modelName;
+        }
+        return modelName + "," + modelRoutingProperties.getFastModel() + "," + modelRoutingProperties.getFallbackModel();
+    }
+
+    /**
+     * 计算缓存版本：模型名 + 文档指纹 + 系统提示词文件 + 各方法上的系统提示词（排序后拼接）
+     */
+    static String cacheVersion(String models, String documentFingerprint) throws IOException {
+        StringBuilder version = new StringBuilder(models).append('\n');
+        version.append(documentFingerprint).append('\n');
+        version.append(new ClassPathResource("system-prompt.txt").getContentAsString(StandardCharsets.UTF_8));
+
+        TreeSet<String> systemMessages = new TreeSet<>();
+        for (Method method : AiCodeHelperService.class.getMethods()) {
+            SystemMessage systemMessage = method.getAnnotation(SystemMessage.class);
+            if (systemMessage != null) {
+                systemMessages.add(String.join("\n", systemMessage.value()) + "|" + systemMessage.fromResource());
+            }
+        }
+        systemMessages.forEach(message -> version.append('\n').append(message));
+        return version.toString();
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.aicodehelper.ai.cancel;
+
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.content.retriever.ContentRetriever;
+import dev.langchain4j.rag.query.Query;
+
+import java.util.List;
+
+/**
+ * 检索前后检查当前生成是否已取消，已取消时不再检索、也不再把结果交给模型
+ */
+public class CancellableContentRetriever implements ContentRetriever {
+
+    private final ContentRetriever delegate;
+
+    public CancellableContentRetriever(ContentRetriever delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public List<Content> retrieve(Query query) {
+        CancellationToken.checkCurrent();
+        List<Content> contents = delegate.retrieve(query);
+        CancellationToken.checkCurrent();
+        return contents;
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.aicodehelper.ai.cancel;
+
+import dev.langchain4j.model.ModelProvider;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 支持取消的 StreamingChatModel 装饰器（最外层）
+ * 调用时取当前线程绑定的 {@link CancellationToken}：令牌取消后立即以 {@link GenerationCancelledException}
+ * 结束调用方的流，之后上游的回调全部丢弃（中止上游连接由内层登记的取消动作完成）；
+ * 完成回调在令牌绑定的情况下转发，使随后在同一线程执行的工具和再次发起的模型调用也能感知取消。
+ * 调用在令牌上登记为进行中（{@link CancellationToken#begin}），最后一个回调返回后结束。
+ * 没有令牌时直接转发。
+ */
+public class CancellableStreamingChatModel implements StreamingChatModel {
+
+    private final StreamingChatModel delegate;
+
+    public CancellableStreamingChatModel(StreamingChatModel delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void chat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+        CancellationToken token = CancellationToken.current();
+        if (token == null) {
+            delegate.chat(chatRequest, handler);
+            return;
+        }
+        if (token.isCancelled()) {
+            handler.onError(new GenerationCancelledException(token.reason()));
+            return;
+        }
+
+        AtomicBoolean terminated = new AtomicBoolean();
+        Runnable end = token.begin();
+        token.onCancel(() -> {
+            if (terminated.compareAndSet(false, true)) {
+                try {
+                    handler.onError(new GenerationCancelledException(token.reason()));
+                } finally {
+                    end.run();
+                }
+            }
+        });
+        try {
+            delegate.chat(chatRequest, new StreamingChatResponseHandler() {
+                @Override
+                public void onPartialResponse(String partialResponse) {
+                    if (!terminated.get()) {
+                        handler.onPartialResponse(partialResponse);
+                    }
+                }
+
+                @Override
+                public void onCompleteResponse(ChatResponse completeResponse) {
+                    if (terminated.compareAndSet(false, true)) {
+                        try {
+                            CancellationToken.runWith(token, () -> handler.onCompleteResponse(completeResponse));
+                        } finally {
+                            end.run();
+                        }
+                    }
+                }
+
+                @Override
+                public void onError(Throwable error) {
+                    if (terminated.compareAndSet(false, true)) {
+                        try {
+                            handler.onError(error);
+                        } finally {
+                            end.run();
+                        }
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            end.run();
+            throw e;
+        }
+    }
+
+    @Override
+    public ChatRequestParameters defaultRequestParameters() {
+        return delegate.defaultRequestParameters();
+    }
+
+    @Override
+    public List<ChatModelListener> listeners() {
+        return delegate.listeners();
+    }
+
+    @Override
+    public ModelProvider provider() {
+        return delegate.provider();
+    }
+
+    @Override
+    public Set<Capability> supportedCapabilities() {
+        return delegate.supportedCapabilities();
+    }
+}
@@ -0,0 +1,259 @@
+package com.example.aicodehelper.ai.cancel;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 一次生成的取消令牌
+ * 生成过程中的各步骤（RAG 检索、模型调用、工具执行）都在令牌绑定到当前线程（{@link #runWith}）时执行，
+ * 据此检查是否已取消，并登记取消时要执行的动作（如中止上游 HTTP 调用）。
+ * 模型回调发生在 HTTP 客户端的线程上，由 {@link CancellableStreamingChatModel} 在转发完成回调时重新绑定，
+ * 因此随后在同一线程执行的工具和再次发起的模型调用也能拿到令牌。
+ */
+@Slf4j
+public class CancellationToken {
+
+    private static final ThreadLocal<CancellationToken> CURRENT = new ThreadLocal<>();
+
+    private final List<Runnable> hooks = new ArrayList<>();
+    private String reason;
+
+    // 进行中的模型调用数，及全部结束后执行的动作（见 {@link #begin}、{@link #whenIdle}）
+    private int active;
+    private final List<Runnable> idleHooks = new ArrayList<>();
+
+    /**
+     * 当前线程绑定的令牌（没有时为 null）
+     */
+    public static CancellationToken current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 在令牌绑定到当前线程的情况下执行 action，结束后恢复原来的绑定
+     */
+    public static void runWith(CancellationToken token, Runnable action) {
+        CancellationToken previous = CURRENT.get();
+        CURRENT.set(token);
+        try {
+            action.run();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    /**
+     * 在令牌绑定到当前线程的情况下执行有返回值的 action（如并行子任务），结束后恢复原来的绑定
+     */
+    public static <T> T callWith(CancellationToken token, Callable<T> action) throws Exception {
+        CancellationToken previous = CURRENT.get();
+        CURRENT.set(token);
+        try {
+            return action.call();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    /**
+     * 当前线程绑定的令牌已取消时抛出 {@link GenerationCancelledException}
+     */
+    public static void checkCurrent() {
+        CancellationToken token = CURRENT.get();
+        if (token != null) {
+            token.throwIfCancelled();
+        }
+    }
+
+    /**
+     * 子令牌：令牌取消时随之取消，子令牌单独取消不影响本令牌（如只中止对冲中落败的一方）
+     *
+     * @param parent 父令牌（null 时返回独立的令牌）
+     */
+    public static CancellationToken childOf(CancellationToken parent) {
+        CancellationToken child = new CancellationToken();
+        if (parent != null) {
+            parent.onCancel(() -> child.cancel(parent.reason()));
+        }
+        return child;
+    }
+
+    /**
+     * 多个调用方共享同一次上游调用时使用的令牌：所有调用方都取消后才取消
+     */
+    public static Shared shared() {
+        return new Shared();
+    }
+
+    /**
+     * 调用失败是否由取消引起（令牌已取消，或异常链中有 {@link GenerationCancelledException}）
+     * 取消不是模型故障：不计入错误，也不重试
+     *
+     * @param token 发起调用时绑定的令牌（可为 null）
+     */
+    public static boolean isCancellation(CancellationToken token, Throwable error) {
+        if (token != null && token.isCancelled()) {
+            return true;
+        }
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof GenerationCancelledException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public synchronized boolean isCancelled() {
+        return reason != null;
+    }
+
+    /**
+     * 取消原因（未取消时为 null）
+     */
+    public synchronized String reason() {
+        return reason;
+    }
+
+    public void throwIfCancelled() {
+        String cancelled = reason();
+        if (cancelled != null) {
+            throw new GenerationCancelledException(cancelled);
+        }
+    }
+
+    /**
+     * 取消并执行已登记的动作（只有第一次调用生效）
+     *
+     * @return 本次调用是否使令牌变为已取消
+     */
+    public boolean cancel(String reason) {
+        List<Runnable> toRun;
+        synchronized (this) {
+            if (this.reason != null) {
+                return false;
+            }
+            this.reason = reason;
+            toRun = new ArrayList<>(hooks);
+            hooks.clear();
+        }
+        for (Runnable hook : toRun) {
+            try {
+                hook.run();
+            } catch (RuntimeException e) {
+                log.warn("执行取消动作失败: {}", e.getMessage());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 登记取消时执行的动作；已取消时立即执行
+     */
+    public void onCancel(Runnable hook) {
+        synchronized (this) {
+            if (reason == null) {
+                hooks.add(hook);
+                return;
+            }
+        }
+        hook.run();
+    }
+
+    /**
+     * 登记一次进行中的模型调用（由 {@link CancellableStreamingChatModel} 调用）
+     * 取消后上游的回调虽然不再转发给调用方，但取消前已经开始转发的完成回调仍会写入会话记忆、执行工具，
+     * 调用方需要等这些回调返回后才能整理记忆
+     *
+     * @return 调用的最后一个回调返回后执行的动作（多次执行只生效一次）
+     */
+    public Runnable begin() {
+        synchronized (this) {
+            active++;
+        }
+        AtomicBoolean ended = new AtomicBoolean();
+        return () -> {
+            if (ended.compareAndSet(false, true)) {
+                end();
+            }
+        };
+    }
+
+    private void end() {
+        List<Runnable> toRun;
+        synchronized (this) {
+            active--;
+            if (active > 0) {
+                return;
+            }
+            toRun = new ArrayList<>(idleHooks);
+            idleHooks.clear();
+        }
+        toRun.forEach(Runnable::run);
+    }
+
+    /**
+     * 没有进行中的模型调用时立即执行 hook，否则在最后一个调用结束后执行
+     */
+    public void whenIdle(Runnable hook) {
+        synchronized (this) {
+            if (active > 0) {
+                idleHooks.add(hook);
+                return;
+            }
+        }
+        hook.run();
+    }
+
+    /**
+     * 共享令牌
+     */
+    public static final class Shared extends CancellationToken {
+
+        private int members;
+        // 有无法取消的调用方（没有令牌）时永不取消
+        private boolean pinned;
+
+        /**
+         * 加入一个调用方
+         *
+         * @param member 调用方的令牌（null 表示无法取消的调用方）
+         * @return 共享令牌已取消（上游调用已经或即将中止，不能再共享）时返回 false
+         */
+        public boolean join(CancellationToken member) {
+            synchronized (this) {
+                if (isCancelled()) {
+                    return false;
+                }
+                if (member == null) {
+                    pinned = true;
+                    return true;
+                }
+                members++;
+            }
+            member.onCancel(this::leave);
+            return true;
+        }
+
+        private void leave() {
+            synchronized (this) {
+                members--;
+                if (members > 0 || pinned) {
+                    return;
+                }
+            }
+            cancel("所有调用方都已取消");
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.aicodehelper.ai.cancel;
+
+/**
+ * 一次进行中的 /chat 生成：取消令牌和已输出的部分回答
+ */
+public class ChatGeneration {
+
+    private final String requestId;
+    private final int memoryId;
+    private final CancellationToken token = new CancellationToken();
+    private final StringBuilder partial = new StringBuilder();
+
+    ChatGeneration(String requestId, int memoryId) {
+        this.requestId = requestId;
+        this.memoryId = memoryId;
+    }
+
+    public String getRequestId() {
+        return requestId;
+    }
+
+    public int getMemoryId() {
+        return memoryId;
+    }
+
+    public CancellationToken getToken() {
+        return token;
+    }
+
+    /**
+     * 记录模型输出的文本片段（取消后不再记录）
+     */
+    public void append(String text) {
+        if (text == null || token.isCancelled()) {
+            return;
+        }
+        synchronized (partial) {
+            partial.append(text);
+        }
+    }
+
+    /**
+     * 已输出的部分回答
+     */
+    public String partial() {
+        synchronized (partial) {
+            return partial.toString();
+        }
+    }
+}
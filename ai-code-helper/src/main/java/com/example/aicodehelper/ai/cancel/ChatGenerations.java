@@ -0,0 +1,145 @@
+package com.example.aicodehelper.ai.cancel;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.output.TokenUsage;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 进行中的 /chat 生成（按请求关联ID登记），供取消接口查找
+ *
+ * 取消（客户端调用取消接口、断开连接过久或流被丢弃）后：
+ * - 会话记忆：langchain4j 只在回答完整时写入 AI 消息，取消后记忆中只剩用户消息（或工具调用结果），
+ * 下一轮对话会缺少上一轮的回答。因此补写一条 AI 消息：已输出的部分回答加上“（回答已中断）”，保持对话完整
+ * - 指标：ai.chat.cancelled{reason=client|disconnect|discarded} 为取消次数；
+ * ai.chat.cancelled.tokens.saved 为估计节省的输出 token 数，即已完成回答的平均输出 token 数减去
+ * 已输出部分的 token 数（按已完成回答的 token/字符比例折算），没有已完成的回答时不估计
+ */
+@Slf4j
+@Component
+public class ChatGenerations {
+
+    static final String INTERRUPTED_SUFFIX = "（回答已中断）";
+    static final String CANCELLED_WITHOUT_OUTPUT = "（回答已取消）";
+
+    @Resource
+    private ChatMemoryStore chatMemoryStore;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private final Map<String, ChatGeneration> generations = new ConcurrentHashMap<>();
+
+    // 已完成回答的输出统计，用于估计取消节省的 token
+    private long completedCount;
+    private long completedOutputTokens;
+    private long completedOutputChars;
+
+    /**
+     * 登记一次生成
+     */
+    public ChatGeneration start(String requestId, int memoryId) {
+        ChatGeneration generation = new ChatGeneration(requestId, memoryId);
+        generations.put(requestId, generation);
+        return generation;
+    }
+
+    /**
+     * 取消指定会话中的一次生成
+     *
+     * @return 找到并取消时返回 true；生成已结束、不存在或不属于该会话时返回 false
+     */
+    public boolean cancel(int memoryId, String requestId, String reason) {
+        ChatGeneration generation = generations.get(requestId);
+        if (generation == null || generation.getMemoryId() != memoryId) {
+            return false;
+        }
+        log.info("取消生成 [{}]，原因：{}", requestId, reason);
+        return generation.getToken().cancel(reason);
+    }
+
+    /**
+     * 生成正常结束
+     */
+    public void completed(ChatGeneration generation, ChatResponse response) {
+        generations.remove(generation.getRequestId(), generation);
+        TokenUsage usage = response != null ? response.tokenUsage() : null;
+        String text = response != null && response.aiMessage() != null ? response.aiMessage().text() : null;
+        if (usage == null || usage.outputTokenCount() == null || text == null || text.isEmpty()) {
+            return;
+        }
+        synchronized (this) {
+            completedCount++;
+            completedOutputTokens += usage.outputTokenCount();
+            completedOutputChars += text.length();
+        }
+    }
+
+    /**
+     * 生成出错结束；被取消时补写会话记忆并记录指标
+     */
+    public void failed(ChatGeneration generation, Throwable error) {
+        generations.remove(generation.getRequestId(), generation);
+        CancellationToken token = generation.getToken();
+        if (!token.isCancelled()) {
+            return;
+        }
+        String partial = generation.partial();
+        recordInterrupted(generation.getMemoryId(), partial);
+
+        Counter.builder("ai.chat.cancelled")
+                .tag("reason", token.reason())
+                .description("被取消的 /chat 生成数")
+                .register(meterRegistry)
+                .increment();
+        long saved = estimateSavedTokens(partial.length());
+        if (saved > 0) {
+            Counter.builder("ai.chat.cancelled.tokens.saved")
+                    .description("取消生成估计节省的输出 token 数")
+                    .register(meterRegistry)
+                    .increment(saved);
+        }
+        log.info("生成已取消 [{}]：原因 {}，已输出 {} 个字符，估计节省 {} 个输出 token",
+                generation.getRequestId(), token.reason(), partial.length(), saved);
+    }
+
+    synchronized long estimateSavedTokens(int partialChars) {
+        if (completedCount == 0 || completedOutputChars == 0) {
+            return 0;
+        }
+        double average = (double) completedOutputTokens / completedCount;
+        double partialTokens = partialChars * (double) completedOutputTokens / completedOutputChars;
+        return Math.max(0, Math.round(average - partialTokens));
+    }
+
+    /**
+     * 把已输出的部分回答写入会话记忆（最后一条已是完整回答时不处理）
+     */
+    private void recordInterrupted(int memoryId, String partial) {
+        List<ChatMessage> messages = new ArrayList<>(chatMemoryStore.getMessages(memoryId));
+        if (messages.isEmpty()) {
+            return;
+        }
+        ChatMessage last = messages.get(messages.size() - 1);
+        if (last instanceof AiMessage aiMessage) {
+            if (!aiMessage.hasToolExecutionRequests()) {
+                return;
+            }
+            // 没有执行结果的工具调用请求会使下一轮请求被模型拒绝
+            messages.remove(messages.size() - 1);
+        }
+        messages.add(AiMessage.from(partial.isBlank() ? CANCELLED_WITHOUT_OUTPUT : partial + "\n\n" + INTERRUPTED_SUFFIX));
+        chatMemoryStore.updateMessages(memoryId, messages);
+    }
+}
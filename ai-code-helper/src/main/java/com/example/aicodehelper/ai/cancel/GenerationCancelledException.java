@@ -0,0 +1,21 @@
+package com.example.aicodehelper.ai.cancel;
+
+/**
+ * 生成已被取消（客户端取消或断开连接）
+ */
+public class GenerationCancelledException extends RuntimeException {
+
+    private final String reason;
+
+    public GenerationCancelledException(String reason) {
+        super("生成已取消: " + reason);
+        this.reason = reason;
+    }
+
+    /**
+     * 取消原因
+     */
+    public String getReason() {
+        return reason;
+    }
+}
@@ -0,0 +1,211 @@
+package com.example.aicodehelper.ai.intent;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * 本地意图分类器
+ * 用字符 n-gram（1~3 元，特征哈希）+ 逻辑回归判断用户消息是“修改代码”还是“普通对话”，
+ * 单次分类只需几微秒，替代每轮对话前对大模型的意图识别调用。
+ *
+ * 模型在启动时由 classpath 中的标注样例（intent/intent-examples.tsv，每行“标签\t文本”）训练，
+ * 训练过程是确定性的；置信度低于阈值时由调用方回退到大模型判断。
+ */
+@Component
+@Slf4j
+public class IntentClassifier {
+
+    public static final String MODIFY = "modify";
+    public static final String CHAT = "chat";
+
+    // 特征哈希的维度（2^18）
+    private static final int DIMENSIONS = 1 << 18;
+
+    private static final int MAX_NGRAM = 3;
+
+    private static final int EPOCHS = 30;
+
+    private static final double LEARNING_RATE = 0.5;
+
+    private static final double L2 = 1e-5;
+
+    @Value("${intent-classifier.examples:intent/intent-examples.tsv}")
+    private String examplesPath;
+
+    // 置信度达到此值时直接采用本地结果
+    @Value("${intent-classifier.confidence-threshold:0.85}")
+    private double confidenceThreshold;
+
+    private float[] weights = new float[DIMENSIONS];
+    private float bias;
+
+    /**
+     * 标注样例
+     *
+     * @param intent 意图标签（modify / chat）
+     * @param text   用户消息
+     */
+    public record Example(String intent, String text) {
+    }
+
+    /**
+     * 分类结果
+     *
+     * @param intent            意图（modify / chat）
+     * @param modifyProbability 属于修改意图的概率
+     * @param confidence        所选意图的概率（0.5 ~ 1）
+     */
+    public record Prediction(String intent, double modifyProbability, double confidence) {
+    }
+
+    @PostConstruct
+    public void init() {
+        try {
+            List<Example> examples = loadExamples(examplesPath);
+            long start = System.nanoTime();
+            train(examples);
+            log.info("意图分类器训练完成：{} 条样例，耗时 {} ms",
+                    examples.size(), (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException e) {
+            // 未训练的模型对所有消息输出 0.5，总是回退到大模型
+            log.warn("加载意图样例失败（{}），意图识别将全部交给大模型: {}", examplesPath, e.getMessage());
+        }
+    }
+
+    /**
+     * 对用户消息分类
+     */
+    public Prediction classify(String message) {
+        Map<Integer, Float> features = features(message);
+        double probability = sigmoid(score(features));
+        return probability >= 0.5
+                ? new Prediction(MODIFY, probability, probability)
+                : new Prediction(CHAT, probability, 1 - probability);
+    }
+
+    /**
+     * 分类结果是否足够可信，可以不再询问大模型
+     */
+    public boolean isConfident(Prediction prediction) {
+        return prediction.confidence() >= confidenceThreshold;
+    }
+
+    /**
+     * 用标注样例训练逻辑回归（随机梯度下降，固定随机种子）
+     */
+    public void train(List<Example> examples) {
+        List<Map<Integer, Float>> featureList = new ArrayList<>(examples.size());
+        for (Example example : examples) {
+            featureList.add(features(example.text()));
+        }
+
+        float[] newWeights = new float[DIMENSIONS];
+        float newBias = 0;
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < examples.size(); i++) {
+            order.add(i);
+        }
+
+        Random random = new Random(42);
+        for (int epoch = 0; epoch < EPOCHS; epoch++) {
+            Collections.shuffle(order, random);
+            double rate = LEARNING_RATE / (1 + epoch * 0.1);
+            for (int i : order) {
+                Map<Integer, Float> features = featureList.get(i);
+                double label = MODIFY.equals(examples.get(i).intent()) ? 1 : 0;
+
+                double score = newBias;
+                for (Map.Entry<Integer, Float> feature : features.entrySet()) {
+                    score += newWeights[feature.getKey()] * feature.getValue();
+                }
+                double gradient = sigmoid(score) - label;
+
+                for (Map.Entry<Integer, Float> feature : features.entrySet()) {
+                    int index = feature.getKey();
+                    newWeights[index] -= (float) (rate * (gradient * feature.getValue() + L2 * newWeights[index]));
+                }
+                newBias -= (float) (rate * gradient);
+            }
+        }
+
+        this.weights = newWeights;
+        this.bias = newBias;
+    }
+
+    /**
+     * 从 classpath 读取标注样例，忽略空行和 # 开头的注释行
+     */
+    public static List<Example> loadExamples(String resourcePath) throws IOException {
+        List<Example> examples = new ArrayList<>();
+        ClassPathResource resource = new ClassPathResource(resourcePath);
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+                int tab = line.indexOf('\t');
+                if (tab <= 0) {
+                    continue;
+                }
+                examples.add(new Example(line.substring(0, tab).trim(), line.substring(tab + 1).trim()));
+            }
+        }
+        return examples;
+    }
+
+    private double score(Map<Integer, Float> features) {
+        double score = bias;
+        for (Map.Entry<Integer, Float> feature : features.entrySet()) {
+            score += weights[feature.getKey()] * feature.getValue();
+        }
+        return score;
+    }
+
+    /**
+     * 提取字符 n-gram 特征：小写、合并空白、首尾加边界符，按 L2 范数归一化
+     */
+    private static Map<Integer, Float> features(String message) {
+        String text = "^" + (message == null ? "" : message.trim().toLowerCase(Locale.ROOT).replaceAll("\\s+", " ")) + "$";
+
+        Map<Integer, Float> features = new HashMap<>();
+        for (int n = 1; n <= MAX_NGRAM; n++) {
+            for (int i = 0; i + n <= text.length(); i++) {
+                int hash = text.substring(i, i + n).hashCode() * 31 + n;
+                // 混合高位，减少相近 n-gram 的哈希冲突
+                hash ^= hash >>> 16;
+                hash *= 0x85ebca6b;
+                hash ^= hash >>> 13;
+                features.merge(hash & (DIMENSIONS - 1), 1f, Float::sum);
+            }
+        }
+
+        double norm = 0;
+        for (float value : features.values()) {
+            norm += value * value;
+        }
+        float scale = (float) (1 / Math.sqrt(norm));
+        features.replaceAll((index, value) -> value * scale);
+        return features;
+    }
+
+    private static double sigmoid(double x) {
+        return 1 / (1 + Math.exp(-x));
+    }
+}
@@ -1,11 +1,7 @@
 package com.example.aicodehelper.ai.listener;
 
-import dev.langchain4j.model.chat.listener.ChatModelErrorContext;
 import dev.langchain4j.model.chat.listener.ChatModelListener;
-import dev.langchain4j.model.chat.listener.ChatModelRequestContext;
-import dev.langchain4j.model.chat.listener.ChatModelResponseContext;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import jakarta.annotation.Resource;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -13,26 +9,15 @@ import org.springframework.context.annotation.Configuration;
 @Configuration
 public class ChatModelListenerConfig {
 
-    @Bean
-    ChatModelListener chatModelListener() {
-        return new ChatModelListener() {
-
-            private static final Logger log = LoggerFactory.getLogger(ChatModelListener.class);
+    @Resource
+    private ModelMetrics modelMetrics;
 
-            @Override
-            public void onRequest(ChatModelRequestContext requestContext) {
-                log.info("onRequest(): {}", requestContext.chatRequest());
-            }
+    @Resource
+    private ModelBodyLogger modelBodyLogger;
 
-            @Override
-            public void onResponse(ChatModelResponseContext responseContext) {
-                log.info("onResponse(): {}", responseContext.chatResponse());
-            }
-
-            @Override
-            public void onError(ChatModelErrorContext errorContext) {
-                log.info("onError(): {}", errorContext.error().getMessage());
-            }
-        };
+    // 记录模型调用指标，请求和响应内容只做采样的异步 DEBUG 日志（见 ModelBodyLogger）
+    @Bean
+    ChatModelListener chatModelListener() {
+        return new MetricsChatModelListener(modelMetrics, modelBodyLogger);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,76 @@
+package com.example.aicodehelper.ai.listener;
+
+import com.example.aicodehelper.ai.cancel.CancellationToken;
+import dev.langchain4j.model.chat.listener.ChatModelErrorContext;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import dev.langchain4j.model.chat.listener.ChatModelRequestContext;
+import dev.langchain4j.model.chat.listener.ChatModelResponseContext;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+
+/**
+ * 非流式模型调用的监听器：记录 {@link ModelMetrics} 中的指标，并按采样比例异步记录请求和响应内容
+ */
+public class MetricsChatModelListener implements ChatModelListener {
+
+    private static final String START = "metrics.start";
+    private static final String ENDPOINT = "metrics.endpoint";
+    private static final String SAMPLED = "metrics.sampled";
+
+    private final ModelMetrics modelMetrics;
+    private final ModelBodyLogger bodyLogger;
+
+    public MetricsChatModelListener(ModelMetrics modelMetrics, ModelBodyLogger bodyLogger) {
+        this.modelMetrics = modelMetrics;
+        this.bodyLogger = bodyLogger;
+    }
+
+    @Override
+    public void onRequest(ChatModelRequestContext requestContext) {
+        requestContext.attributes().put(START, System.nanoTime());
+        requestContext.attributes().put(ENDPOINT, ModelMetrics.endpoint(requestContext.chatRequest()));
+        if (bodyLogger.sample()) {
+            requestContext.attributes().put(SAMPLED, true);
+            bodyLogger.log("request", requestContext.chatRequest());
+        }
+    }
+
+    @Override
+    public void onResponse(ChatModelResponseContext responseContext) {
+        ChatResponse response = responseContext.chatResponse();
+        String model = response.modelName() != null ? response.modelName() : modelName(responseContext.chatRequest());
+        modelMetrics.recordSuccess(ModelMetrics.TYPE_CHAT, endpoint(responseContext.attributes().get(ENDPOINT)),
+                model, elapsed(responseContext.attributes().get(START)), response);
+        if (responseContext.attributes().containsKey(SAMPLED)) {
+            bodyLogger.log("response", response);
+        }
+    }
+
+    @Override
+    public void onError(ChatModelErrorContext errorContext) {
+        String endpoint = endpoint(errorContext.attributes().get(ENDPOINT));
+        String model = modelName(errorContext.chatRequest());
+        long elapsed = elapsed(errorContext.attributes().get(START));
+        // 非流式调用的监听器在调用线程上执行，当前线程绑定的就是本次调用的令牌
+        if (CancellationToken.isCancellation(CancellationToken.current(), errorContext.error())) {
+            modelMetrics.recordCancelled(ModelMetrics.TYPE_CHAT, endpoint, model, elapsed);
+        } else {
+            modelMetrics.recordError(ModelMetrics.TYPE_CHAT, endpoint, model, elapsed);
+        }
+        if (errorContext.attributes().containsKey(SAMPLED)) {
+            bodyLogger.log("error", errorContext.error().getMessage());
+        }
+    }
+
+    private static String modelName(ChatRequest request) {
+        return request != null && request.modelName() != null ? request.modelName() : "unknown";
+    }
+
+    private static String endpoint(Object endpoint) {
+        return endpoint instanceof String name ? name : "unknown";
+    }
+
+    private static long elapsed(Object start) {
+        return start instanceof Long nanos ? System.nanoTime() - nanos : 0;
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.aicodehelper.ai.listener;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 模型请求/响应内容的采样日志
+ * 只在本类的 DEBUG 日志开启时按比例采样，格式化和输出在后台线程中进行，队列满时直接丢弃，不阻塞模型调用
+ */
+@Component
+@Slf4j
+public class ModelBodyLogger {
+
+    // 采样比例（0 ~ 1）
+    @Value("${model-metrics.body-log-sample-rate:0.01}")
+    private double sampleRate;
+
+    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(100),
+            runnable -> {
+                Thread thread = new Thread(runnable, "model-body-logger");
+                thread.setDaemon(true);
+                return thread;
+            },
+            new ThreadPoolExecutor.DiscardPolicy());
+
+    /**
+     * 是否记录本次调用（同一次调用的请求和响应应一起记录或一起跳过）
+     */
+    public boolean sample() {
+        return log.isDebugEnabled() && ThreadLocalRandom.current().nextDouble() < sampleRate;
+    }
+
+    /**
+     * 在后台线程中输出内容
+     *
+     * @param phase 阶段（request / response / error）
+     * @param body  请求或响应对象（在后台线程中调用 toString）
+     */
+    public void log(String phase, Object body) {
+        executor.execute(() -> log.debug("{}: {}", phase, body));
+    }
+}
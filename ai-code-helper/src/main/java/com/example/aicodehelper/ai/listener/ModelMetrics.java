@@ -0,0 +1,141 @@
+package com.example.aicodehelper.ai.listener;
+
+import com.example.aicodehelper.ai.model.RequestFeatures;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.output.TokenUsage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 模型调用指标
+ * 非流式模型由 {@link MetricsChatModelListener} 记录，流式模型由 MeteredStreamingChatModel 记录。
+ *
+ * 公共标签：type（chat/streaming）、endpoint（任务，见 {@link RequestFeatures#task()}）、model（模型名）
+ * - ai.model.duration{outcome=success|error|cancelled}：完整调用耗时，错误率 = error 计数 / 总计数
+ *   （用户取消、对冲落败被中止的调用记为 cancelled，不计入错误）
+ * - ai.model.ttft：首 token 延迟（仅流式）
+ * - ai.model.tokens{direction=input|output}：token 用量
+ * - ai.model.tokens.per.second：流式输出速度（首 token 之后，仅流式）
+ * - ai.model.tool.calls：模型发起的工具调用次数
+ * 耗时和速度都发布直方图，可在 Prometheus 中按任意分位数聚合。
+ */
+@Component
+public class ModelMetrics {
+
+    public static final String TYPE_CHAT = "chat";
+    public static final String TYPE_STREAMING = "streaming";
+
+    private final MeterRegistry meterRegistry;
+
+    public ModelMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * 请求对应的任务名，作为 endpoint 标签
+     */
+    public static String endpoint(ChatRequest request) {
+        return RequestFeatures.of(request).task();
+    }
+
+    /**
+     * 记录一次成功的调用
+     */
+    public void recordSuccess(String type, String endpoint, String model, long durationNanos, ChatResponse response) {
+        Timer.builder("ai.model.duration")
+                .description("模型调用耗时")
+                .tags("type", type, "endpoint", endpoint, "model", model, "outcome", "success")
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(durationNanos, TimeUnit.NANOSECONDS);
+
+        TokenUsage usage = response.tokenUsage();
+        if (usage != null) {
+            tokens(type, endpoint, model, "input", usage.inputTokenCount());
+            tokens(type, endpoint, model, "output", usage.outputTokenCount());
+        }
+
+        AiMessage aiMessage = response.aiMessage();
+        if (aiMessage != null && aiMessage.hasToolExecutionRequests()) {
+            Counter.builder("ai.model.tool.calls")
+                    .description("模型发起的工具调用次数")
+                    .tags("type", type, "endpoint", endpoint, "model", model)
+                    .register(meterRegistry)
+                    .increment(aiMessage.toolExecutionRequests().size());
+        }
+    }
+
+    /**
+     * 记录一次失败的调用
+     */
+    public void recordError(String type, String endpoint, String model, long durationNanos) {
+        Timer.builder("ai.model.duration")
+                .description("模型调用耗时")
+                .tags("type", type, "endpoint", endpoint, "model", model, "outcome", "error")
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 记录一次被取消的调用（用户取消或对冲落败被中止）
+     */
+    public void recordCancelled(String type, String endpoint, String model, long durationNanos) {
+        Timer.builder("ai.model.duration")
+                .description("模型调用耗时")
+                .tags("type", type, "endpoint", endpoint, "model", model, "outcome", "cancelled")
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 记录流式调用的首 token 延迟
+     */
+    public void recordFirstToken(String endpoint, String model, long nanos) {
+        Timer.builder("ai.model.ttft")
+                .description("流式调用的首 token 延迟")
+                .tags("type", TYPE_STREAMING, "endpoint", endpoint, "model", model)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 记录流式输出速度
+     *
+     * @param outputTokens    输出 token 数
+     * @param generationNanos 首 token 到输出完成的耗时
+     */
+    public void recordStreamingRate(String endpoint, String model, int outputTokens, long generationNanos) {
+        if (outputTokens <= 0 || generationNanos <= 0) {
+            return;
+        }
+        DistributionSummary.builder("ai.model.tokens.per.second")
+                .description("流式输出速度（首 token 之后）")
+                .baseUnit("tokens")
+                .tags("type", TYPE_STREAMING, "endpoint", endpoint, "model", model)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(outputTokens / (generationNanos / 1e9));
+    }
+
+    private void tokens(String type, String endpoint, String model, String direction, Integer count) {
+        if (count == null || count <= 0) {
+            return;
+        }
+        Counter.builder("ai.model.tokens")
+                .description("模型 token 用量")
+                .baseUnit("tokens")
+                .tags("type", type, "endpoint", endpoint, "model", model, "direction", direction)
+                .register(meterRegistry)
+                .increment(count);
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.aicodehelper.ai.model;
+
+import dev.langchain4j.model.ModelProvider;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 请求合并的 ChatModel 装饰器（single-flight）
+ * 完全相同的 ChatRequest（消息列表和参数都相同）同时到达时，只有第一个请求真正调用上游模型，
+ * 其余请求等待并共享同一个结果。请求完成后立即移除，不做缓存。
+ *
+ * 指标：ai.model.coalescing{type=chat, role=leader|follower}，
+ * 合并率 = follower / (leader + follower)；ai.model.coalescing.inflight 为当前进行中的上游调用数。
+ */
+public class CoalescingChatModel implements ChatModel {
+
+    private final ChatModel delegate;
+
+    private final Map<ChatRequest, CompletableFuture<ChatResponse>> inFlight = new ConcurrentHashMap<>();
+
+    private final Counter leaderCounter;
+    private final Counter followerCounter;
+
+    public CoalescingChatModel(ChatModel delegate, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.leaderCounter = counter(meterRegistry, "leader");
+        this.followerCounter = counter(meterRegistry, "follower");
+        Gauge.builder("ai.model.coalescing.inflight", inFlight, Map::size)
+                .description("进行中的上游模型调用数")
+                .tag("type", "chat")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public ChatResponse chat(ChatRequest chatRequest) {
+        CompletableFuture<ChatResponse> mine = new CompletableFuture<>();
+        CompletableFuture<ChatResponse> existing = inFlight.putIfAbsent(chatRequest, mine);
+
+        if (existing != null) {
+            followerCounter.increment();
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+
+        leaderCounter.increment();
+        try {
+            ChatResponse response = delegate.chat(chatRequest);
+            mine.complete(response);
+            return response;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(chatRequest, mine);
+        }
+    }
+
+    @Override
+    public ChatRequestParameters defaultRequestParameters() {
+        return delegate.defaultRequestParameters();
+    }
+
+    @Override
+    public List<ChatModelListener> listeners() {
+        return delegate.listeners();
+    }
+
+    @Override
+    public ModelProvider provider() {
+        return delegate.provider();
+    }
+
+    @Override
+    public Set<Capability> supportedCapabilities() {
+        return delegate.supportedCapabilities();
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String role) {
+        return Counter.builder("ai.model.coalescing")
+                .description("模型调用的合并情况（leader 为实际发起的上游调用，follower 为共享结果的调用）")
+                .tag("type", "chat")
+                .tag("role", role)
+                .register(meterRegistry);
+    }
+}
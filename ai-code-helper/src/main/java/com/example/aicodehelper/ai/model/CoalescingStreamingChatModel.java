@@ -0,0 +1,180 @@
+package com.example.aicodehelper.ai.model;
+
+import com.example.aicodehelper.ai.cancel.CancellationToken;
+import dev.langchain4j.model.ModelProvider;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 请求合并的 StreamingChatModel 装饰器（single-flight）
+ * 完全相同的 ChatRequest 同时到达时只发起一次上游流式调用，生成的每个片段分发给所有等待的订阅者；
+ * 中途加入的订阅者先补发已生成的片段，再接收后续片段，因此每个订阅者看到的都是完整的回答。
+ * 上游调用使用共享的取消令牌，所有订阅者都取消后才中止；已取消的调用不再接受新的订阅者。
+ *
+ * 指标与 {@link CoalescingChatModel} 相同，type=streaming。
+ */
+@Slf4j
+public class CoalescingStreamingChatModel implements StreamingChatModel {
+
+    private final StreamingChatModel delegate;
+
+    private final Map<ChatRequest, SharedStream> inFlight = new ConcurrentHashMap<>();
+
+    private final Counter leaderCounter;
+    private final Counter followerCounter;
+
+    public CoalescingStreamingChatModel(StreamingChatModel delegate, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.leaderCounter = counter(meterRegistry, "leader");
+        this.followerCounter = counter(meterRegistry, "follower");
+        Gauge.builder("ai.model.coalescing.inflight", inFlight, Map::size)
+                .description("进行中的上游模型调用数")
+                .tag("type", "streaming")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void chat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+        CancellationToken caller = CancellationToken.current();
+        SharedStream mine = new SharedStream(chatRequest);
+        mine.token.join(caller);
+        while (true) {
+            SharedStream existing = inFlight.putIfAbsent(chatRequest, mine);
+            if (existing == null) {
+                break;
+            }
+            if (existing.token.join(caller)) {
+                followerCounter.increment();
+                existing.subscribe(handler);
+                return;
+            }
+            // 已取消的上游调用即将结束，由本次调用重新发起
+            if (inFlight.replace(chatRequest, existing, mine)) {
+                break;
+            }
+        }
+
+        leaderCounter.increment();
+        mine.subscribe(handler);
+        CancellationToken.runWith(mine.token, () -> {
+            try {
+                delegate.chat(chatRequest, mine);
+            } catch (RuntimeException e) {
+                mine.onError(e);
+            }
+        });
+    }
+
+    @Override
+    public ChatRequestParameters defaultRequestParameters() {
+        return delegate.defaultRequestParameters();
+    }
+
+    @Override
+    public List<ChatModelListener> listeners() {
+        return delegate.listeners();
+    }
+
+    @Override
+    public ModelProvider provider() {
+        return delegate.provider();
+    }
+
+    @Override
+    public Set<Capability> supportedCapabilities() {
+        return delegate.supportedCapabilities();
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String role) {
+        return Counter.builder("ai.model.coalescing")
+                .description("模型调用的合并情况（leader 为实际发起的上游调用，follower 为共享结果的调用）")
+                .tag("type", "streaming")
+                .tag("role", role)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 一次共享的上游流式调用
+     * 回调在锁内分发，保证补发的片段和后续片段顺序一致
+     */
+    private final class SharedStream implements StreamingChatResponseHandler {
+
+        private final ChatRequest request;
+        private final CancellationToken.Shared token = CancellationToken.shared();
+        private final List<String> partials = new ArrayList<>();
+        private final List<StreamingChatResponseHandler> handlers = new ArrayList<>();
+        private ChatResponse response;
+        private Throwable error;
+
+        private SharedStream(ChatRequest request) {
+            this.request = request;
+        }
+
+        synchronized void subscribe(StreamingChatResponseHandler handler) {
+            for (String partial : partials) {
+                safely(() -> handler.onPartialResponse(partial));
+            }
+            if (response != null) {
+                safely(() -> handler.onCompleteResponse(response));
+            } else if (error != null) {
+                safely(() -> handler.onError(error));
+            } else {
+                handlers.add(handler);
+            }
+        }
+
+        @Override
+        public synchronized void onPartialResponse(String partialResponse) {
+            partials.add(partialResponse);
+            for (StreamingChatResponseHandler handler : handlers) {
+                safely(() -> handler.onPartialResponse(partialResponse));
+            }
+        }
+
+        @Override
+        public synchronized void onCompleteResponse(ChatResponse completeResponse) {
+            inFlight.remove(request, this);
+            response = completeResponse;
+            for (StreamingChatResponseHandler handler : handlers) {
+                safely(() -> handler.onCompleteResponse(completeResponse));
+            }
+            handlers.clear();
+        }
+
+        @Override
+        public synchronized void onError(Throwable throwable) {
+            inFlight.remove(request, this);
+            error = throwable;
+            for (StreamingChatResponseHandler handler : handlers) {
+                safely(() -> handler.onError(throwable));
+            }
+            handlers.clear();
+        }
+
+        /**
+         * 单个订阅者的回调异常不影响其他订阅者
+         */
+        private void safely(Runnable callback) {
+            try {
+                callback.run();
+            } catch (RuntimeException e) {
+                log.warn("合并流式调用的订阅者回调失败: {}", e.getMessage());
+            }
+        }
+    }
+}
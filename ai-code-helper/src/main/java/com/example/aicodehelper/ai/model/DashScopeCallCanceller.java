@@ -0,0 +1,78 @@
+package com.example.aicodehelper.ai.model;
+
+import com.alibaba.dashscope.aigc.generation.GenerationParam;
+import com.alibaba.dashscope.protocol.okhttp.OkHttpClientFactory;
+import com.example.aicodehelper.ai.cancel.CancellationToken;
+import dev.langchain4j.community.model.dashscope.QwenChatModel;
+import dev.langchain4j.community.model.dashscope.QwenStreamingChatModel;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.Call;
+import okhttp3.Dispatcher;
+
+import java.util.UUID;
+
+/**
+ * 取消生成时中止 DashScope 的上游 HTTP 调用
+ * langchain4j 和 DashScope SDK 都没有提供中止流式调用的句柄，因此在发出请求前（参数定制回调，运行在调用线程上）
+ * 给请求加上唯一的 X-Client-Call-Id 请求头，并在当前生成的取消令牌上登记：取消时在 SDK 共享的 OkHttp 客户端中
+ * 找到带该请求头的调用并 cancel，连接关闭后上游停止生成，不再计费。
+ * 只对使用默认连接配置（共享 OkHttpClient）的模型有效，找不到调用时忽略。
+ */
+@Slf4j
+public final class DashScopeCallCanceller {
+
+    static final String CALL_ID_HEADER = "X-Client-Call-Id";
+
+    private DashScopeCallCanceller() {
+    }
+
+    /**
+     * 为模型安装请求头定制回调（非 QwenStreamingChatModel / QwenChatModel 时忽略）
+     * 同步调用同样经过共享的 OkHttpClient，中止后阻塞的调用立即以异常返回
+     */
+    public static void install(Object model) {
+        if (model instanceof QwenStreamingChatModel qwen) {
+            qwen.setGenerationParamCustomizer(DashScopeCallCanceller::tagCall);
+        } else if (model instanceof QwenChatModel qwen) {
+            qwen.setGenerationParamCustomizer(DashScopeCallCanceller::tagCall);
+        }
+    }
+
+    private static void tagCall(GenerationParam.GenerationParamBuilder<?, ?> builder) {
+        CancellationToken token = CancellationToken.current();
+        if (token == null) {
+            return;
+        }
+        String callId = UUID.randomUUID().toString();
+        builder.header(CALL_ID_HEADER, callId);
+        token.onCancel(() -> cancel(callId));
+    }
+
+    /**
+     * 中止带指定调用 ID 的上游请求
+     *
+     * @return 是否找到并中止了请求
+     */
+    static boolean cancel(String callId) {
+        Dispatcher dispatcher = OkHttpClientFactory.getOkHttpClient().dispatcher();
+        boolean found = false;
+        for (Call call : dispatcher.runningCalls()) {
+            found |= cancelIfMatches(call, callId);
+        }
+        for (Call call : dispatcher.queuedCalls()) {
+            found |= cancelIfMatches(call, callId);
+        }
+        if (found) {
+            log.info("已中止上游模型调用 {}", callId);
+        }
+        return found;
+    }
+
+    private static boolean cancelIfMatches(Call call, String callId) {
+        if (callId.equals(call.request().header(CALL_ID_HEADER)) && !call.isCanceled()) {
+            call.cancel();
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,186 @@
+package com.example.aicodehelper.ai.model;
+
+import com.example.aicodehelper.ai.cancel.CancellationToken;
+import dev.langchain4j.model.ModelProvider;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 请求对冲的 ChatModel 装饰器
+ * 上游在 {@link HedgingPolicy#hedgeDelayMillis()} 内没有返回完整响应时，再发起一次相同的请求，
+ * 采用先成功返回的结果。阻塞在 HTTP 读取上的调用不响应线程中断，因此每个请求在自己的子取消令牌下发出，
+ * 结束时取消未胜出一方的令牌，由 {@link DashScopeCallCanceller} 中止其上游调用；仍在等待的落败方以已等待的时间
+ * 作为其（截断的）延迟记录。
+ * 指标与 {@link HedgingStreamingChatModel} 相同，type=chat，延迟为完整响应的延迟。
+ */
+@Slf4j
+public class HedgingChatModel implements ChatModel {
+
+    private static final String TYPE = "chat";
+
+    private final ChatModel delegate;
+    private final HedgingPolicy policy;
+    private final ExecutorService executor;
+
+    private final Counter hedgedCounter;
+    private final Counter budgetExhaustedCounter;
+    private final Counter primaryWinsCounter;
+    private final Counter hedgeWinsCounter;
+    private final Timer effectiveTimer;
+    private final Timer primaryTimer;
+
+    public HedgingChatModel(ChatModel delegate, HedgingPolicy policy, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.policy = policy;
+        this.executor = Executors.newCachedThreadPool(HedgingStreamingChatModel.daemonThreads("model-hedging-chat"));
+        this.hedgedCounter = HedgingMetrics.event(meterRegistry, TYPE, "hedged");
+        this.budgetExhaustedCounter = HedgingMetrics.event(meterRegistry, TYPE, "budget_exhausted");
+        this.primaryWinsCounter = HedgingMetrics.wins(meterRegistry, TYPE, "primary");
+        this.hedgeWinsCounter = HedgingMetrics.wins(meterRegistry, TYPE, "hedge");
+        this.effectiveTimer = HedgingMetrics.latency(meterRegistry, TYPE, "effective");
+        this.primaryTimer = HedgingMetrics.latency(meterRegistry, TYPE, "primary");
+    }
+
+    @Override
+    public ChatResponse chat(ChatRequest chatRequest) {
+        policy.onRequest();
+        long start = System.nanoTime();
+        CompletionService<ChatResponse> completion = new ExecutorCompletionService<>(executor);
+        CancellationToken token = CancellationToken.current();
+        List<Attempt> attempts = new ArrayList<>(2);
+        attempts.add(new Attempt(0, start, token, chatRequest, completion));
+        Attempt winner = null;
+
+        try {
+            long delay = policy.hedgeDelayMillis();
+            Future<ChatResponse> finished = completion.poll(delay, TimeUnit.MILLISECONDS);
+            if (finished == null) {
+                if (policy.tryAcquireHedge()) {
+                    hedgedCounter.increment();
+                    log.debug("上游 {} ms 内未返回，发出对冲请求", delay);
+                    attempts.add(new Attempt(1, start, token, chatRequest, completion));
+                } else {
+                    budgetExhaustedCounter.increment();
+                }
+            }
+
+            RuntimeException lastError = null;
+            for (int pending = attempts.size(); pending > 0; pending--) {
+                if (finished == null) {
+                    finished = completion.take();
+                }
+                try {
+                    ChatResponse response = finished.get();
+                    winner = finished == attempts.get(0).future ? attempts.get(0) : attempts.get(1);
+                    effectiveTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    (winner.index == 0 ? primaryWinsCounter : hedgeWinsCounter).increment();
+                    return response;
+                } catch (ExecutionException e) {
+                    // 一方失败时继续等待另一方
+                    lastError = e.getCause() instanceof RuntimeException cause ? cause : new RuntimeException(e.getCause());
+                    finished = null;
+                }
+            }
+            throw lastError;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待模型响应时被中断", e);
+        } finally {
+            for (Attempt attempt : attempts) {
+                if (attempt != winner) {
+                    attempt.abandon();
+                }
+            }
+        }
+    }
+
+    @Override
+    public ChatRequestParameters defaultRequestParameters() {
+        return delegate.defaultRequestParameters();
+    }
+
+    @Override
+    public List<ChatModelListener> listeners() {
+        return delegate.listeners();
+    }
+
+    @Override
+    public ModelProvider provider() {
+        return delegate.provider();
+    }
+
+    @Override
+    public Set<Capability> supportedCapabilities() {
+        return delegate.supportedCapabilities();
+    }
+
+    /**
+     * 一次请求中的原始请求（attempt 0）或对冲请求（attempt 1），在自己的子取消令牌下执行
+     */
+    private final class Attempt {
+
+        private final int index;
+        private final long raceStartNanos;
+        private final long startNanos = System.nanoTime();
+        private final CancellationToken token;
+        private final Future<ChatResponse> future;
+        // 延迟只记录一次（完成，或落败时以已等待的时间截断记录）
+        private final AtomicBoolean recorded = new AtomicBoolean();
+
+        private Attempt(int index, long raceStartNanos, CancellationToken parent, ChatRequest chatRequest,
+                        CompletionService<ChatResponse> completion) {
+            this.index = index;
+            this.raceStartNanos = raceStartNanos;
+            this.token = CancellationToken.childOf(parent);
+            this.future = completion.submit(() -> CancellationToken.callWith(token, () -> call(chatRequest)));
+        }
+
+        private ChatResponse call(ChatRequest chatRequest) {
+            ChatResponse response = delegate.chat(chatRequest);
+            recordLatency();
+            return response;
+        }
+
+        /**
+         * 落败：仍在等待上游时以已等待的时间记录延迟（否则最慢的原始请求不会进入延迟统计），并中止上游调用
+         */
+        private void abandon() {
+            if (!future.isDone()) {
+                recordLatency();
+            }
+            token.cancel("hedge-lost");
+            future.cancel(true);
+        }
+
+        private void recordLatency() {
+            if (!recorded.compareAndSet(false, true)) {
+                return;
+            }
+            long now = System.nanoTime();
+            policy.recordLatency(TimeUnit.NANOSECONDS.toMillis(now - startNanos));
+            if (index == 0) {
+                primaryTimer.record(now - raceStartNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.aicodehelper.ai.model;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * 请求对冲指标，说明见 {@link HedgingStreamingChatModel}
+ */
+final class HedgingMetrics {
+
+    private HedgingMetrics() {
+    }
+
+    static Counter event(MeterRegistry meterRegistry, String type, String event) {
+        return Counter.builder("ai.model.hedging")
+                .description("对冲请求的发出情况")
+                .tag("type", type)
+                .tag("event", event)
+                .register(meterRegistry);
+    }
+
+    static Counter wins(MeterRegistry meterRegistry, String type, String attempt) {
+        return Counter.builder("ai.model.hedging.wins")
+                .description("先返回结果的一方（primary 为原始请求，hedge 为对冲请求）")
+                .tag("type", type)
+                .tag("attempt", attempt)
+                .register(meterRegistry);
+    }
+
+    static Timer latency(MeterRegistry meterRegistry, String type, String path) {
+        return Timer.builder("ai.model.hedging.latency")
+                .description("上游延迟（effective 为调用方实际等待的时间，primary 为原始请求自身的延迟）")
+                .tag("type", type)
+                .tag("path", path)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+    }
+}
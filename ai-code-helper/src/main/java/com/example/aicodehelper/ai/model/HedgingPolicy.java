@@ -0,0 +1,82 @@
+package com.example.aicodehelper.ai.model;
+
+import java.util.Arrays;
+
+/**
+ * 请求对冲策略：决定何时发出对冲请求，以及是否还有额外请求的预算
+ *
+ * - 等待时间：最近若干次上游调用延迟的 {@code percentile} 分位数（不低于 {@code minDelay}），
+ * 样本不足时使用 {@code initialDelay}
+ * - 预算：每个请求积累 {@code maxExtraRatio} 个令牌，每次对冲消耗 1 个，
+ * 因此对冲产生的额外请求长期不超过总请求数的 {@code maxExtraRatio}；令牌最多积累 {@link #MAX_BUDGET} 个，
+ * 上游整体变慢时不会一次性放出大量对冲请求
+ */
+public class HedgingPolicy {
+
+    // 样本数达到此值后才按分位数计算等待时间
+    static final int MIN_SAMPLES = 20;
+
+    static final double MAX_BUDGET = 10;
+
+    private final double percentile;
+    private final long minDelayMs;
+    private final long initialDelayMs;
+    private final double maxExtraRatio;
+
+    // 最近的延迟样本（环形缓冲区）
+    private final long[] samples;
+    private int sampleCount;
+    private int nextSample;
+
+    private double budget;
+
+    public HedgingPolicy(ModelHedgingProperties properties) {
+        this.percentile = properties.getPercentile();
+        this.minDelayMs = properties.getMinDelay().toMillis();
+        this.initialDelayMs = properties.getInitialDelay().toMillis();
+        this.maxExtraRatio = properties.getMaxExtraRatio();
+        this.samples = new long[properties.getWindowSize()];
+    }
+
+    /**
+     * 记录一次上游调用的延迟（流式为首个 token 的延迟，非流式为完整响应的延迟）
+     */
+    public synchronized void recordLatency(long millis) {
+        samples[nextSample] = millis;
+        nextSample = (nextSample + 1) % samples.length;
+        sampleCount = Math.min(sampleCount + 1, samples.length);
+    }
+
+    /**
+     * 发出对冲请求前的等待时间（毫秒）
+     */
+    public synchronized long hedgeDelayMillis() {
+        if (sampleCount < MIN_SAMPLES) {
+            return initialDelayMs;
+        }
+        long[] sorted = Arrays.copyOf(samples, sampleCount);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile * sampleCount) - 1;
+        return Math.max(minDelayMs, sorted[Math.max(0, index)]);
+    }
+
+    /**
+     * 每个请求开始时调用，积累对冲预算
+     */
+    public synchronized void onRequest() {
+        budget = Math.min(MAX_BUDGET, budget + maxExtraRatio);
+    }
+
+    /**
+     * 尝试占用一次对冲预算
+     *
+     * @return 预算不足时返回 false，此时不应发出对冲请求
+     */
+    public synchronized boolean tryAcquireHedge() {
+        if (budget < 1) {
+            return false;
+        }
+        budget -= 1;
+        return true;
+    }
+}
@@ -0,0 +1,271 @@
+package com.example.aicodehelper.ai.model;
+
+import com.example.aicodehelper.ai.cancel.CancellationToken;
+import dev.langchain4j.model.ModelProvider;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 请求对冲的 StreamingChatModel 装饰器
+ * 上游在 {@link HedgingPolicy#hedgeDelayMillis()} 内还没有返回首个片段时，再发起一次相同的请求，
+ * 先产生片段的一方胜出，之后只转发胜出方的回调。每个请求在自己的子取消令牌下发出，
+ * 胜出方确定后取消另一方的令牌，由 {@link DashScopeCallCanceller} 中止其上游调用，
+ * 中止引起的错误回调和中止前已在途的回调全部忽略。落败方被中止时以已等待的时间作为其（截断的）首 token 延迟记录，
+ * 否则最慢的原始请求不会出现在延迟分位数和不对冲基线中。
+ *
+ * 指标（type=streaming）：
+ * - ai.model.hedging{event=hedged|budget_exhausted}：发出的对冲请求数 / 因预算不足未发出的次数
+ * - ai.model.hedging.wins{attempt=primary|hedge}：胜出方
+ * - ai.model.hedging.latency{path=effective|primary}：调用方实际看到的首 token 延迟 /
+ * 原始请求自身的首 token 延迟（即不对冲时的延迟），两者的高分位数之差就是对冲带来的改善
+ */
+@Slf4j
+public class HedgingStreamingChatModel implements StreamingChatModel {
+
+    private static final String TYPE = "streaming";
+
+    private final StreamingChatModel delegate;
+    private final HedgingPolicy policy;
+
+    // 对冲计时器
+    private final ScheduledExecutorService scheduler;
+    // 发起对冲请求（上游调用可能阻塞调用线程，不占用计时线程）
+    private final ExecutorService hedgeExecutor;
+
+    private final Counter hedgedCounter;
+    private final Counter budgetExhaustedCounter;
+    private final Counter primaryWinsCounter;
+    private final Counter hedgeWinsCounter;
+    private final Timer effectiveTimer;
+    private final Timer primaryTimer;
+
+    public HedgingStreamingChatModel(StreamingChatModel delegate, HedgingPolicy policy, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.policy = policy;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(daemonThreads("model-hedging-timer"));
+        this.hedgeExecutor = Executors.newCachedThreadPool(daemonThreads("model-hedging"));
+        this.hedgedCounter = HedgingMetrics.event(meterRegistry, TYPE, "hedged");
+        this.budgetExhaustedCounter = HedgingMetrics.event(meterRegistry, TYPE, "budget_exhausted");
+        this.primaryWinsCounter = HedgingMetrics.wins(meterRegistry, TYPE, "primary");
+        this.hedgeWinsCounter = HedgingMetrics.wins(meterRegistry, TYPE, "hedge");
+        this.effectiveTimer = HedgingMetrics.latency(meterRegistry, TYPE, "effective");
+        this.primaryTimer = HedgingMetrics.latency(meterRegistry, TYPE, "primary");
+    }
+
+    @Override
+    public void chat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+        policy.onRequest();
+        Race race = new Race(chatRequest, handler);
+        long delay = policy.hedgeDelayMillis();
+        race.hedgeTask = scheduler.schedule(() -> {
+            if (!race.isUndecided()) {
+                return;
+            }
+            if (!policy.tryAcquireHedge()) {
+                budgetExhaustedCounter.increment();
+                return;
+            }
+            hedgedCounter.increment();
+            log.debug("上游 {} ms 内未返回首个片段，发出对冲请求", delay);
+            hedgeExecutor.execute(() -> race.start(1));
+        }, delay, TimeUnit.MILLISECONDS);
+        race.start(0);
+    }
+
+    @Override
+    public ChatRequestParameters defaultRequestParameters() {
+        return delegate.defaultRequestParameters();
+    }
+
+    @Override
+    public List<ChatModelListener> listeners() {
+        return delegate.listeners();
+    }
+
+    @Override
+    public ModelProvider provider() {
+        return delegate.provider();
+    }
+
+    @Override
+    public Set<Capability> supportedCapabilities() {
+        return delegate.supportedCapabilities();
+    }
+
+    static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * 一次请求中原始请求（attempt 0）和对冲请求（attempt 1）之间的竞争
+     * 所有状态变更和对调用方的回调都在锁内进行
+     */
+    private final class Race {
+
+        private final ChatRequest request;
+        private final StreamingChatResponseHandler handler;
+        // 每个请求各自的取消令牌：调用方取消时两个请求都被中止，胜出方确定后只中止落败的一方
+        private final CancellationToken[] attemptTokens;
+        private final Attempt[] attempts = new Attempt[2];
+        private final long startNanos = System.nanoTime();
+
+        private ScheduledFuture<?> hedgeTask;
+        private int winner = -1;
+        private int started;
+        private int failed;
+        private boolean done;
+
+        private Race(ChatRequest request, StreamingChatResponseHandler handler) {
+            this.request = request;
+            this.handler = handler;
+            CancellationToken token = CancellationToken.current();
+            this.attemptTokens = new CancellationToken[]{CancellationToken.childOf(token), CancellationToken.childOf(token)};
+        }
+
+        synchronized boolean isUndecided() {
+            return winner == -1 && !done;
+        }
+
+        void start(int attempt) {
+            synchronized (this) {
+                // 对冲请求发出前原始请求已胜出时不再发出
+                if (done || winner != -1) {
+                    return;
+                }
+                started++;
+                attempts[attempt] = new Attempt(attempt);
+            }
+            Attempt attemptHandler = attempts[attempt];
+            // 对冲请求在其他线程发出，绑定该请求自己的令牌
+            CancellationToken.runWith(attemptTokens[attempt], () -> {
+                try {
+                    delegate.chat(request, attemptHandler);
+                } catch (RuntimeException e) {
+                    attemptHandler.onError(e);
+                }
+            });
+        }
+
+        /**
+         * 尝试让指定请求成为胜出方
+         *
+         * @return 该请求是（或已经是）胜出方时返回 true
+         */
+        private boolean claim(int attempt) {
+            if (done) {
+                return false;
+            }
+            if (winner == -1) {
+                winner = attempt;
+                hedgeTask.cancel(false);
+                Attempt loser = attempts[1 - attempt];
+                if (loser != null) {
+                    loser.abandon();
+                }
+                attemptTokens[1 - attempt].cancel("hedge-lost");
+                effectiveTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+                (attempt == 0 ? primaryWinsCounter : hedgeWinsCounter).increment();
+            }
+            return winner == attempt;
+        }
+
+        private final class Attempt implements StreamingChatResponseHandler {
+
+            private final int attempt;
+            private final long attemptStartNanos = System.nanoTime();
+            private boolean firstPartial = true;
+            private boolean errored;
+
+            private Attempt(int attempt) {
+                this.attempt = attempt;
+            }
+
+            @Override
+            public void onPartialResponse(String partialResponse) {
+                synchronized (Race.this) {
+                    if (firstPartial) {
+                        firstPartial = false;
+                        recordFirstResponse();
+                    }
+                    if (claim(attempt)) {
+                        handler.onPartialResponse(partialResponse);
+                    }
+                }
+            }
+
+            @Override
+            public void onCompleteResponse(ChatResponse completeResponse) {
+                synchronized (Race.this) {
+                    if (firstPartial) {
+                        // 没有文本片段的响应（如工具调用），以完整响应作为首个响应
+                        firstPartial = false;
+                        recordFirstResponse();
+                    }
+                    if (claim(attempt)) {
+                        done = true;
+                        handler.onCompleteResponse(completeResponse);
+                    }
+                }
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                synchronized (Race.this) {
+                    errored = true;
+                    if (done) {
+                        return;
+                    }
+                    failed++;
+                    // 胜出方出错，或所有已发出的请求都失败时才通知调用方；否则等待另一方
+                    if (winner == attempt || (winner == -1 && failed == started)) {
+                        done = true;
+                        hedgeTask.cancel(false);
+                        handler.onError(error);
+                    }
+                }
+            }
+
+            /**
+             * 落败被中止：还没有响应也没有失败时，以已等待的时间记录延迟
+             */
+            private void abandon() {
+                if (firstPartial && !errored) {
+                    firstPartial = false;
+                    recordFirstResponse();
+                }
+            }
+
+            private void recordFirstResponse() {
+                long now = System.nanoTime();
+                policy.recordLatency(TimeUnit.NANOSECONDS.toMillis(now - attemptStartNanos));
+                if (attempt == 0) {
+                    primaryTimer.record(now - startNanos, TimeUnit.NANOSECONDS);
+                }
+            }
+        }
+    }
+}
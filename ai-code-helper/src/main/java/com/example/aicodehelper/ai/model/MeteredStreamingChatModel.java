@@ -0,0 +1,124 @@
+package com.example.aicodehelper.ai.model;
+
+import com.example.aicodehelper.ai.cancel.CancellationToken;
+import com.example.aicodehelper.ai.listener.ModelBodyLogger;
+import com.example.aicodehelper.ai.listener.ModelMetrics;
+import dev.langchain4j.model.ModelProvider;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.output.TokenUsage;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 记录调用指标的 StreamingChatModel 装饰器
+ * 除 {@link ModelMetrics} 中的通用指标外，还记录首 token 延迟和输出速度；请求和响应内容按采样比例异步记录
+ */
+public class MeteredStreamingChatModel implements StreamingChatModel {
+
+    private final StreamingChatModel delegate;
+    private final String modelName;
+    private final ModelMetrics modelMetrics;
+    private final ModelBodyLogger bodyLogger;
+
+    public MeteredStreamingChatModel(StreamingChatModel delegate, String modelName,
+                                     ModelMetrics modelMetrics, ModelBodyLogger bodyLogger) {
+        this.delegate = delegate;
+        this.modelName = modelName;
+        this.modelMetrics = modelMetrics;
+        this.bodyLogger = bodyLogger;
+    }
+
+    @Override
+    public void chat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+        boolean sampled = bodyLogger.sample();
+        if (sampled) {
+            bodyLogger.log("request", chatRequest);
+        }
+        MeteredHandler metered = new MeteredHandler(ModelMetrics.endpoint(chatRequest), sampled, handler);
+        try {
+            delegate.chat(chatRequest, metered);
+        } catch (RuntimeException e) {
+            metered.onError(e);
+        }
+    }
+
+    @Override
+    public ChatRequestParameters defaultRequestParameters() {
+        return delegate.defaultRequestParameters();
+    }
+
+    @Override
+    public List<ChatModelListener> listeners() {
+        return delegate.listeners();
+    }
+
+    @Override
+    public ModelProvider provider() {
+        return delegate.provider();
+    }
+
+    @Override
+    public Set<Capability> supportedCapabilities() {
+        return delegate.supportedCapabilities();
+    }
+
+    private final class MeteredHandler implements StreamingChatResponseHandler {
+
+        private final String endpoint;
+        private final boolean sampled;
+        private final StreamingChatResponseHandler delegate;
+        private final long start = System.nanoTime();
+        // 回调在 HTTP 客户端线程上执行，在发起调用时记下令牌
+        private final CancellationToken token = CancellationToken.current();
+        private long firstToken;
+
+        private MeteredHandler(String endpoint, boolean sampled, StreamingChatResponseHandler delegate) {
+            this.endpoint = endpoint;
+            this.sampled = sampled;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void onPartialResponse(String partialResponse) {
+            if (firstToken == 0) {
+                firstToken = System.nanoTime();
+                modelMetrics.recordFirstToken(endpoint, modelName, firstToken - start);
+            }
+            delegate.onPartialResponse(partialResponse);
+        }
+
+        @Override
+        public void onCompleteResponse(ChatResponse completeResponse) {
+            long now = System.nanoTime();
+            modelMetrics.recordSuccess(ModelMetrics.TYPE_STREAMING, endpoint, modelName, now - start, completeResponse);
+            TokenUsage usage = completeResponse.tokenUsage();
+            if (firstToken != 0 && usage != null && usage.outputTokenCount() != null) {
+                modelMetrics.recordStreamingRate(endpoint, modelName, usage.outputTokenCount(), now - firstToken);
+            }
+            if (sampled) {
+                bodyLogger.log("response", completeResponse);
+            }
+            delegate.onCompleteResponse(completeResponse);
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            if (CancellationToken.isCancellation(token, error)) {
+                modelMetrics.recordCancelled(ModelMetrics.TYPE_STREAMING, endpoint, modelName, System.nanoTime() - start);
+            } else {
+                modelMetrics.recordError(ModelMetrics.TYPE_STREAMING, endpoint, modelName, System.nanoTime() - start);
+            }
+            if (sampled) {
+                bodyLogger.log("error", error.getMessage());
+            }
+            delegate.onError(error);
+        }
+    }
+}
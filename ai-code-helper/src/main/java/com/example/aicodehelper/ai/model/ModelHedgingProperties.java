@@ -0,0 +1,34 @@
+package com.example.aicodehelper.ai.model;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 请求对冲配置（model-hedging.*），流式和非流式模型各自使用独立的 {@link HedgingPolicy}
+ */
+@Component
+@ConfigurationProperties(prefix = "model-hedging")
+@Data
+public class ModelHedgingProperties {
+
+    // 是否启用（默认关闭）
+    private boolean enabled = false;
+
+    // 上游延迟超过此分位数仍未响应时发出对冲请求
+    private double percentile = 0.95;
+
+    // 对冲等待时间的下限
+    private Duration minDelay = Duration.ofMillis(300);
+
+    // 延迟样本不足时的对冲等待时间
+    private Duration initialDelay = Duration.ofSeconds(2);
+
+    // 对冲产生的额外请求占总请求数的上限
+    private double maxExtraRatio = 0.05;
+
+    // 计算分位数时保留的最近样本数
+    private int windowSize = 200;
+}
@@ -0,0 +1,212 @@
+package com.example.aicodehelper.ai.model;
+
+import dev.langchain4j.model.chat.request.ChatRequest;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 模型路由：为每个请求在主模型、快速模型和降级模型之间选择
+ *
+ * 规则（按顺序）：
+ * 1. 任务在 fast-tasks 中（如意图识别） -> 快速模型
+ * 2. 提示词估算 token 数不超过 fast-max-prompt-tokens 且不含代码 -> 快速模型
+ * 3. 其余请求 -> 主模型；主模型最近调用的 p95 延迟或错误率超出 SLO 时，冷却期内改用降级模型
+ * 调用失败（流式为输出前失败）时由调用方用降级模型重试一次。
+ *
+ * 指标（type=chat|streaming）：
+ * - ai.model.routing{model, reason=task|small_prompt|default|slo_fallback|error_fallback}：路由决策
+ * - ai.model.latency{model}：各模型的延迟（p50/p95/p99）
+ * - ai.model.errors{model}：各模型的调用失败次数
+ */
+@Slf4j
+public class ModelRouter {
+
+    public static final String REASON_TASK = "task";
+    public static final String REASON_SMALL_PROMPT = "small_prompt";
+    public static final String REASON_DEFAULT = "default";
+    public static final String REASON_SLO_FALLBACK = "slo_fallback";
+    public static final String REASON_ERROR_FALLBACK = "error_fallback";
+
+    private final ModelRoutingProperties properties;
+    private final String primaryModel;
+    private final String type;
+    private final MeterRegistry meterRegistry;
+    private final Clock clock;
+
+    private final ModelHealth primaryHealth;
+
+    private final Map<String, Counter> routingCounters = new ConcurrentHashMap<>();
+
+    /**
+     * 一次路由决策
+     *
+     * @param model  选中的模型名
+     * @param reason 选择原因
+     */
+    public record Route(String model, String reason) {
+    }
+
+    public ModelRouter(ModelRoutingProperties properties, String primaryModel, String type,
+                       MeterRegistry meterRegistry, Clock clock) {
+        this.properties = properties;
+        this.primaryModel = primaryModel;
+        this.type = type;
+        this.meterRegistry = meterRegistry;
+        this.clock = clock;
+        this.primaryHealth = new ModelHealth(properties.getWindowSize());
+    }
+
+    public String primaryModel() {
+        return primaryModel;
+    }
+
+    public String fallbackModel() {
+        return properties.getFallbackModel();
+    }
+
+    /**
+     * 为请求选择模型
+     */
+    public Route route(ChatRequest request) {
+        RequestFeatures features = RequestFeatures.of(request);
+        Route route;
+        if (properties.getFastTasks().contains(features.task())) {
+            route = new Route(properties.getFastModel(), REASON_TASK);
+        } else if (!features.hasCode() && features.estimatedTokens() <= properties.getFastMaxPromptTokens()) {
+            route = new Route(properties.getFastModel(), REASON_SMALL_PROMPT);
+        } else if (primaryHealth.inCooldown(clock.millis())) {
+            route = new Route(properties.getFallbackModel(), REASON_SLO_FALLBACK);
+        } else {
+            route = new Route(primaryModel, REASON_DEFAULT);
+        }
+        count(route);
+        log.debug("模型路由：task={}, 估算 {} tokens, 含代码={} -> {}（{}）",
+                features.task(), features.estimatedTokens(), features.hasCode(), route.model(), route.reason());
+        return route;
+    }
+
+    /**
+     * 调用失败后改用降级模型
+     *
+     * @return 降级路由；失败的已经是降级模型时返回 null
+     */
+    public Route fallbackAfterError(Route failed) {
+        if (failed.model().equals(properties.getFallbackModel())) {
+            return null;
+        }
+        Route route = new Route(properties.getFallbackModel(), REASON_ERROR_FALLBACK);
+        count(route);
+        return route;
+    }
+
+    /**
+     * 记录一次调用的结果
+     *
+     * @param model     模型名
+     * @param latencyMs 延迟（失败时为失败前的耗时）
+     * @param error     是否失败
+     */
+    public void record(String model, long latencyMs, boolean error) {
+        if (error) {
+            Counter.builder("ai.model.errors")
+                    .description("模型调用失败次数")
+                    .tag("type", type)
+                    .tag("model", model)
+                    .register(meterRegistry)
+                    .increment();
+        } else {
+            Timer.builder("ai.model.latency")
+                    .description("模型延迟（流式为首 token 延迟）")
+                    .tag("type", type)
+                    .tag("model", model)
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .register(meterRegistry)
+                    .record(latencyMs, TimeUnit.MILLISECONDS);
+        }
+
+        if (model.equals(primaryModel) && primaryHealth.record(latencyMs, error, clock.millis())) {
+            log.warn("主模型 {} 违反 SLO（{}），{} 秒内改用 {}", primaryModel, type,
+                    properties.getCooldown().toSeconds(), properties.getFallbackModel());
+        }
+    }
+
+    private void count(Route route) {
+        routingCounters.computeIfAbsent(route.model() + "|" + route.reason(), key -> Counter.builder("ai.model.routing")
+                .description("模型路由决策")
+                .tag("type", type)
+                .tag("model", route.model())
+                .tag("reason", route.reason())
+                .register(meterRegistry)).increment();
+    }
+
+    /**
+     * 主模型最近调用的延迟和错误统计
+     */
+    private final class ModelHealth {
+
+        private final long[] latencies;
+        private final boolean[] errors;
+        private int count;
+        private int next;
+        private long cooldownUntil;
+
+        private ModelHealth(int windowSize) {
+            this.latencies = new long[windowSize];
+            this.errors = new boolean[windowSize];
+        }
+
+        synchronized boolean inCooldown(long now) {
+            return now < cooldownUntil;
+        }
+
+        /**
+         * @return 本次记录后刚刚进入冷却期时返回 true
+         */
+        synchronized boolean record(long latencyMs, boolean error, long now) {
+            latencies[next] = latencyMs;
+            errors[next] = error;
+            next = (next + 1) % latencies.length;
+            count = Math.min(count + 1, latencies.length);
+
+            if (now < cooldownUntil || count < properties.getMinSamples() || !breached()) {
+                return false;
+            }
+            cooldownUntil = now + properties.getCooldown().toMillis();
+            // 冷却结束后重新统计
+            count = 0;
+            next = 0;
+            return true;
+        }
+
+        private boolean breached() {
+            int errorCount = 0;
+            long[] successLatencies = new long[count];
+            int successCount = 0;
+            for (int i = 0; i < count; i++) {
+                if (errors[i]) {
+                    errorCount++;
+                } else {
+                    successLatencies[successCount++] = latencies[i];
+                }
+            }
+            if ((double) errorCount / count > properties.getSloErrorRate()) {
+                return true;
+            }
+            if (successCount == 0) {
+                return false;
+            }
+            long[] sorted = Arrays.copyOf(successLatencies, successCount);
+            Arrays.sort(sorted);
+            long p95 = sorted[(int) Math.ceil(0.95 * successCount) - 1];
+            return p95 > properties.getSloLatency().toMillis();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.aicodehelper.ai.model;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * 模型路由配置（model-routing.*）
+ * 主模型沿用 langchain4j.community.dashscope.*.model-name，此处配置快速模型和降级模型
+ */
+@Component
+@ConfigurationProperties(prefix = "model-routing")
+@Data
+public class ModelRoutingProperties {
+
+    // 是否启用（默认关闭，所有请求都使用主模型）
+    private boolean enabled = false;
+
+    // 简单请求使用的快速模型
+    private String fastModel = "qwen-turbo";
+
+    // 主模型违反 SLO 或调用失败时使用的降级模型
+    private String fallbackModel = "qwen-plus";
+
+    // 总是使用快速模型的任务（AiCodeHelperService 的方法名，共用 system-prompt.txt 的方法统一为 chat）
+    private List<String> fastTasks = List.of("detectIntent");
+
+    // 提示词估算 token 数不超过此值且不含代码时使用快速模型
+    private int fastMaxPromptTokens = 800;
+
+    // 主模型的延迟 SLO（流式为首 token 延迟，非流式为完整响应延迟）的 p95 上限
+    private Duration sloLatency = Duration.ofSeconds(10);
+
+    // 主模型的错误率上限
+    private double sloErrorRate = 0.2;
+
+    // 计算 SLO 时保留的最近调用数
+    private int windowSize = 50;
+
+    // 样本数达到此值后才判断是否违反 SLO
+    private int minSamples = 10;
+
+    // 违反 SLO 后改用降级模型的时长，之后重新统计并恢复使用主模型
+    private Duration cooldown = Duration.ofSeconds(60);
+}
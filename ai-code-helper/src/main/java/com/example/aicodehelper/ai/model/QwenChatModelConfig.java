@@ -3,13 +3,18 @@ package com.example.aicodehelper.ai.model;
 import dev.langchain4j.community.model.dashscope.QwenChatModel;
 import dev.langchain4j.model.chat.ChatModel;
 import dev.langchain4j.model.chat.listener.ChatModelListener;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.annotation.Resource;
 import lombok.Data;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Clock;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Configuration
 @ConfigurationProperties(prefix = "langchain4j.community.dashscope.chat-model")
@@ -20,15 +25,52 @@ public class QwenChatModelConfig {
 
     private String apiKey;
 
+    // 接口地址（可选，为空时使用 DashScope 默认地址；负载测试时指向本地桩服务）
+    private String baseUrl;
+
     @Resource
     private ChatModelListener chatModelListener;
 
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Resource
+    private ModelHedgingProperties modelHedgingProperties;
+
+    @Resource
+    private ModelRoutingProperties modelRoutingProperties;
+
+    // 是否合并同时到达的相同请求
+    @Value("${model-coalescing.enabled:true}")
+    private boolean coalescingEnabled;
+
+    // 对冲在合并层之内：合并后的一次上游调用最多对冲一次；路由在最内层，对冲请求与原请求使用相同的路由规则
     @Bean
     public ChatModel myQwenChatModel() {
-        return QwenChatModel.builder()
+        ChatModel qwenChatModel = buildModel(modelName);
+        if (modelRoutingProperties.isEnabled()) {
+            Map<String, ChatModel> models = new HashMap<>();
+            models.put(modelName, qwenChatModel);
+            models.computeIfAbsent(modelRoutingProperties.getFastModel(), this::buildModel);
+            models.computeIfAbsent(modelRoutingProperties.getFallbackModel(), this::buildModel);
+            qwenChatModel = new RoutingChatModel(models,
+                    new ModelRouter(modelRoutingProperties, modelName, "chat", meterRegistry, Clock.systemUTC()));
+        }
+        if (modelHedgingProperties.isEnabled()) {
+            qwenChatModel = new HedgingChatModel(qwenChatModel, new HedgingPolicy(modelHedgingProperties), meterRegistry);
+        }
+        return coalescingEnabled ? new CoalescingChatModel(qwenChatModel, meterRegistry) : qwenChatModel;
+    }
+
+    private ChatModel buildModel(String name) {
+        QwenChatModel model = QwenChatModel.builder()
                 .apiKey(apiKey)
-                .modelName(modelName)
+                .baseUrl(baseUrl)
+                .modelName(name)
                 .listeners(List.of(chatModelListener))
                 .build();
+        // 对冲落败的一方通过取消令牌中止上游调用
+        DashScopeCallCanceller.install(model);
+        return model;
     }
-}
\ No newline at end of file
+}
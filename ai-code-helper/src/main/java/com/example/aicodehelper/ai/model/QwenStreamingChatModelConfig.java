@@ -0,0 +1,126 @@
+package com.example.aicodehelper.ai.model;
+
+import com.alibaba.dashscope.protocol.okhttp.OkHttpClientFactory;
+import com.example.aicodehelper.ai.cancel.CancellableStreamingChatModel;
+import com.example.aicodehelper.ai.listener.ModelBodyLogger;
+import com.example.aicodehelper.ai.listener.ModelMetrics;
+import com.example.aicodehelper.ai.trace.StageTracer;
+import com.example.aicodehelper.ai.trace.TracingStreamingChatModel;
+import dev.langchain4j.community.model.dashscope.QwenStreamingChatModel;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.Dispatcher;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Clock;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 流式模型配置
+ * 在 DashScope starter 自动配置的 qwenStreamingChatModel 外依次包装指标记录、模型路由层（可选）、请求对冲层（可选）、请求合并层、
+ * 阶段追踪和取消处理；每个 DashScope 模型都安装 {@link DashScopeCallCanceller}，取消生成时中止上游调用
+ */
+@Slf4j
+@Configuration
+public class QwenStreamingChatModelConfig {
+
+    @Resource
+    private StreamingChatModel qwenStreamingChatModel;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Resource
+    private ModelHedgingProperties modelHedgingProperties;
+
+    @Resource
+    private ModelRoutingProperties modelRoutingProperties;
+
+    @Resource
+    private ModelMetrics modelMetrics;
+
+    @Resource
+    private ModelBodyLogger modelBodyLogger;
+
+    @Resource
+    private StageTracer stageTracer;
+
+    @Value("${langchain4j.community.dashscope.streaming-chat-model.model-name}")
+    private String modelName;
+
+    @Value("${langchain4j.community.dashscope.streaming-chat-model.api-key}")
+    private String apiKey;
+
+    // 接口地址（可选，为空时使用 DashScope 默认地址），与 starter 创建的主模型保持一致
+    @Value("${langchain4j.community.dashscope.streaming-chat-model.base-url:}")
+    private String baseUrl;
+
+    // 是否合并同时到达的相同请求
+    @Value("${model-coalescing.enabled:true}")
+    private boolean coalescingEnabled;
+
+    // 同时进行的上游调用数上限（SDK 共享的 OkHttpClient 默认只有 32，超出的调用在 OkHttp 中排队，首 token 延迟随之增加）
+    @Value("${dashscope.max-concurrent-calls:32}")
+    private int maxConcurrentCalls;
+
+    @Bean
+    public StreamingChatModel myQwenStreamingChatModel() {
+        raiseConcurrencyLimit();
+        DashScopeCallCanceller.install(qwenStreamingChatModel);
+        StreamingChatModel model = metered(qwenStreamingChatModel, modelName);
+        if (modelRoutingProperties.isEnabled()) {
+            Map<String, StreamingChatModel> models = new HashMap<>();
+            models.put(modelName, model);
+            models.computeIfAbsent(modelRoutingProperties.getFastModel(), this::buildModel);
+            models.computeIfAbsent(modelRoutingProperties.getFallbackModel(), this::buildModel);
+            model = new RoutingStreamingChatModel(models,
+                    new ModelRouter(modelRoutingProperties, modelName, "streaming", meterRegistry, Clock.systemUTC()));
+        }
+        if (modelHedgingProperties.isEnabled()) {
+            model = new HedgingStreamingChatModel(model, new HedgingPolicy(modelHedgingProperties), meterRegistry);
+        }
+        if (coalescingEnabled) {
+            model = new CoalescingStreamingChatModel(model, meterRegistry);
+        }
+        // 记录请求中每次模型调用的首 token 和生成耗时
+        model = new TracingStreamingChatModel(model, stageTracer);
+        // 最外层：生成取消后立即结束调用方的流
+        return new CancellableStreamingChatModel(model);
+    }
+
+    /**
+     * 放宽 SDK 共享 OkHttpClient 的并发上限（同步、流式和向量模型共用），只调大不调小（环境变量
+     * DASHSCOPE_MAXIMUM_ASYNC_REQUESTS 设置得更大时以环境变量为准）。
+     * 流式调用期间 OkHttp 一直占用一个调度线程读取响应，上限同时也是这些线程的数量上限。
+     */
+    private void raiseConcurrencyLimit() {
+        Dispatcher dispatcher = OkHttpClientFactory.getOkHttpClient().dispatcher();
+        if (maxConcurrentCalls > dispatcher.getMaxRequests()) {
+            dispatcher.setMaxRequests(maxConcurrentCalls);
+        }
+        if (maxConcurrentCalls > dispatcher.getMaxRequestsPerHost()) {
+            dispatcher.setMaxRequestsPerHost(maxConcurrentCalls);
+        }
+        log.info("DashScope 上游并发调用上限: {}", dispatcher.getMaxRequests());
+    }
+
+    private StreamingChatModel buildModel(String name) {
+        QwenStreamingChatModel model = QwenStreamingChatModel.builder()
+                .apiKey(apiKey)
+                .baseUrl(baseUrl)
+                .modelName(name)
+                .build();
+        DashScopeCallCanceller.install(model);
+        return metered(model, name);
+    }
+
+    // 流式模型的调用指标由装饰器记录（starter 创建的模型不带监听器，监听器也无法得到首 token 延迟）
+    private StreamingChatModel metered(StreamingChatModel model, String name) {
+        return new MeteredStreamingChatModel(model, name, modelMetrics, modelBodyLogger);
+    }
+}
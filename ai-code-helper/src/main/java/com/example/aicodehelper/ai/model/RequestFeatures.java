@@ -0,0 +1,118 @@
+package com.example.aicodehelper.ai.model;
+
+import com.example.aicodehelper.ai.AiCodeHelperService;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 路由时使用的请求特征
+ *
+ * @param task            任务（由系统提示词对应到 AiCodeHelperService 的方法名，共用 system-prompt.txt 的为 chat，无法识别时为 unknown）
+ * @param estimatedTokens 除系统提示词外（同一任务的系统提示词固定不变）的估算 token 数，
+ *                        ASCII 字符按 4 个一个 token，其他字符按 1 个一个 token，偏保守
+ * @param hasCode         最后一条用户消息是否包含代码
+ */
+public record RequestFeatures(String task, int estimatedTokens, boolean hasCode) {
+
+    public static final String TASK_CHAT = "chat";
+    public static final String TASK_UNKNOWN = "unknown";
+
+    // 至少有这么多行以 ; { } 结尾时视为包含代码
+    private static final int CODE_LINES = 3;
+
+    // 系统提示词 -> 任务名
+    private static final Map<String, String> TASKS = loadTasks();
+
+    public static RequestFeatures of(ChatRequest request) {
+        String task = TASK_UNKNOWN;
+        String lastUserText = "";
+        int ascii = 0;
+        int other = 0;
+        for (ChatMessage message : request.messages()) {
+            String text = text(message);
+            if (message instanceof SystemMessage) {
+                task = TASKS.getOrDefault(text.strip(), TASK_UNKNOWN);
+                continue;
+            }
+            if (message instanceof UserMessage) {
+                lastUserText = text;
+            }
+            for (int i = 0; i < text.length(); i++) {
+                if (text.charAt(i) < 128) {
+                    ascii++;
+                } else {
+                    other++;
+                }
+            }
+        }
+        return new RequestFeatures(task, (ascii + 3) / 4 + other, containsCode(lastUserText));
+    }
+
+    static boolean containsCode(String text) {
+        if (text.contains("```")) {
+            return true;
+        }
+        int codeLines = 0;
+        for (String line : text.split("\n")) {
+            String trimmed = line.strip();
+            if (trimmed.endsWith(";") || trimmed.endsWith("{") || trimmed.endsWith("}")) {
+                if (++codeLines >= CODE_LINES) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static String text(ChatMessage message) {
+        String text = switch (message) {
+            case SystemMessage system -> system.text();
+            case UserMessage user -> user.hasSingleText() ? user.singleText() : "";
+            case AiMessage ai -> ai.text();
+            case ToolExecutionResultMessage tool -> tool.text();
+            default -> "";
+        };
+        return text == null ? "" : text;
+    }
+
+    private static Map<String, String> loadTasks() {
+        Map<String, String> tasks = new HashMap<>();
+        Method[] methods = AiCodeHelperService.class.getMethods();
+        Arrays.sort(methods, Comparator.comparing(Method::getName));
+        for (Method method : methods) {
+            dev.langchain4j.service.SystemMessage annotation = method.getAnnotation(dev.langchain4j.service.SystemMessage.class);
+            if (annotation == null) {
+                continue;
+            }
+            if (!annotation.fromResource().isEmpty()) {
+                tasks.putIfAbsent(readResource(annotation.fromResource()).strip(), TASK_CHAT);
+            } else {
+                // 流式和非流式版本使用相同的提示词，按方法名排序后取较短的名称
+                tasks.putIfAbsent(String.join("\n", annotation.value()).strip(), method.getName());
+            }
+        }
+        return tasks;
+    }
+
+    private static String readResource(String path) {
+        try {
+            return new ClassPathResource(path).getContentAsString(StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.aicodehelper.ai.model;
+
+import com.example.aicodehelper.ai.cancel.CancellationToken;
+import dev.langchain4j.model.ModelProvider;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按 {@link ModelRouter} 的决策把请求分发到不同模型的 ChatModel
+ * 选中的模型调用失败时改用降级模型重试一次；因取消（用户取消、对冲落败）而失败时不计入错误，也不重试
+ */
+@Slf4j
+public class RoutingChatModel implements ChatModel {
+
+    // 模型名 -> 模型
+    private final Map<String, ChatModel> models;
+    private final ModelRouter router;
+
+    public RoutingChatModel(Map<String, ChatModel> models, ModelRouter router) {
+        this.models = models;
+        this.router = router;
+    }
+
+    @Override
+    public ChatResponse chat(ChatRequest chatRequest) {
+        ModelRouter.Route route = router.route(chatRequest);
+        try {
+            return call(route, chatRequest);
+        } catch (RuntimeException e) {
+            if (CancellationToken.isCancellation(CancellationToken.current(), e)) {
+                throw e;
+            }
+            ModelRouter.Route fallback = router.fallbackAfterError(route);
+            if (fallback == null) {
+                throw e;
+            }
+            log.warn("模型 {} 调用失败（{}），改用 {} 重试", route.model(), e.getMessage(), fallback.model());
+            return call(fallback, chatRequest);
+        }
+    }
+
+    private ChatResponse call(ModelRouter.Route route, ChatRequest chatRequest) {
+        long start = System.nanoTime();
+        try {
+            ChatResponse response = models.get(route.model()).chat(chatRequest);
+            router.record(route.model(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), false);
+            return response;
+        } catch (RuntimeException e) {
+            if (!CancellationToken.isCancellation(CancellationToken.current(), e)) {
+                router.record(route.model(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), true);
+            }
+            throw e;
+        }
+    }
+
+    private ChatModel primary() {
+        return models.get(router.primaryModel());
+    }
+
+    @Override
+    public ChatRequestParameters defaultRequestParameters() {
+        return primary().defaultRequestParameters();
+    }
+
+    @Override
+    public List<ChatModelListener> listeners() {
+        return primary().listeners();
+    }
+
+    @Override
+    public ModelProvider provider() {
+        return primary().provider();
+    }
+
+    @Override
+    public Set<Capability> supportedCapabilities() {
+        return primary().supportedCapabilities();
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.aicodehelper.ai.model;
+
+import com.example.aicodehelper.ai.cancel.CancellationToken;
+import dev.langchain4j.model.ModelProvider;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按 {@link ModelRouter} 的决策把请求分发到不同模型的 StreamingChatModel
+ * 选中的模型在输出任何内容之前失败时，改用降级模型重试一次；已经开始输出后失败则直接通知调用方。
+ * 因取消（用户取消、对冲落败）而失败时不计入错误，也不重试。
+ */
+@Slf4j
+public class RoutingStreamingChatModel implements StreamingChatModel {
+
+    // 模型名 -> 模型
+    private final Map<String, StreamingChatModel> models;
+    private final ModelRouter router;
+
+    public RoutingStreamingChatModel(Map<String, StreamingChatModel> models, ModelRouter router) {
+        this.models = models;
+        this.router = router;
+    }
+
+    @Override
+    public void chat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+        call(router.route(chatRequest), chatRequest, handler, CancellationToken.current());
+    }
+
+    private void call(ModelRouter.Route route, ChatRequest chatRequest, StreamingChatResponseHandler handler,
+                      CancellationToken token) {
+        RoutedHandler routed = new RoutedHandler(route, chatRequest, handler, token);
+        try {
+            models.get(route.model()).chat(chatRequest, routed);
+        } catch (RuntimeException e) {
+            routed.onError(e);
+        }
+    }
+
+    private StreamingChatModel primary() {
+        return models.get(router.primaryModel());
+    }
+
+    @Override
+    public ChatRequestParameters defaultRequestParameters() {
+        return primary().defaultRequestParameters();
+    }
+
+    @Override
+    public List<ChatModelListener> listeners() {
+        return primary().listeners();
+    }
+
+    @Override
+    public ModelProvider provider() {
+        return primary().provider();
+    }
+
+    @Override
+    public Set<Capability> supportedCapabilities() {
+        return primary().supportedCapabilities();
+    }
+
+    /**
+     * 记录首个响应的延迟，并在输出前失败时切换到降级模型
+     */
+    private final class RoutedHandler implements StreamingChatResponseHandler {
+
+        private final ModelRouter.Route route;
+        private final ChatRequest request;
+        private final StreamingChatResponseHandler delegate;
+        // 调用方的令牌：回调在 HTTP 客户端线程上执行，降级重试时需要重新绑定，使重试的调用也能被中止
+        private final CancellationToken token;
+        private final long start = System.nanoTime();
+        private boolean responded;
+
+        private RoutedHandler(ModelRouter.Route route, ChatRequest request, StreamingChatResponseHandler delegate,
+                              CancellationToken token) {
+            this.route = route;
+            this.request = request;
+            this.delegate = delegate;
+            this.token = token;
+        }
+
+        @Override
+        public void onPartialResponse(String partialResponse) {
+            firstResponse();
+            delegate.onPartialResponse(partialResponse);
+        }
+
+        @Override
+        public void onCompleteResponse(ChatResponse completeResponse) {
+            firstResponse();
+            delegate.onCompleteResponse(completeResponse);
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            if (CancellationToken.isCancellation(token, error)) {
+                delegate.onError(error);
+                return;
+            }
+            router.record(route.model(), elapsedMs(), true);
+            ModelRouter.Route fallback = responded ? null : router.fallbackAfterError(route);
+            if (fallback == null) {
+                delegate.onError(error);
+                return;
+            }
+            log.warn("模型 {} 调用失败（{}），改用 {} 重试", route.model(), error.getMessage(), fallback.model());
+            CancellationToken.runWith(token, () -> call(fallback, request, delegate, token));
+        }
+
+        private void firstResponse() {
+            if (!responded) {
+                responded = true;
+                router.record(route.model(), elapsedMs(), false);
+            }
+        }
+
+        private long elapsedMs() {
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        }
+    }
+}
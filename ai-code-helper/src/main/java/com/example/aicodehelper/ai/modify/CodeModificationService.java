@@ -0,0 +1,288 @@
+package com.example.aicodehelper.ai.modify;
+
+import com.example.aicodehelper.ai.StatelessAiCodeHelperService;
+import com.example.aicodehelper.ai.cache.ResponseCache;
+import com.example.aicodehelper.config.BlockingSchedulers;
+import com.example.aicodehelper.dto.BatchFileResult;
+import com.example.aicodehelper.dto.BatchModifyRequest;
+import com.example.aicodehelper.dto.CodeDiffResult;
+import com.example.aicodehelper.util.DiffUtils;
+import com.example.aicodehelper.util.PatchApplier;
+import com.example.aicodehelper.util.StreamingDiffTracker;
+import dev.langchain4j.model.output.TokenUsage;
+import dev.langchain4j.service.Result;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 代码修改服务
+ * 支持两种输出模式：
+ * - full：模型返回修改后的完整文件（原有方式，输出 token 随文件大小增长）
+ * - patch：模型只返回 SEARCH/REPLACE 编辑块，由服务端应用到原始代码上；
+ * 任意编辑块无法应用时自动回退到 full 模式重新生成
+ *
+ * 两种模式都会记录输出 token 数和耗时（ai.modify.output.tokens / ai.modify.duration，按 mode 区分），
+ * 便于在实际流量中比较。
+ *
+ * 批量修改时各文件相互独立，在有界并发下同时调用模型，按完成顺序返回结果。
+ *
+ * 相同的（模式、文件名、指令、原始代码）直接使用响应缓存中的修改结果，不再调用模型（mode 记为 cached）。
+ */
+@Service
+@Slf4j
+public class CodeModificationService {
+
+    public static final String MODE_FULL = "full";
+    public static final String MODE_PATCH = "patch";
+    public static final String MODE_AUTO = "auto";
+    public static final String MODE_CACHED = "cached";
+
+    // 响应缓存中的接口名
+    private static final String CACHE_ENDPOINT = "modify-code-with-diff";
+
+    // 代码修改都是单轮调用，使用不带会话记忆的 AI 服务
+    @Resource
+    private StatelessAiCodeHelperService statelessAiCodeHelperService;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Resource
+    private ResponseCache responseCache;
+
+    @Resource
+    private BlockingSchedulers blockingSchedulers;
+
+    // auto 模式下，原始代码达到此行数时使用补丁模式
+    @Value("${code-modify.patch-min-lines:80}")
+    private int patchMinLines;
+
+    // 批量修改时同时进行的模型调用数
+    @Value("${code-modify.batch-concurrency:4}")
+    private int batchConcurrency;
+
+    /**
+     * 单次修改的结果和统计
+     *
+     * @param diffResult   差异结果
+     * @param mode         实际使用的模式（full / patch / patch_fallback / cached）
+     * @param outputTokens 模型输出 token 数（无法获取时为 -1）
+     * @param elapsedMs    总耗时（毫秒）
+     */
+    public record Outcome(CodeDiffResult diffResult, String mode, int outputTokens, long elapsedMs) {
+    }
+
+    /**
+     * 修改代码并计算差异
+     *
+     * @param originalCode 原始代码
+     * @param instruction  修改指令
+     * @param fileName     文件名
+     * @param mode         full / patch / auto（null 视为 auto）
+     */
+    public Outcome modify(String originalCode, String instruction, String fileName, String mode) {
+        long start = System.nanoTime();
+        String resolvedMode = resolveMode(originalCode, mode);
+
+        String cacheInput = resolvedMode + "\n" + fileName + "\n" + ResponseCache.normalizeText(instruction)
+                + "\n" + originalCode;
+        String modifiedCode = responseCache.get(CACHE_ENDPOINT, cacheInput);
+        int outputTokens;
+        String usedMode;
+
+        if (modifiedCode != null) {
+            outputTokens = 0;
+            usedMode = MODE_CACHED;
+        } else if (MODE_PATCH.equals(resolvedMode)) {
+            Result<String> patch = statelessAiCodeHelperService.modifyCodeWithPatch(
+                    buildPatchPrompt(originalCode, instruction, fileName));
+            outputTokens = outputTokens(patch);
+            try {
+                List<PatchApplier.Edit> edits = PatchApplier.parse(patch.content());
+                modifiedCode = PatchApplier.apply(originalCode, edits);
+                usedMode = MODE_PATCH;
+                log.info("补丁模式：应用了 {} 个编辑块", edits.size());
+            } catch (PatchApplier.PatchFailedException e) {
+                log.warn("补丁无法应用（{}），回退到整文件生成", e.getMessage());
+                Result<String> full = statelessAiCodeHelperService.modifyCode(
+                        buildModificationPrompt(originalCode, instruction, fileName));
+                modifiedCode = DiffUtils.cleanCode(full.content());
+                int fullTokens = outputTokens(full);
+                outputTokens = outputTokens < 0 || fullTokens < 0 ? -1 : outputTokens + fullTokens;
+                usedMode = MODE_PATCH + "_fallback";
+            }
+        } else {
+            Result<String> full = statelessAiCodeHelperService.modifyCode(
+                    buildModificationPrompt(originalCode, instruction, fileName));
+            modifiedCode = DiffUtils.cleanCode(full.content());
+            outputTokens = outputTokens(full);
+            usedMode = MODE_FULL;
+        }
+        if (!MODE_CACHED.equals(usedMode)) {
+            responseCache.put(CACHE_ENDPOINT, cacheInput, modifiedCode);
+        }
+
+        CodeDiffResult diffResult = DiffUtils.compareCode(originalCode, modifiedCode, instruction, fileName);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        record(usedMode, outputTokens, elapsedMs);
+
+        log.info("代码修改完成：mode={}, 原始代码 {} 行, 输出 {} tokens, 耗时 {} ms",
+                usedMode, originalCode.split("\n").length, outputTokens, elapsedMs);
+        return new Outcome(diffResult, usedMode, outputTokens, elapsedMs);
+    }
+
+    /**
+     * 流式修改代码：模型边生成边与原始代码比较
+     * 先逐个发出已稳定的差异块（CodeDiffResult.DiffHunk，仅供预览），最后发出完整比较得到的差异结果（CodeDiffResult，以此为准）
+     *
+     * @param originalCode 原始代码
+     * @param instruction  修改指令
+     * @param fileName     文件名
+     */
+    public Flux<Object> modifyStream(String originalCode, String instruction, String fileName) {
+        String prompt = buildModificationPrompt(originalCode, instruction, fileName);
+
+        // 每个请求独立的跟踪器；Flux 的信号是串行的，无需额外同步
+        return Flux.defer(() -> {
+            StreamingDiffTracker tracker = new StreamingDiffTracker(originalCode);
+
+            Flux<Object> hunks = statelessAiCodeHelperService.modifyCodeStream(prompt)
+                    .concatMapIterable(tracker::accept);
+
+            Flux<Object> tail = Flux.defer(() -> {
+                List<Object> items = new ArrayList<>(tracker.finish());
+                items.add(tracker.toResult(instruction, fileName));
+                return Flux.fromIterable(items);
+            });
+
+            return hunks.concatWith(tail);
+        });
+    }
+
+    /**
+     * 批量修改多个文件
+     * 最多 batchConcurrency 个文件同时修改（阻塞的模型调用放在 BlockingSchedulers 的 model 线程池上），
+     * 每个文件完成后立即发出结果，整体耗时接近最慢的单个文件。
+     * 单个文件失败只影响它自己的结果，不会中断其他文件。
+     *
+     * @param request 批量修改请求
+     * @return 按完成顺序发出的各文件结果
+     */
+    public Flux<BatchFileResult> modifyBatch(BatchModifyRequest request) {
+        List<BatchModifyRequest.FileItem> files = request.getFiles() == null ? List.of() : request.getFiles();
+        log.info("批量代码修改：{} 个文件，并发数 {}", files.size(), batchConcurrency);
+
+        return Flux.range(0, files.size())
+                .flatMap(index -> Mono.fromCallable(() -> modifyFile(index, files.get(index), request))
+                        .subscribeOn(blockingSchedulers.model()),
+                        Math.max(1, batchConcurrency));
+    }
+
+    private BatchFileResult modifyFile(int index, BatchModifyRequest.FileItem file, BatchModifyRequest request) {
+        long start = System.nanoTime();
+        String fileName = file.getFileName() == null ? "" : file.getFileName();
+        String instruction = file.getInstruction() != null && !file.getInstruction().trim().isEmpty()
+                ? file.getInstruction() : request.getInstruction();
+        String mode = file.getMode() != null ? file.getMode() : request.getMode();
+
+        CodeDiffResult errorResult = new CodeDiffResult();
+        errorResult.setFileName(fileName);
+        if (file.getOriginalCode() == null || file.getOriginalCode().trim().isEmpty()) {
+            errorResult.setError("原始代码不能为空");
+            return new BatchFileResult(index, null, 0, errorResult);
+        }
+        if (instruction == null || instruction.trim().isEmpty()) {
+            errorResult.setError("修改指令不能为空");
+            return new BatchFileResult(index, null, 0, errorResult);
+        }
+
+        try {
+            Outcome outcome = modify(file.getOriginalCode(), instruction, fileName, mode);
+            return new BatchFileResult(index, outcome.mode(), outcome.elapsedMs(), outcome.diffResult());
+        } catch (Exception e) {
+            log.warn("批量修改中文件 {} 失败: {}", fileName, e.getMessage());
+            errorResult.setError("代码修改失败: " + e.getMessage());
+            return new BatchFileResult(index, null,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), errorResult);
+        }
+    }
+
+    /**
+     * 构建代码修改提示词（整文件模式）
+     */
+    public String buildModificationPrompt(String originalCode, String instruction, String fileName) {
+        StringBuilder prompt = new StringBuilder();
+        prompt.append("请根据以下指令修改代码。\n\n");
+
+        if (fileName != null && !fileName.isEmpty()) {
+            prompt.append("文件名: ").append(fileName).append("\n\n");
+        }
+
+        prompt.append("原始代码:\n```\n").append(originalCode).append("\n```\n\n");
+        prompt.append("修改指令: ").append(instruction).append("\n\n");
+        prompt.append("请直接返回修改后的完整代码，不要添加任何解释。");
+        prompt.append("代码必须可以直接使用，保持原有的格式和缩进。");
+        prompt.append("如果代码用```java包裹，请去掉包裹标记，只返回纯代码。");
+
+        return prompt.toString();
+    }
+
+    /**
+     * 构建代码修改提示词（补丁模式）
+     */
+    public String buildPatchPrompt(String originalCode, String instruction, String fileName) {
+        StringBuilder prompt = new StringBuilder();
+        prompt.append("请根据以下指令修改代码。\n\n");
+
+        if (fileName != null && !fileName.isEmpty()) {
+            prompt.append("文件名: ").append(fileName).append("\n\n");
+        }
+
+        prompt.append("原始代码:\n```\n").append(originalCode).append("\n```\n\n");
+        prompt.append("修改指令: ").append(instruction).append("\n\n");
+        prompt.append("请只返回 SEARCH/REPLACE 编辑块，不要返回完整代码。");
+
+        return prompt.toString();
+    }
+
+    private String resolveMode(String originalCode, String mode) {
+        if (MODE_FULL.equalsIgnoreCase(mode)) {
+            return MODE_FULL;
+        }
+        if (MODE_PATCH.equalsIgnoreCase(mode)) {
+            return MODE_PATCH;
+        }
+        return originalCode.split("\n").length >= patchMinLines ? MODE_PATCH : MODE_FULL;
+    }
+
+    private void record(String mode, int outputTokens, long elapsedMs) {
+        Timer.builder("ai.modify.duration")
+                .description("代码修改耗时")
+                .tag("mode", mode)
+                .register(meterRegistry)
+                .record(elapsedMs, TimeUnit.MILLISECONDS);
+        if (outputTokens >= 0) {
+            DistributionSummary.builder("ai.modify.output.tokens")
+                    .description("代码修改的模型输出 token 数")
+                    .tag("mode", mode)
+                    .register(meterRegistry)
+                    .record(outputTokens);
+        }
+    }
+
+    private static int outputTokens(Result<String> result) {
+        TokenUsage usage = result.tokenUsage();
+        return usage != null && usage.outputTokenCount() != null ? usage.outputTokenCount() : -1;
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.aicodehelper.ai.rag;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.data.segment.TextSegmentTransformer;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 文档片段转换器
+ * 为了提高搜索质量，在每个 TextSegment 前加上文档名称、页码和类型（如“[Lec-01.pdf - 第3页 - PDF文档]”），
+ * 并只保留检索结果标注来源需要的 metadata
+ */
+public class DocumentSegmentTransformer implements TextSegmentTransformer {
+
+    @Override
+    public TextSegment transform(TextSegment textSegment) {
+        // 获取原始metadata
+        Metadata originalMetadata = textSegment.metadata();
+
+        // 从metadata中获取信息（使用getString方法）
+        String fileName = originalMetadata.getString("file_name");
+        if (fileName == null || fileName.isEmpty()) {
+            fileName = "未知文件";
+        }
+
+        String pageNumber = originalMetadata.getString("page_number");
+        String fileType = getFileTypeFromName(fileName);
+
+        // 构建增强的文本，包含文档信息
+        StringBuilder enhancedText = new StringBuilder();
+        enhancedText.append("[").append(fileName);
+        if (pageNumber != null && !pageNumber.isEmpty()) {
+            enhancedText.append(" - 第").append(pageNumber).append("页");
+        }
+        enhancedText.append(" - ").append(fileType).append("]\n");
+        enhancedText.append(textSegment.text());
+
+        // 创建新的Metadata对象：从原始metadata创建Map，然后更新
+        Map<String, String> metadataMap = new HashMap<>();
+
+        // 复制原有metadata中的值（如果存在）
+        if (originalMetadata.getString("file_name") != null) {
+            metadataMap.put("file_name", originalMetadata.getString("file_name"));
+        }
+        if (originalMetadata.getString("file_path") != null) {
+            metadataMap.put("file_path", originalMetadata.getString("file_path"));
+        }
+        if (originalMetadata.getString("page_number") != null) {
+            metadataMap.put("page_number", originalMetadata.getString("page_number"));
+        }
+        if (originalMetadata.getString("total_pages") != null) {
+            metadataMap.put("total_pages", originalMetadata.getString("total_pages"));
+        }
+
+        // 确保必要的字段存在（覆盖或添加）
+        metadataMap.put("file_name", fileName);
+        if (pageNumber != null && !pageNumber.isEmpty()) {
+            metadataMap.put("page_number", pageNumber);
+        }
+
+        // 使用Map创建新的Metadata对象
+        Metadata newMetadata = Metadata.from(metadataMap);
+
+        return TextSegment.from(enhancedText.toString(), newMetadata);
+    }
+
+    /**
+     * 从文件名中提取文件类型描述
+     */
+    static String getFileTypeFromName(String fileName) {
+        if (fileName == null)
+            return "未知";
+
+        int lastDotIndex = fileName.lastIndexOf('.');
+        if (lastDotIndex == -1 || lastDotIndex == fileName.length() - 1) {
+            return "未知文件";
+        }
+
+        String extension = fileName.substring(lastDotIndex + 1).toLowerCase();
+        return switch (extension) {
+            case "pdf" -> "PDF文档";
+            case "doc", "docx" -> "Word文档";
+            case "xls", "xlsx" -> "Excel表格";
+            case "ppt", "pptx" -> "PowerPoint演示文稿";
+            case "md", "markdown" -> "Markdown文档";
+            case "txt" -> "文本文件";
+            case "html", "htm" -> "HTML网页";
+            case "java" -> "Java源代码";
+            case "py" -> "Python源代码";
+            case "js" -> "JavaScript源代码";
+            default -> extension.toUpperCase() + "文件";
+        };
+    }
+}
@@ -1,5 +1,10 @@
 package com.example.aicodehelper.ai.rag;
 
+import com.example.aicodehelper.ai.cancel.CancellableContentRetriever;
+import com.example.aicodehelper.ai.trace.StageTracer;
+import com.example.aicodehelper.ai.trace.TracingContentRetriever;
+import com.example.aicodehelper.ai.trace.TracingEmbeddingModel;
+import com.example.aicodehelper.ai.trace.TracingEmbeddingStore;
 import dev.langchain4j.data.document.Document;
 import dev.langchain4j.data.document.Metadata;
 import dev.langchain4j.data.document.splitter.DocumentByParagraphSplitter;
@@ -14,9 +19,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import java.util.List;
 
@@ -34,9 +37,15 @@ public class RagConfig {
     @Resource
     private EnhancedDocumentLoader enhancedDocumentLoader;
 
+    @Resource
+    private StageTracer stageTracer;
+
     @Value("${rag.documents-path}")
     private String documentsPath;
 
+    // 当前加载的文档指纹（contentRetriever 初始化后可用，响应缓存版本据此区分知识库内容）
+    private volatile String documentFingerprint = "";
+
     @Bean
     public ContentRetriever contentRetriever() {
         // ------ 增强版RAG ------
@@ -47,6 +56,7 @@ public class RagConfig {
         log.info("支持的格式: {}", enhancedDocumentLoader.getSupportedFormats());
 
         List<Document> documents = enhancedDocumentLoader.loadAllDocuments(this.documentsPath);
+        documentFingerprint = calculateDocumentFingerprint(documents);
 
         if (documents.isEmpty()) {
             log.warn("未找到任何文档，RAG功能将无法正常工作");
@@ -61,56 +71,7 @@ public class RagConfig {
         EmbeddingStoreIngestor ingestor = EmbeddingStoreIngestor.builder()
                 .documentSplitter(paragraphSplitter)
                 // 为了提高搜索质量，为每个 TextSegment 添加文档名称、类型和页码信息
-                .textSegmentTransformer(textSegment -> {
-                    // 获取原始metadata
-                    Metadata originalMetadata = textSegment.metadata();
-
-                    // 从metadata中获取信息（使用getString方法）
-                    String fileName = originalMetadata.getString("file_name");
-                    if (fileName == null || fileName.isEmpty()) {
-                        fileName = "未知文件";
-                    }
-
-                    String pageNumber = originalMetadata.getString("page_number");
-                    String fileType = getFileTypeFromName(fileName);
-
-                    // 构建增强的文本，包含文档信息
-                    StringBuilder enhancedText = new StringBuilder();
-                    enhancedText.append("[").append(fileName);
-                    if (pageNumber != null && !pageNumber.isEmpty()) {
-                        enhancedText.append(" - 第").append(pageNumber).append("页");
-                    }
-                    enhancedText.append(" - ").append(fileType).append("]\n");
-                    enhancedText.append(textSegment.text());
-
-                    // 创建新的Metadata对象：从原始metadata创建Map，然后更新
-                    Map<String, String> metadataMap = new HashMap<>();
-
-                    // 复制原有metadata中的值（如果存在）
-                    if (originalMetadata.getString("file_name") != null) {
-                        metadataMap.put("file_name", originalMetadata.getString("file_name"));
-                    }
-                    if (originalMetadata.getString("file_path") != null) {
-                        metadataMap.put("file_path", originalMetadata.getString("file_path"));
-                    }
-                    if (originalMetadata.getString("page_number") != null) {
-                        metadataMap.put("page_number", originalMetadata.getString("page_number"));
-                    }
-                    if (originalMetadata.getString("total_pages") != null) {
-                        metadataMap.put("total_pages", originalMetadata.getString("total_pages"));
-                    }
-
-                    // 确保必要的字段存在（覆盖或添加）
-                    metadataMap.put("file_name", fileName);
-                    if (pageNumber != null && !pageNumber.isEmpty()) {
-                        metadataMap.put("page_number", pageNumber);
-                    }
-
-                    // 使用Map创建新的Metadata对象
-                    Metadata newMetadata = Metadata.from(metadataMap);
-
-                    return TextSegment.from(enhancedText.toString(), newMetadata);
-                })
+                .textSegmentTransformer(new DocumentSegmentTransformer())
                 // 使用指定的向量模型
                 .embeddingModel(qwenEmbeddingModel)
                 .embeddingStore(embeddingStore)
@@ -173,18 +134,26 @@ public class RagConfig {
             }
         }
 
-        // 4. 自定义内容查询器
-        ContentRetriever contentRetriever = EmbeddingStoreContentRetriever.builder()
-                .embeddingStore(embeddingStore)
-                .embeddingModel(qwenEmbeddingModel)
-                .maxResults(5) // 最多 5 个检索结果
-                .minScore(0.75) // 过滤掉分数小于 0.75 的结果
-                .build();
+        // 4. 自定义内容查询器（分别记录查询向量化和向量检索耗时，生成已取消时不再检索）
+        ContentRetriever contentRetriever = new CancellableContentRetriever(new TracingContentRetriever(
+                EmbeddingStoreContentRetriever.builder()
+                        .embeddingStore(new TracingEmbeddingStore<>(embeddingStore, stageTracer))
+                        .embeddingModel(new TracingEmbeddingModel(qwenEmbeddingModel, stageTracer))
+                        .maxResults(5) // 最多 5 个检索结果
+                        .minScore(0.75) // 过滤掉分数小于 0.75 的结果
+                        .build(), stageTracer));
 
         log.info("RAG系统初始化完成，支持页码引用");
         return contentRetriever;
     }
 
+    /**
+     * 当前加载的文档指纹（文件名和文档长度），在 contentRetriever 初始化之前为空串
+     */
+    public String getDocumentFingerprint() {
+        return documentFingerprint;
+    }
+
     /**
      * 检查是否需要重新向量化
      * 通过对比文档指纹（文件名、大小、修改时间）来判断
@@ -257,32 +226,4 @@ public class RagConfig {
             log.warn("保存文档指纹失败（不影响功能）: {}", e.getMessage());
         }
     }
-
-    /**
-     * 从文件名中提取文件类型描述
-     */
-    private String getFileTypeFromName(String fileName) {
-        if (fileName == null)
-            return "未知";
-
-        int lastDotIndex = fileName.lastIndexOf('.');
-        if (lastDotIndex == -1 || lastDotIndex == fileName.length() - 1) {
-            return "未知文件";
-        }
-
-        String extension = fileName.substring(lastDotIndex + 1).toLowerCase();
-        return switch (extension) {
-            case "pdf" -> "PDF文档";
-            case "doc", "docx" -> "Word文档";
-            case "xls", "xlsx" -> "Excel表格";
-            case "ppt", "pptx" -> "PowerPoint演示文稿";
-            case "md", "markdown" -> "Markdown文档";
-            case "txt" -> "文本文件";
-            case "html", "htm" -> "HTML网页";
-            case "java" -> "Java源代码";
-            case "py" -> "Python源代码";
-            case "js" -> "JavaScript源代码";
-            default -> extension.toUpperCase() + "文件";
-        };
-    }
-}
\ No newline at end of file
+}
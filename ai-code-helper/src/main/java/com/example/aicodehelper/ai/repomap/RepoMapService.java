@@ -0,0 +1,513 @@
+package com.example.aicodehelper.ai.repomap;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 项目仓库地图服务
+ * 为学生项目生成紧凑的结构概览（目录树 + 顶层Java类型 + public方法签名），
+ * 按引用次数排序并截断到token预算内，在对话开始时直接提供给模型，
+ * 减少模型为了解项目结构而进行的探索性工具调用。
+ *
+ * 缓存按项目根目录保存，刷新时只重新解析 mtime/大小 发生变化的文件。
+ * 项目索引和各会话的发送状态都按最近最少使用淘汰；遍历目录时限制深度和条目数（项目根目录由客户端提供）。
+ */
+@Component
+@Slf4j
+public class RepoMapService {
+
+    // 需要跳过的目录名
+    private static final Set<String> IGNORED_DIRS = Set.of("target", "build", "node_modules", "out");
+
+    // 两次刷新之间的最小间隔（毫秒），避免每轮对话都遍历文件系统
+    private static final long REFRESH_INTERVAL_MS = 5_000;
+
+    // 遍历项目目录的最大深度、最多访问的条目数（目录和文件）、最多索引的Java文件数
+    private static final int MAX_WALK_DEPTH = 20;
+    private static final int MAX_WALK_ENTRIES = 20_000;
+    private static final int MAX_INDEXED_FILES = 2_000;
+
+    // 单个文件最多列出的方法签名数
+    private static final int MAX_SIGNATURES_PER_FILE = 12;
+
+    // 同一会话中，地图在多少轮对话后重新提供（防止被会话记忆窗口挤出）
+    private static final int RESEND_EVERY_TURNS = 3;
+
+    private static final Pattern TYPE_DECLARATION = Pattern.compile(
+            "^\\s*((?:public|protected|private|abstract|final|static|sealed|non-sealed|strictfp)\\s+)*"
+                    + "(class|interface|enum|record|@interface)\\s+(\\w+)");
+
+    private static final Pattern PUBLIC_MEMBER = Pattern.compile("^\\s*public\\s+[^=;]*\\(");
+
+    private static final Pattern IDENTIFIER = Pattern.compile("\\b[A-Z]\\w*\\b");
+
+    @Value("${repo-map.enabled:true}")
+    private boolean enabled;
+
+    @Value("${repo-map.token-budget:1500}")
+    private int tokenBudget;
+
+    @Value("${repo-map.max-projects:16}")
+    private int maxProjects;
+
+    @Value("${repo-map.max-conversations:1000}")
+    private int maxConversations;
+
+    // 项目根目录 -> 索引（访问顺序，用于LRU淘汰，由自身保护）
+    private final Map<String, ProjectIndex> indexes = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ProjectIndex> eldest) {
+            return size() > maxProjects;
+        }
+    };
+
+    // 会话ID -> 已发送的地图状态（访问顺序，用于LRU淘汰，由自身保护）
+    private final Map<Integer, SentState> sentStates = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, SentState> eldest) {
+            return size() > maxConversations;
+        }
+    };
+
+    /**
+     * 如果该会话尚未收到地图、地图已变化或距上次发送已过若干轮，返回地图文本，否则返回 null
+     *
+     * @param memoryId    会话ID
+     * @param projectPath 项目根目录
+     */
+    public String getMapIfNeeded(int memoryId, String projectPath) {
+        if (!enabled || projectPath == null || projectPath.trim().isEmpty()) {
+            return null;
+        }
+
+        String map = getRepoMap(projectPath);
+        if (map == null || map.isEmpty()) {
+            return null;
+        }
+
+        SentState state;
+        synchronized (sentStates) {
+            state = sentStates.compute(memoryId, (id, previous) -> {
+                if (previous == null || previous.mapHash != map.hashCode()
+                        || previous.turnsSinceSent + 1 >= RESEND_EVERY_TURNS) {
+                    return new SentState(map.hashCode(), 0, true);
+                }
+                return new SentState(previous.mapHash, previous.turnsSinceSent + 1, false);
+            });
+        }
+
+        return state.sendNow ? map : null;
+    }
+
+    /**
+     * 获取项目的仓库地图（必要时增量刷新）
+     *
+     * @param projectPath 项目根目录
+     * @return 地图文本，目录不存在时返回 null
+     */
+    public String getRepoMap(String projectPath) {
+        Path root = Paths.get(projectPath).toAbsolutePath().normalize();
+        if (!Files.isDirectory(root)) {
+            return null;
+        }
+
+        ProjectIndex index;
+        synchronized (indexes) {
+            index = indexes.computeIfAbsent(root.toString(), key -> new ProjectIndex(root));
+        }
+        synchronized (index) {
+            long now = System.currentTimeMillis();
+            if (index.rendered == null || now - index.lastRefresh >= REFRESH_INTERVAL_MS) {
+                long start = now;
+                boolean changed = index.refresh();
+                if (changed || index.rendered == null) {
+                    index.rendered = render(index, tokenBudget);
+                }
+                index.lastRefresh = System.currentTimeMillis();
+                log.debug("仓库地图刷新: {} ({} 个文件, 重新解析 {} 个, 耗时 {} ms)",
+                        root, index.files.size(), index.lastParsedCount, index.lastRefresh - start);
+            }
+            return index.rendered;
+        }
+    }
+
+    /**
+     * 渲染地图：目录树 + 按排名排序的文件摘要，截断到 token 预算
+     */
+    static String render(ProjectIndex index, int tokenBudget) {
+        int charBudget = tokenBudget * 3; // 粗略估计：代码文本约 3 个字符 1 个 token
+
+        StringBuilder out = new StringBuilder();
+        out.append("目录结构:\n");
+        for (String dir : index.directories()) {
+            if (out.length() > charBudget / 4) {
+                out.append("  ...\n");
+                break;
+            }
+            out.append("  ").append(dir.isEmpty() ? "/" : dir + "/").append('\n');
+        }
+
+        List<FileEntry> ranked = rank(index);
+        out.append("\n主要类型（按被引用次数排序）:\n");
+
+        int omitted = 0;
+        for (FileEntry entry : ranked) {
+            String block = entry.render();
+            if (out.length() + block.length() > charBudget) {
+                omitted++;
+                continue;
+            }
+            out.append(block);
+        }
+        if (omitted > 0) {
+            out.append("... 另有 ").append(omitted).append(" 个文件未列出，可使用 listProjectTree 查看\n");
+        }
+        if (index.truncated) {
+            out.append("... 项目过大，只索引了部分文件，可使用 listProjectTree 查看\n");
+        }
+        return out.toString();
+    }
+
+    /**
+     * 按被其他文件引用的次数排序，主代码优先于测试代码
+     */
+    static List<FileEntry> rank(ProjectIndex index) {
+        Map<String, Integer> references = new HashMap<>();
+        for (FileEntry entry : index.files.values()) {
+            for (String identifier : entry.identifiers) {
+                references.merge(identifier, 1, Integer::sum);
+            }
+        }
+
+        List<FileEntry> entries = new ArrayList<>(index.files.values());
+        entries.removeIf(entry -> entry.types.isEmpty());
+        for (FileEntry entry : entries) {
+            int score = 0;
+            for (String type : entry.types) {
+                score += references.getOrDefault(type.substring(type.lastIndexOf(' ') + 1), 0);
+            }
+            if (entry.path.contains("/test/")) {
+                score -= 1000;
+            }
+            entry.score = score;
+        }
+        entries.sort(Comparator.comparingInt((FileEntry e) -> e.score).reversed()
+                .thenComparing(e -> e.path));
+        return entries;
+    }
+
+    /**
+     * 解析单个Java文件的顶层类型和public成员签名
+     */
+    static FileEntry parse(String relativePath, List<String> lines) {
+        FileEntry entry = new FileEntry(relativePath);
+        int depth = 0;
+        boolean inBlockComment = false;
+
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            String code = stripComments(line, inBlockComment);
+            inBlockComment = endsInBlockComment(line, inBlockComment);
+
+            if (depth == 0) {
+                Matcher type = TYPE_DECLARATION.matcher(code);
+                if (type.find()) {
+                    entry.types.add(type.group(2) + " " + type.group(3));
+                }
+            } else if (depth == 1 && entry.signatures.size() < MAX_SIGNATURES_PER_FILE
+                    && PUBLIC_MEMBER.matcher(code).find()) {
+                entry.signatures.add(readSignature(lines, i));
+            }
+
+            Matcher identifiers = IDENTIFIER.matcher(code);
+            while (identifiers.find()) {
+                entry.identifiers.add(identifiers.group());
+            }
+
+            depth += braceDelta(code);
+            if (depth < 0) {
+                depth = 0;
+            }
+        }
+
+        // 自身声明的类型不算作对外引用
+        for (String type : entry.types) {
+            entry.identifiers.remove(type.substring(type.lastIndexOf(' ') + 1));
+        }
+        return entry;
+    }
+
+    /**
+     * 读取方法签名（可能跨多行），去掉方法体
+     */
+    private static String readSignature(List<String> lines, int start) {
+        StringBuilder signature = new StringBuilder();
+        for (int i = start; i < lines.size() && i < start + 5; i++) {
+            String line = lines.get(i).trim();
+            int end = indexOfAny(line, '{', ';');
+            if (end >= 0) {
+                signature.append(line, 0, end);
+                break;
+            }
+            signature.append(line).append(' ');
+        }
+        return signature.toString().replaceAll("\\s+", " ").trim();
+    }
+
+    private static int indexOfAny(String text, char a, char b) {
+        int ia = text.indexOf(a);
+        int ib = text.indexOf(b);
+        if (ia < 0) return ib;
+        if (ib < 0) return ia;
+        return Math.min(ia, ib);
+    }
+
+    /**
+     * 计算一行代码中的花括号增量（忽略字符串和字符字面量中的括号）
+     */
+    private static int braceDelta(String code) {
+        int delta = 0;
+        boolean inString = false;
+        char quote = 0;
+        for (int i = 0; i < code.length(); i++) {
+            char c = code.charAt(i);
+            if (inString) {
+                if (c == '\\') {
+                    i++;
+                } else if (c == quote) {
+                    inString = false;
+                }
+            } else if (c == '"' || c == '\'') {
+                inString = true;
+                quote = c;
+            } else if (c == '{') {
+                delta++;
+            } else if (c == '}') {
+                delta--;
+            }
+        }
+        return delta;
+    }
+
+    private static String stripComments(String line, boolean inBlockComment) {
+        String code = line;
+        if (inBlockComment) {
+            int end = code.indexOf("*/");
+            if (end < 0) {
+                return "";
+            }
+            code = code.substring(end + 2);
+        }
+        code = code.replaceAll("/\\*.*?\\*/", "");
+        int blockStart = code.indexOf("/*");
+        if (blockStart >= 0) {
+            code = code.substring(0, blockStart);
+        }
+        int lineComment = code.indexOf("//");
+        if (lineComment >= 0) {
+            code = code.substring(0, lineComment);
+        }
+        return code;
+    }
+
+    private static boolean endsInBlockComment(String line, boolean inBlockComment) {
+        String rest = line;
+        boolean inside = inBlockComment;
+        while (true) {
+            if (inside) {
+                int end = rest.indexOf("*/");
+                if (end < 0) return true;
+                rest = rest.substring(end + 2);
+                inside = false;
+            } else {
+                int start = rest.indexOf("/*");
+                int lineComment = rest.indexOf("//");
+                if (start < 0 || (lineComment >= 0 && lineComment < start)) return false;
+                rest = rest.substring(start + 2);
+                inside = true;
+            }
+        }
+    }
+
+    /**
+     * 单个项目的索引
+     */
+    static class ProjectIndex {
+        final Path root;
+        final int maxDepth;
+        final int maxEntries;
+        final int maxFiles;
+        final Map<String, FileEntry> files = new HashMap<>();
+        String rendered;
+        long lastRefresh;
+        int lastParsedCount;
+        // 最近一次遍历是否因深度或条目数上限而不完整
+        boolean truncated;
+
+        ProjectIndex(Path root) {
+            this(root, MAX_WALK_DEPTH, MAX_WALK_ENTRIES, MAX_INDEXED_FILES);
+        }
+
+        ProjectIndex(Path root, int maxDepth, int maxEntries, int maxFiles) {
+            this.root = root;
+            this.maxDepth = maxDepth;
+            this.maxEntries = maxEntries;
+            this.maxFiles = maxFiles;
+        }
+
+        /**
+         * 增量刷新：只解析新增或 mtime/大小 变化的文件，移除已删除的文件
+         *
+         * @return 索引是否发生变化
+         */
+        boolean refresh() {
+            Map<String, BasicFileAttributes> current = new HashMap<>();
+            int[] visited = {0};
+            truncated = false;
+            try {
+                Files.walkFileTree(root, Set.of(), maxDepth, new SimpleFileVisitor<>() {
+                    @Override
+                    public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                        String name = dir.getFileName() == null ? "" : dir.getFileName().toString();
+                        if (!dir.equals(root) && (name.startsWith(".") || IGNORED_DIRS.contains(name))) {
+                            return FileVisitResult.SKIP_SUBTREE;
+                        }
+                        return countEntry();
+                    }
+
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                        if (attrs.isDirectory()) {
+                            // 超过最大深度的目录以文件形式访问，其中的文件不会被索引
+                            truncated = true;
+                            return countEntry();
+                        }
+                        if (file.getFileName().toString().endsWith(".java")) {
+                            if (current.size() >= maxFiles) {
+                                truncated = true;
+                                return FileVisitResult.TERMINATE;
+                            }
+                            current.put(root.relativize(file).toString().replace('\\', '/'), attrs);
+                        }
+                        return countEntry();
+                    }
+
+                    private FileVisitResult countEntry() {
+                        if (++visited[0] >= maxEntries) {
+                            truncated = true;
+                            return FileVisitResult.TERMINATE;
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            } catch (IOException e) {
+                log.warn("遍历项目目录失败: {}", e.getMessage());
+            }
+
+            boolean changed = files.keySet().retainAll(current.keySet());
+            int parsed = 0;
+            for (Map.Entry<String, BasicFileAttributes> file : current.entrySet()) {
+                long mtime = file.getValue().lastModifiedTime().toMillis();
+                long size = file.getValue().size();
+                FileEntry existing = files.get(file.getKey());
+                if (existing != null && existing.mtime == mtime && existing.size == size) {
+                    continue;
+                }
+                try {
+                    FileEntry entry = parse(file.getKey(), readLines(root.resolve(file.getKey())));
+                    entry.mtime = mtime;
+                    entry.size = size;
+                    files.put(file.getKey(), entry);
+                    parsed++;
+                    changed = true;
+                } catch (IOException e) {
+                    // 跳过无法读取的文件
+                    files.remove(file.getKey());
+                }
+            }
+            lastParsedCount = parsed;
+            return changed;
+        }
+
+        /**
+         * 按UTF-8读取文件；不是合法UTF-8的文件（例如GBK编码的代码）把无法解码的字节替换为 U+FFFD，
+         * 类型和方法签名通常是ASCII，仍能解析出来，且之后按 mtime/大小 判断无需重新读取
+         */
+        private static List<String> readLines(Path file) throws IOException {
+            try {
+                return Files.readAllLines(file);
+            } catch (CharacterCodingException e) {
+                log.debug("文件不是UTF-8编码，按替换字符解析: {}", file);
+                return new String(Files.readAllBytes(file), StandardCharsets.UTF_8).lines().toList();
+            }
+        }
+
+        /**
+         * 包含Java文件的目录列表（已排序）
+         */
+        Set<String> directories() {
+            Set<String> dirs = new TreeSet<>();
+            for (String path : files.keySet()) {
+                int slash = path.lastIndexOf('/');
+                dirs.add(slash < 0 ? "" : path.substring(0, slash));
+            }
+            return dirs;
+        }
+    }
+
+    /**
+     * 单个文件的摘要
+     */
+    static class FileEntry {
+        final String path;
+        final List<String> types = new ArrayList<>();
+        final List<String> signatures = new ArrayList<>();
+        final Set<String> identifiers = new HashSet<>();
+        long mtime;
+        long size;
+        int score;
+
+        FileEntry(String path) {
+            this.path = path;
+        }
+
+        String render() {
+            StringBuilder block = new StringBuilder();
+            block.append(path).append(": ").append(String.join(", ", types)).append('\n');
+            for (String signature : signatures) {
+                block.append("    ").append(signature).append('\n');
+            }
+            return block.toString();
+        }
+    }
+
+    private record SentState(int mapHash, int turnsSinceSent, boolean sendNow) {
+    }
+}
@@ -0,0 +1,527 @@
+package com.example.aicodehelper.ai.stream;
+
+import com.example.aicodehelper.ai.cancel.CancellationToken;
+import com.example.aicodehelper.ai.cancel.GenerationCancelledException;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.output.TokenUsage;
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.content.ContentMetadata;
+import dev.langchain4j.service.tool.ToolExecution;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.codec.ServerSentEvent;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.scheduler.Scheduler;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * /chat 的流式事件协议
+ * 模型回调（任意线程）写入本对象，由本对象按客户端的接收速度转换为 SSE 事件：
+ * - event: delta   {"seq":1,"text":"..."}                         回答文本片段（可包含换行，JSON 转义后不会破坏 SSE 分帧）
+ * - event: tool    {"seq":2,"name":"...","arguments":"...","resultChars":123}   模型调用了一次工具
+ * - event: sources {"seq":3,"sources":[{"file":"...","page":"3","score":0.82}]} RAG 检索到的来源
+ * - event: done    {"seq":9,"finishReason":"STOP","inputTokens":..,"outputTokens":..}  正常结束
+ *                  {"seq":9,"finishReason":"CANCELLED","reason":"client"}              生成被取消
+ * - event: error   {"seq":9,"status":"error","error":"..."}       出错结束
+ * 每个事件的 id 为 "流ID:seq"（流ID即请求关联ID），seq 递增；连接空闲时发送 ":heartbeat" 注释。
+ *
+ * 文本片段先攒在缓冲区中，攒够 flush-chars 个字符或最早的片段等待超过 flush-interval 时合成一个 delta 事件，
+ * 避免每个 token 一次写出和刷新。
+ *
+ * 断线续传：事件写入重放缓冲区，模型生成与客户端连接无关；连接断开后模型继续生成，
+ * 客户端在 resume-timeout 内带 Last-Event-ID 重新连接（{@link #resume}）即可从该事件之后继续接收。
+ * 同一个流同时只有一个连接，新连接会结束旧连接。流结束且 resume-timeout 内没有连接时丢弃。
+ *
+ * 断开即取消：回答未结束而客户端超过 disconnect-cancel-timeout 没有重新连接时，取消本次生成（中止上游模型调用），
+ * 流被丢弃时同样取消；取消后以 finishReason 为 CANCELLED 的 done 事件结束。
+ *
+ * 慢客户端策略：客户端来不及接收时，积压的多个 delta 事件在发送时合并为一个（id 和 seq 取最后一个），
+ * 客户端随后收到更大的片段；重放缓冲区的文本超过 max-buffered-chars 个字符时先丢弃已发出的事件，
+ * 仍然超过则丢弃整个流并结束连接（客户端收不到 done 事件，据此得知回答不完整）；
+ * 有事件待发送但客户端超过 stall-timeout 没有接收时只结束该连接（多半是网络已断开），客户端仍可续传。
+ */
+@Slf4j
+public class ChatEventStream {
+
+    public static final String DELTA = "delta";
+    public static final String TOOL = "tool";
+    public static final String SOURCES = "sources";
+    public static final String DONE = "done";
+    public static final String ERROR = "error";
+
+    private static final ServerSentEvent<Object> HEARTBEAT = ServerSentEvent.builder().comment("heartbeat").build();
+
+    private final String streamId;
+    private final CancellationToken token;
+    private final ChatStreamProperties properties;
+    private final Scheduler scheduler;
+    private final LongSupplier nanoClock;
+    private final Consumer<String> onStall;
+    private final Consumer<ChatEventStream> onClose;
+
+    // 以下字段均由 lock 保护（不用 synchronized：持有锁时会调用下游回调，在虚拟线程上持有监视器阻塞会占住载体线程）
+    private final ReentrantLock lock = new ReentrantLock();
+    private final StringBuilder pendingText = new StringBuilder();
+    private long pendingSince;
+    // 重放缓冲区：seq 连续递增的事件
+    private final List<Entry> replay = new ArrayList<>();
+    private int replayChars;
+    private long seq;
+    // 最近一个连接已发出的最后一个 seq，之前的事件可以从重放缓冲区丢弃
+    private long delivered;
+    private boolean finished;
+    private boolean closed;
+    private Connection connection;
+    private long detachedSince;
+    private Disposable ticker;
+
+    /**
+     * @param streamId   流ID（请求关联ID，用作事件 id 的前缀，可为 null）
+     * @param token      本次生成的取消令牌（可为 null）
+     * @param properties 合并、心跳、慢客户端和续传参数
+     * @param scheduler  执行定时检查的调度器
+     * @param nanoClock  单调时钟（纳秒）
+     * @param onStall    判定客户端卡住时回调，参数为原因（buffer 或 timeout）
+     * @param onClose    流被丢弃（不能再续传）时回调
+     */
+    public ChatEventStream(String streamId, CancellationToken token, ChatStreamProperties properties, Scheduler scheduler,
+                           LongSupplier nanoClock, Consumer<String> onStall, Consumer<ChatEventStream> onClose) {
+        this.streamId = streamId;
+        this.token = token;
+        this.properties = properties;
+        this.scheduler = scheduler;
+        this.nanoClock = nanoClock;
+        this.onStall = onStall;
+        this.onClose = onClose;
+    }
+
+    public String getStreamId() {
+        return streamId;
+    }
+
+    /**
+     * 首个连接的事件流；订阅时执行 start（启动模型调用，模型回调写入本对象）
+     */
+    public Flux<ServerSentEvent<Object>> events(Runnable start) {
+        return Flux.create(emitter -> {
+            if (!connect(emitter, 0)) {
+                return;
+            }
+
+            long period = properties.getFlushInterval().toNanos();
+            Disposable task = scheduler.schedulePeriodically(this::tick, period, period, TimeUnit.NANOSECONDS);
+            lock.lock();
+            try {
+                if (closed) {
+                    task.dispose();
+                } else {
+                    ticker = task;
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                start.run();
+            } catch (RuntimeException e) {
+                error(e);
+            }
+        });
+    }
+
+    /**
+     * 续传：从 seq 为 afterSeq 的事件之后继续接收；对应事件已不在重放缓冲区时只返回一个 error 事件
+     */
+    public Flux<ServerSentEvent<Object>> resume(long afterSeq) {
+        return Flux.create(emitter -> connect(emitter, afterSeq));
+    }
+
+    /**
+     * 无法续传时返回的 error 事件（没有 seq 和 id）
+     */
+    public static ServerSentEvent<Object> expiredEvent() {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("status", "error");
+        data.put("error", "回答已过期，无法继续接收，请重新提问");
+        data.put("resumable", false);
+        return ServerSentEvent.<Object>builder(data).event(ERROR).build();
+    }
+
+    /**
+     * 模型输出的文本片段
+     */
+    public void delta(String text) {
+        if (text == null || text.isEmpty()) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (finished || closed) {
+                return;
+            }
+            if (pendingText.isEmpty()) {
+                pendingSince = nanoClock.getAsLong();
+            }
+            pendingText.append(text);
+            if (pendingText.length() >= properties.getFlushChars()) {
+                flushPending();
+            }
+            drain();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 模型调用了一次工具
+     */
+    public void toolExecuted(ToolExecution execution) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("name", execution.request().name());
+        data.put("arguments", execution.request().arguments());
+        data.put("resultChars", execution.result() == null ? 0 : execution.result().length());
+        enqueue(TOOL, data, false);
+    }
+
+    /**
+     * RAG 检索到的内容（同一文件同一页只保留得分最高的一条）
+     */
+    public void retrieved(List<Content> contents) {
+        Map<String, Map<String, Object>> sources = new LinkedHashMap<>();
+        for (Content content : contents) {
+            Metadata metadata = content.textSegment().metadata();
+            String file = metadata.getString("file_name");
+            String page = metadata.getString("page_number");
+            Object score = content.metadata().get(ContentMetadata.SCORE);
+
+            Map<String, Object> source = new LinkedHashMap<>();
+            source.put("file", file != null ? file : "未知文件");
+            if (page != null) {
+                source.put("page", page);
+            }
+            if (score instanceof Number number) {
+                source.put("score", Math.round(number.doubleValue() * 1000) / 1000.0);
+            }
+            sources.merge(file + "#" + page, source, (a, b) -> score(a) >= score(b) ? a : b);
+        }
+        if (!sources.isEmpty()) {
+            enqueue(SOURCES, Map.of("sources", new ArrayList<>(sources.values())), false);
+        }
+    }
+
+    /**
+     * 模型正常结束
+     */
+    public void complete(ChatResponse response) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        if (response != null && response.finishReason() != null) {
+            data.put("finishReason", response.finishReason().name());
+        }
+        TokenUsage usage = response != null ? response.tokenUsage() : null;
+        if (usage != null) {
+            data.put("inputTokens", usage.inputTokenCount());
+            data.put("outputTokens", usage.outputTokenCount());
+        }
+        enqueue(DONE, data, true);
+    }
+
+    /**
+     * 模型调用出错；生成被取消时以 CANCELLED 结束
+     */
+    public void error(Throwable error) {
+        if (error instanceof GenerationCancelledException cancelled) {
+            Map<String, Object> data = new LinkedHashMap<>();
+            data.put("finishReason", "CANCELLED");
+            data.put("reason", cancelled.getReason());
+            enqueue(DONE, data, true);
+            return;
+        }
+        log.warn("流式对话失败 [{}]: {}", streamId, error.getMessage());
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("status", "error");
+        data.put("error", error.getMessage() != null ? error.getMessage() : error.getClass().getSimpleName());
+        enqueue(ERROR, data, true);
+    }
+
+    /**
+     * 定时检查：到期的文本片段、心跳、卡住的客户端、断开的客户端和过期的流
+     */
+    void tick() {
+        boolean cancel = false;
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            long now = nanoClock.getAsLong();
+            if (!pendingText.isEmpty() && now - pendingSince >= properties.getFlushInterval().toNanos()) {
+                flushPending();
+            }
+            drain();
+            if (closed) {
+                return;
+            }
+            Connection current = connection;
+            if (current == null) {
+                if (now - detachedSince >= properties.getResumeTimeout().toNanos()) {
+                    log.debug("流 [{}] 超过 {} 没有连接，丢弃", streamId, properties.getResumeTimeout());
+                    close();
+                } else if (!finished && token != null && !token.isCancelled()
+                        && now - detachedSince >= properties.getDisconnectCancelTimeout().toNanos()) {
+                    log.info("客户端超过 {} 没有重新连接，取消生成 [{}]", properties.getDisconnectCancelTimeout(), streamId);
+                    cancel = true;
+                }
+            } else if (current.blocked && now - current.blockedSince >= properties.getStallTimeout().toNanos()) {
+                stall("timeout");
+            } else if (!current.blocked && pendingText.isEmpty() && current.sink.requestedFromDownstream() > 0
+                    && now - current.lastEmitted >= properties.getHeartbeatInterval().toNanos()) {
+                current.lastEmitted = now;
+                current.sink.next(HEARTBEAT);
+            }
+        } finally {
+            lock.unlock();
+        }
+        // 取消动作（中止上游调用）在锁外执行，模型回调随后以 CANCELLED 结束本流
+        if (cancel) {
+            token.cancel("disconnect");
+        }
+    }
+
+    /**
+     * 把连接接到本流上，从 afterSeq 之后开始发送；流已丢弃或事件已不在重放缓冲区时发出 expiredEvent 并结束
+     */
+    private boolean connect(FluxSink<ServerSentEvent<Object>> emitter, long afterSeq) {
+        lock.lock();
+        try {
+            long firstRetained = replay.isEmpty() ? seq + 1 : replay.get(0).seq();
+            if (closed || afterSeq > seq || afterSeq < firstRetained - 1) {
+                emitter.next(expiredEvent());
+                emitter.complete();
+                return false;
+            }
+
+            Connection previous = connection;
+            Connection current = new Connection(emitter, afterSeq, nanoClock.getAsLong());
+            connection = current;
+            delivered = afterSeq;
+            if (previous != null) {
+                // 旧连接多半已经断开，只是服务端还没有察觉
+                previous.sink.complete();
+            }
+            emitter.onRequest(n -> drain());
+            // 完成、出错和客户端断开都会触发
+            emitter.onDispose(() -> detach(current));
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void detach(Connection closing) {
+        lock.lock();
+        try {
+            if (connection == closing) {
+                connection = null;
+                detachedSince = nanoClock.getAsLong();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void enqueue(String type, Map<String, Object> data, boolean last) {
+        lock.lock();
+        try {
+            if (finished || closed) {
+                return;
+            }
+            // 先写入之前的文本，保持事件顺序
+            flushPending();
+            if (closed) {
+                return;
+            }
+            append(new Entry(++seq, type, data, null));
+            finished = last;
+            drain();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 把缓冲的文本写入重放缓冲区
+     */
+    private void flushPending() {
+        if (pendingText.isEmpty()) {
+            return;
+        }
+        Entry entry = new Entry(++seq, DELTA, null, pendingText.toString());
+        pendingText.setLength(0);
+        append(entry);
+    }
+
+    /**
+     * 写入重放缓冲区；超过上限时先丢弃已发出的事件，仍然超过则丢弃整个流
+     */
+    private void append(Entry entry) {
+        replay.add(entry);
+        replayChars += entry.chars();
+        if (replayChars <= properties.getMaxBufferedChars()) {
+            return;
+        }
+        int evict = 0;
+        while (evict < replay.size() && replayChars > properties.getMaxBufferedChars() && replay.get(evict).seq() <= delivered) {
+            replayChars -= replay.get(evict).chars();
+            evict++;
+        }
+        replay.subList(0, evict).clear();
+        if (replayChars > properties.getMaxBufferedChars()) {
+            stall("buffer");
+        }
+    }
+
+    /**
+     * 按客户端的请求量发出事件；已收到 done/error 且全部发出时结束连接
+     */
+    private void drain() {
+        lock.lock();
+        try {
+            Connection current = connection;
+            if (current == null || closed) {
+                return;
+            }
+            while (current.sink.requestedFromDownstream() > 0) {
+                ServerSentEvent<Object> event = nextEvent(current);
+                if (event == null) {
+                    break;
+                }
+                current.lastEmitted = nanoClock.getAsLong();
+                current.sink.next(event);
+            }
+            if (current.cursor >= seq) {
+                current.blocked = false;
+                if (finished) {
+                    detach(current);
+                    current.sink.complete();
+                }
+            } else if (!current.blocked) {
+                current.blocked = true;
+                current.blockedSince = nanoClock.getAsLong();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 连接的下一个事件；连续的多个 delta 事件合并为一个
+     */
+    private ServerSentEvent<Object> nextEvent(Connection current) {
+        if (replay.isEmpty() || current.cursor >= seq) {
+            return null;
+        }
+        int index = (int) (current.cursor + 1 - replay.get(0).seq());
+        Entry entry = replay.get(index);
+        Map<String, Object> data = new LinkedHashMap<>();
+        if (entry.text() != null) {
+            StringBuilder text = new StringBuilder(entry.text());
+            while (index + 1 < replay.size() && replay.get(index + 1).text() != null) {
+                entry = replay.get(++index);
+                text.append(entry.text());
+            }
+            data.put("seq", entry.seq());
+            data.put("text", text.toString());
+        } else {
+            data.put("seq", entry.seq());
+            data.putAll(entry.data());
+        }
+        current.cursor = entry.seq();
+        delivered = entry.seq();
+        return ServerSentEvent.<Object>builder(data)
+                .id(streamId != null ? streamId + ":" + entry.seq() : String.valueOf(entry.seq()))
+                .event(entry.type())
+                .build();
+    }
+
+    /**
+     * 客户端接收过慢：timeout 只结束当前连接（仍可续传），buffer 丢弃整个流
+     */
+    private void stall(String reason) {
+        log.warn("客户端接收过慢 [{}]：{}，重放缓冲区 {} 个事件、{} 个字符",
+                streamId, "buffer".equals(reason) ? "积压超过上限，丢弃回答" : "长时间未接收，断开连接", replay.size(), replayChars);
+        onStall.accept(reason);
+        if ("buffer".equals(reason)) {
+            close();
+            return;
+        }
+        Connection current = connection;
+        detach(current);
+        current.sink.complete();
+    }
+
+    /**
+     * 丢弃本流：不再接收模型回调，不能再续传；回答未结束时取消生成
+     */
+    private void close() {
+        boolean unfinished = !finished;
+        closed = true;
+        finished = true;
+        replay.clear();
+        replayChars = 0;
+        pendingText.setLength(0);
+        if (ticker != null) {
+            ticker.dispose();
+        }
+        Connection current = connection;
+        connection = null;
+        if (current != null) {
+            current.sink.complete();
+        }
+        onClose.accept(this);
+        if (unfinished && token != null) {
+            token.cancel("discarded");
+        }
+    }
+
+    private static double score(Map<String, Object> source) {
+        return source.get("score") instanceof Number number ? number.doubleValue() : 0;
+    }
+
+    /**
+     * 重放缓冲区中的事件；delta 事件只有 text，其他事件只有 data（数量少且体积小，不计入 max-buffered-chars）
+     */
+    private record Entry(long seq, String type, Map<String, Object> data, String text) {
+
+        int chars() {
+            return text != null ? text.length() : 0;
+        }
+    }
+
+    /**
+     * 一个客户端连接
+     */
+    private static final class Connection {
+        final FluxSink<ServerSentEvent<Object>> sink;
+        // 已发给该连接的最后一个 seq
+        long cursor;
+        long lastEmitted;
+        boolean blocked;
+        long blockedSince;
+
+        Connection(FluxSink<ServerSentEvent<Object>> sink, long cursor, long now) {
+            this.sink = sink;
+            this.cursor = cursor;
+            this.lastEmitted = now;
+        }
+    }
+}
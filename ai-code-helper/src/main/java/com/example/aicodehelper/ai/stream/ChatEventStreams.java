@@ -0,0 +1,82 @@
+package com.example.aicodehelper.ai.stream;
+
+import com.example.aicodehelper.ai.cancel.CancellationToken;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 创建和查找 /chat 的流式事件协议对象（每个请求一个，按会话ID和流ID登记，供断线续传查找）
+ */
+@Slf4j
+@Component
+public class ChatEventStreams {
+
+    @Resource
+    private ChatStreamProperties chatStreamProperties;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    // "会话ID/流ID" -> 流；流被丢弃时自动移除
+    private final Map<String, ChatEventStream> streams = new ConcurrentHashMap<>();
+
+    /**
+     * @param memoryId 会话ID
+     * @param streamId 流ID（请求关联ID，事件 id 的前缀）
+     * @param token    本次生成的取消令牌（客户端断开过久或流被丢弃时取消）
+     */
+    public ChatEventStream create(int memoryId, String streamId, CancellationToken token) {
+        String key = key(memoryId, streamId);
+        ChatEventStream stream = new ChatEventStream(streamId, token, chatStreamProperties, Schedulers.parallel(),
+                System::nanoTime,
+                reason -> Counter.builder("ai.chat.stream.stalled")
+                        .tag("reason", reason)
+                        .description("因客户端接收过慢而结束的 /chat 流式响应数")
+                        .register(meterRegistry)
+                        .increment(),
+                closed -> streams.remove(key, closed));
+        streams.put(key, stream);
+        return stream;
+    }
+
+    /**
+     * 按 Last-Event-ID（"流ID:seq"）续传；流已丢弃、不属于该会话或格式不合法时只返回一个 error 事件
+     */
+    public Flux<ServerSentEvent<Object>> resume(int memoryId, String lastEventId) {
+        int separator = lastEventId.lastIndexOf(':');
+        ChatEventStream stream = separator > 0 ? streams.get(key(memoryId, lastEventId.substring(0, separator))) : null;
+        long afterSeq = separator > 0 ? parseSeq(lastEventId.substring(separator + 1)) : -1;
+        Counter.builder("ai.chat.stream.resumes")
+                .tag("outcome", stream != null && afterSeq >= 0 ? "found" : "not-found")
+                .description("/chat 断线续传次数")
+                .register(meterRegistry)
+                .increment();
+        if (stream == null || afterSeq < 0) {
+            log.info("无法续传 [{}]：流不存在或已过期", lastEventId);
+            return Flux.just(ChatEventStream.expiredEvent());
+        }
+        log.info("续传 [{}]", lastEventId);
+        return stream.resume(afterSeq);
+    }
+
+    private static long parseSeq(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static String key(int memoryId, String streamId) {
+        return memoryId + "/" + streamId;
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.aicodehelper.ai.stream;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * /chat 流式响应配置（chat-stream.*），见 {@link ChatEventStream}
+ */
+@Component
+@ConfigurationProperties(prefix = "chat-stream")
+@Data
+public class ChatStreamProperties {
+
+    // 文本片段最多攒这么久就发送
+    private Duration flushInterval = Duration.ofMillis(50);
+
+    // 攒够这么多字符立即发送
+    private int flushChars = 512;
+
+    // 连接空闲（没有任何事件）这么久时发送心跳注释，防止代理或客户端读超时
+    private Duration heartbeatInterval = Duration.ofSeconds(15);
+
+    // 每个流的重放缓冲区最多保存的文本字符数（已发出的事件先被丢弃），仍然超过时丢弃整个流
+    private int maxBufferedChars = 256 * 1024;
+
+    // 有事件待发送但客户端这么久没有接收任何事件时断开
+    private Duration stallTimeout = Duration.ofSeconds(30);
+
+    // 连接断开（或回答结束）后保留流供 Last-Event-ID 续传的时长
+    private Duration resumeTimeout = Duration.ofSeconds(60);
+
+    // 回答未结束而连接断开这么久没有续传时取消生成（中止上游模型调用），应小于 resumeTimeout
+    private Duration disconnectCancelTimeout = Duration.ofSeconds(15);
+}
@@ -1,18 +1,33 @@
 package com.example.aicodehelper.ai.tools;
 
+import com.example.aicodehelper.ai.cancel.CancellationToken;
+import com.example.aicodehelper.ai.trace.StageTracer;
+import com.example.aicodehelper.util.StructuredTasks;
 import dev.langchain4j.agent.tool.P;
 import dev.langchain4j.agent.tool.Tool;
+import dev.langchain4j.agent.tool.ToolMemoryId;
+import dev.langchain4j.service.memory.ChatMemoryService;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 /**
  * 文件读取工具 - 让AI能够自主读取项目代码
@@ -21,19 +36,73 @@ import java.util.stream.Stream;
  * 1. 列出项目目录结构
  * 2. 读取指定文件的内容
  * 3. 在项目中搜索包含特定文本的文件
+ * 4. 批量工具：递归列出目录树、一次读取多个文件/行范围（服务端并行执行，减少模型往返次数）
+ *
+ * 所有工具结果按会话缓存（见 {@link ToolResultCache}），相关文件的 mtime/大小 不变时直接复用；
+ * 不带会话记忆的调用不缓存。
  */
 @Slf4j
 public class FileReaderTool {
 
+    // 需要跳过的目录名
+    private static final Set<String> IGNORED_NAMES = Set.of("target", "build", "node_modules", "out");
+
+    // 目录树最大深度、最多条目数
+    private static final int MAX_TREE_DEPTH = 6;
+    private static final int MAX_TREE_ENTRIES = 300;
+
+    // 批量读取：单次最多文件数、输出总字符上限
+    private static final int MAX_BATCH_FILES = 10;
+    private static final int MAX_BATCH_OUTPUT_CHARS = 120_000;
+
+    // 单文件大小上限（KB）
+    private static final long MAX_FILE_SIZE_KB = 500;
+
+    // 批量读取、搜索时同时读取的文件数上限（每个文件一个虚拟线程）
+    private static final int MAX_PARALLEL_READS = 16;
+
+    // 搜索和目录指纹遍历项目的最大深度、最多条目数（超出时搜索只覆盖部分文件，指纹不再用于缓存校验）
+    private static final int MAX_WALK_DEPTH = 20;
+    private static final int MAX_WALK_ENTRIES = 20_000;
+
     private String projectRootPath;
 
+    // 按会话缓存工具结果（可为 null，表示不缓存）
+    private final ToolResultCache resultCache;
+
+    // 记录工具调用耗时（可为 null，表示不记录）
+    private final StageTracer tracer;
+
     /**
      * 构造函数
      * 
      * @param projectRootPath 项目根目录路径
      */
     public FileReaderTool(String projectRootPath) {
+        this(projectRootPath, null);
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param projectRootPath 项目根目录路径
+     * @param resultCache     工具结果缓存
+     */
+    public FileReaderTool(String projectRootPath, ToolResultCache resultCache) {
+        this(projectRootPath, resultCache, null);
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param projectRootPath 项目根目录路径
+     * @param resultCache     工具结果缓存
+     * @param tracer          请求阶段追踪
+     */
+    public FileReaderTool(String projectRootPath, ToolResultCache resultCache, StageTracer tracer) {
         this.projectRootPath = projectRootPath;
+        this.resultCache = resultCache;
+        this.tracer = tracer;
         log.info("FileReaderTool initialized with project root: {}", projectRootPath);
     }
 
@@ -57,7 +126,14 @@ public class FileReaderTool {
             Input should be a relative path from the project root (e.g., "src/main/java", "src/main/resources").
             Leave empty to list the root directory.
             """)
-    public String listProjectFiles(@P(value = "relative path from project root") String relativePath) {
+    public String listProjectFiles(@ToolMemoryId Object memoryId,
+                                   @P(value = "relative path from project root") String relativePath) {
+        return cached(memoryId, "listProjectFiles", String.valueOf(relativePath),
+                () -> treeFingerprint(resolve(relativePath), 1, List.of()),
+                () -> doListProjectFiles(relativePath));
+    }
+
+    private String doListProjectFiles(String relativePath) {
         try {
             // 如果 relativePath 为 null 或空，使用项目根目录
             String targetPath = (relativePath == null || relativePath.trim().isEmpty())
@@ -88,10 +164,7 @@ public class FileReaderTool {
 
             for (File file : files) {
                 // 跳过隐藏文件和特定目录
-                if (file.getName().startsWith(".") ||
-                        file.getName().equals("target") ||
-                        file.getName().equals("build") ||
-                        file.getName().equals("node_modules")) {
+                if (isIgnored(file.getName())) {
                     continue;
                 }
 
@@ -130,46 +203,142 @@ public class FileReaderTool {
             Input should be a relative file path from the project root.
             The output will include line numbers for easy reference.
             """)
-    public String readProjectFile(@P(value = "relative file path from project root") String filePath) {
-        try {
-            Path fullPath = Paths.get(projectRootPath, filePath);
-            File file = fullPath.toFile();
+    public String readProjectFile(@ToolMemoryId Object memoryId,
+                                  @P(value = "relative file path from project root") String filePath) {
+        long start = System.currentTimeMillis();
+        String result = cached(memoryId, "readProjectFile", filePath,
+                () -> fileFingerprint(filePath),
+                () -> readFileRange(filePath, 0, 0));
+        log.debug("readProjectFile({}) 耗时 {} ms", filePath, System.currentTimeMillis() - start);
+        return result;
+    }
 
-            if (!file.exists()) {
-                return "❌ 文件不存在: " + filePath;
-            }
+    /**
+     * 递归列出目录树（一次调用代替多次 listProjectFiles）
+     *
+     * @param relativePath 相对于项目根目录的起始路径，留空表示根目录
+     * @param maxDepth     最大递归深度（1-6）
+     * @param extensions   逗号分隔的扩展名过滤（例如：".java,.xml"），留空则列出所有文件
+     * @return 缩进格式的目录树
+     */
+    @Tool(name = "listProjectTree", value = """
+            Lists the project directory tree recursively in ONE call, up to the given depth.
+            Prefer this over calling listProjectFiles repeatedly when exploring the project structure.
+            relativePath: start directory relative to the project root, leave empty for the root.
+            maxDepth: how many directory levels to descend (1-6, 3 is usually enough).
+            extensions: optional comma separated filter such as ".java,.xml"; directories are always shown.
+            """)
+    public String listProjectTree(
+            @ToolMemoryId Object memoryId,
+            @P(value = "start directory relative to project root, empty for root") String relativePath,
+            @P(value = "maximum depth to descend (1-6)") int maxDepth,
+            @P(value = "comma separated extension filter, e.g. '.java,.xml', empty for all files") String extensions) {
+        int depth = Math.max(1, Math.min(MAX_TREE_DEPTH, maxDepth));
+        return cached(memoryId, "listProjectTree", relativePath + "," + depth + "," + extensions,
+                () -> treeFingerprint(resolve(relativePath), depth, List.of()),
+                () -> doListProjectTree(relativePath, depth, extensions));
+    }
 
-            if (!file.isFile()) {
-                return "❌ 指定的路径不是文件: " + filePath;
-            }
+    private String doListProjectTree(String relativePath, int depth, String extensions) {
+        long start = System.currentTimeMillis();
+        try {
+            String displayPath = (relativePath == null || relativePath.trim().isEmpty()) ? "/" : relativePath.trim();
+            Path targetPath = (relativePath == null || relativePath.trim().isEmpty())
+                    ? Paths.get(projectRootPath)
+                    : Paths.get(projectRootPath, relativePath.trim());
 
-            // 检查文件大小（限制读取超大文件）
-            long fileSizeKB = file.length() / 1024;
-            if (fileSizeKB > 500) {
-                return "❌ 文件过大 (" + fileSizeKB + " KB)，建议使用更具体的搜索或指定行号范围";
+            if (!Files.exists(targetPath)) {
+                return "❌ 目录不存在: " + displayPath;
+            }
+            if (!Files.isDirectory(targetPath)) {
+                return "❌ 指定的路径不是目录: " + displayPath;
             }
 
-            // 读取文件内容
-            List<String> lines = Files.readAllLines(fullPath);
+            List<String> extensionFilter = parseExtensions(extensions);
 
             StringBuilder result = new StringBuilder();
-            result.append("📄 文件: ").append(filePath).append("\n");
-            result.append("📏 总行数: ").append(lines.size()).append("\n");
-            result.append("─".repeat(50)).append("\n\n");
+            result.append("🌲 目录树: ").append(displayPath)
+                    .append(" (深度 ").append(depth).append(")\n\n");
 
-            // 添加行号
-            for (int i = 0; i < lines.size(); i++) {
-                result.append(String.format("%4d | %s\n", i + 1, lines.get(i)));
+            AtomicInteger entryCount = new AtomicInteger();
+            boolean truncated = appendTree(result, targetPath.toFile(), "", depth, extensionFilter, entryCount);
+
+            if (entryCount.get() == 0) {
+                result.append("(无匹配的文件)\n");
+            }
+            if (truncated) {
+                result.append("\n⚠️ 条目过多，仅显示前 ").append(MAX_TREE_ENTRIES).append(" 项，请缩小路径或深度");
             }
 
+            log.debug("listProjectTree({}, {}) 耗时 {} ms", displayPath, depth, System.currentTimeMillis() - start);
             return result.toString();
 
-        } catch (IOException e) {
-            log.error("Error reading file: {}", filePath, e);
-            return "❌ 读取文件失败: " + e.getMessage();
+        } catch (Exception e) {
+            log.error("Error listing tree in path: {}", relativePath, e);
+            return "❌ 读取目录树失败: " + e.getMessage();
         }
     }
 
+    /**
+     * 一次读取多个文件或行范围（服务端并行读取）
+     *
+     * @param fileSpecs 文件列表，每项为 "相对路径" 或 "相对路径:起始行-结束行"
+     * @return 所有文件内容，带行号，按请求顺序排列
+     */
+    @Tool(name = "readProjectFiles", value = """
+            Reads SEVERAL files (or line ranges) in ONE call; the files are read in parallel on the server.
+            Prefer this over calling readProjectFile repeatedly when you need more than one file.
+            Each entry is a relative file path, optionally followed by a line range,
+            e.g. "src/main/java/com/example/Main.java" or "src/main/java/com/example/Util.java:20-80".
+            At most 10 entries per call. The output includes line numbers.
+            """)
+    public String readProjectFiles(
+            @ToolMemoryId Object memoryId,
+            @P(value = "list of relative file paths, each optionally suffixed with ':start-end'") List<String> fileSpecs) {
+        // 模型生成的参数中可能有 null 或空白项，缓存键、指纹和读取都只使用有效项
+        List<String> requested = fileSpecs == null ? List.of() : fileSpecs.stream()
+                .filter(spec -> spec != null && !spec.trim().isEmpty())
+                .map(String::trim)
+                .distinct()
+                .toList();
+        if (requested.isEmpty()) {
+            return "❌ 未指定要读取的文件";
+        }
+        return cached(memoryId, "readProjectFiles", String.join(",", requested),
+                () -> requested.stream().limit(MAX_BATCH_FILES)
+                        .map(spec -> fileFingerprint(parseFileSpec(spec).path()))
+                        .collect(Collectors.joining(",")),
+                () -> doReadProjectFiles(requested));
+    }
+
+    private String doReadProjectFiles(List<String> requested) {
+        long start = System.currentTimeMillis();
+
+        List<String> specs = requested.stream().limit(MAX_BATCH_FILES).toList();
+
+        // 并行读取（每个文件一个虚拟线程），结果按请求顺序拼接
+        List<String> contents = StructuredTasks.invokeAll("file-reader-tool", MAX_PARALLEL_READS,
+                specs.stream().<Callable<String>>map(spec -> () -> readFileSpec(spec)).toList());
+
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < contents.size(); i++) {
+            String content = contents.get(i);
+            if (result.length() + content.length() > MAX_BATCH_OUTPUT_CHARS) {
+                result.append("⚠️ 输出过长，剩余 ").append(contents.size() - i)
+                        .append(" 个文件未显示，请分批读取或指定行号范围\n");
+                break;
+            }
+            result.append(content).append("\n");
+        }
+
+        if (requested.size() > specs.size()) {
+            result.append("⚠️ 单次最多读取 ").append(MAX_BATCH_FILES).append(" 个文件，其余请求已忽略\n");
+        }
+
+        log.debug("readProjectFiles({} 个文件) 耗时 {} ms", specs.size(), System.currentTimeMillis() - start);
+        return result.toString();
+    }
+
     /**
      * 在项目中搜索包含特定文本的文件
      * 
@@ -184,46 +353,43 @@ public class FileReaderTool {
             Example: searchText="UserService", fileExtension=".java"
             """)
     public String searchCodeInProject(
+            @ToolMemoryId Object memoryId,
             @P(value = "text to search for") String searchText,
             @P(value = "file extension filter (e.g., '.java', '.xml'), leave empty for all files") String fileExtension) {
+        return cached(memoryId, "searchCodeInProject", searchText + "," + fileExtension,
+                () -> treeFingerprint(Paths.get(projectRootPath), MAX_WALK_DEPTH, parseExtensions(fileExtension)),
+                () -> doSearchCodeInProject(searchText, fileExtension));
+    }
+
+    private String doSearchCodeInProject(String searchText, String fileExtension) {
         try {
             Path rootPath = Paths.get(projectRootPath);
-            List<SearchResult> results = new ArrayList<>();
 
-            // 遍历项目文件
-            try (Stream<Path> pathStream = Files.walk(rootPath)) {
-                pathStream
-                        .filter(Files::isRegularFile)
-                        .filter(path -> {
-                            String pathStr = path.toString();
-                            // 跳过不相关的目录
-                            if (pathStr.contains("\\.git\\") || pathStr.contains("\\target\\") ||
-                                    pathStr.contains("\\build\\") || pathStr.contains("\\node_modules\\")) {
-                                return false;
-                            }
-                            // 过滤文件扩展名
-                            if (fileExtension != null && !fileExtension.trim().isEmpty()) {
-                                return pathStr.endsWith(fileExtension);
-                            }
-                            return true;
-                        })
-                        .forEach(path -> {
-                            try {
-                                List<String> lines = Files.readAllLines(path);
-                                for (int i = 0; i < lines.size(); i++) {
-                                    if (lines.get(i).contains(searchText)) {
-                                        String relativePath = rootPath.relativize(path).toString();
-                                        results.add(new SearchResult(relativePath, i + 1, lines.get(i).trim()));
-                                    }
-                                }
-                            } catch (IOException e) {
-                                // 跳过无法读取的文件
-                            }
-                        });
-            }
+            // 遍历项目文件（跳过隐藏目录和构建目录，与目录指纹的遍历范围一致）
+            List<Path> files = new ArrayList<>();
+            boolean truncated = walkProject(rootPath, MAX_WALK_DEPTH, (path, attrs) -> {
+                if (!attrs.isRegularFile()) {
+                    return;
+                }
+                // 过滤文件扩展名
+                if (fileExtension == null || fileExtension.trim().isEmpty()
+                        || path.toString().endsWith(fileExtension)) {
+                    files.add(path);
+                }
+            });
 
+            // 并行读取并搜索各文件（每个文件一个虚拟线程），结果按遍历顺序合并
+            List<List<SearchResult>> matches = StructuredTasks.invokeAll("file-reader-tool", MAX_PARALLEL_READS,
+                    files.stream().<Callable<List<SearchResult>>>map(path -> () -> searchFile(rootPath, path, searchText))
+                            .toList());
+            List<SearchResult> results = new ArrayList<>();
+            matches.forEach(results::addAll);
+
+            String truncatedNote = truncated
+                    ? "⚠️ 项目文件过多，只搜索了前 " + MAX_WALK_ENTRIES + " 个条目\n"
+                    : "";
             if (results.isEmpty()) {
-                return "🔍 未找到包含 \"" + searchText + "\" 的代码";
+                return "🔍 未找到包含 \"" + searchText + "\" 的代码" + (truncated ? "\n" + truncatedNote : "");
             }
 
             // 限制结果数量
@@ -241,6 +407,7 @@ public class FileReaderTool {
                 result.append(String.format("📄 %s (第%d行)\n", sr.filePath, sr.lineNumber));
                 result.append("   > ").append(sr.lineContent).append("\n\n");
             }
+            result.append(truncatedNote);
 
             return result.toString();
 
@@ -250,6 +417,302 @@ public class FileReaderTool {
         }
     }
 
+    /**
+     * 在单个文件中搜索文本，无法读取的文件视为没有匹配
+     */
+    private static List<SearchResult> searchFile(Path rootPath, Path path, String searchText) {
+        List<SearchResult> results = new ArrayList<>();
+        try {
+            List<String> lines = Files.readAllLines(path);
+            for (int i = 0; i < lines.size(); i++) {
+                if (lines.get(i).contains(searchText)) {
+                    String relativePath = rootPath.relativize(path).toString();
+                    results.add(new SearchResult(relativePath, i + 1, lines.get(i).trim()));
+                }
+            }
+        } catch (IOException e) {
+            // 跳过无法读取的文件
+        }
+        return results;
+    }
+
+    /**
+     * 解析 "路径:起始行-结束行" 格式并读取
+     */
+    private String readFileSpec(String spec) {
+        FileSpec fileSpec = parseFileSpec(spec);
+        return readFileRange(fileSpec.path(), fileSpec.startLine(), fileSpec.endLine());
+    }
+
+    /**
+     * 解析 "路径:起始行-结束行" 格式
+     */
+    private static FileSpec parseFileSpec(String spec) {
+        int colonIndex = spec.lastIndexOf(':');
+        if (colonIndex > 0 && spec.substring(colonIndex + 1).matches("\\d+\\s*-\\s*\\d+")) {
+            String[] range = spec.substring(colonIndex + 1).split("-");
+            return new FileSpec(spec.substring(0, colonIndex),
+                    Integer.parseInt(range[0].trim()), Integer.parseInt(range[1].trim()));
+        }
+        return new FileSpec(spec, 0, 0);
+    }
+
+    /**
+     * 通过结果缓存执行工具（耗时记为 tool.<工具名> 阶段），所属生成已取消时不再执行
+     */
+    private String cached(Object memoryId, String toolName, String arguments,
+                          Supplier<String> fingerprint, Supplier<String> action) {
+        CancellationToken.checkCurrent();
+        if (tracer == null) {
+            return cachedUntraced(memoryId, toolName, arguments, fingerprint, action);
+        }
+        // 工具执行完后同一线程会再次调用模型，因此同时绑定请求
+        try (StageTracer.Stage ignored = tracer.begin(memoryId, "tool." + toolName, true)) {
+            return cachedUntraced(memoryId, toolName, arguments, fingerprint, action);
+        }
+    }
+
+    private String cachedUntraced(Object memoryId, String toolName, String arguments,
+                                  Supplier<String> fingerprint, Supplier<String> action) {
+        // 不带会话记忆的单轮调用（chatWithRag、modifyCode 等）收到的是所有请求共用的默认会话ID，
+        // 不同用户的请求不能共用一个缓存分区
+        if (resultCache == null || ChatMemoryService.DEFAULT.equals(memoryId)) {
+            return action.get();
+        }
+        // 项目根目录会随请求变化，需作为键的一部分
+        return resultCache.getOrCompute(memoryId, toolName, projectRootPath + "|" + arguments, fingerprint, action);
+    }
+
+    private Path resolve(String relativePath) {
+        return (relativePath == null || relativePath.trim().isEmpty())
+                ? Paths.get(projectRootPath)
+                : Paths.get(projectRootPath, relativePath.trim());
+    }
+
+    /**
+     * 单个文件的指纹（mtime + 大小），文件不存在时为 "missing"
+     */
+    private String fileFingerprint(String filePath) {
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(Paths.get(projectRootPath, filePath),
+                    BasicFileAttributes.class);
+            return attrs.lastModifiedTime().toMillis() + ":" + attrs.size();
+        } catch (Exception e) {
+            return "missing";
+        }
+    }
+
+    /**
+     * 目录树指纹：遍历文件元数据（不读取内容），汇总路径、mtime 和大小
+     * 目录过大（超出遍历上限）时返回 null，不使用缓存
+     */
+    private String treeFingerprint(Path start, int maxDepth, List<String> extensionFilter) {
+        if (!Files.isDirectory(start)) {
+            return "missing";
+        }
+        long[] acc = {0, 0};
+        try {
+            boolean truncated = walkProject(start, maxDepth, (path, attrs) -> {
+                if (attrs.isDirectory() || matchesExtension(path.getFileName().toString(), extensionFilter)) {
+                    acc[0]++;
+                    acc[1] = acc[1] * 31 + path.hashCode() + attrs.lastModifiedTime().toMillis() * 17 + attrs.size();
+                }
+            });
+            return truncated ? null : acc[0] + ":" + acc[1];
+        } catch (IOException e) {
+            return "error";
+        }
+    }
+
+    /**
+     * 遍历目录下的文件和子目录（不含起始目录），跳过隐藏文件和构建目录（不进入其子树）
+     *
+     * @return 是否因条目数超过 {@link #MAX_WALK_ENTRIES} 而提前结束
+     */
+    private static boolean walkProject(Path start, int maxDepth, BiConsumer<Path, BasicFileAttributes> visitor)
+            throws IOException {
+        AtomicInteger entries = new AtomicInteger();
+        boolean[] truncated = {false};
+        Files.walkFileTree(start, Set.of(), maxDepth, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                return dir.equals(start) ? FileVisitResult.CONTINUE : visit(dir, attrs);
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                FileVisitResult result = visit(file, attrs);
+                // 达到深度上限的目录也经过 visitFile，SKIP_SUBTREE 在这里等同于 CONTINUE
+                return result == FileVisitResult.SKIP_SUBTREE ? FileVisitResult.CONTINUE : result;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                // 跳过无法读取的文件
+                return FileVisitResult.CONTINUE;
+            }
+
+            private FileVisitResult visit(Path path, BasicFileAttributes attrs) {
+                if (isIgnored(path.getFileName().toString())) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                if (entries.incrementAndGet() > MAX_WALK_ENTRIES) {
+                    truncated[0] = true;
+                    return FileVisitResult.TERMINATE;
+                }
+                visitor.accept(path, attrs);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return truncated[0];
+    }
+
+    /**
+     * 读取文件内容（可选行号范围），带行号
+     *
+     * @param filePath  相对于项目根目录的文件路径
+     * @param startLine 起始行号（从1开始，0表示从头读取）
+     * @param endLine   结束行号（包含，0表示读到文件末尾）
+     */
+    private String readFileRange(String filePath, int startLine, int endLine) {
+        try {
+            Path fullPath = Paths.get(projectRootPath, filePath);
+            File file = fullPath.toFile();
+
+            if (!file.exists()) {
+                return "❌ 文件不存在: " + filePath;
+            }
+
+            if (!file.isFile()) {
+                return "❌ 指定的路径不是文件: " + filePath;
+            }
+
+            boolean wholeFile = startLine <= 0 && endLine <= 0;
+
+            // 检查文件大小（限制读取超大文件，指定行号范围时放行）
+            long fileSizeKB = file.length() / 1024;
+            if (wholeFile && fileSizeKB > MAX_FILE_SIZE_KB) {
+                return "❌ 文件过大 (" + fileSizeKB + " KB)，建议使用更具体的搜索或指定行号范围";
+            }
+
+            // 逐行读取：只保留范围内的行（范围读取不受大小限制，不能把整个文件读入内存），同时统计总行数
+            int from = wholeFile ? 1 : Math.max(1, startLine);
+            int last = (wholeFile || endLine <= 0) ? Integer.MAX_VALUE : endLine;
+            long maxChars = MAX_FILE_SIZE_KB * 1024;
+            List<String> lines = new ArrayList<>();
+            long chars = 0;
+            boolean truncated = false;
+            int total = 0;
+            try (BufferedReader reader = Files.newBufferedReader(fullPath)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    total++;
+                    if (total < from || total > last || truncated) {
+                        continue;
+                    }
+                    if (chars + line.length() > maxChars) {
+                        // 范围内的内容也按单文件大小上限截断
+                        truncated = true;
+                        continue;
+                    }
+                    chars += line.length();
+                    lines.add(line);
+                }
+            }
+            int to = from + lines.size() - 1;
+
+            StringBuilder result = new StringBuilder();
+            result.append("📄 文件: ").append(filePath).append("\n");
+            result.append("📏 总行数: ").append(total);
+            if (!wholeFile) {
+                result.append("（显示第 ").append(from).append("-").append(to).append(" 行）");
+            }
+            result.append("\n");
+            result.append("─".repeat(50)).append("\n\n");
+
+            // 添加行号
+            for (int i = 0; i < lines.size(); i++) {
+                result.append(String.format("%4d | %s\n", from + i, lines.get(i)));
+            }
+            if (truncated) {
+                result.append("⚠️ 指定范围内容过长，仅显示到第 ").append(to).append(" 行，请缩小行号范围\n");
+            }
+
+            return result.toString();
+
+        } catch (IOException e) {
+            log.error("Error reading file: {}", filePath, e);
+            return "❌ 读取文件失败: " + e.getMessage();
+        }
+    }
+
+    /**
+     * 递归追加目录树
+     *
+     * @return 是否因条目数超限而截断
+     */
+    private boolean appendTree(StringBuilder out, File directory, String indent, int remainingDepth,
+                               List<String> extensionFilter, AtomicInteger entryCount) {
+        File[] children = directory.listFiles();
+        if (children == null) {
+            return false;
+        }
+
+        // 目录在前，文件在后，各自按名称排序
+        Arrays.sort(children, Comparator.comparing((File f) -> !f.isDirectory()).thenComparing(File::getName));
+
+        for (File child : children) {
+            if (isIgnored(child.getName())) {
+                continue;
+            }
+            if (entryCount.get() >= MAX_TREE_ENTRIES) {
+                return true;
+            }
+
+            if (child.isDirectory()) {
+                entryCount.incrementAndGet();
+                out.append(indent).append("📁 ").append(child.getName()).append("/\n");
+                if (remainingDepth > 1
+                        && appendTree(out, child, indent + "  ", remainingDepth - 1, extensionFilter, entryCount)) {
+                    return true;
+                }
+            } else if (matchesExtension(child.getName(), extensionFilter)) {
+                entryCount.incrementAndGet();
+                out.append(indent).append("📄 ").append(child.getName())
+                        .append(" (").append(child.length() / 1024).append(" KB)\n");
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 是否为需要跳过的隐藏文件或构建目录
+     */
+    private static boolean isIgnored(String name) {
+        return name.startsWith(".") || IGNORED_NAMES.contains(name);
+    }
+
+    private static List<String> parseExtensions(String extensions) {
+        if (extensions == null || extensions.trim().isEmpty()) {
+            return List.of();
+        }
+        return Arrays.stream(extensions.split(","))
+                .map(String::trim)
+                .filter(ext -> !ext.isEmpty())
+                .map(ext -> ext.startsWith(".") ? ext : "." + ext)
+                .collect(Collectors.toList());
+    }
+
+    private static boolean matchesExtension(String fileName, List<String> extensionFilter) {
+        return extensionFilter.isEmpty() || extensionFilter.stream().anyMatch(fileName::endsWith);
+    }
+
+    /**
+     * 文件读取请求（路径 + 可选行号范围）
+     */
+    private record FileSpec(String path, int startLine, int endLine) {
+    }
+
     /**
      * 搜索结果数据类
      */
@@ -0,0 +1,193 @@
+package com.example.aicodehelper.ai.tools;
+
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 工具调用结果缓存（按会话隔离）
+ *
+ * 同一会话中模型经常重复读取相同文件、重复执行相同搜索。本缓存以
+ * "工具名 + 参数" 为键，并用文件的 mtime/大小 生成的指纹校验结果是否仍然有效；
+ * 如果结果已经原样出现在当前会话记忆中，则返回一条简短的引用，避免重复发送大段内容。
+ *
+ * 内存有界：每个会话最多缓存 {@code maxCharsPerConversation} 个字符，最多保留
+ * {@code maxConversations} 个会话，均按最近最少使用淘汰。
+ */
+@Slf4j
+public class ToolResultCache {
+
+    private final ChatMemoryStore chatMemoryStore;
+    private final int maxConversations;
+    private final int maxCharsPerConversation;
+
+    // 会话ID -> 该会话的缓存（访问顺序，用于LRU淘汰）
+    private final LinkedHashMap<Object, ConversationCache> conversations = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter stale;
+    private final Counter references;
+    private final AtomicLong cachedChars = new AtomicLong();
+
+    public ToolResultCache(ChatMemoryStore chatMemoryStore, MeterRegistry meterRegistry,
+                           int maxConversations, int maxCharsPerConversation) {
+        this.chatMemoryStore = chatMemoryStore;
+        this.maxConversations = maxConversations;
+        this.maxCharsPerConversation = maxCharsPerConversation;
+
+        MeterRegistry registry = meterRegistry != null ? meterRegistry : new SimpleMeterRegistry();
+        this.hits = Counter.builder("ai.tool.cache.requests").tag("result", "hit")
+                .description("工具结果缓存命中次数").register(registry);
+        this.misses = Counter.builder("ai.tool.cache.requests").tag("result", "miss")
+                .description("工具结果缓存未命中次数").register(registry);
+        this.stale = Counter.builder("ai.tool.cache.requests").tag("result", "stale")
+                .description("文件已变化导致缓存失效的次数").register(registry);
+        this.references = Counter.builder("ai.tool.cache.references")
+                .description("结果已在会话中出现、改为返回引用的次数").register(registry);
+        registry.gauge("ai.tool.cache.chars", cachedChars);
+    }
+
+    /**
+     * 获取缓存的工具结果，未命中或已失效时执行工具并缓存
+     *
+     * @param memoryId    会话ID（为 null 时不使用缓存）
+     * @param toolName    工具名
+     * @param arguments   规范化后的参数（包含项目根目录）
+     * @param fingerprint 计算相关文件指纹（mtime/大小），返回 null 表示无法校验（如目录过大），此时不使用缓存
+     * @param action      实际执行工具
+     * @return 工具结果，或指向会话中已有结果的简短引用
+     */
+    public String getOrCompute(Object memoryId, String toolName, String arguments,
+                               Supplier<String> fingerprint, Supplier<String> action) {
+        if (memoryId == null) {
+            return action.get();
+        }
+
+        String key = toolName + "(" + arguments + ")";
+        String currentFingerprint = fingerprint.get();
+        if (currentFingerprint == null) {
+            misses.increment();
+            return action.get();
+        }
+
+        String result;
+        Entry cached = lookup(memoryId, key);
+        if (cached != null && cached.fingerprint.equals(currentFingerprint)) {
+            hits.increment();
+            result = cached.result;
+        } else {
+            if (cached != null) {
+                stale.increment();
+            } else {
+                misses.increment();
+            }
+            result = action.get();
+            store(memoryId, key, new Entry(currentFingerprint, result));
+        }
+
+        if (isInConversation(memoryId, result)) {
+            references.increment();
+            return "♻️ 本次调用 " + key + " 的结果与本次对话中之前返回的结果完全相同（相关文件未发生变化），"
+                    + "请直接参考上文中的工具结果，无需重复读取。";
+        }
+        return result;
+    }
+
+    /**
+     * 清除某个会话的缓存
+     */
+    public void evictConversation(Object memoryId) {
+        synchronized (conversations) {
+            ConversationCache removed = conversations.remove(memoryId);
+            if (removed != null) {
+                cachedChars.addAndGet(-removed.chars);
+            }
+        }
+    }
+
+    /**
+     * 缓存命中率（命中 / 总请求）
+     */
+    public double hitRate() {
+        double total = hits.count() + misses.count() + stale.count();
+        return total == 0 ? 0 : hits.count() / total;
+    }
+
+    private Entry lookup(Object memoryId, String key) {
+        synchronized (conversations) {
+            ConversationCache conversation = conversations.get(memoryId);
+            return conversation != null ? conversation.entries.get(key) : null;
+        }
+    }
+
+    private void store(Object memoryId, String key, Entry entry) {
+        if (entry.result.length() > maxCharsPerConversation) {
+            return;
+        }
+
+        synchronized (conversations) {
+            ConversationCache conversation = conversations.computeIfAbsent(memoryId, id -> new ConversationCache());
+
+            Entry previous = conversation.entries.put(key, entry);
+            long delta = entry.result.length() - (previous != null ? previous.result.length() : 0);
+            conversation.chars += delta;
+            cachedChars.addAndGet(delta);
+
+            // 会话内按LRU淘汰
+            Iterator<Entry> entries = conversation.entries.values().iterator();
+            while (conversation.chars > maxCharsPerConversation && entries.hasNext()) {
+                Entry evicted = entries.next();
+                entries.remove();
+                conversation.chars -= evicted.result.length();
+                cachedChars.addAndGet(-evicted.result.length());
+            }
+
+            // 会话数量按LRU淘汰
+            Iterator<ConversationCache> oldest = conversations.values().iterator();
+            while (conversations.size() > maxConversations && oldest.hasNext()) {
+                cachedChars.addAndGet(-oldest.next().chars);
+                oldest.remove();
+            }
+        }
+    }
+
+    /**
+     * 检查结果是否已原样存在于当前会话记忆中
+     */
+    private boolean isInConversation(Object memoryId, String result) {
+        if (chatMemoryStore == null || result.length() < 200) {
+            // 短结果直接返回即可，引用不会更省
+            return false;
+        }
+        List<ChatMessage> messages = chatMemoryStore.getMessages(memoryId);
+        for (ChatMessage message : messages) {
+            if (message instanceof ToolExecutionResultMessage toolResult && result.equals(toolResult.text())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private record Entry(String fingerprint, String result) {
+    }
+
+    /**
+     * 单个会话的缓存
+     */
+    private static class ConversationCache {
+        final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+        long chars;
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.aicodehelper.ai.trace;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一次请求的阶段记录
+ * 各阶段可能在不同线程中完成（流式回调、工具调用），所有方法都是线程安全的
+ */
+public class RequestTrace {
+
+    /**
+     * 一个已完成的阶段
+     *
+     * @param stage         阶段名
+     * @param startNanos    相对请求开始的时间
+     * @param durationNanos 耗时
+     */
+    public record Span(String stage, long startNanos, long durationNanos) {
+    }
+
+    private final String requestId;
+    private final String endpoint;
+    private final Object memoryId;
+    private final long startNanos = System.nanoTime();
+    private final StageEvent event;
+
+    private final List<Span> spans = new ArrayList<>();
+    private volatile boolean finished;
+
+    RequestTrace(String requestId, String endpoint, Object memoryId) {
+        this.requestId = requestId;
+        this.endpoint = endpoint;
+        this.memoryId = memoryId;
+        this.event = new StageEvent();
+        this.event.requestId = requestId;
+        this.event.endpoint = endpoint;
+        this.event.stage = "request";
+        this.event.begin();
+    }
+
+    public String requestId() {
+        return requestId;
+    }
+
+    public String endpoint() {
+        return endpoint;
+    }
+
+    Object memoryId() {
+        return memoryId;
+    }
+
+    boolean isFinished() {
+        return finished;
+    }
+
+    synchronized void add(String stage, long start, long end) {
+        spans.add(new Span(stage, start - startNanos, end - start));
+    }
+
+    public synchronized List<Span> spans() {
+        return List.copyOf(spans);
+    }
+
+    /**
+     * 结束请求，返回总耗时（纳秒）
+     */
+    long finish() {
+        finished = true;
+        event.end();
+        event.commit();
+        return System.nanoTime() - startNanos;
+    }
+
+    /**
+     * 按阶段汇总的耗时说明，如 "rag.embed 320 ms, tool.readProjectFile 36 ms ×3, model.generate 5600 ms"
+     * 同名阶段的耗时相加，按首次出现的顺序排列
+     */
+    public synchronized String breakdown() {
+        Map<String, long[]> totals = new LinkedHashMap<>();
+        for (Span span : spans) {
+            long[] total = totals.computeIfAbsent(span.stage(), stage -> new long[2]);
+            total[0] += span.durationNanos();
+            total[1]++;
+        }
+        StringBuilder builder = new StringBuilder();
+        totals.forEach((stage, total) -> {
+            if (!builder.isEmpty()) {
+                builder.append(", ");
+            }
+            builder.append(stage).append(' ').append(TimeUnit.NANOSECONDS.toMillis(total[0])).append(" ms");
+            if (total[1] > 1) {
+                builder.append(" ×").append(total[1]);
+            }
+        });
+        return builder.toString();
+    }
+}
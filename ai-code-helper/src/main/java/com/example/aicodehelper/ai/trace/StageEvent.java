@@ -0,0 +1,26 @@
+package com.example.aicodehelper.ai.trace;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * 请求处理阶段的 JFR 事件
+ * 录制 JFR 时按 requestId 关联同一请求的各阶段，stage=request 的事件覆盖整个请求
+ */
+@Name("com.example.aicodehelper.Stage")
+@Label("AI Request Stage")
+@Category({"AI Code Helper"})
+@Description("一次 AI 请求中某个处理阶段的耗时")
+class StageEvent extends jdk.jfr.Event {
+
+    @Label("Request Id")
+    String requestId;
+
+    @Label("Endpoint")
+    String endpoint;
+
+    @Label("Stage")
+    String stage;
+}
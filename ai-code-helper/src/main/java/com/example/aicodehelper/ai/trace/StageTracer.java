@@ -0,0 +1,137 @@
+package com.example.aicodehelper.ai.trace;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 请求阶段追踪
+ * 记录一次对话请求中各阶段（项目概览、会话记忆读取、RAG 向量化与检索、工具调用、模型首 token 和生成）的耗时，
+ * 每个阶段同时作为 JFR 事件（com.example.aicodehelper.Stage）发出；总耗时超过阈值时输出各阶段耗时明细。
+ *
+ * 各阶段通过会话ID（memoryId）关联到请求：会话记忆、RAG 检索和工具调用都能拿到会话ID；
+ * 模型调用拿不到，因此读取会话记忆和 RAG 检索时把请求绑定到当前线程，随后在同一线程发起的模型调用取走该绑定。
+ */
+@Component
+@Slf4j
+public class StageTracer {
+
+    @Value("${tracing.enabled:true}")
+    private boolean enabled = true;
+
+    // 总耗时超过此值时输出各阶段耗时
+    @Value("${tracing.slow-request-threshold:5s}")
+    private Duration slowRequestThreshold = Duration.ofSeconds(5);
+
+    // 会话ID -> 进行中的请求
+    private final Map<Object, RequestTrace> active = new ConcurrentHashMap<>();
+
+    // 当前线程即将发起的模型调用所属的请求
+    private final ThreadLocal<RequestTrace> bound = new ThreadLocal<>();
+
+    /**
+     * 一个进行中的阶段，close 时记录耗时
+     */
+    public interface Stage extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private static final Stage NOOP = () -> {
+    };
+
+    /**
+     * 开始追踪一次请求
+     *
+     * @param requestId 请求关联ID（RequestIdFilter 提供，为 null 时生成）
+     * @param endpoint  接口名
+     * @param memoryId  会话ID
+     * @return 请求记录；追踪关闭时返回 null
+     */
+    public RequestTrace start(String requestId, String endpoint, Object memoryId) {
+        if (!enabled) {
+            return null;
+        }
+        RequestTrace trace = new RequestTrace(requestId != null ? requestId : UUID.randomUUID().toString(),
+                endpoint, memoryId);
+        active.put(memoryId, trace);
+        return trace;
+    }
+
+    /**
+     * 结束追踪，超过阈值时输出各阶段耗时
+     */
+    public void finish(RequestTrace trace) {
+        if (trace == null) {
+            return;
+        }
+        active.remove(trace.memoryId(), trace);
+        long totalNanos = trace.finish();
+        if (totalNanos > slowRequestThreshold.toNanos()) {
+            log.warn("慢请求 [{}] {} 共 {} ms: {}", trace.requestId(), trace.endpoint(),
+                    TimeUnit.NANOSECONDS.toMillis(totalNanos), trace.breakdown());
+        } else {
+            log.debug("请求 [{}] {} 共 {} ms: {}", trace.requestId(), trace.endpoint(),
+                    TimeUnit.NANOSECONDS.toMillis(totalNanos), trace.breakdown());
+        }
+    }
+
+    /**
+     * 开始会话相关的阶段
+     *
+     * @param memoryId 会话ID（没有进行中的请求时不记录）
+     * @param stage    阶段名
+     * @param bind     是否把请求绑定到当前线程（供随后的模型调用使用）
+     */
+    public Stage begin(Object memoryId, String stage, boolean bind) {
+        RequestTrace trace = memoryId == null ? null : active.get(memoryId);
+        if (trace != null && bind) {
+            bound.set(trace);
+        }
+        return begin(trace, stage);
+    }
+
+    /**
+     * 开始当前线程绑定的请求中的阶段（不取走绑定）
+     */
+    public Stage beginBound(String stage) {
+        return begin(bound.get(), stage);
+    }
+
+    /**
+     * 取走当前线程绑定的请求（供模型调用使用）
+     *
+     * @return 请求记录；没有绑定或请求已结束时返回 null
+     */
+    public RequestTrace takeBound() {
+        RequestTrace trace = bound.get();
+        bound.remove();
+        return trace == null || trace.isFinished() ? null : trace;
+    }
+
+    /**
+     * 开始指定请求中的阶段
+     */
+    public Stage begin(RequestTrace trace, String stage) {
+        if (trace == null || trace.isFinished()) {
+            return NOOP;
+        }
+        StageEvent event = new StageEvent();
+        event.requestId = trace.requestId();
+        event.endpoint = trace.endpoint();
+        event.stage = stage;
+        event.begin();
+        long start = System.nanoTime();
+        return () -> {
+            event.end();
+            event.commit();
+            trace.add(stage, start, System.nanoTime());
+        };
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.aicodehelper.ai.trace;
+
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+
+import java.util.List;
+
+/**
+ * 记录会话记忆读取耗时（memory.load），并把请求绑定到当前线程，供随后的模型调用使用
+ */
+public class TracingChatMemoryStore implements ChatMemoryStore {
+
+    private final ChatMemoryStore delegate;
+    private final StageTracer tracer;
+
+    public TracingChatMemoryStore(ChatMemoryStore delegate, StageTracer tracer) {
+        this.delegate = delegate;
+        this.tracer = tracer;
+    }
+
+    @Override
+    public List<ChatMessage> getMessages(Object memoryId) {
+        try (StageTracer.Stage ignored = tracer.begin(memoryId, "memory.load", true)) {
+            return delegate.getMessages(memoryId);
+        }
+    }
+
+    @Override
+    public void updateMessages(Object memoryId, List<ChatMessage> messages) {
+        delegate.updateMessages(memoryId, messages);
+    }
+
+    @Override
+    public void deleteMessages(Object memoryId) {
+        delegate.deleteMessages(memoryId);
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.aicodehelper.ai.trace;
+
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.content.retriever.ContentRetriever;
+import dev.langchain4j.rag.query.Query;
+
+import java.util.List;
+
+/**
+ * 记录 RAG 检索耗时（rag.retrieve），并把请求绑定到当前线程，
+ * 供其中的向量化（TracingEmbeddingModel）和向量检索（TracingEmbeddingStore）以及随后的模型调用使用
+ */
+public class TracingContentRetriever implements ContentRetriever {
+
+    private final ContentRetriever delegate;
+    private final StageTracer tracer;
+
+    public TracingContentRetriever(ContentRetriever delegate, StageTracer tracer) {
+        this.delegate = delegate;
+        this.tracer = tracer;
+    }
+
+    @Override
+    public List<Content> retrieve(Query query) {
+        Object memoryId = query.metadata() == null ? null : query.metadata().chatMemoryId();
+        try (StageTracer.Stage ignored = tracer.begin(memoryId, "rag.retrieve", true)) {
+            return delegate.retrieve(query);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.aicodehelper.ai.trace;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+
+import java.util.List;
+
+/**
+ * 记录查询向量化耗时（rag.embed），只在当前线程绑定了请求时记录
+ */
+public class TracingEmbeddingModel implements EmbeddingModel {
+
+    private final EmbeddingModel delegate;
+    private final StageTracer tracer;
+
+    public TracingEmbeddingModel(EmbeddingModel delegate, StageTracer tracer) {
+        this.delegate = delegate;
+        this.tracer = tracer;
+    }
+
+    @Override
+    public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+        try (StageTracer.Stage ignored = tracer.beginBound("rag.embed")) {
+            return delegate.embedAll(textSegments);
+        }
+    }
+
+    @Override
+    public int dimension() {
+        return delegate.dimension();
+    }
+}
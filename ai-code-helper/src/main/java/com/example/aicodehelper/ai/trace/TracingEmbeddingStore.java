@@ -0,0 +1,49 @@
+package com.example.aicodehelper.ai.trace;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+
+import java.util.List;
+
+/**
+ * 记录向量检索耗时（rag.search），只在当前线程绑定了请求时记录；写入操作直接转发
+ */
+public class TracingEmbeddingStore<Embedded> implements EmbeddingStore<Embedded> {
+
+    private final EmbeddingStore<Embedded> delegate;
+    private final StageTracer tracer;
+
+    public TracingEmbeddingStore(EmbeddingStore<Embedded> delegate, StageTracer tracer) {
+        this.delegate = delegate;
+        this.tracer = tracer;
+    }
+
+    @Override
+    public EmbeddingSearchResult<Embedded> search(EmbeddingSearchRequest request) {
+        try (StageTracer.Stage ignored = tracer.beginBound("rag.search")) {
+            return delegate.search(request);
+        }
+    }
+
+    @Override
+    public String add(Embedding embedding) {
+        return delegate.add(embedding);
+    }
+
+    @Override
+    public void add(String id, Embedding embedding) {
+        delegate.add(id, embedding);
+    }
+
+    @Override
+    public String add(Embedding embedding, Embedded embedded) {
+        return delegate.add(embedding, embedded);
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings) {
+        return delegate.addAll(embeddings);
+    }
+}
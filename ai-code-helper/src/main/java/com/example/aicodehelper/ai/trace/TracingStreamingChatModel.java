@@ -0,0 +1,86 @@
+package com.example.aicodehelper.ai.trace;
+
+import dev.langchain4j.model.ModelProvider;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 记录流式模型调用的首 token 耗时（model.first-token）和生成总耗时（model.generate）
+ * 调用所属的请求取自当前线程的绑定（读取会话记忆、RAG 检索或工具调用时设置），没有绑定时直接转发
+ */
+public class TracingStreamingChatModel implements StreamingChatModel {
+
+    private final StreamingChatModel delegate;
+    private final StageTracer tracer;
+
+    public TracingStreamingChatModel(StreamingChatModel delegate, StageTracer tracer) {
+        this.delegate = delegate;
+        this.tracer = tracer;
+    }
+
+    @Override
+    public void chat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+        RequestTrace trace = tracer.takeBound();
+        if (trace == null) {
+            delegate.chat(chatRequest, handler);
+            return;
+        }
+
+        StageTracer.Stage generate = tracer.begin(trace, "model.generate");
+        StageTracer.Stage firstToken = tracer.begin(trace, "model.first-token");
+        AtomicBoolean first = new AtomicBoolean(true);
+        delegate.chat(chatRequest, new StreamingChatResponseHandler() {
+            @Override
+            public void onPartialResponse(String partialResponse) {
+                if (first.compareAndSet(true, false)) {
+                    firstToken.close();
+                }
+                handler.onPartialResponse(partialResponse);
+            }
+
+            @Override
+            public void onCompleteResponse(ChatResponse completeResponse) {
+                // 只有工具调用、没有文本输出时不记录首 token
+                first.set(false);
+                generate.close();
+                handler.onCompleteResponse(completeResponse);
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                first.set(false);
+                generate.close();
+                handler.onError(error);
+            }
+        });
+    }
+
+    @Override
+    public ChatRequestParameters defaultRequestParameters() {
+        return delegate.defaultRequestParameters();
+    }
+
+    @Override
+    public List<ChatModelListener> listeners() {
+        return delegate.listeners();
+    }
+
+    @Override
+    public ModelProvider provider() {
+        return delegate.provider();
+    }
+
+    @Override
+    public Set<Capability> supportedCapabilities() {
+        return delegate.supportedCapabilities();
+    }
+}
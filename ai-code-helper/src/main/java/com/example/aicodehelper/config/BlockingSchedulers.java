@@ -0,0 +1,188 @@
+package com.example.aicodehelper.config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 阻塞调用的专用调度器
+ * 以 WebFlux/Netty 运行（reactive 配置）时事件循环线程不能阻塞，以 Servlet 运行时也不应让几十秒的模型调用占住容器线程，
+ * 因此接口中的阻塞调用按类型放到各自有界的线程池上：
+ * - model：同步模型调用，以及流式调用的启动阶段（RAG 检索、会话记忆读取、发出上游请求）
+ * - io：文件系统访问（项目结构概览等）
+ * 线程数和每个线程的排队任务数都有上限，排满后新请求立即以 503 失败，而不是无限堆积。
+ * 开启 blocking.virtual-threads 时改为每个调用一个虚拟线程（等待上游响应时不占用平台线程），
+ * 此时只限制每类同时执行的调用数（blocking.virtual-max-concurrent-calls），超出同样以 503 失败。
+ * 任务执行期间日志 MDC 中带有提交时的请求关联ID。
+ */
+@Component
+public class BlockingSchedulers {
+
+    @Value("${blocking.model-threads:64}")
+    private int modelThreads;
+
+    @Value("${blocking.io-threads:16}")
+    private int ioThreads;
+
+    @Value("${blocking.queued-tasks-per-thread:1000}")
+    private int queuedTasksPerThread;
+
+    @Value("${blocking.virtual-threads:false}")
+    private boolean virtualThreads;
+
+    @Value("${blocking.virtual-max-concurrent-calls:2000}")
+    private int virtualMaxConcurrentCalls;
+
+    private Scheduler model;
+
+    private Scheduler io;
+
+    @PostConstruct
+    void init() {
+        if (virtualThreads) {
+            model = newVirtualScheduler("blocking-model");
+            io = newVirtualScheduler("blocking-io");
+            return;
+        }
+        model = Schedulers.newBoundedElastic(modelThreads, queuedTasksPerThread, "blocking-model");
+        io = Schedulers.newBoundedElastic(ioThreads, queuedTasksPerThread, "blocking-io");
+    }
+
+    private Scheduler newVirtualScheduler(String name) {
+        return Schedulers.fromExecutorService(new BoundedVirtualThreadExecutor(name, virtualMaxConcurrentCalls), name);
+    }
+
+    @PreDestroy
+    void dispose() {
+        model.dispose();
+        io.dispose();
+    }
+
+    public Scheduler model() {
+        return model;
+    }
+
+    public Scheduler io() {
+        return io;
+    }
+
+    /**
+     * 在 model 线程池上执行同步模型调用
+     */
+    public <T> Mono<T> callModel(String requestId, Callable<T> call) {
+        return call(model, requestId, call);
+    }
+
+    /**
+     * 在 io 线程池上执行文件系统访问
+     */
+    public <T> Mono<T> callIo(String requestId, Callable<T> call) {
+        return call(io, requestId, call);
+    }
+
+    /**
+     * 在 model 线程池上订阅流式响应：订阅时同步进行的阻塞工作（RAG 检索、会话记忆读取等）不占用调用线程，
+     * 之后的元素仍在上游回调线程上发出，下游的 request 也不切换线程
+     */
+    public <T> Flux<T> subscribeOnModel(String requestId, Flux<T> flux) {
+        return Flux.<T>from(subscriber -> {
+            try (MDC.MDCCloseable ignored = requestIdScope(requestId)) {
+                flux.subscribe(subscriber);
+            }
+        }).subscribeOn(model, false).onErrorMap(RejectedExecutionException.class, BlockingSchedulers::busy);
+    }
+
+    private static <T> Mono<T> call(Scheduler scheduler, String requestId, Callable<T> call) {
+        return Mono.fromCallable(() -> {
+            try (MDC.MDCCloseable ignored = requestIdScope(requestId)) {
+                return call.call();
+            }
+        }).subscribeOn(scheduler).onErrorMap(RejectedExecutionException.class, BlockingSchedulers::busy);
+    }
+
+    private static ResponseStatusException busy(RejectedExecutionException e) {
+        return new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "服务繁忙，请稍后重试", e);
+    }
+
+    /**
+     * 在当前（线程池）线程的 MDC 中设置请求关联ID，关闭时移除；没有请求ID时返回 null（try-with-resources 允许）
+     */
+    private static MDC.MDCCloseable requestIdScope(String requestId) {
+        return requestId == null ? null : MDC.putCloseable(RequestIdFilter.MDC_KEY, requestId);
+    }
+
+    /**
+     * 每个任务一个虚拟线程，同时执行的任务数有上限，超出时拒绝（不排队）
+     */
+    static final class BoundedVirtualThreadExecutor extends AbstractExecutorService {
+
+        private final ExecutorService delegate;
+        private final Semaphore permits;
+
+        BoundedVirtualThreadExecutor(String name, int maxConcurrentTasks) {
+            this.delegate = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-", 0).factory());
+            this.permits = new Semaphore(maxConcurrentTasks);
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            if (!permits.tryAcquire()) {
+                throw new RejectedExecutionException("同时执行的调用数已达上限");
+            }
+            try {
+                delegate.execute(() -> {
+                    try {
+                        command.run();
+                    } finally {
+                        permits.release();
+                    }
+                });
+            } catch (RuntimeException e) {
+                permits.release();
+                throw e;
+            }
+        }
+
+        @Override
+        public void shutdown() {
+            delegate.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return delegate.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return delegate.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return delegate.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return delegate.awaitTermination(timeout, unit);
+        }
+    }
+}
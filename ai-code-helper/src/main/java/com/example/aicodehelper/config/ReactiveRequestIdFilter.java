@@ -0,0 +1,29 @@
+package com.example.aicodehelper.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+/**
+ * 请求关联ID过滤器（WebFlux 版本，以 reactive 配置运行时生效）
+ * 与 {@link RequestIdFilter} 相同：沿用或生成请求ID，写入响应头和请求属性 {@link RequestIdFilter#ATTRIBUTE}。
+ * 请求在事件循环线程之间切换，不写入 MDC；阻塞调用在 {@link BlockingSchedulers} 的线程池上执行时才带有请求ID。
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveRequestIdFilter implements WebFilter {
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        String requestId = RequestIdFilter.resolve(exchange.getRequest().getHeaders().getFirst(RequestIdFilter.HEADER));
+        exchange.getResponse().getHeaders().set(RequestIdFilter.HEADER, requestId);
+        exchange.getAttributes().put(RequestIdFilter.ATTRIBUTE, requestId);
+        return chain.filter(exchange);
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.aicodehelper.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.config.CorsRegistry;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+
+/**
+ * WebFlux/Netty 运行配置（reactive 配置，见 application-reactive.yml）
+ * /api/ai/* 全部以非阻塞方式处理：少量事件循环线程即可维持大量长时间打开的 SSE 流，
+ * 阻塞的模型调用和文件访问在 {@link BlockingSchedulers} 的有界线程池上执行。
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveWebConfig implements WebFluxConfigurer {
+
+    /**
+     * 类路径上同时有 Tomcat（Servlet 模式使用），不显式指定时 Spring Boot 会优先用 Tomcat 承载 WebFlux
+     */
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    /**
+     * 与 Servlet 模式的 CorsConfig 相同的跨域规则
+     */
+    @Override
+    public void addCorsMappings(CorsRegistry registry) {
+        registry.addMapping("/**")
+                .allowCredentials(true)
+                .allowedOriginPatterns("*")
+                .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS")
+                .allowedHeaders("*")
+                .exposedHeaders("*");
+    }
+}
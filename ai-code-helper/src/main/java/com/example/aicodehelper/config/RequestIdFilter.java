@@ -0,0 +1,70 @@
+package com.example.aicodehelper.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.MDC;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * 请求关联ID过滤器
+ * 插件为每个排队请求生成ID并通过 X-Request-Id 请求头发送，服务端沿用该ID（没有或格式不合法时自动生成），
+ * 写入日志 MDC（日志格式中的 [requestId]）和响应头，流式接口还会作为每个 SSE 事件的 id 返回，
+ * 便于把插件端的排队、连接、首包、渲染耗时与服务端各阶段耗时（StageTracer）对应起来。
+ * 请求ID同时保存在请求属性 {@link #ATTRIBUTE} 中，接口方法通过 @RequestAttribute 获取（与 WebFlux 下的
+ * {@link ReactiveRequestIdFilter} 一致，事件循环线程上不能依赖 MDC）。
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class RequestIdFilter extends OncePerRequestFilter {
+
+    public static final String HEADER = "X-Request-Id";
+
+    public static final String MDC_KEY = "requestId";
+
+    public static final String ATTRIBUTE = "requestId";
+
+    // 只接受字母、数字、下划线和短横线，避免日志注入
+    private static final Pattern VALID_ID = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+
+    /**
+     * 当前请求线程（或 {@link BlockingSchedulers} 的线程池线程）上的请求ID，其他线程上为 null
+     */
+    public static String currentRequestId() {
+        return MDC.get(MDC_KEY);
+    }
+
+    /**
+     * 沿用客户端提供的请求ID，没有或格式不合法时生成新的ID
+     */
+    static String resolve(String headerValue) {
+        if (headerValue != null && VALID_ID.matcher(headerValue.trim()).matches()) {
+            return headerValue.trim();
+        }
+        return UUID.randomUUID().toString();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String requestId = resolve(request.getHeader(HEADER));
+        response.setHeader(HEADER, requestId);
+        request.setAttribute(ATTRIBUTE, requestId);
+        MDC.put(MDC_KEY, requestId);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            MDC.remove(MDC_KEY);
+        }
+    }
+}
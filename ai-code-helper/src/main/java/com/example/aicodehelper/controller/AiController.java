@@ -1,22 +1,54 @@
 package com.example.aicodehelper.controller;
 
 import com.example.aicodehelper.ai.AiCodeHelperService;
-import com.example.aicodehelper.ai.tools.FileReaderTool;
+import com.example.aicodehelper.ai.StatelessAiCodeHelperService;
+import com.example.aicodehelper.ai.assist.AssistService;
+import com.example.aicodehelper.ai.cache.ResponseCache;
+import com.example.aicodehelper.ai.cancel.CancellationToken;
+import com.example.aicodehelper.ai.cancel.ChatGeneration;
+import com.example.aicodehelper.ai.cancel.ChatGenerations;
+import com.example.aicodehelper.ai.intent.IntentClassifier;
+import com.example.aicodehelper.ai.modify.CodeModificationService;
+import com.example.aicodehelper.ai.stream.ChatEventStream;
+import com.example.aicodehelper.ai.stream.ChatEventStreams;
+import com.example.aicodehelper.ai.trace.RequestTrace;
+import com.example.aicodehelper.ai.trace.StageTracer;
+import com.example.aicodehelper.config.BlockingSchedulers;
+import com.example.aicodehelper.config.RequestIdFilter;
+import com.example.aicodehelper.dto.AssistRequest;
+import com.example.aicodehelper.dto.BatchModifyRequest;
+import com.example.aicodehelper.dto.ChatCancelRequest;
+import com.example.aicodehelper.dto.ChatRequest;
 import com.example.aicodehelper.dto.CodeDiffResult;
-import com.example.aicodehelper.util.DiffUtils;
+import com.example.aicodehelper.dto.CompactDiffResult;
+import com.example.aicodehelper.util.CompactDiff;
+import com.example.aicodehelper.util.SseEvents;
 import jakarta.annotation.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestAttribute;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.util.Map;
 
+/**
+ * AI 接口
+ * 同一份代码既可以运行在 Servlet/Tomcat 上（默认），也可以运行在 WebFlux/Netty 上（reactive 配置）：
+ * 接口不在调用线程上阻塞，同步模型调用返回 Mono、在 {@link BlockingSchedulers} 的 model 线程池上执行，
+ * 流式接口订阅时的阻塞工作（RAG 检索、会话记忆读取、项目结构概览）也分别放到 model / io 线程池上。
+ * 请求参数通过对象绑定（查询参数和表单都能读取），请求ID通过请求属性获取，两种运行方式下行为一致。
+ */
 @RestController
 @RequestMapping("/api/ai")
 public class AiController {
@@ -24,44 +56,144 @@ public class AiController {
     @Resource
     private AiCodeHelperService aiCodeHelperService;
 
+    // 单轮调用（chatWithRag、modifyCode、detectIntent）使用不带会话记忆的 AI 服务
     @Resource
-    private FileReaderTool fileReaderTool;
+    private StatelessAiCodeHelperService statelessAiCodeHelperService;
+
+    @Resource
+    private CodeModificationService codeModificationService;
+
+    @Resource
+    private IntentClassifier intentClassifier;
+
+    @Resource
+    private AssistService assistService;
+
+    @Resource
+    private ResponseCache responseCache;
+
+    @Resource
+    private StageTracer stageTracer;
+
+    @Resource
+    private ChatEventStreams chatEventStreams;
+
+    @Resource
+    private ChatGenerations chatGenerations;
+
+    @Resource
+    private BlockingSchedulers blockingSchedulers;
 
     /**
      * 聊天接口（支持GET和POST方法）
      * GET: 参数在URL中（短消息）
      * POST: 参数在请求体中（长消息，如带代码上下文）
+     * 响应为带类型的 SSE 事件（delta、tool、sources、done、error，数据均为 JSON，带连续的 seq），
+     * 只有收到 done 事件才表示回答完整，详见 {@link ChatEventStream}
+     * 连接中断后带 Last-Event-ID 请求头重发同一请求即可从该事件之后继续接收，不会重新生成回答；
+     * 超过 chat-stream.disconnect-cancel-timeout 没有重新连接时取消生成，也可以通过 /chat/cancel 主动取消
      * 
-     * @param memoryId    会话ID
-     * @param message     用户消息
-     * @param projectPath 项目根目录路径（可选，用于AI自主读取代码）
+     * @param request     会话ID（memoryId）、用户消息（message）、项目根目录路径（projectPath，可选，用于AI自主读取代码）
+     * @param lastEventId 断线续传时客户端收到的最后一个事件 id（可选）
+     * @param requestId   请求关联ID
      */
     @RequestMapping(value = "/chat", method = { RequestMethod.GET, RequestMethod.POST })
-    public Flux<ServerSentEvent<String>> chat(
-            @RequestParam int memoryId,
-            @RequestParam String message,
-            @RequestParam(required = false) String projectPath) {
-
-        // 如果前端提供了项目路径，更新 FileReaderTool 的工作目录
-        if (projectPath != null && !projectPath.trim().isEmpty()) {
-            fileReaderTool.setProjectRootPath(projectPath);
+    public Flux<ServerSentEvent<Object>> chat(
+            ChatRequest request,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+            @RequestAttribute(value = RequestIdFilter.ATTRIBUTE, required = false) String requestId) {
+        int memoryId = required(request.getMemoryId(), "memoryId");
+        String message = required(request.getMessage(), "message");
+
+        // 断线续传：回答仍在生成（或刚结束），直接接上原来的流
+        if (lastEventId != null && !lastEventId.isBlank()) {
+            return chatEventStreams.resume(memoryId, lastEventId.trim());
         }
 
-        return aiCodeHelperService.chatStream(memoryId, message)
-                .map(chunk -> ServerSentEvent.<String>builder()
-                        .data(chunk)
-                        .build());
+        // 记录各阶段耗时（按请求关联ID），流结束（完成、出错或客户端断开）时结束追踪
+        RequestTrace trace = stageTracer.start(requestId, "chat", memoryId);
+
+        // 如果前端提供了项目路径，更新 FileReaderTool 的工作目录并附上项目结构概览（读取文件，在 io 线程池上进行）
+        return blockingSchedulers.callIo(requestId, () -> {
+                    try (StageTracer.Stage ignored = stageTracer.begin(trace, "repo-map")) {
+                        return assistService.prepareChatMessage(memoryId, message, request.getProjectPath());
+                    }
+                })
+                .flatMapMany(preparedMessage -> {
+                    // 事件协议（delta / tool / sources / done / error）见 ChatEventStream，订阅时才开始调用模型
+                    ChatGeneration generation = chatGenerations.start(requestId, memoryId);
+                    ChatEventStream stream = chatEventStreams.create(memoryId, requestId, generation.getToken());
+                    return blockingSchedulers.subscribeOnModel(requestId,
+                            stream.events(() -> startGeneration(generation, stream, preparedMessage)));
+                })
+                .doFinally(signal -> stageTracer.finish(trace));
+    }
+
+    private static <T> T required(T value, String name) {
+        if (value == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "缺少参数 " + name);
+        }
+        return value;
+    }
+
+    /**
+     * 在取消令牌绑定的情况下启动模型调用（RAG 检索、模型调用和工具执行据此感知取消）
+     */
+    private void startGeneration(ChatGeneration generation, ChatEventStream stream, String message) {
+        CancellationToken.runWith(generation.getToken(), () -> {
+            try {
+                aiCodeHelperService.chatTokenStream(generation.getMemoryId(), message)
+                        .onPartialResponse(text -> {
+                            generation.append(text);
+                            stream.delta(text);
+                        })
+                        .onRetrieved(stream::retrieved)
+                        .onToolExecuted(stream::toolExecuted)
+                        .onCompleteResponse(response -> {
+                            chatGenerations.completed(generation, response);
+                            stream.complete(response);
+                        })
+                        .onError(error -> {
+                            chatGenerations.failed(generation, error);
+                            stream.error(error);
+                        })
+                        .start();
+            } catch (RuntimeException e) {
+                chatGenerations.failed(generation, e);
+                throw e;
+            }
+        });
+    }
+
+    /**
+     * 取消进行中的聊天生成（中止上游模型调用和未执行的工具），已输出的部分回答写入会话记忆，
+     * 原来的事件流以 finishReason 为 CANCELLED 的 done 事件结束
+     *
+     * @param request 会话ID（memoryId）和要取消的聊天请求的关联ID（requestId，即 X-Request-Id、事件 id 中的流ID）
+     * @return cancelled 为是否找到并取消了生成（已结束或不存在时为 false）
+     */
+    @PostMapping("/chat/cancel")
+    public Map<String, Object> cancelChat(ChatCancelRequest request) {
+        int memoryId = required(request.getMemoryId(), "memoryId");
+        String requestId = required(request.getRequestId(), "requestId");
+        return Map.of("cancelled", chatGenerations.cancel(memoryId, requestId, "client"));
     }
 
     /**
      * 基于RAG的聊天接口（强制标注来源）
      */
     @GetMapping("/chat-with-rag")
-    public String chatWithRag(String message) {
+    public Mono<String> chatWithRag(String message,
+            @RequestAttribute(value = RequestIdFilter.ATTRIBUTE, required = false) String requestId) {
+        return blockingSchedulers.callModel(requestId, () -> chatWithRag(message));
+    }
+
+    private String chatWithRag(String message) {
         try {
             // 在用户消息前添加强制标注来源的指令
             String enhancedMessage = "请先说明信息来源，然后回答：" + message;
-            String response = aiCodeHelperService.chatWithRag(enhancedMessage).content();
+            String response = responseCache.getOrCompute("chat-with-rag", ResponseCache.normalizeText(message),
+                    () -> statelessAiCodeHelperService.chatWithRag(enhancedMessage).content());
 
             // 确保回答包含来源标注
             if (!response.contains("信息来源") && !response.contains("基于企业级开发经验")) {
@@ -82,7 +214,12 @@ public class AiController {
      * @return 修改后的代码
      */
     @PostMapping("/modify-code")
-    public Map<String, String> modifyCode(@RequestBody Map<String, String> request) {
+    public Mono<Map<String, String>> modifyCode(@RequestBody Map<String, String> request,
+            @RequestAttribute(value = RequestIdFilter.ATTRIBUTE, required = false) String requestId) {
+        return blockingSchedulers.callModel(requestId, () -> modifyCode(request));
+    }
+
+    private Map<String, String> modifyCode(Map<String, String> request) {
         try {
             String originalCode = request.get("originalCode");
             String modificationInstruction = request.get("instruction");
@@ -97,10 +234,11 @@ public class AiController {
             }
 
             // 构建给AI的完整提示词
-            String prompt = buildModificationPrompt(originalCode, modificationInstruction, fileName);
+            String prompt = codeModificationService.buildModificationPrompt(originalCode, modificationInstruction, fileName);
 
-            // 调用AI服务生成修改后的代码
-            String modifiedCode = aiCodeHelperService.modifyCode(prompt);
+            // 调用AI服务生成修改后的代码（相同的代码和指令直接使用缓存结果）
+            String modifiedCode = responseCache.getOrCompute("modify-code", prompt,
+                    () -> statelessAiCodeHelperService.modifyCode(prompt).content());
 
             return Map.of(
                     "modifiedCode", modifiedCode,
@@ -115,12 +253,30 @@ public class AiController {
     /**
      * 代码修改接口（带差异比较）
      * 接收代码修改请求，返回修改后的代码和差异信息
+     * 可选参数 mode：full（返回完整文件）、patch（只返回编辑块）、auto（默认，按文件大小选择）
+     *
+     * 请求参数 format=compact 或 Accept: application/vnd.aicodehelper.diff-compact+json 时，
+     * 返回 CompactDiffResult（只包含原始代码哈希和编辑脚本），由客户端还原修改后代码
      *
      * @param request 包含原始代码和修改指令的请求体
+     * @param format  响应格式（可选，compact 表示紧凑格式）
+     * @param accept  Accept 请求头
      * @return 包含差异信息的修改结果
      */
     @PostMapping("/modify-code-with-diff")
-    public CodeDiffResult modifyCodeWithDiff(@RequestBody Map<String, String> request) {
+    public Mono<Object> modifyCodeWithDiff(@RequestBody Map<String, String> request,
+                                           @RequestParam(required = false) String format,
+                                           @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                           @RequestAttribute(value = RequestIdFilter.ATTRIBUTE, required = false) String requestId) {
+        boolean compact = "compact".equalsIgnoreCase(format)
+                || (accept != null && accept.contains(CompactDiffResult.MEDIA_TYPE));
+        return blockingSchedulers.callModel(requestId, () -> {
+            CodeDiffResult diffResult = modifyCodeWithDiff(request);
+            return compact ? CompactDiff.from(diffResult) : diffResult;
+        });
+    }
+
+    private CodeDiffResult modifyCodeWithDiff(Map<String, String> request) {
         try {
             String originalCode = request.get("originalCode");
             String modificationInstruction = request.get("instruction");
@@ -138,20 +294,10 @@ public class AiController {
                 return errorResult;
             }
 
-            // 构建给AI的完整提示词
-            String prompt = buildModificationPrompt(originalCode, modificationInstruction, fileName);
-
-            // 调用AI服务生成修改后的代码
-            String modifiedCode = aiCodeHelperService.modifyCode(prompt);
-
-            // 清理AI返回的代码
-            String cleanedModifiedCode = DiffUtils.cleanCode(modifiedCode);
-
-            // 计算差异
-            CodeDiffResult diffResult = DiffUtils.compareCode(
-                    originalCode, cleanedModifiedCode, modificationInstruction, fileName);
-
-            return diffResult;
+            // 生成修改后的代码并计算差异（大文件默认使用补丁模式）
+            return codeModificationService
+                    .modify(originalCode, modificationInstruction, fileName, request.get("mode"))
+                    .diffResult();
         } catch (Exception e) {
             CodeDiffResult errorResult = new CodeDiffResult();
             errorResult.setError("代码修改失败: " + e.getMessage());
@@ -159,15 +305,98 @@ public class AiController {
         }
     }
 
+    /**
+     * 代码修改接口（流式差异）
+     * 模型边生成边与原始代码比较，每个差异块一旦稳定就通过 SSE 推送：
+     * - event: hunk    单个差异块（CodeDiffResult.DiffHunk）
+     * - event: summary 最终结果（与 /modify-code-with-diff 返回结构相同）
+     * - event: error   错误信息
+     *
+     * @param request 包含原始代码和修改指令的请求体
+     */
+    @PostMapping("/modify-code-with-diff/stream")
+    public Flux<ServerSentEvent<Object>> modifyCodeWithDiffStream(@RequestBody Map<String, String> request,
+            @RequestAttribute(value = RequestIdFilter.ATTRIBUTE, required = false) String requestId) {
+        return SseEvents.withRequestId(blockingSchedulers.subscribeOnModel(requestId, diffStreamEvents(request)),
+                requestId);
+    }
+
+    private Flux<ServerSentEvent<Object>> diffStreamEvents(Map<String, String> request) {
+        String originalCode = request.get("originalCode");
+        String modificationInstruction = request.get("instruction");
+        String fileName = request.getOrDefault("fileName", "");
+
+        if (originalCode == null || originalCode.trim().isEmpty()) {
+            return Flux.just(SseEvents.error("原始代码不能为空"));
+        }
+        if (modificationInstruction == null || modificationInstruction.trim().isEmpty()) {
+            return Flux.just(SseEvents.error("修改指令不能为空"));
+        }
+
+        return codeModificationService.modifyStream(originalCode, modificationInstruction, fileName)
+                .map(item -> item instanceof CodeDiffResult result
+                        ? SseEvents.of("summary", result)
+                        : SseEvents.of("hunk", item))
+                .onErrorResume(e -> Flux.just(SseEvents.error("代码修改失败: " + e.getMessage())));
+    }
+
+    /**
+     * 批量代码修改接口（多文件并行）
+     * 服务端在有界并发下同时修改各文件，每个文件完成后立即通过 SSE 推送：
+     * - event: file  单个文件的结果（BatchFileResult，index 对应请求中的文件下标）
+     * - event: done  全部完成后的统计（总数、成功数、失败数、总耗时）
+     * - event: error 请求本身无效时的错误信息
+     *
+     * @param request 包含公共修改指令和文件列表的请求体
+     */
+    @PostMapping("/modify-code-with-diff/batch")
+    public Flux<ServerSentEvent<Object>> modifyCodeWithDiffBatch(@RequestBody BatchModifyRequest request,
+            @RequestAttribute(value = RequestIdFilter.ATTRIBUTE, required = false) String requestId) {
+        // 各文件的模型调用已在 model 线程池上执行（CodeModificationService.modifyBatch）
+        return SseEvents.withRequestId(batchEvents(request), requestId);
+    }
+
+    private Flux<ServerSentEvent<Object>> batchEvents(BatchModifyRequest request) {
+        if (request.getFiles() == null || request.getFiles().isEmpty()) {
+            return Flux.just(SseEvents.error("文件列表不能为空"));
+        }
+
+        return assistService.batchEvents(request)
+                .onErrorResume(e -> Flux.just(SseEvents.error("批量代码修改失败: " + e.getMessage())));
+    }
+
+    /**
+     * 统一助手接口（一次请求完成意图判断和对话/代码修改）
+     * 由服务端判断意图，在同一个 SSE 连接上返回对话内容（event: message）或差异结果（event: hunk / file），
+     * 客户端无需先调用 /detect-intent。事件说明见 AssistService。
+     *
+     * 意图判断、项目结构概览和模型调用的启动都在订阅时进行，整体放在 model 线程池上
+     *
+     * @param request 包含会话ID、用户消息、项目路径和上下文代码的请求体
+     */
+    @PostMapping("/assist")
+    public Flux<ServerSentEvent<Object>> assist(@RequestBody AssistRequest request,
+            @RequestAttribute(value = RequestIdFilter.ATTRIBUTE, required = false) String requestId) {
+        Flux<ServerSentEvent<Object>> events = blockingSchedulers
+                .subscribeOnModel(requestId, Flux.defer(() -> assistService.assist(request)))
+                .onErrorResume(e -> Flux.just(SseEvents.error("处理请求失败: " + e.getMessage())));
+        return SseEvents.withRequestId(events, requestId);
+    }
+
     /**
      * 意图识别接口
-     * 使用AI判断用户消息是修改代码意图还是普通对话意图
+     * 先用本地分类器判断（微秒级），置信度不足时再调用AI判断
      *
      * @param request 包含用户消息的请求体
-     * @return 意图类型: "modify" 或 "chat"
+     * @return 意图类型: "modify" 或 "chat"，source 表示结果来自本地分类器（local）还是AI（llm）
      */
     @PostMapping("/detect-intent")
-    public Map<String, String> detectIntent(@RequestBody Map<String, String> request) {
+    public Mono<Map<String, String>> detectIntent(@RequestBody Map<String, String> request,
+            @RequestAttribute(value = RequestIdFilter.ATTRIBUTE, required = false) String requestId) {
+        return blockingSchedulers.callModel(requestId, () -> detectIntent(request));
+    }
+
+    private Map<String, String> detectIntent(Map<String, String> request) {
         try {
             String message = request.get("message");
 
@@ -177,8 +406,18 @@ public class AiController {
                         "confidence", "low");
             }
 
-            // 调用AI服务进行意图识别
-            String intent = aiCodeHelperService.detectIntent(message);
+            // 本地分类器足够确定时直接返回，省去一次模型调用
+            IntentClassifier.Prediction prediction = intentClassifier.classify(message);
+            if (intentClassifier.isConfident(prediction)) {
+                return Map.of(
+                        "intent", prediction.intent(),
+                        "confidence", "high",
+                        "source", "local");
+            }
+
+            // 调用AI服务进行意图识别（相同消息直接使用缓存结果）
+            String intent = responseCache.getOrCompute("detect-intent", ResponseCache.normalizeText(message),
+                    () -> statelessAiCodeHelperService.detectIntent(message));
 
             // 清理返回结果，确保只有 "modify" 或 "chat"
             String cleanedIntent = intent.trim().toLowerCase();
@@ -189,7 +428,8 @@ public class AiController {
 
             return Map.of(
                     "intent", cleanedIntent,
-                    "confidence", "high");
+                    "confidence", "high",
+                    "source", "llm");
         } catch (Exception e) {
             // 如果出错，默认为普通对话
             return Map.of(
@@ -198,24 +438,4 @@ public class AiController {
                     "error", e.getMessage());
         }
     }
-
-    /**
-     * 构建代码修改提示词
-     */
-    private String buildModificationPrompt(String originalCode, String instruction, String fileName) {
-        StringBuilder prompt = new StringBuilder();
-        prompt.append("请根据以下指令修改代码。\n\n");
-
-        if (fileName != null && !fileName.isEmpty()) {
-            prompt.append("文件名: ").append(fileName).append("\n\n");
-        }
-
-        prompt.append("原始代码:\n```\n").append(originalCode).append("\n```\n\n");
-        prompt.append("修改指令: ").append(instruction).append("\n\n");
-        prompt.append("请直接返回修改后的完整代码，不要添加任何解释。");
-        prompt.append("代码必须可以直接使用，保持原有的格式和缩进。");
-        prompt.append("如果代码用```java包裹，请去掉包裹标记，只返回纯代码。");
-
-        return prompt.toString();
-    }
-}
\ No newline at end of file
+}
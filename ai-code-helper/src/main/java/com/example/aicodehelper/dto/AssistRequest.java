@@ -0,0 +1,51 @@
+package com.example.aicodehelper.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 统一助手请求
+ * 由服务端判断用户是想修改代码还是普通对话，在同一个连接上返回对话内容或差异结果
+ */
+public class AssistRequest {
+    private int memoryId;                                  // 会话ID
+    private String message;                                // 用户消息
+    private String projectPath;                            // 项目根目录路径（可选）
+    private List<BatchModifyRequest.FileItem> files;       // 上下文代码（可选）
+
+    public AssistRequest() {
+        this.files = new ArrayList<>();
+    }
+
+    public int getMemoryId() {
+        return memoryId;
+    }
+
+    public void setMemoryId(int memoryId) {
+        this.memoryId = memoryId;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    public String getProjectPath() {
+        return projectPath;
+    }
+
+    public void setProjectPath(String projectPath) {
+        this.projectPath = projectPath;
+    }
+
+    public List<BatchModifyRequest.FileItem> getFiles() {
+        return files;
+    }
+
+    public void setFiles(List<BatchModifyRequest.FileItem> files) {
+        this.files = files;
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.aicodehelper.dto;
+
+/**
+ * 批量代码修改中单个文件的结果
+ * 按完成顺序推送，客户端根据 index 对应到请求中的文件
+ */
+public class BatchFileResult {
+    private int index;                     // 文件在请求列表中的下标
+    private String mode;                   // 实际使用的输出模式
+    private long elapsedMs;                // 该文件的修改耗时（毫秒）
+    private CodeDiffResult result;         // 差异结果
+
+    public BatchFileResult() {
+    }
+
+    public BatchFileResult(int index, String mode, long elapsedMs, CodeDiffResult result) {
+        this.index = index;
+        this.mode = mode;
+        this.elapsedMs = elapsedMs;
+        this.result = result;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    public String getMode() {
+        return mode;
+    }
+
+    public void setMode(String mode) {
+        this.mode = mode;
+    }
+
+    public long getElapsedMs() {
+        return elapsedMs;
+    }
+
+    public void setElapsedMs(long elapsedMs) {
+        this.elapsedMs = elapsedMs;
+    }
+
+    public CodeDiffResult getResult() {
+        return result;
+    }
+
+    public void setResult(CodeDiffResult result) {
+        this.result = result;
+    }
+}
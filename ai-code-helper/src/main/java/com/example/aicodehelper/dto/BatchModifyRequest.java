@@ -0,0 +1,92 @@
+package com.example.aicodehelper.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 批量代码修改请求
+ * 多个文件共用同一条修改指令，单个文件也可以单独指定指令和输出模式
+ */
+public class BatchModifyRequest {
+    private String instruction;            // 公共修改指令
+    private String mode;                   // 公共输出模式: full, patch, auto
+    private List<FileItem> files;          // 待修改的文件列表
+
+    public BatchModifyRequest() {
+        this.files = new ArrayList<>();
+    }
+
+    public String getInstruction() {
+        return instruction;
+    }
+
+    public void setInstruction(String instruction) {
+        this.instruction = instruction;
+    }
+
+    public String getMode() {
+        return mode;
+    }
+
+    public void setMode(String mode) {
+        this.mode = mode;
+    }
+
+    public List<FileItem> getFiles() {
+        return files;
+    }
+
+    public void setFiles(List<FileItem> files) {
+        this.files = files;
+    }
+
+    /**
+     * 单个待修改文件
+     */
+    public static class FileItem {
+        private String fileName;           // 文件名
+        private String originalCode;       // 原始代码
+        private String instruction;        // 修改指令（为空时使用公共指令）
+        private String mode;               // 输出模式（为空时使用公共模式）
+
+        public FileItem() {
+        }
+
+        public FileItem(String fileName, String originalCode) {
+            this.fileName = fileName;
+            this.originalCode = originalCode;
+        }
+
+        public String getFileName() {
+            return fileName;
+        }
+
+        public void setFileName(String fileName) {
+            this.fileName = fileName;
+        }
+
+        public String getOriginalCode() {
+            return originalCode;
+        }
+
+        public void setOriginalCode(String originalCode) {
+            this.originalCode = originalCode;
+        }
+
+        public String getInstruction() {
+            return instruction;
+        }
+
+        public void setInstruction(String instruction) {
+            this.instruction = instruction;
+        }
+
+        public String getMode() {
+            return mode;
+        }
+
+        public void setMode(String mode) {
+            this.mode = mode;
+        }
+    }
+}
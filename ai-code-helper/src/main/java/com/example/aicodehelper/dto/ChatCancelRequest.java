@@ -0,0 +1,25 @@
+package com.example.aicodehelper.dto;
+
+/**
+ * 取消聊天生成的请求（/chat/cancel 的查询参数或表单参数）
+ */
+public class ChatCancelRequest {
+    private Integer memoryId;                              // 会话ID
+    private String requestId;                              // 要取消的聊天请求的关联ID
+
+    public Integer getMemoryId() {
+        return memoryId;
+    }
+
+    public void setMemoryId(Integer memoryId) {
+        this.memoryId = memoryId;
+    }
+
+    public String getRequestId() {
+        return requestId;
+    }
+
+    public void setRequestId(String requestId) {
+        this.requestId = requestId;
+    }
+}
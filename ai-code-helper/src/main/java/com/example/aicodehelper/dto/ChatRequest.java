@@ -0,0 +1,35 @@
+package com.example.aicodehelper.dto;
+
+/**
+ * 聊天请求（/chat 的查询参数或表单参数）
+ * 以对象绑定而不是逐个 @RequestParam，Servlet 和 WebFlux 下都能同时从查询参数和表单请求体中读取
+ */
+public class ChatRequest {
+    private Integer memoryId;                              // 会话ID
+    private String message;                                // 用户消息
+    private String projectPath;                            // 项目根目录路径（可选）
+
+    public Integer getMemoryId() {
+        return memoryId;
+    }
+
+    public void setMemoryId(Integer memoryId) {
+        this.memoryId = memoryId;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    public String getProjectPath() {
+        return projectPath;
+    }
+
+    public void setProjectPath(String projectPath) {
+        this.projectPath = projectPath;
+    }
+}
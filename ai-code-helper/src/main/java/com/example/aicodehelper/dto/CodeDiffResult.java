@@ -104,6 +104,7 @@ public class CodeDiffResult {
         private List<String> modifiedLinesList;  // 修改后代码行列表
         private DiffType type;              // 差异类型
         private String description;         // 差异描述
+        private List<LineEdit> lineEdits;   // 行内差异（仅 MODIFIED 类型，成对的相似行）
 
         public DiffHunk() {
             this.originalLinesList = new ArrayList<>();
@@ -184,6 +185,14 @@ public class CodeDiffResult {
             this.description = description;
         }
 
+        public List<LineEdit> getLineEdits() {
+            return lineEdits;
+        }
+
+        public void setLineEdits(List<LineEdit> lineEdits) {
+            this.lineEdits = lineEdits;
+        }
+
         /**
          * 添加原始代码行
          */
@@ -199,6 +208,59 @@ public class CodeDiffResult {
         }
     }
 
+    /**
+     * 行内差异类
+     * 表示一对修改前后的行中具体变化的字符区间，客户端可直接据此高亮
+     */
+    public static class LineEdit {
+        private int originalLine;           // 原始代码行号（从0开始）
+        private int modifiedLine;           // 修改后代码行号（从0开始）
+        private int[] originalRanges;       // 原始行中变化的字符区间 [start0, end0, start1, end1, ...]
+        private int[] modifiedRanges;       // 修改后行中变化的字符区间，格式同上
+
+        public LineEdit() {
+        }
+
+        public LineEdit(int originalLine, int modifiedLine, int[] originalRanges, int[] modifiedRanges) {
+            this.originalLine = originalLine;
+            this.modifiedLine = modifiedLine;
+            this.originalRanges = originalRanges;
+            this.modifiedRanges = modifiedRanges;
+        }
+
+        public int getOriginalLine() {
+            return originalLine;
+        }
+
+        public void setOriginalLine(int originalLine) {
+            this.originalLine = originalLine;
+        }
+
+        public int getModifiedLine() {
+            return modifiedLine;
+        }
+
+        public void setModifiedLine(int modifiedLine) {
+            this.modifiedLine = modifiedLine;
+        }
+
+        public int[] getOriginalRanges() {
+            return originalRanges;
+        }
+
+        public void setOriginalRanges(int[] originalRanges) {
+            this.originalRanges = originalRanges;
+        }
+
+        public int[] getModifiedRanges() {
+            return modifiedRanges;
+        }
+
+        public void setModifiedRanges(int[] modifiedRanges) {
+            this.modifiedRanges = modifiedRanges;
+        }
+    }
+
     /**
      * 差异类型枚举
      */
@@ -0,0 +1,100 @@
+package com.example.aicodehelper.dto;
+
+/**
+ * 紧凑格式的代码差异结果
+ * 只返回原始代码的哈希和按行号定位的编辑脚本，不重复返回客户端已有的原始代码，
+ * 客户端把脚本应用到自己的原始代码上即可还原修改后代码。
+ *
+ * 编辑脚本格式（按原始行号递增排列）：
+ * <pre>
+ * &#64; 原始起始行(从0开始) 删除行数 新增行数
+ * 新增的第1行
+ * 新增的第2行
+ * ...
+ * </pre>
+ */
+public class CompactDiffResult {
+
+    public static final String FORMAT = "compact-v1";
+
+    // 通过 Accept 请求头选择紧凑格式时使用的媒体类型
+    public static final String MEDIA_TYPE = "application/vnd.aicodehelper.diff-compact+json";
+
+    private String format = FORMAT;        // 格式版本
+    private String status;                 // 状态: success, error
+    private String error;                  // 错误信息
+    private String fileName;               // 文件名
+    private String baseHash;               // 原始代码的 SHA-256（客户端据此确认基准一致）
+    private String modifiedHash;           // 修改后代码的 SHA-256（客户端据此校验还原结果）
+    private int editCount;                 // 编辑数量
+    private String script;                 // 编辑脚本
+
+    public CompactDiffResult() {
+        this.status = "success";
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public void setFormat(String format) {
+        this.format = format;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+        this.status = "error";
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+
+    public String getBaseHash() {
+        return baseHash;
+    }
+
+    public void setBaseHash(String baseHash) {
+        this.baseHash = baseHash;
+    }
+
+    public String getModifiedHash() {
+        return modifiedHash;
+    }
+
+    public void setModifiedHash(String modifiedHash) {
+        this.modifiedHash = modifiedHash;
+    }
+
+    public int getEditCount() {
+        return editCount;
+    }
+
+    public void setEditCount(int editCount) {
+        this.editCount = editCount;
+    }
+
+    public String getScript() {
+        return script;
+    }
+
+    public void setScript(String script) {
+        this.script = script;
+    }
+}
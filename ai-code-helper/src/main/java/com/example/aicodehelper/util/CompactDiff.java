@@ -0,0 +1,110 @@
+package com.example.aicodehelper.util;
+
+import com.example.aicodehelper.dto.CodeDiffResult;
+import com.example.aicodehelper.dto.CompactDiffResult;
+import com.example.aicodehelper.util.diff.DiffAlgorithm;
+import com.example.aicodehelper.util.diff.Edit;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * 紧凑差异格式工具类
+ * 生成和应用 {@link CompactDiffResult} 中的按行号定位的编辑脚本
+ */
+public class CompactDiff {
+
+    private CompactDiff() {
+    }
+
+    /**
+     * 把差异结果转换为紧凑格式
+     * 编辑脚本按保留末尾空行的方式分行重新计算，保证客户端能逐字节还原修改后代码
+     */
+    public static CompactDiffResult from(CodeDiffResult diffResult) {
+        CompactDiffResult compact = new CompactDiffResult();
+        compact.setFileName(diffResult.getFileName());
+        if (diffResult.getError() != null) {
+            compact.setError(diffResult.getError());
+            return compact;
+        }
+
+        String originalCode = diffResult.getOriginalCode() == null ? "" : diffResult.getOriginalCode();
+        String modifiedCode = diffResult.getModifiedCode() == null ? "" : diffResult.getModifiedCode();
+        String[] originalLines = originalCode.split("\n", -1);
+        String[] modifiedLines = modifiedCode.split("\n", -1);
+
+        List<Edit> edits = DiffAlgorithm.MYERS.diff(originalLines, modifiedLines);
+        StringBuilder script = new StringBuilder();
+        for (Edit edit : edits) {
+            script.append("@ ").append(edit.originalStart())
+                    .append(' ').append(edit.originalEnd() - edit.originalStart())
+                    .append(' ').append(edit.modifiedEnd() - edit.modifiedStart())
+                    .append('\n');
+            for (int j = edit.modifiedStart(); j < edit.modifiedEnd(); j++) {
+                script.append(modifiedLines[j]).append('\n');
+            }
+        }
+
+        compact.setBaseHash(sha256(originalCode));
+        compact.setModifiedHash(sha256(modifiedCode));
+        compact.setEditCount(edits.size());
+        compact.setScript(script.toString());
+        return compact;
+    }
+
+    /**
+     * 把编辑脚本应用到原始代码上
+     *
+     * @throws IllegalArgumentException 脚本格式错误或行号越界
+     */
+    public static String apply(String originalCode, String script) {
+        String[] originalLines = (originalCode == null ? "" : originalCode).split("\n", -1);
+        List<String> result = new ArrayList<>(originalLines.length);
+
+        String[] scriptLines = script == null || script.isEmpty() ? new String[0] : script.split("\n", -1);
+        int position = 0;
+        int i = 0;
+        // 脚本以换行结尾，最后一个元素是空串
+        while (i < scriptLines.length - 1) {
+            String[] header = scriptLines[i++].split(" ");
+            if (header.length != 4 || !header[0].equals("@")) {
+                throw new IllegalArgumentException("编辑脚本格式错误: " + scriptLines[i - 1]);
+            }
+            int start = Integer.parseInt(header[1]);
+            int deleteCount = Integer.parseInt(header[2]);
+            int addCount = Integer.parseInt(header[3]);
+            if (start < position || start + deleteCount > originalLines.length || i + addCount > scriptLines.length - 1) {
+                throw new IllegalArgumentException("编辑脚本行号越界: " + String.join(" ", header));
+            }
+
+            while (position < start) {
+                result.add(originalLines[position++]);
+            }
+            for (int k = 0; k < addCount; k++) {
+                result.add(scriptLines[i++]);
+            }
+            position += deleteCount;
+        }
+        while (position < originalLines.length) {
+            result.add(originalLines[position++]);
+        }
+        return String.join("\n", result);
+    }
+
+    /**
+     * 计算文本的 SHA-256（十六进制）
+     */
+    public static String sha256(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 不可用", e);
+        }
+    }
+}
@@ -3,6 +3,10 @@ package com.example.aicodehelper.util;
 import com.example.aicodehelper.dto.CodeDiffResult;
 import com.example.aicodehelper.dto.CodeDiffResult.DiffHunk;
 import com.example.aicodehelper.dto.CodeDiffResult.DiffType;
+import com.example.aicodehelper.dto.CodeDiffResult.LineEdit;
+import com.example.aicodehelper.util.diff.DiffAlgorithm;
+import com.example.aicodehelper.util.diff.Edit;
+import com.example.aicodehelper.util.diff.IntraLineDiff;
 
 import java.util.Arrays;
 import java.util.ArrayList;
@@ -14,6 +18,12 @@ import java.util.List;
  */
 public class DiffUtils {
 
+    // 行对的公共字符占比低于此值时不计算行内差异
+    private static final double MIN_LINE_SIMILARITY = 0.4;
+
+    // 单个差异块最多计算的行对数
+    private static final int MAX_LINE_EDIT_PAIRS = 200;
+
     /**
      * 比较两段代码，生成差异结果
      *
@@ -36,6 +46,21 @@ public class DiffUtils {
      */
     public static CodeDiffResult compareCode(String originalCode, String modifiedCode,
                                            String instruction, String fileName) {
+        return compareCode(originalCode, modifiedCode, instruction, fileName, DiffAlgorithm.MYERS);
+    }
+
+    /**
+     * 比较两段代码，生成差异结果
+     *
+     * @param originalCode 原始代码
+     * @param modifiedCode 修改后代码
+     * @param instruction 修改指令
+     * @param fileName 文件名
+     * @param algorithm 差异算法
+     * @return 差异比较结果
+     */
+    public static CodeDiffResult compareCode(String originalCode, String modifiedCode,
+                                           String instruction, String fileName, DiffAlgorithm algorithm) {
         if (originalCode == null) originalCode = "";
         if (modifiedCode == null) modifiedCode = "";
 
@@ -45,138 +70,96 @@ public class DiffUtils {
         String[] originalLines = originalCode.split("\n");
         String[] modifiedLines = modifiedCode.split("\n");
 
-        // 使用Myers算法计算差异
-        List<DiffHunk> hunks = calculateDiff(originalLines, modifiedLines);
+        // 计算差异
+        List<DiffHunk> hunks = calculateDiff(originalLines, modifiedLines, algorithm);
         result.setHunks(hunks);
 
         return result;
     }
 
     /**
-     * 使用简化的Myers算法计算文本差异
+     * 计算文本差异
      *
      * @param originalLines 原始文本行数组
      * @param modifiedLines 修改后文本行数组
-     * @return 差异块列表
+     * @param algorithm     差异算法
+     * @return 差异块列表（只包含发生变化的最小区域）
      */
-    private static List<DiffHunk> calculateDiff(String[] originalLines, String[] modifiedLines) {
-        List<DiffHunk> hunks = new ArrayList<>();
-
-        // 使用简单的逐行比较算法
-        int originalIndex = 0;
-        int modifiedIndex = 0;
-
-        while (originalIndex < originalLines.length || modifiedIndex < modifiedLines.length) {
-            if (originalIndex >= originalLines.length) {
-                // 原始代码已结束，剩余的都是新增行
-                DiffHunk hunk = new DiffHunk(
-                    originalIndex, 0,
-                    modifiedIndex, modifiedLines.length - modifiedIndex,
-                    DiffType.ADDED
-                );
-                for (int i = modifiedIndex; i < modifiedLines.length; i++) {
-                    hunk.addModifiedLine(modifiedLines[i]);
-                }
-                hunks.add(hunk);
-                break;
-            }
-
-            if (modifiedIndex >= modifiedLines.length) {
-                // 修改后代码已结束，剩余的都是删除行
-                DiffHunk hunk = new DiffHunk(
-                    originalIndex, originalLines.length - originalIndex,
-                    modifiedIndex, 0,
-                    DiffType.REMOVED
-                );
-                for (int i = originalIndex; i < originalLines.length; i++) {
-                    hunk.addOriginalLine(originalLines[i]);
-                }
-                hunks.add(hunk);
-                break;
-            }
+    private static List<DiffHunk> calculateDiff(String[] originalLines, String[] modifiedLines,
+                                                DiffAlgorithm algorithm) {
+        List<String> original = Arrays.asList(originalLines);
+        List<String> modified = Arrays.asList(modifiedLines);
 
-            String originalLine = originalLines[originalIndex];
-            String modifiedLine = modifiedLines[modifiedIndex];
-
-            if (originalLine.equals(modifiedLine)) {
-                // 行相同，继续下一行
-                originalIndex++;
-                modifiedIndex++;
-            } else {
-                // 行不同，需要找出差异块
-                DiffHunk hunk = findDifferenceBlock(originalLines, modifiedLines, originalIndex, modifiedIndex);
-                hunks.add(hunk);
-                originalIndex += hunk.getOriginalLines();
-                modifiedIndex += hunk.getModifiedLines();
-            }
+        List<DiffHunk> hunks = new ArrayList<>();
+        for (Edit edit : algorithm.diff(originalLines, modifiedLines)) {
+            hunks.add(createHunk(original, edit.originalStart(), edit.originalEnd(),
+                    modified, edit.modifiedStart(), edit.modifiedEnd()));
         }
-
         return hunks;
     }
 
     /**
-     * 找出差异块
+     * 根据两侧的行范围创建差异块
+     *
+     * @param originalLines 原始文本行
+     * @param originalStart 原始起始行（从0开始，包含）
+     * @param originalEnd   原始结束行（不包含）
+     * @param modifiedLines 修改后文本行
+     * @param modifiedStart 修改后起始行（从0开始，包含）
+     * @param modifiedEnd   修改后结束行（不包含）
+     * @return 差异块
      */
-    private static DiffHunk findDifferenceBlock(String[] originalLines, String[] modifiedLines,
-                                              int originalStart, int modifiedStart) {
-        DiffHunk hunk = new DiffHunk();
-        hunk.setOriginalStart(originalStart);
-        hunk.setModifiedStart(modifiedStart);
-
-        int originalIndex = originalStart;
-        int modifiedIndex = modifiedStart;
-        int originalEnd = originalStart;
-        int modifiedEnd = modifiedStart;
-
-        // 找出连续的不同的行
-        while (originalIndex < originalLines.length && modifiedIndex < modifiedLines.length) {
-            String originalLine = originalLines[originalIndex];
-            String modifiedLine = modifiedLines[modifiedIndex];
-
-            if (originalLine.equals(modifiedLine)) {
-                // 找到相同的行，可能是差异块的结束
-                break;
-            }
-
-            hunk.addOriginalLine(originalLine);
-            hunk.addModifiedLine(modifiedLine);
-            originalIndex++;
-            modifiedIndex++;
-            originalEnd++;
-            modifiedEnd++;
+    public static DiffHunk createHunk(List<String> originalLines, int originalStart, int originalEnd,
+                                      List<String> modifiedLines, int modifiedStart, int modifiedEnd) {
+        DiffHunk hunk = new DiffHunk(
+                originalStart, originalEnd - originalStart,
+                modifiedStart, modifiedEnd - modifiedStart,
+                DiffType.MODIFIED);
+        for (int i = originalStart; i < originalEnd; i++) {
+            hunk.addOriginalLine(originalLines.get(i));
         }
-
-        // 处理末尾的情况
-        while (originalIndex < originalLines.length) {
-            hunk.addOriginalLine(originalLines[originalIndex]);
-            originalIndex++;
-            originalEnd++;
+        for (int i = modifiedStart; i < modifiedEnd; i++) {
+            hunk.addModifiedLine(modifiedLines.get(i));
         }
 
-        while (modifiedIndex < modifiedLines.length) {
-            hunk.addModifiedLine(modifiedLines[modifiedIndex]);
-            modifiedIndex++;
-            modifiedEnd++;
-        }
-
-        hunk.setOriginalLines(originalEnd - originalStart);
-        hunk.setModifiedLines(modifiedEnd - modifiedStart);
-
-        // 确定差异类型
-        if (hunk.getOriginalLinesList().isEmpty()) {
+        if (hunk.getOriginalLines() == 0) {
             hunk.setType(DiffType.ADDED);
-        } else if (hunk.getModifiedLinesList().isEmpty()) {
+        } else if (hunk.getModifiedLines() == 0) {
             hunk.setType(DiffType.REMOVED);
         } else {
-            hunk.setType(DiffType.MODIFIED);
+            hunk.setLineEdits(calculateLineEdits(hunk));
         }
-
-        // 生成描述
         hunk.setDescription(generateHunkDescription(hunk));
-
         return hunk;
     }
 
+    /**
+     * 计算修改块中成对行的行内差异
+     * 两侧按位置配对；公共字符太少的行对整行高亮即可，不生成行内差异
+     */
+    private static List<LineEdit> calculateLineEdits(DiffHunk hunk) {
+        List<String> originalLines = hunk.getOriginalLinesList();
+        List<String> modifiedLines = hunk.getModifiedLinesList();
+        int pairs = Math.min(Math.min(originalLines.size(), modifiedLines.size()), MAX_LINE_EDIT_PAIRS);
+
+        List<LineEdit> lineEdits = new ArrayList<>();
+        for (int i = 0; i < pairs; i++) {
+            String original = originalLines.get(i);
+            String modified = modifiedLines.get(i);
+            if (original.equals(modified)) {
+                continue;
+            }
+
+            IntraLineDiff.Spans spans = IntraLineDiff.diff(original, modified);
+            if (spans.common() < MIN_LINE_SIMILARITY * Math.max(original.length(), modified.length())) {
+                continue;
+            }
+            lineEdits.add(new LineEdit(hunk.getOriginalStart() + i, hunk.getModifiedStart() + i,
+                    spans.original(), spans.modified()));
+        }
+        return lineEdits.isEmpty() ? null : lineEdits;
+    }
+
     /**
      * 生成差异块的描述
      */
@@ -0,0 +1,326 @@
+package com.example.aicodehelper.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 补丁应用工具类
+ * 解析模型输出的 SEARCH/REPLACE 编辑块并应用到原始代码上：
+ *
+ * <pre>
+ * &lt;&lt;&lt;&lt;&lt;&lt;&lt; SEARCH
+ * 原始代码中的若干行
+ * =======
+ * 替换后的若干行
+ * &gt;&gt;&gt;&gt;&gt;&gt;&gt; REPLACE
+ * </pre>
+ *
+ * 每个编辑块依次尝试：精确匹配 → 忽略首尾空白的逐行匹配 → 相似度匹配。
+ * 每一级匹配到多个位置时都视为无法定位（不猜测要修改哪一处）。
+ * 相似度匹配只考虑首行（没有时末行）与 SEARCH 块完全一致（忽略首尾空白）的位置，并限制编辑距离的总计算量，
+ * 超出上限时同样视为无法定位。
+ * 任意一个编辑块无法定位时抛出 {@link PatchFailedException}，由调用方回退到整文件生成。
+ */
+public class PatchApplier {
+
+    private static final String SEARCH_MARKER = "<<<<<<<";
+    private static final String DIVIDER_MARKER = "=======";
+    private static final String REPLACE_MARKER = ">>>>>>>";
+
+    // 相似度匹配的最低平均行相似度
+    private static final double MIN_SIMILARITY = 0.85;
+
+    // 超过此行数的 SEARCH 块不做相似度匹配（开销过大，且模型应能精确复制）
+    private static final int MAX_FUZZY_LINES = 60;
+
+    // 相似度匹配中编辑距离计算的总字符比较次数上限（超出时视为无法定位，由调用方回退到整文件生成）
+    private static final long MAX_FUZZY_WORK = 20_000_000L;
+
+    // 逐行匹配找到多个位置
+    private static final int AMBIGUOUS = -2;
+
+    /**
+     * 单个编辑块
+     */
+    public record Edit(String search, String replace) {
+    }
+
+    /**
+     * 补丁无法解析或应用
+     */
+    public static class PatchFailedException extends RuntimeException {
+        public PatchFailedException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * 解析模型输出中的所有编辑块
+     *
+     * @param response 模型输出
+     * @return 编辑块列表
+     * @throws PatchFailedException 没有找到任何编辑块或格式不完整
+     */
+    public static List<Edit> parse(String response) {
+        List<Edit> edits = new ArrayList<>();
+        if (response == null) {
+            throw new PatchFailedException("模型没有返回任何内容");
+        }
+
+        String[] lines = response.replace("\r\n", "\n").split("\n", -1);
+        int i = 0;
+        while (i < lines.length) {
+            if (!isMarker(lines[i], SEARCH_MARKER)) {
+                i++;
+                continue;
+            }
+
+            List<String> search = new ArrayList<>();
+            i++;
+            while (i < lines.length && !isMarker(lines[i], DIVIDER_MARKER)) {
+                search.add(lines[i++]);
+            }
+            if (i >= lines.length) {
+                throw new PatchFailedException("编辑块缺少 " + DIVIDER_MARKER + " 分隔行");
+            }
+
+            List<String> replace = new ArrayList<>();
+            i++;
+            while (i < lines.length && !isMarker(lines[i], REPLACE_MARKER)) {
+                replace.add(lines[i++]);
+            }
+            if (i >= lines.length) {
+                throw new PatchFailedException("编辑块缺少 " + REPLACE_MARKER + " 结束行");
+            }
+            i++;
+
+            if (String.join("", search).isBlank()) {
+                throw new PatchFailedException("SEARCH 部分不能为空");
+            }
+            edits.add(new Edit(String.join("\n", search), String.join("\n", replace)));
+        }
+
+        if (edits.isEmpty()) {
+            throw new PatchFailedException("没有找到 SEARCH/REPLACE 编辑块");
+        }
+        return edits;
+    }
+
+    /**
+     * 依次将编辑块应用到代码上
+     *
+     * @param originalCode 原始代码
+     * @param edits        编辑块
+     * @return 修改后的代码
+     * @throws PatchFailedException 某个编辑块无法在代码中定位
+     */
+    public static String apply(String originalCode, List<Edit> edits) {
+        String code = originalCode == null ? "" : originalCode;
+        for (int i = 0; i < edits.size(); i++) {
+            code = applyEdit(code, edits.get(i), i + 1);
+        }
+        return code;
+    }
+
+    private static String applyEdit(String code, Edit edit, int index) {
+        // 1. 精确匹配
+        int exact = code.indexOf(edit.search());
+        if (exact >= 0) {
+            if (code.indexOf(edit.search(), exact + 1) >= 0) {
+                throw ambiguous(index);
+            }
+            return code.substring(0, exact) + edit.replace() + code.substring(exact + edit.search().length());
+        }
+
+        List<String> codeLines = new ArrayList<>(Arrays.asList(code.split("\n", -1)));
+        List<String> searchLines = trimBlankEdges(edit.search().split("\n", -1));
+        List<String> replaceLines = Arrays.asList(edit.replace().split("\n", -1));
+
+        // 2. 忽略每行首尾空白的匹配（模型常常弄错缩进）
+        int start = findTrimmedMatch(codeLines, searchLines);
+        if (start == AMBIGUOUS) {
+            throw ambiguous(index);
+        }
+
+        // 3. 相似度匹配（模型对个别字符的复制错误）
+        if (start < 0 && searchLines.size() <= MAX_FUZZY_LINES) {
+            start = findSimilarMatch(codeLines, searchLines);
+        }
+
+        if (start < 0) {
+            throw new PatchFailedException("第 " + index + " 个编辑块无法在原始代码中定位");
+        }
+
+        List<String> reindented = reindent(replaceLines, searchLines, codeLines.subList(start, start + searchLines.size()));
+        List<String> result = new ArrayList<>(codeLines.subList(0, start));
+        result.addAll(reindented);
+        result.addAll(codeLines.subList(start + searchLines.size(), codeLines.size()));
+        return String.join("\n", result);
+    }
+
+    private static PatchFailedException ambiguous(int index) {
+        return new PatchFailedException("第 " + index + " 个编辑块在原始代码中出现多次，无法确定修改位置");
+    }
+
+    /**
+     * 逐行比较（忽略首尾空白），返回唯一的匹配位置；没有匹配返回 -1，有多个匹配返回 AMBIGUOUS
+     */
+    private static int findTrimmedMatch(List<String> codeLines, List<String> searchLines) {
+        int found = -1;
+        for (int start = 0; start + searchLines.size() <= codeLines.size(); start++) {
+            boolean matches = true;
+            for (int k = 0; k < searchLines.size(); k++) {
+                if (!codeLines.get(start + k).trim().equals(searchLines.get(k).trim())) {
+                    matches = false;
+                    break;
+                }
+            }
+            if (matches) {
+                if (found >= 0) {
+                    return AMBIGUOUS;
+                }
+                found = start;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * 在相同行数的窗口中查找平均行相似度最高的位置；最高分不唯一时视为无法定位。
+     * 候选窗口优先取首行完全一致的位置，没有时取末行完全一致的位置（单独的 "}" 这类末行候选很多，
+     * 首行更有区分度）；编辑距离的计算量超过 {@link #MAX_FUZZY_WORK} 时放弃
+     */
+    private static int findSimilarMatch(List<String> codeLines, List<String> searchLines) {
+        int size = searchLines.size();
+        long budget = MAX_FUZZY_WORK;
+        for (int anchor : new int[]{0, size - 1}) {
+            String anchorLine = searchLines.get(anchor).trim();
+            int best = -1;
+            double bestScore = MIN_SIMILARITY;
+            boolean ambiguous = false;
+            boolean anyCandidate = false;
+
+            for (int start = 0; start + size <= codeLines.size(); start++) {
+                if (!codeLines.get(start + anchor).trim().equals(anchorLine)) {
+                    continue;
+                }
+                anyCandidate = true;
+                double total = 0;
+                for (int k = 0; k < size; k++) {
+                    String codeLine = codeLines.get(start + k).trim();
+                    String searchLine = searchLines.get(k).trim();
+                    if (!codeLine.equals(searchLine)) {
+                        budget -= (long) codeLine.length() * searchLine.length();
+                        if (budget < 0) {
+                            return -1;
+                        }
+                    }
+                    total += similarity(codeLine, searchLine);
+                }
+                double score = total / size;
+                if (score > bestScore) {
+                    best = start;
+                    bestScore = score;
+                    ambiguous = false;
+                } else if (best >= 0 && score == bestScore) {
+                    ambiguous = true;
+                }
+            }
+            if (anyCandidate) {
+                return ambiguous ? -1 : best;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 基于编辑距离的相似度（0~1）
+     */
+    static double similarity(String a, String b) {
+        if (a.equals(b)) {
+            return 1.0;
+        }
+        int maxLength = Math.max(a.length(), b.length());
+        if (maxLength == 0) {
+            return 1.0;
+        }
+
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return 1.0 - (double) previous[b.length()] / maxLength;
+    }
+
+    /**
+     * 如果模型输出的缩进与原始代码不同，按第一行的缩进差调整替换内容
+     */
+    private static List<String> reindent(List<String> replaceLines, List<String> searchLines, List<String> matchedLines) {
+        String searchIndent = leadingWhitespace(firstNonBlank(searchLines));
+        String originalIndent = leadingWhitespace(firstNonBlank(matchedLines));
+        if (searchIndent.equals(originalIndent)) {
+            return replaceLines;
+        }
+
+        List<String> result = new ArrayList<>(replaceLines.size());
+        for (String line : replaceLines) {
+            if (line.isBlank()) {
+                result.add(line);
+            } else if (line.startsWith(searchIndent)) {
+                result.add(originalIndent + line.substring(searchIndent.length()));
+            } else {
+                result.add(line);
+            }
+        }
+        return result;
+    }
+
+    private static List<String> trimBlankEdges(String[] lines) {
+        int from = 0;
+        int to = lines.length;
+        while (from < to && lines[from].isBlank()) {
+            from++;
+        }
+        while (to > from && lines[to - 1].isBlank()) {
+            to--;
+        }
+        return Arrays.asList(lines).subList(from, to);
+    }
+
+    private static String firstNonBlank(List<String> lines) {
+        for (String line : lines) {
+            if (!line.isBlank()) {
+                return line;
+            }
+        }
+        return "";
+    }
+
+    private static String leadingWhitespace(String line) {
+        int i = 0;
+        while (i < line.length() && Character.isWhitespace(line.charAt(i))) {
+            i++;
+        }
+        return line.substring(0, i);
+    }
+
+    private static boolean isMarker(String line, String marker) {
+        String trimmed = line.trim();
+        if (marker.equals(DIVIDER_MARKER)) {
+            return trimmed.equals(DIVIDER_MARKER);
+        }
+        return trimmed.startsWith(marker);
+    }
+}
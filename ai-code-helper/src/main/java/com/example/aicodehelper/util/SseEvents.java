@@ -0,0 +1,47 @@
+package com.example.aicodehelper.util;
+
+import org.springframework.http.codec.ServerSentEvent;
+import reactor.core.publisher.Flux;
+
+import java.util.Map;
+
+/**
+ * SSE 事件构建工具类
+ */
+public class SseEvents {
+
+    private SseEvents() {
+    }
+
+    /**
+     * 构建带事件名的 SSE 事件
+     */
+    public static ServerSentEvent<Object> of(String event, Object data) {
+        return ServerSentEvent.builder().event(event).data(data).build();
+    }
+
+    /**
+     * 构建错误事件（与非流式接口的错误结构一致）
+     */
+    public static ServerSentEvent<Object> error(String message) {
+        return of("error", Map.of("status", "error", "error", message));
+    }
+
+    /**
+     * 为每个事件设置 id 为请求关联ID，客户端据此把收到的事件与服务端日志对应
+     *
+     * @param events    事件流
+     * @param requestId 请求关联ID（为 null 时原样返回）
+     */
+    public static <T> Flux<ServerSentEvent<T>> withRequestId(Flux<ServerSentEvent<T>> events, String requestId) {
+        if (requestId == null) {
+            return events;
+        }
+        return events.map(event -> ServerSentEvent.builder(event.data())
+                .id(requestId)
+                .event(event.event())
+                .comment(event.comment())
+                .retry(event.retry())
+                .build());
+    }
+}
@@ -0,0 +1,219 @@
+package com.example.aicodehelper.util;
+
+import com.example.aicodehelper.dto.CodeDiffResult;
+import com.example.aicodehelper.dto.CodeDiffResult.DiffHunk;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 流式差异跟踪器
+ * 在模型逐块输出修改后代码的同时与原始代码比较，一旦某个差异块"稳定"
+ * （即两侧已在连续若干行相同的内容上重新对齐）就立即产出该差异块，
+ * 客户端无需等待整个文件生成完毕。
+ * 流式产出的差异块只是预览：贪心对齐可能与完整比较的结果不同，
+ * 最终结果（{@link #toResult}）按完整的修改后代码用 {@link DiffUtils#compareCode} 重新计算。
+ *
+ * 非线程安全：每个流式请求使用一个实例。
+ */
+public class StreamingDiffTracker {
+
+    // 重新对齐所需的连续相同行数
+    private static final int ANCHOR_LINES = 3;
+
+    private final String originalCode;
+    private final List<String> originalLines;
+    private final List<String> modifiedLines = new ArrayList<>();
+
+    // 尚未组成完整行的输出
+    private final StringBuilder partialLine = new StringBuilder();
+
+    // 两侧已确认对齐的位置
+    private int originalSynced = 0;
+    private int modifiedSynced = 0;
+
+    // 处理模型可能输出的 markdown 代码块标记
+    private boolean sawContent = false;
+    private boolean fenceOpened = false;
+    private boolean finished = false;
+
+    public StreamingDiffTracker(String originalCode) {
+        this.originalCode = originalCode == null ? "" : originalCode;
+        // 与 DiffUtils.compareCode 保持一致的分行方式
+        this.originalLines = Arrays.asList(this.originalCode.split("\n"));
+    }
+
+    /**
+     * 接收一段模型输出
+     *
+     * @param chunk 模型输出的文本片段
+     * @return 本次新确认的差异块（可能为空）
+     */
+    public List<DiffHunk> accept(String chunk) {
+        List<DiffHunk> stable = new ArrayList<>();
+        if (finished || chunk == null || chunk.isEmpty()) {
+            return stable;
+        }
+
+        partialLine.append(chunk);
+        int newline;
+        while (!finished && (newline = partialLine.indexOf("\n")) >= 0) {
+            String line = partialLine.substring(0, newline);
+            partialLine.delete(0, newline + 1);
+            acceptLine(stripCarriageReturn(line), stable);
+        }
+        return stable;
+    }
+
+    /**
+     * 输出结束，处理剩余内容
+     *
+     * @return 剩余的差异块
+     */
+    public List<DiffHunk> finish() {
+        List<DiffHunk> tail = new ArrayList<>();
+        if (!finished && partialLine.length() > 0) {
+            acceptLine(stripCarriageReturn(partialLine.toString()), tail);
+            partialLine.setLength(0);
+        }
+        finished = true;
+
+        // 去掉末尾的空行（cleanCode 同样会去除首尾空白）
+        while (modifiedLines.size() > modifiedSynced && modifiedLines.get(modifiedLines.size() - 1).isBlank()) {
+            modifiedLines.remove(modifiedLines.size() - 1);
+        }
+
+        // 剩余部分：去掉公共前缀和公共后缀后作为最后一个差异块
+        int originalStart = originalSynced;
+        int modifiedStart = modifiedSynced;
+        int originalEnd = originalLines.size();
+        int modifiedEnd = modifiedLines.size();
+
+        while (originalStart < originalEnd && modifiedStart < modifiedEnd
+                && originalLines.get(originalStart).equals(modifiedLines.get(modifiedStart))) {
+            originalStart++;
+            modifiedStart++;
+        }
+        while (originalEnd > originalStart && modifiedEnd > modifiedStart
+                && originalLines.get(originalEnd - 1).equals(modifiedLines.get(modifiedEnd - 1))) {
+            originalEnd--;
+            modifiedEnd--;
+        }
+
+        if (originalStart < originalEnd || modifiedStart < modifiedEnd) {
+            emit(originalStart, originalEnd, modifiedStart, modifiedEnd, tail);
+        }
+        originalSynced = originalLines.size();
+        modifiedSynced = modifiedLines.size();
+        return tail;
+    }
+
+    /**
+     * 构建最终结果：对原始代码和完整的修改后代码重新比较，差异块以此为准
+     */
+    public CodeDiffResult toResult(String instruction, String fileName) {
+        return DiffUtils.compareCode(originalCode, getModifiedCode(), instruction, fileName);
+    }
+
+    /**
+     * 当前已接收的修改后代码
+     */
+    public String getModifiedCode() {
+        return String.join("\n", modifiedLines);
+    }
+
+    private void acceptLine(String line, List<DiffHunk> stable) {
+        String trimmed = line.trim();
+
+        // 跳过开头的空行和 ```java 标记，遇到结束标记则停止
+        if (!sawContent) {
+            if (trimmed.isEmpty()) {
+                return;
+            }
+            if (trimmed.startsWith("```")) {
+                fenceOpened = true;
+                sawContent = true;
+                return;
+            }
+            sawContent = true;
+        } else if (fenceOpened && trimmed.equals("```")) {
+            finished = true;
+            return;
+        }
+
+        modifiedLines.add(line);
+        int current = modifiedLines.size() - 1;
+
+        // 已对齐且当前行与原始代码相同：直接前进
+        if (current == modifiedSynced && originalSynced < originalLines.size()
+                && originalLines.get(originalSynced).equals(line)) {
+            originalSynced++;
+            modifiedSynced++;
+            return;
+        }
+
+        // 在差异区域中：检查最近 ANCHOR_LINES 行能否在原始代码中重新对齐
+        int anchorStart = current - ANCHOR_LINES + 1;
+        if (anchorStart < modifiedSynced || !isSignificantAnchor(anchorStart, current + 1)) {
+            return;
+        }
+
+        int match = findAnchor(anchorStart);
+        if (match < 0) {
+            return;
+        }
+
+        if (match > originalSynced || anchorStart > modifiedSynced) {
+            emit(originalSynced, match, modifiedSynced, anchorStart, stable);
+        }
+        originalSynced = match + ANCHOR_LINES;
+        modifiedSynced = current + 1;
+    }
+
+    /**
+     * 在原始代码尚未对齐的部分中查找与锚点行相同的位置
+     * 只有唯一匹配时才对齐；出现多处匹配时无法确定对应关系，返回 -1 继续等待后续行
+     */
+    private int findAnchor(int anchorStart) {
+        int found = -1;
+        for (int j = originalSynced; j + ANCHOR_LINES <= originalLines.size(); j++) {
+            boolean matches = true;
+            for (int k = 0; k < ANCHOR_LINES; k++) {
+                if (!originalLines.get(j + k).equals(modifiedLines.get(anchorStart + k))) {
+                    matches = false;
+                    break;
+                }
+            }
+            if (matches) {
+                if (found >= 0) {
+                    return -1;
+                }
+                found = j;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * 锚点中至少要有一行有实际内容，避免在空行或单独的大括号上错误对齐
+     */
+    private boolean isSignificantAnchor(int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (modifiedLines.get(i).trim().length() > 1) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void emit(int originalStart, int originalEnd, int modifiedStart, int modifiedEnd, List<DiffHunk> out) {
+        DiffHunk hunk = DiffUtils.createHunk(originalLines, originalStart, originalEnd,
+                modifiedLines, modifiedStart, modifiedEnd);
+        out.add(hunk);
+    }
+
+    private static String stripCarriageReturn(String line) {
+        return line.endsWith("\r") ? line.substring(0, line.length() - 1) : line;
+    }
+}
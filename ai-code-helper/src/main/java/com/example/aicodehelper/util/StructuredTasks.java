@@ -0,0 +1,92 @@
+package com.example.aicodehelper.util;
+
+import com.example.aicodehelper.ai.cancel.CancellationToken;
+import com.example.aicodehelper.ai.cancel.GenerationCancelledException;
+import org.slf4j.MDC;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * 结构化并发工具类：把一次请求内互相独立的阻塞子任务（读取多个文件等）放到各自的虚拟线程上并行执行
+ * 子任务的生命周期限定在调用内：返回或抛出异常前所有子任务都已结束；遇到失败的子任务或调用线程被中断时取消其余子任务。
+ * 子任务继承调用线程的日志 MDC（请求关联ID）和取消令牌。
+ * Java 21 中的 StructuredTaskScope 仍是预览特性（需要 --enable-preview），这里用 try-with-resources 的
+ * 虚拟线程 ExecutorService（close 时等待所有任务结束）实现同样的约束。
+ */
+public class StructuredTasks {
+
+    private StructuredTasks() {
+    }
+
+    /**
+     * 并行执行所有任务，按任务顺序返回结果
+     *
+     * @param name        子任务线程名前缀（便于在线程转储和 JFR 中识别）
+     * @param parallelism 同时执行的子任务数上限
+     * @param tasks       子任务
+     * @throws GenerationCancelledException 调用线程被中断时
+     * @throws RuntimeException             第一个失败的子任务抛出的异常（受检异常包装为 IllegalStateException）
+     */
+    public static <T> List<T> invokeAll(String name, int parallelism, List<? extends Callable<? extends T>> tasks) {
+        if (tasks.isEmpty()) {
+            return List.of();
+        }
+        Map<String, String> mdc = MDC.getCopyOfContextMap();
+        CancellationToken token = CancellationToken.current();
+        Semaphore permits = new Semaphore(Math.max(1, parallelism));
+
+        try (ExecutorService scope = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-", 0).factory())) {
+            List<Future<T>> futures = new ArrayList<>(tasks.size());
+            try {
+                for (Callable<? extends T> task : tasks) {
+                    permits.acquire();
+                    futures.add(scope.submit(() -> {
+                        try {
+                            return callWith(mdc, token, task);
+                        } finally {
+                            permits.release();
+                        }
+                    }));
+                }
+                List<T> results = new ArrayList<>(futures.size());
+                for (Future<T> future : futures) {
+                    results.add(future.get());
+                }
+                return results;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                scope.shutdownNow();
+                throw new GenerationCancelledException("interrupted");
+            } catch (ExecutionException e) {
+                scope.shutdownNow();
+                if (e.getCause() instanceof RuntimeException runtime) {
+                    throw runtime;
+                }
+                if (e.getCause() instanceof Error error) {
+                    throw error;
+                }
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+    }
+
+    private static <T> T callWith(Map<String, String> mdc, CancellationToken token, Callable<? extends T> task)
+            throws Exception {
+        if (mdc != null) {
+            MDC.setContextMap(mdc);
+        }
+        if (token == null) {
+            return task.call();
+        }
+        token.throwIfCancelled();
+        return CancellationToken.callWith(token, task);
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.aicodehelper.util.diff;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 行级差异算法
+ *
+ * 比较前先把两侧的每一行驻留为整数ID（内容相同的行ID相同），算法内部只做整数比较。
+ */
+public enum DiffAlgorithm {
+
+    /**
+     * Myers O(ND) 算法：编辑脚本最短
+     */
+    MYERS,
+
+    /**
+     * Histogram 算法：以低频行对齐，差异块更易读
+     */
+    HISTOGRAM;
+
+    /**
+     * 计算两组文本行之间的编辑列表（按位置排序，相邻编辑已合并）
+     */
+    public List<Edit> diff(String[] originalLines, String[] modifiedLines) {
+        Map<String, Integer> ids = new HashMap<>(originalLines.length + modifiedLines.length);
+        int[] a = intern(originalLines, ids);
+        int[] b = intern(modifiedLines, ids);
+
+        List<Edit> edits = new ArrayList<>();
+        if (this == HISTOGRAM) {
+            HistogramDiff.diff(a, b, ids.size(), edits);
+        } else {
+            MyersDiff.diff(a, 0, a.length, b, 0, b.length, edits);
+        }
+        return merge(edits);
+    }
+
+    private static int[] intern(String[] lines, Map<String, Integer> ids) {
+        int[] result = new int[lines.length];
+        for (int i = 0; i < lines.length; i++) {
+            Integer id = ids.get(lines[i]);
+            if (id == null) {
+                id = ids.size();
+                ids.put(lines[i], id);
+            }
+            result[i] = id;
+        }
+        return result;
+    }
+
+    /**
+     * 合并首尾相接的编辑（递归拆分可能把一处连续修改拆成多段）
+     */
+    private static List<Edit> merge(List<Edit> edits) {
+        List<Edit> merged = new ArrayList<>(edits.size());
+        for (Edit edit : edits) {
+            if (edit.isEmpty()) {
+                continue;
+            }
+            if (!merged.isEmpty()) {
+                Edit last = merged.get(merged.size() - 1);
+                if (last.originalEnd() == edit.originalStart() && last.modifiedEnd() == edit.modifiedStart()) {
+                    merged.set(merged.size() - 1, new Edit(
+                            last.originalStart(), edit.originalEnd(), last.modifiedStart(), edit.modifiedEnd()));
+                    continue;
+                }
+            }
+            merged.add(edit);
+        }
+        return merged;
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.aicodehelper.util.diff;
+
+/**
+ * 一处编辑：原始代码 [originalStart, originalEnd) 被替换为修改后代码 [modifiedStart, modifiedEnd)
+ * 行号从0开始；某一侧为空区间时表示纯新增或纯删除
+ */
+public record Edit(int originalStart, int originalEnd, int modifiedStart, int modifiedEnd) {
+
+    public boolean isEmpty() {
+        return originalStart == originalEnd && modifiedStart == modifiedEnd;
+    }
+}
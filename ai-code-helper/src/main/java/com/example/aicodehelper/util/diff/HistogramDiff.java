@@ -0,0 +1,137 @@
+package com.example.aicodehelper.util.diff;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Histogram 差异算法（与 git diff --histogram 思路相同）
+ *
+ * 在当前区域中寻找"在原始代码中出现次数最少"的公共行作为锚点，向两侧扩展成最长公共片段，
+ * 再对左右两部分递归。以低频行（如方法签名）对齐而不是以空行、大括号对齐，
+ * 生成的差异块更符合阅读习惯；区域内没有低频公共行时退回 Myers 算法。
+ */
+final class HistogramDiff {
+
+    // 出现次数超过此值的行不作为锚点
+    private static final int MAX_CHAIN_LENGTH = 64;
+
+    private final int[] a;
+    private final int[] b;
+
+    // 按行ID记录当前区域内的出现次数和最后一次出现的位置；next[i] 为同一行ID在 i 之前的出现位置
+    private final int[] counts;
+    private final int[] heads;
+    private final int[] next;
+
+    private final List<Edit> out;
+
+    private HistogramDiff(int[] a, int[] b, int idCount, List<Edit> out) {
+        this.a = a;
+        this.b = b;
+        this.counts = new int[idCount];
+        this.heads = new int[idCount];
+        this.next = new int[a.length];
+        this.out = out;
+        Arrays.fill(heads, -1);
+    }
+
+    /**
+     * 计算 a 与 b 之间的编辑
+     *
+     * @param idCount 行ID总数（ID 取值范围为 [0, idCount)）
+     */
+    static void diff(int[] a, int[] b, int idCount, List<Edit> out) {
+        new HistogramDiff(a, b, idCount, out).diff(0, a.length, 0, b.length);
+    }
+
+    private void diff(int aStart, int aEnd, int bStart, int bEnd) {
+        while (aStart < aEnd && bStart < bEnd && a[aStart] == b[bStart]) {
+            aStart++;
+            bStart++;
+        }
+        while (aStart < aEnd && bStart < bEnd && a[aEnd - 1] == b[bEnd - 1]) {
+            aEnd--;
+            bEnd--;
+        }
+
+        if (aStart == aEnd && bStart == bEnd) {
+            return;
+        }
+        if (aStart == aEnd || bStart == bEnd) {
+            out.add(new Edit(aStart, aEnd, bStart, bEnd));
+            return;
+        }
+
+        int[] region = findAnchorRegion(aStart, aEnd, bStart, bEnd);
+        if (region == null) {
+            MyersDiff.diff(a, aStart, aEnd, b, bStart, bEnd, out);
+            return;
+        }
+
+        diff(aStart, region[0], bStart, region[2]);
+        diff(region[1], aEnd, region[3], bEnd);
+    }
+
+    /**
+     * 查找以最低频公共行为锚点的最长公共片段，返回 {aStart, aEnd, bStart, bEnd}
+     */
+    private int[] findAnchorRegion(int aStart, int aEnd, int bStart, int bEnd) {
+        // 统计原始区域中每行的出现次数
+        for (int i = aStart; i < aEnd; i++) {
+            int id = a[i];
+            if (counts[id] == 0) {
+                heads[id] = -1;
+            }
+            next[i] = heads[id];
+            heads[id] = i;
+            counts[id]++;
+        }
+
+        int[] best = null;
+        int bestLength = 0;
+        int lowestCount = MAX_CHAIN_LENGTH + 1;
+
+        for (int j = bStart; j < bEnd; ) {
+            int id = b[j];
+            int count = counts[id];
+            if (count == 0 || count > lowestCount) {
+                j++;
+                continue;
+            }
+
+            int nextJ = j + 1;
+            for (int i = heads[id]; i != -1; i = next[i]) {
+                int as = i;
+                int bs = j;
+                int ae = i + 1;
+                int be = j + 1;
+                int regionCount = count;
+
+                while (as > aStart && bs > bStart && a[as - 1] == b[bs - 1]) {
+                    as--;
+                    bs--;
+                    regionCount = Math.min(regionCount, counts[a[as]]);
+                }
+                while (ae < aEnd && be < bEnd && a[ae] == b[be]) {
+                    regionCount = Math.min(regionCount, counts[a[ae]]);
+                    ae++;
+                    be++;
+                }
+
+                if (ae - as > bestLength || regionCount < lowestCount) {
+                    best = new int[]{as, ae, bs, be};
+                    bestLength = ae - as;
+                    lowestCount = regionCount;
+                }
+                nextJ = Math.max(nextJ, be);
+            }
+            j = nextJ;
+        }
+
+        // 清理计数，供递归的子区域复用
+        for (int i = aStart; i < aEnd; i++) {
+            counts[a[i]] = 0;
+        }
+        return best;
+    }
+}
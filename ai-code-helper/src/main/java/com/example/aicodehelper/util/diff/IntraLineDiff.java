@@ -0,0 +1,207 @@
+package com.example.aicodehelper.util.diff;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 行内差异
+ * 计算一对修改前后的行中具体哪些字符发生了变化，结果为紧凑的偏移区间 [start, end)。
+ *
+ * 先去掉公共前缀和后缀；剩余部分两侧都不超过 64 个字符时，使用位并行 LCS 算法
+ * （每处理一个字符只需几次 long 运算）在字符级别比较，否则按单词/符号切分后用 Myers 算法在词级别比较。
+ */
+public final class IntraLineDiff {
+
+    private static final int WORD_SIZE = 64;
+
+    private IntraLineDiff() {
+    }
+
+    /**
+     * 行内差异结果
+     *
+     * @param original 原始行中被删除/修改的字符区间，扁平存储为 [start0, end0, start1, end1, ...]
+     * @param modified 修改后行中新增/修改的字符区间，格式同上
+     * @param common   两行公共字符数
+     */
+    public record Spans(int[] original, int[] modified, int common) {
+    }
+
+    /**
+     * 计算两行之间的字符变化区间
+     */
+    public static Spans diff(String original, String modified) {
+        int prefix = 0;
+        int maxPrefix = Math.min(original.length(), modified.length());
+        while (prefix < maxPrefix && original.charAt(prefix) == modified.charAt(prefix)) {
+            prefix++;
+        }
+        int suffix = 0;
+        int maxSuffix = maxPrefix - prefix;
+        while (suffix < maxSuffix && original.charAt(original.length() - 1 - suffix)
+                == modified.charAt(modified.length() - 1 - suffix)) {
+            suffix++;
+        }
+
+        String a = original.substring(prefix, original.length() - suffix);
+        String b = modified.substring(prefix, modified.length() - suffix);
+
+        boolean[] keptA = new boolean[a.length()];
+        boolean[] keptB = new boolean[b.length()];
+        int common = prefix + suffix;
+        if (!a.isEmpty() && !b.isEmpty()) {
+            if (a.length() <= WORD_SIZE && b.length() <= WORD_SIZE) {
+                common += bitParallelLcs(a, b, keptA, keptB);
+            } else {
+                common += tokenDiff(a, b, keptA, keptB);
+            }
+        }
+
+        return new Spans(toRanges(keptA, prefix), toRanges(keptB, prefix), common);
+    }
+
+    /**
+     * 位并行 LCS（Allison-Dix / Hyyrö）：V 中第 i 位为 0 表示 LCS 在 a 的第 i 个字符处增加。
+     * 保存处理 b 每个字符后的 V，回溯得到匹配的字符。要求 a.length() <= 64。
+     *
+     * @return LCS 长度
+     */
+    static int bitParallelLcs(String a, String b, boolean[] keptA, boolean[] keptB) {
+        int n = a.length();
+        int m = b.length();
+
+        // 每个字符在 a 中出现位置的位图
+        Map<Character, Long> matchMasks = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            matchMasks.merge(a.charAt(i), 1L << i, (x, y) -> x | y);
+        }
+
+        long[] rows = new long[m];
+        long v = ~0L;
+        for (int j = 0; j < m; j++) {
+            long u = v & matchMasks.getOrDefault(b.charAt(j), 0L);
+            v = (v + u) | (v - u);
+            rows[j] = v;
+        }
+
+        // 回溯：L(i, j) = rows[j-1] 的低 i 位中 0 的个数
+        int i = n;
+        int j = m;
+        int length = 0;
+        while (i > 0 && j > 0) {
+            if (a.charAt(i - 1) == b.charAt(j - 1)) {
+                keptA[i - 1] = true;
+                keptB[j - 1] = true;
+                length++;
+                i--;
+                j--;
+            } else if (lcsAt(rows, i - 1, j) >= lcsAt(rows, i, j - 1)) {
+                i--;
+            } else {
+                j--;
+            }
+        }
+        return length;
+    }
+
+    private static int lcsAt(long[] rows, int i, int j) {
+        if (i == 0 || j == 0) {
+            return 0;
+        }
+        long mask = i == WORD_SIZE ? ~0L : (1L << i) - 1;
+        return Long.bitCount(~rows[j - 1] & mask);
+    }
+
+    /**
+     * 按单词/空白/符号切分后用 Myers 算法比较
+     *
+     * @return 公共字符数
+     */
+    private static int tokenDiff(String a, String b, boolean[] keptA, boolean[] keptB) {
+        List<int[]> tokensA = tokenize(a);
+        List<int[]> tokensB = tokenize(b);
+
+        List<Edit> edits = DiffAlgorithm.MYERS.diff(texts(a, tokensA), texts(b, tokensB));
+
+        // 先全部标记为保留，再把编辑区域内的 token 标记为变化
+        Arrays.fill(keptA, true);
+        Arrays.fill(keptB, true);
+        for (Edit edit : edits) {
+            mark(tokensA, edit.originalStart(), edit.originalEnd(), keptA);
+            mark(tokensB, edit.modifiedStart(), edit.modifiedEnd(), keptB);
+        }
+
+        int common = 0;
+        for (boolean kept : keptA) {
+            if (kept) {
+                common++;
+            }
+        }
+        return common;
+    }
+
+    /**
+     * 切分为 token，返回每个 token 的 [start, end)
+     */
+    private static List<int[]> tokenize(String text) {
+        List<int[]> tokens = new ArrayList<>();
+        int i = 0;
+        while (i < text.length()) {
+            int start = i;
+            char c = text.charAt(i);
+            if (Character.isJavaIdentifierPart(c)) {
+                while (i < text.length() && Character.isJavaIdentifierPart(text.charAt(i))) {
+                    i++;
+                }
+            } else if (Character.isWhitespace(c)) {
+                while (i < text.length() && Character.isWhitespace(text.charAt(i))) {
+                    i++;
+                }
+            } else {
+                i++;
+            }
+            tokens.add(new int[]{start, i});
+        }
+        return tokens;
+    }
+
+    private static String[] texts(String text, List<int[]> tokens) {
+        String[] result = new String[tokens.size()];
+        for (int i = 0; i < tokens.size(); i++) {
+            result[i] = text.substring(tokens.get(i)[0], tokens.get(i)[1]);
+        }
+        return result;
+    }
+
+    private static void mark(List<int[]> tokens, int from, int to, boolean[] kept) {
+        for (int t = from; t < to; t++) {
+            for (int c = tokens.get(t)[0]; c < tokens.get(t)[1]; c++) {
+                kept[c] = false;
+            }
+        }
+    }
+
+    /**
+     * 把未保留的字符合并为连续区间，并加上偏移量
+     */
+    private static int[] toRanges(boolean[] kept, int offset) {
+        List<Integer> ranges = new ArrayList<>();
+        int i = 0;
+        while (i < kept.length) {
+            if (kept[i]) {
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < kept.length && !kept[i]) {
+                i++;
+            }
+            ranges.add(offset + start);
+            ranges.add(offset + i);
+        }
+        return ranges.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.aicodehelper.util.diff;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Myers O(ND) 差异算法（线性空间版本）
+ *
+ * 每次从两端同时搜索 D-path，找到"中间蛇"后把问题拆成左右两半递归处理，
+ * 空间复杂度 O(N+M)，结果为最短编辑脚本。输入为已驻留（intern）的整数行ID。
+ */
+final class MyersDiff {
+
+    // 单次搜索的最大编辑距离，超过后把剩余区域整体视为替换，避免完全不同的大文件退化为 O(N²)
+    private static final int MAX_COST = 4096;
+
+    private MyersDiff() {
+    }
+
+    /**
+     * 计算 a[aStart, aEnd) 与 b[bStart, bEnd) 之间的编辑
+     */
+    static void diff(int[] a, int aStart, int aEnd, int[] b, int bStart, int bEnd, List<Edit> out) {
+        // 去掉公共前缀和公共后缀
+        while (aStart < aEnd && bStart < bEnd && a[aStart] == b[bStart]) {
+            aStart++;
+            bStart++;
+        }
+        while (aStart < aEnd && bStart < bEnd && a[aEnd - 1] == b[bEnd - 1]) {
+            aEnd--;
+            bEnd--;
+        }
+
+        if (aStart == aEnd && bStart == bEnd) {
+            return;
+        }
+        if (aStart == aEnd || bStart == bEnd) {
+            out.add(new Edit(aStart, aEnd, bStart, bEnd));
+            return;
+        }
+
+        int[] split = middleSnake(a, aStart, aEnd, b, bStart, bEnd);
+        if (split == null) {
+            out.add(new Edit(aStart, aEnd, bStart, bEnd));
+            return;
+        }
+
+        diff(a, aStart, split[0], b, bStart, split[1], out);
+        diff(a, split[0], aEnd, b, split[1], bEnd, out);
+    }
+
+    /**
+     * 同时从前向后、从后向前搜索，返回两条路径重叠处的分割点 {x, y}；
+     * 找不到（超过代价上限）时返回 null
+     */
+    private static int[] middleSnake(int[] a, int aStart, int aEnd, int[] b, int bStart, int bEnd) {
+        int n = aEnd - aStart;
+        int m = bEnd - bStart;
+        int maxD = Math.min((n + m + 1) / 2, MAX_COST);
+        int offset = maxD + 1;
+        int length = 2 * offset + 1;
+
+        // forward[k] / backward[k]：对角线 k 上已到达的最远 x（backward 从末尾反向计数）
+        int[] forward = new int[length];
+        int[] backward = new int[length];
+        Arrays.fill(forward, -1);
+        Arrays.fill(backward, -1);
+        forward[offset + 1] = 0;
+        backward[offset + 1] = 0;
+
+        int delta = n - m;
+        // delta 为奇数时在前向搜索中检测重叠，否则在反向搜索中检测
+        boolean checkInForward = (delta & 1) != 0;
+
+        // 越过边界的对角线不再搜索
+        int forwardStart = 0;
+        int forwardEnd = 0;
+        int backwardStart = 0;
+        int backwardEnd = 0;
+
+        for (int d = 0; d < maxD; d++) {
+            for (int k = -d + forwardStart; k <= d - forwardEnd; k += 2) {
+                int index = offset + k;
+                int x;
+                if (k == -d || (k != d && forward[index - 1] < forward[index + 1])) {
+                    x = forward[index + 1];
+                } else {
+                    x = forward[index - 1] + 1;
+                }
+                int y = x - k;
+                while (x < n && y < m && a[aStart + x] == b[bStart + y]) {
+                    x++;
+                    y++;
+                }
+                forward[index] = x;
+
+                if (x > n) {
+                    forwardEnd += 2;
+                } else if (y > m) {
+                    forwardStart += 2;
+                } else if (checkInForward) {
+                    int backwardIndex = offset + delta - k;
+                    if (backwardIndex >= 0 && backwardIndex < length && backward[backwardIndex] != -1
+                            && x >= n - backward[backwardIndex]) {
+                        return new int[]{aStart + x, bStart + y};
+                    }
+                }
+            }
+
+            for (int k = -d + backwardStart; k <= d - backwardEnd; k += 2) {
+                int index = offset + k;
+                int x;
+                if (k == -d || (k != d && backward[index - 1] < backward[index + 1])) {
+                    x = backward[index + 1];
+                } else {
+                    x = backward[index - 1] + 1;
+                }
+                int y = x - k;
+                while (x < n && y < m && a[aEnd - x - 1] == b[bEnd - y - 1]) {
+                    x++;
+                    y++;
+                }
+                backward[index] = x;
+
+                if (x > n) {
+                    backwardEnd += 2;
+                } else if (y > m) {
+                    backwardStart += 2;
+                } else if (!checkInForward) {
+                    int forwardIndex = offset + delta - k;
+                    if (forwardIndex >= 0 && forwardIndex < length && forward[forwardIndex] != -1) {
+                        int forwardX = forward[forwardIndex];
+                        int forwardY = forwardX - (forwardIndex - offset);
+                        if (forwardX >= n - x) {
+                            return new int[]{aStart + forwardX, bStart + forwardY};
+                        }
+                    }
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.aicodehelper.ai;
+
+import com.example.aicodehelper.ai.trace.StageTracer;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.rag.content.retriever.ContentRetriever;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * AiCodeHelperServiceFactory 测试类
+ * 测试单轮调用使用的 AI 服务不带会话记忆，多轮对话的 AI 服务仍按会话保存记忆
+ */
+@DisplayName("AI服务工厂测试")
+class AiCodeHelperServiceFactoryTest {
+
+    private final List<ChatRequest> requests = new CopyOnWriteArrayList<>();
+
+    private final ChatModel capturing = new ChatModel() {
+        @Override
+        public ChatResponse chat(ChatRequest chatRequest) {
+            requests.add(chatRequest);
+            return ChatResponse.builder().aiMessage(AiMessage.from("modify")).build();
+        }
+    };
+
+    @Test
+    @DisplayName("测试单轮调用之间不共享记忆，请求中不带其他调用的提示词")
+    void testStatelessServiceHasNoMemory() {
+        StatelessAiCodeHelperService stateless = factory().statelessAiCodeHelperService();
+
+        stateless.modifyCode("原始代码：A.java");
+        stateless.modifyCodeWithPatch("原始代码：B.java");
+        stateless.detectIntent("帮我重构");
+
+        assertEquals(3, requests.size());
+        for (ChatRequest request : requests) {
+            assertEquals(2, request.messages().size(), "只应包含系统提示词和本次用户消息");
+        }
+        assertFalse(userText(requests.get(1)).contains("A.java"));
+        assertFalse(userText(requests.get(2)).contains("B.java"));
+    }
+
+    @Test
+    @DisplayName("测试多轮对话的AI服务仍保留会话记忆")
+    void testConversationServiceKeepsMemory() {
+        AiCodeHelperService conversation = factory().aiCodeHelperService();
+
+        conversation.chat("第一轮");
+        conversation.chat("第二轮");
+
+        assertEquals(4, requests.get(1).messages().size(), "第二轮应带上第一轮的问答");
+    }
+
+    private AiCodeHelperServiceFactory factory() {
+        AiCodeHelperServiceFactory factory = new AiCodeHelperServiceFactory();
+        ContentRetriever noContent = query -> List.of();
+        ReflectionTestUtils.setField(factory, "myQwenChatModel", capturing);
+        ReflectionTestUtils.setField(factory, "contentRetriever", noContent);
+        ReflectionTestUtils.setField(factory, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(factory, "stageTracer", new StageTracer());
+        return factory;
+    }
+
+    private static String userText(ChatRequest request) {
+        ChatMessage last = request.messages().get(request.messages().size() - 1);
+        return ((UserMessage) last).singleText();
+    }
+}
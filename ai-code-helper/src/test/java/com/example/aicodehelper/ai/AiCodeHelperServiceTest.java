@@ -1,5 +1,6 @@
 package com.example.aicodehelper.ai;
 
+import com.example.aicodehelper.ai.modify.CodeModificationService;
 import dev.langchain4j.service.Result;
 import jakarta.annotation.Resource;
 import org.junit.jupiter.api.Test;
@@ -13,6 +14,9 @@ class AiCodeHelperServiceTest {
     @Resource
     private AiCodeHelperService aiCodeHelperService;
 
+    @Resource
+    private CodeModificationService codeModificationService;
+
     @Test
     void chat() {
         String result = aiCodeHelperService.chat("你好，我是ycc");
@@ -55,4 +59,27 @@ class AiCodeHelperServiceTest {
             assertTrue(e.getMessage().contains("kill"), "错误消息应该包含敏感词");
         }
     }
+
+    /**
+     * 对比整文件模式和补丁模式的输出 token 数与耗时（需要真实的 DashScope API Key）
+     */
+    @Test
+    void modifyCodeFullVsPatch() {
+        StringBuilder code = new StringBuilder("public class Inventory {\n");
+        for (int i = 0; i < 60; i++) {
+            code.append("    public int item").append(i).append("(int count) {\n");
+            code.append("        return count * ").append(i).append(";\n");
+            code.append("    }\n\n");
+        }
+        code.append("}");
+        String instruction = "把 item7 方法的返回值改为 count * 7 + 1";
+
+        for (String mode : new String[]{CodeModificationService.MODE_FULL, CodeModificationService.MODE_PATCH}) {
+            CodeModificationService.Outcome outcome = codeModificationService.modify(
+                    code.toString(), instruction, "Inventory.java", mode);
+            System.out.printf("mode=%s 输出tokens=%d 耗时=%dms 差异块=%d%n", outcome.mode(),
+                    outcome.outputTokens(), outcome.elapsedMs(), outcome.diffResult().getHunks().size());
+            assertTrue(outcome.diffResult().getModifiedCode().contains("return count * 7 + 1;"));
+        }
+    }
 }
@@ -0,0 +1,266 @@
+package com.example.aicodehelper.ai.assist;
+
+import com.example.aicodehelper.ai.AiCodeHelperService;
+import com.example.aicodehelper.ai.cancel.CancellableStreamingChatModel;
+import com.example.aicodehelper.ai.cancel.CancellationToken;
+import com.example.aicodehelper.ai.intent.IntentClassifier;
+import com.example.aicodehelper.ai.modify.CodeModificationService;
+import com.example.aicodehelper.dto.AssistRequest;
+import com.example.aicodehelper.dto.BatchModifyRequest;
+import com.example.aicodehelper.dto.CodeDiffResult;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.service.AiServices;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+import dev.langchain4j.store.memory.chat.InMemoryChatMemoryStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * AssistService 测试类
+ * 使用模拟的模型调用，验证本地判断、模型标签判断两条路径上的事件序列，
+ * 以及模型标签判断时上游生成的中止和会话记忆的整理
+ */
+@DisplayName("统一助手测试")
+class AssistServiceTest {
+
+    private static final String CODE = "class A {\n    int a = 1;\n}";
+
+    private final AiCodeHelperService aiCodeHelperService = mock(AiCodeHelperService.class);
+    private final CodeModificationService codeModificationService = mock(CodeModificationService.class);
+    private final IntentClassifier intentClassifier = mock(IntentClassifier.class);
+    // 写入回答时可以暂停（armed 时），模拟取消前已开始的完成回调还在写记忆
+    private final CountDownLatch answerWriting = new CountDownLatch(1);
+    private final CountDownLatch answerWritten = new CountDownLatch(1);
+    private final CountDownLatch releaseAnswerWrite = new CountDownLatch(1);
+    private final AtomicBoolean pauseAnswerWrite = new AtomicBoolean(false);
+    private final ChatMemoryStore chatMemoryStore = new InMemoryChatMemoryStore() {
+        @Override
+        public void updateMessages(Object memoryId, List<ChatMessage> messages) {
+            boolean answer = !messages.isEmpty() && messages.get(messages.size() - 1) instanceof AiMessage;
+            if (answer && pauseAnswerWrite.compareAndSet(true, false)) {
+                answerWriting.countDown();
+                try {
+                    releaseAnswerWrite.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.updateMessages(memoryId, messages);
+                answerWritten.countDown();
+                return;
+            }
+            super.updateMessages(memoryId, messages);
+        }
+    };
+    private final AssistService service = new AssistService();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(service, "aiCodeHelperService", aiCodeHelperService);
+        ReflectionTestUtils.setField(service, "codeModificationService", codeModificationService);
+        ReflectionTestUtils.setField(service, "intentClassifier", intentClassifier);
+        ReflectionTestUtils.setField(service, "chatMemoryStore", chatMemoryStore);
+
+        when(codeModificationService.modifyStream(anyString(), anyString(), anyString())).thenReturn(Flux.just(
+                new CodeDiffResult.DiffHunk(),
+                new CodeDiffResult(CODE, CODE.replace("1", "2"), "改成 2", "A.java")));
+    }
+
+    @Test
+    @DisplayName("测试本地判断为修改意图时不调用对话模型")
+    void testLocalModify() {
+        predict(IntentClassifier.MODIFY, 0.95, true);
+
+        List<String> events = eventNames(service.assist(request("把 a 改成 2")));
+
+        assertEquals(List.of("intent", "hunk", "file", "done"), events);
+        verify(aiCodeHelperService, never()).chatStream(anyInt(), anyString());
+    }
+
+    @Test
+    @DisplayName("测试模型输出修改标签后取消对话调用并转入修改流程")
+    void testModelRoutesToModify() {
+        predict(IntentClassifier.CHAT, 0.6, false);
+        AtomicBoolean cancelled = new AtomicBoolean(false);
+        when(aiCodeHelperService.chatStream(anyInt(), anyString()))
+                .thenReturn(Flux.just("[MOD", "IFY]", "\n不应输出").doOnCancel(() -> cancelled.set(true)));
+
+        List<ServerSentEvent<Object>> events = service.assist(request("a 这里能不能变成 2")).collectList().block();
+
+        assertNotNull(events);
+        assertEquals(List.of("intent", "hunk", "file", "done"), events.stream().map(ServerSentEvent::event).toList());
+        assertEquals(Map.of("intent", "modify", "source", "llm"), events.get(0).data());
+        assertTrue(cancelled.get(), "判断为修改后应取消对话调用");
+    }
+
+    @Test
+    @DisplayName("测试模型输出对话标签后直接流式返回回答")
+    void testModelRoutesToChat() {
+        predict(IntentClassifier.CHAT, 0.6, false);
+        when(aiCodeHelperService.chatStream(anyInt(), anyString()))
+                .thenReturn(Flux.just("[CHAT]\n", "这里的 a ", "是成员变量"));
+
+        List<ServerSentEvent<Object>> events = service.assist(request("a 是什么")).collectList().block();
+
+        assertNotNull(events);
+        assertEquals(List.of("intent", "message", "message", "done"), events.stream().map(ServerSentEvent::event).toList());
+        assertEquals(Map.of("content", "这里的 a "), events.get(1).data());
+        verify(codeModificationService, never()).modifyStream(anyString(), anyString(), anyString());
+    }
+
+    @Test
+    @DisplayName("测试修改标签中止上游生成，会话记忆中不保留这一轮")
+    void testModifyTagAbortsUpstreamAndLeavesNoTurn() {
+        predict(IntentClassifier.CHAT, 0.6, false);
+        CountDownLatch aborted = new CountDownLatch(1);
+        AtomicBoolean tokenBound = new AtomicBoolean(false);
+        useRealAiService((request, handler) -> {
+            // 模拟 DashScope：在令牌上登记中止动作，在 HTTP 客户端线程上输出，中止后不再产生输出
+            CancellationToken token = CancellationToken.current();
+            tokenBound.set(token != null);
+            if (token != null) {
+                token.onCancel(aborted::countDown);
+            }
+            new Thread(() -> {
+                handler.onPartialResponse("[MOD");
+                handler.onPartialResponse("IFY]");
+                try {
+                    if (!aborted.await(5, TimeUnit.SECONDS)) {
+                        handler.onPartialResponse("\n不应输出");
+                        handler.onCompleteResponse(ChatResponse.builder().aiMessage(AiMessage.from("[MODIFY]\n不应输出")).build());
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }).start();
+        });
+        chatMemoryStore.updateMessages(1, List.of(UserMessage.from("之前的问题"), AiMessage.from("之前的回答")));
+
+        List<String> events = eventNames(service.assist(request("a 这里能不能变成 2")));
+
+        assertEquals(List.of("intent", "hunk", "file", "done"), events);
+        assertTrue(tokenBound.get(), "模型调用时应绑定取消令牌");
+        assertEquals(0, aborted.getCount(), "判断为修改后应中止上游生成");
+        List<ChatMessage> memory = chatMemoryStore.getMessages(1);
+        assertTrue(memory.containsAll(List.of(UserMessage.from("之前的问题"), AiMessage.from("之前的回答"))));
+        assertEquals(1, memory.stream().filter(UserMessage.class::isInstance).count(), "不应保留没有回答的用户消息");
+    }
+
+    @Test
+    @DisplayName("测试对话标签时会话记忆中只保留原始消息和去掉标签的回答")
+    void testChatTurnWrittenBackWithoutRoutingInstruction() {
+        predict(IntentClassifier.CHAT, 0.6, false);
+        useRealAiService((request, handler) -> {
+            handler.onPartialResponse("[CHAT]\n");
+            handler.onPartialResponse("是成员变量");
+            handler.onCompleteResponse(ChatResponse.builder().aiMessage(AiMessage.from("[CHAT]\n是成员变量")).build());
+        });
+
+        List<String> events = eventNames(service.assist(request("a 是什么")));
+
+        assertEquals(List.of("intent", "message", "done"), events);
+        List<ChatMessage> memory = chatMemoryStore.getMessages(1);
+        UserMessage user = (UserMessage) memory.get(memory.size() - 2);
+        assertFalse(user.singleText().contains("回复格式"), "记忆中不应包含回复格式要求");
+        assertTrue(user.singleText().endsWith("用户问题:\na 是什么"));
+        assertEquals(AiMessage.from("是成员变量"), memory.get(memory.size() - 1));
+    }
+
+    @Test
+    @DisplayName("测试客户端断开时等正在写入的回答写完后再整理记忆，且只整理一次")
+    void testDisconnectCleansUpAfterInFlightAnswer() throws InterruptedException {
+        predict(IntentClassifier.CHAT, 0.6, false);
+        useRealAiService((request, handler) -> new Thread(() -> {
+            handler.onPartialResponse("[CHAT]\n");
+            handler.onPartialResponse("是成员变量");
+            handler.onCompleteResponse(ChatResponse.builder().aiMessage(AiMessage.from("[CHAT]\n是成员变量")).build());
+        }).start());
+        chatMemoryStore.updateMessages(1, List.of(UserMessage.from("之前的问题"), AiMessage.from("之前的回答")));
+        pauseAnswerWrite.set(true);
+
+        Disposable subscription = service.assist(request("a 是什么")).subscribe();
+        assertTrue(answerWriting.await(5, TimeUnit.SECONDS));
+        // 回答正在写入记忆时客户端断开
+        subscription.dispose();
+        releaseAnswerWrite.countDown();
+        assertTrue(answerWritten.await(5, TimeUnit.SECONDS));
+
+        List<ChatMessage> memory = List.of();
+        for (int i = 0; i < 100; i++) {
+            memory = chatMemoryStore.getMessages(1);
+            if (memory.stream().filter(UserMessage.class::isInstance).count() == 1) {
+                break;
+            }
+            Thread.sleep(10);
+        }
+        assertEquals(1, memory.stream().filter(UserMessage.class::isInstance).count(), "断开的这一轮不应留在记忆中");
+        assertFalse(memory.stream().anyMatch(message -> message instanceof AiMessage ai
+                && ai.text() != null && ai.text().contains("是成员变量")), "断开的这一轮的回答不应留在记忆中");
+    }
+
+    /**
+     * 使用真实的 AiServices（会话记忆与 AssistService 共用同一个存储），模型调用经过取消装饰器
+     */
+    private void useRealAiService(BiConsumer<ChatRequest, StreamingChatResponseHandler> upstream) {
+        StreamingChatModel model = new StreamingChatModel() {
+            @Override
+            public void chat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+                upstream.accept(chatRequest, handler);
+            }
+        };
+        AiCodeHelperService real = AiServices.builder(AiCodeHelperService.class)
+                .streamingChatModel(new CancellableStreamingChatModel(model))
+                .chatMemoryProvider(memoryId -> MessageWindowChatMemory.builder()
+                        .id(memoryId)
+                        .maxMessages(10)
+                        .chatMemoryStore(chatMemoryStore)
+                        .build())
+                .build();
+        ReflectionTestUtils.setField(service, "aiCodeHelperService", real);
+    }
+
+    private void predict(String intent, double confidence, boolean confident) {
+        IntentClassifier.Prediction prediction = new IntentClassifier.Prediction(intent,
+                IntentClassifier.MODIFY.equals(intent) ? confidence : 1 - confidence, confidence);
+        when(intentClassifier.classify(anyString())).thenReturn(prediction);
+        when(intentClassifier.isConfident(prediction)).thenReturn(confident);
+    }
+
+    private static AssistRequest request(String message) {
+        AssistRequest request = new AssistRequest();
+        request.setMemoryId(1);
+        request.setMessage(message);
+        request.getFiles().add(new BatchModifyRequest.FileItem("A.java", CODE));
+        return request;
+    }
+
+    private static List<String> eventNames(Flux<ServerSentEvent<Object>> events) {
+        return events.map(ServerSentEvent::event).collectList().block();
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.aicodehelper.ai.assist;
+
+import com.example.aicodehelper.ai.intent.IntentClassifier;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * IntentTagParser 测试类
+ * 测试标签被拆分到多个输出片段、标签缺失等情况
+ */
+@DisplayName("意图标签解析测试")
+class IntentTagParserTest {
+
+    @Test
+    @DisplayName("测试修改标签被拆分在多个片段中")
+    void testModifyTagAcrossChunks() {
+        IntentTagParser parser = new IntentTagParser();
+
+        assertEquals("", parser.accept("\n[MOD"));
+        assertNull(parser.intent());
+        assertEquals("", parser.accept("IFY]"));
+        assertEquals(IntentClassifier.MODIFY, parser.intent());
+        assertEquals("", parser.accept("多余的输出"));
+        assertEquals("", parser.finish());
+    }
+
+    @Test
+    @DisplayName("测试对话标签之后的内容原样输出")
+    void testChatTag() {
+        IntentTagParser parser = new IntentTagParser();
+
+        assertEquals("", parser.accept("[CH"));
+        assertEquals("多态是", parser.accept("AT]\n多态是"));
+        assertEquals(IntentClassifier.CHAT, parser.intent());
+        assertEquals("指同一方法", parser.accept("指同一方法"));
+    }
+
+    @Test
+    @DisplayName("测试模型没有输出标签时按对话处理")
+    void testMissingTag() {
+        IntentTagParser parser = new IntentTagParser();
+        assertEquals("多态是指", parser.accept("多态是指"));
+        assertEquals(IntentClassifier.CHAT, parser.intent());
+
+        IntentTagParser shortAnswer = new IntentTagParser();
+        assertEquals("", shortAnswer.accept("["));
+        assertEquals("[", shortAnswer.finish());
+        assertEquals(IntentClassifier.CHAT, shortAnswer.intent());
+    }
+}
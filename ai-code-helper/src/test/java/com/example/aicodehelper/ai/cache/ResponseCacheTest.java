@@ -0,0 +1,170 @@
+package com.example.aicodehelper.ai.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ResponseCache 测试类
+ * 测试内存命中、LRU 淘汰后的磁盘命中、TTL 过期和版本变化后的失效
+ */
+@DisplayName("响应缓存测试")
+class ResponseCacheTest {
+
+    @TempDir
+    Path dir;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicInteger modelCalls = new AtomicInteger();
+
+    @Test
+    @DisplayName("测试相同输入只调用一次模型")
+    void testHit() {
+        ResponseCache cache = cache("qwen-max", fixedClock(0));
+
+        assertEquals("modify", detect(cache, "把这个方法改成递归"));
+        assertEquals("modify", detect(cache, "  把这个方法改成递归 "));
+
+        assertEquals(1, modelCalls.get());
+        assertEquals(1, count("hit"));
+        assertEquals(1, count("miss"));
+    }
+
+    @Test
+    @DisplayName("测试内存淘汰后从磁盘命中，重启后仍然有效")
+    void testDiskTier() {
+        ResponseCache cache = cache("qwen-max", fixedClock(0));
+        detect(cache, "消息一");
+        detect(cache, "消息二");
+        detect(cache, "消息三");
+        // 内存只保留 2 条，“消息一”已被淘汰，只能从磁盘读取
+        detect(cache, "消息一");
+        assertEquals(3, modelCalls.get());
+
+        ResponseCache restarted = cache("qwen-max", fixedClock(0));
+        detect(restarted, "消息二");
+        assertEquals(3, modelCalls.get());
+    }
+
+    @Test
+    @DisplayName("测试过期条目不再命中")
+    void testTtl() {
+        MutableClock clock = new MutableClock();
+        ResponseCache cache = cache("qwen-max", clock);
+        detect(cache, "消息");
+
+        clock.millis = Duration.ofHours(1).toMillis() - 1;
+        detect(cache, "消息");
+        assertEquals(1, modelCalls.get());
+
+        clock.millis = Duration.ofHours(1).toMillis() + 1;
+        detect(cache, "消息");
+        assertEquals(2, modelCalls.get());
+    }
+
+    @Test
+    @DisplayName("测试模型变化后旧缓存失效并被删除")
+    void testVersionChange() throws IOException {
+        ResponseCache cache = cache("qwen-max", fixedClock(0));
+        detect(cache, "消息");
+        assertEquals(1, subdirectories());
+
+        ResponseCache changed = cache("qwen-plus", fixedClock(0));
+        detect(changed, "消息");
+
+        assertEquals(2, modelCalls.get());
+        assertEquals(1, subdirectories());
+    }
+
+    @Test
+    @DisplayName("测试不同接口和关闭缓存")
+    void testEndpointsAndDisabled() {
+        ResponseCache cache = cache("qwen-max", fixedClock(0));
+        cache.getOrCompute("detect-intent", "消息", this::callModel);
+        cache.getOrCompute("chat-with-rag", "消息", this::callModel);
+        assertEquals(2, modelCalls.get());
+
+        ResponseCache disabled = ResponseCache.disabled();
+        disabled.getOrCompute("detect-intent", "消息", this::callModel);
+        disabled.getOrCompute("detect-intent", "消息", this::callModel);
+        assertEquals(4, modelCalls.get());
+    }
+
+    @Test
+    @DisplayName("测试缓存版本包含模型名、文档指纹和系统提示词")
+    void testCacheVersion() throws IOException {
+        String version = ResponseCacheConfig.cacheVersion("qwen-max", "Java基础.pdf:1200;");
+
+        assertTrue(version.startsWith("qwen-max\n"));
+        assertTrue(version.contains("意图识别专家"));
+        assertNotEquals(version, ResponseCacheConfig.cacheVersion("qwen-plus", "Java基础.pdf:1200;"));
+        assertNotEquals(version, ResponseCacheConfig.cacheVersion("qwen-max,qwen-turbo,qwen-plus", "Java基础.pdf:1200;"),
+                "启用模型路由后快速模型和降级模型也会生成回答");
+        assertNotEquals(version, ResponseCacheConfig.cacheVersion("qwen-max", "Java基础.pdf:1350;"),
+                "知识库文档变化后旧的回答应失效");
+    }
+
+    private ResponseCache cache(String modelName, Clock clock) {
+        return new ResponseCache(dir, modelName, 2, Duration.ofHours(1), clock, meterRegistry);
+    }
+
+    private String detect(ResponseCache cache, String message) {
+        return cache.getOrCompute("detect-intent", ResponseCache.normalizeText(message), this::callModel);
+    }
+
+    private String callModel() {
+        modelCalls.incrementAndGet();
+        return "modify";
+    }
+
+    private double count(String result) {
+        return meterRegistry.counter("ai.response.cache.requests", "endpoint", "detect-intent", "result", result).count();
+    }
+
+    private long subdirectories() throws IOException {
+        try (var paths = Files.list(dir)) {
+            return paths.filter(Files::isDirectory).count();
+        }
+    }
+
+    private static Clock fixedClock(long millis) {
+        return Clock.fixed(Instant.ofEpochMilli(millis), ZoneOffset.UTC);
+    }
+
+    private static class MutableClock extends Clock {
+        long millis;
+
+        @Override
+        public long millis() {
+            return millis;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.aicodehelper.ai.cancel;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * CancellableStreamingChatModel 和 CancellationToken 测试类
+ */
+@DisplayName("可取消的流式模型测试")
+class CancellableStreamingChatModelTest {
+
+    private final AtomicInteger upstreamCalls = new AtomicInteger();
+    private final List<String> upstreamCancels = new ArrayList<>();
+
+    // 模拟上游模型：保存回调，并像 DashScopeCallCanceller 一样在当前令牌上登记中止动作
+    private StreamingChatResponseHandler upstreamHandler;
+
+    private final StreamingChatModel upstream = new StreamingChatModel() {
+        @Override
+        public void chat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+            upstreamCalls.incrementAndGet();
+            upstreamHandler = handler;
+            CancellationToken token = CancellationToken.current();
+            if (token != null) {
+                token.onCancel(() -> upstreamCancels.add("call-" + upstreamCalls.get()));
+            }
+        }
+    };
+
+    private final CancellableStreamingChatModel model = new CancellableStreamingChatModel(upstream);
+
+    @Test
+    @DisplayName("取消后立即以取消异常结束，上游调用被中止，之后的上游回调全部丢弃")
+    void testCancelMidStream() {
+        CancellationToken token = new CancellationToken();
+        RecordingHandler handler = new RecordingHandler();
+        CancellationToken.runWith(token, () -> model.chat(request(), handler));
+
+        upstreamHandler.onPartialResponse("多态是");
+        assertTrue(token.cancel("client"));
+        assertFalse(token.cancel("disconnect"), "只有第一次取消生效");
+        upstreamHandler.onPartialResponse("指同一方法");
+        upstreamHandler.onCompleteResponse(ChatResponse.builder().aiMessage(AiMessage.from("多态是指同一方法")).build());
+
+        assertEquals(List.of("多态是"), handler.partials);
+        assertNull(handler.response);
+        assertEquals("client", ((GenerationCancelledException) handler.error).getReason());
+        assertEquals(List.of("call-1"), upstreamCancels);
+        assertNull(CancellationToken.current(), "执行完后恢复线程原来的绑定");
+    }
+
+    @Test
+    @DisplayName("取消时正在转发的完成回调返回后才算调用结束")
+    void testIdleAfterInFlightCompletion() {
+        CancellationToken token = new CancellationToken();
+        List<String> order = new ArrayList<>();
+        RecordingHandler handler = new RecordingHandler() {
+            @Override
+            public void onCompleteResponse(ChatResponse completeResponse) {
+                // 完成回调转发途中（写入记忆之前）被取消
+                token.cancel("client");
+                order.add("memory-written");
+            }
+        };
+        CancellationToken.runWith(token, () -> model.chat(request(), handler));
+        token.whenIdle(() -> order.add("idle"));
+        assertTrue(order.isEmpty(), "调用进行中时应等待");
+
+        upstreamHandler.onCompleteResponse(ChatResponse.builder().aiMessage(AiMessage.from("多态")).build());
+
+        assertEquals(List.of("memory-written", "idle"), order);
+    }
+
+    @Test
+    @DisplayName("完成回调在令牌绑定的情况下转发，随后的工具检查和模型调用能感知取消")
+    void testCompletionRebindsToken() {
+        CancellationToken token = new CancellationToken();
+        List<CancellationToken> seen = new ArrayList<>();
+        RecordingHandler handler = new RecordingHandler() {
+            @Override
+            public void onCompleteResponse(ChatResponse completeResponse) {
+                // 模拟 langchain4j 在回调线程上执行工具后再次调用模型
+                seen.add(CancellationToken.current());
+                token.cancel("client");
+                assertThrows(GenerationCancelledException.class, CancellationToken::checkCurrent);
+                model.chat(request(), this);
+            }
+        };
+        CancellationToken.runWith(token, () -> model.chat(request(), handler));
+
+        // 上游回调发生在没有绑定的线程上
+        upstreamHandler.onCompleteResponse(ChatResponse.builder().aiMessage(AiMessage.from("调用工具")).build());
+
+        assertEquals(List.of(token), seen);
+        assertInstanceOf(GenerationCancelledException.class, handler.error);
+        assertEquals(1, upstreamCalls.get(), "已取消时不再发起上游调用");
+    }
+
+    @Test
+    @DisplayName("没有令牌时直接转发")
+    void testWithoutToken() {
+        RecordingHandler handler = new RecordingHandler();
+        model.chat(request(), handler);
+        upstreamHandler.onPartialResponse("回答");
+        upstreamHandler.onCompleteResponse(ChatResponse.builder().aiMessage(AiMessage.from("回答")).build());
+
+        assertEquals(List.of("回答"), handler.partials);
+        assertNotNull(handler.response);
+        assertTrue(upstreamCancels.isEmpty());
+    }
+
+    @Test
+    @DisplayName("共享令牌在所有调用方都取消后才取消，无法取消的调用方使其永不取消")
+    void testSharedToken() {
+        CancellationToken first = new CancellationToken();
+        CancellationToken second = new CancellationToken();
+        CancellationToken.Shared shared = CancellationToken.shared();
+        assertTrue(shared.join(first));
+        assertTrue(shared.join(second));
+
+        first.cancel("client");
+        assertFalse(shared.isCancelled());
+        second.cancel("disconnect");
+        assertTrue(shared.isCancelled());
+        assertFalse(shared.join(new CancellationToken()), "已取消的共享令牌不能再加入");
+
+        CancellationToken.Shared pinned = CancellationToken.shared();
+        CancellationToken third = new CancellationToken();
+        pinned.join(third);
+        pinned.join(null);
+        third.cancel("client");
+        assertFalse(pinned.isCancelled());
+    }
+
+    private static ChatRequest request() {
+        return ChatRequest.builder().messages(UserMessage.from("什么是多态")).build();
+    }
+
+    private static class RecordingHandler implements StreamingChatResponseHandler {
+        final List<String> partials = new ArrayList<>();
+        ChatResponse response;
+        Throwable error;
+
+        @Override
+        public void onPartialResponse(String partialResponse) {
+            partials.add(partialResponse);
+        }
+
+        @Override
+        public void onCompleteResponse(ChatResponse completeResponse) {
+            response = completeResponse;
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.aicodehelper.ai.cancel;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.output.TokenUsage;
+import dev.langchain4j.store.memory.chat.InMemoryChatMemoryStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ChatGenerations 测试类
+ * 验证取消接口、取消后会话记忆的补写和节省 token 的估计
+ */
+@DisplayName("生成取消登记测试")
+class ChatGenerationsTest {
+
+    private final InMemoryChatMemoryStore memoryStore = new InMemoryChatMemoryStore();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ChatGenerations generations = new ChatGenerations();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(generations, "chatMemoryStore", memoryStore);
+        ReflectionTestUtils.setField(generations, "meterRegistry", meterRegistry);
+    }
+
+    @Test
+    @DisplayName("取消后部分回答写入会话记忆，并按已完成回答估计节省的 token")
+    void testCancelRecordsPartialAnswer() {
+        // 已完成的回答：100 个字符、50 个输出 token
+        ChatGeneration done = generations.start("req-1", 1);
+        generations.completed(done, ChatResponse.builder()
+                .aiMessage(AiMessage.from("字".repeat(100)))
+                .tokenUsage(new TokenUsage(10, 50))
+                .build());
+        assertFalse(generations.cancel(1, "req-1", "client"), "已结束的生成不能取消");
+
+        memoryStore.updateMessages(2, List.of(UserMessage.from("什么是多态")));
+        ChatGeneration generation = generations.start("req-2", 2);
+        generation.append("多态是指");
+        assertFalse(generations.cancel(1, "req-2", "client"), "不能取消其他会话的生成");
+        assertTrue(generations.cancel(2, "req-2", "client"));
+        generation.append("取消后的片段不记录");
+        generations.failed(generation, new GenerationCancelledException("client"));
+
+        List<ChatMessage> messages = memoryStore.getMessages(2);
+        assertEquals(2, messages.size());
+        assertEquals("多态是指\n\n（回答已中断）", ((AiMessage) messages.get(1)).text());
+        assertEquals(1, meterRegistry.get("ai.chat.cancelled").tag("reason", "client").counter().count());
+        // 平均 50 个 token，已输出 4 个字符折合 2 个 token
+        assertEquals(48, meterRegistry.get("ai.chat.cancelled.tokens.saved").counter().count());
+    }
+
+    @Test
+    @DisplayName("没有输出时写入取消说明，并移除没有执行结果的工具调用请求")
+    void testCancelDuringToolCall() {
+        AiMessage toolCall = AiMessage.from(ToolExecutionRequest.builder()
+                .id("1").name("readProjectFile").arguments("{}").build());
+        memoryStore.updateMessages(3, List.of(UserMessage.from("看看这个文件"), toolCall));
+        ChatGeneration generation = generations.start("req-3", 3);
+        generations.cancel(3, "req-3", "disconnect");
+        generations.failed(generation, new GenerationCancelledException("disconnect"));
+
+        List<ChatMessage> messages = memoryStore.getMessages(3);
+        assertEquals(2, messages.size());
+        assertEquals("（回答已取消）", ((AiMessage) messages.get(1)).text());
+        assertTrue(meterRegistry.find("ai.chat.cancelled.tokens.saved").counters().isEmpty(), "没有已完成的回答时不估计");
+    }
+
+    @Test
+    @DisplayName("未取消的失败不修改会话记忆")
+    void testFailureWithoutCancel() {
+        memoryStore.updateMessages(4, List.of(UserMessage.from("问题")));
+        ChatGeneration generation = generations.start("req-4", 4);
+        generation.append("部分");
+        generations.failed(generation, new RuntimeException("上游断开"));
+
+        assertEquals(1, memoryStore.getMessages(4).size());
+        assertTrue(meterRegistry.find("ai.chat.cancelled").counters().isEmpty());
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.aicodehelper.ai.intent;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * IntentClassifier 测试类
+ * 在留出集（intent/intent-heldout.tsv，句式模板不出现在训练样例中）上报告准确率、
+ * 置信度阈值下的本地覆盖率和单次分类耗时
+ */
+@DisplayName("本地意图分类器测试")
+class IntentClassifierTest {
+
+    private static IntentClassifier classifier;
+    private static List<IntentClassifier.Example> heldOut;
+
+    @BeforeAll
+    static void setUp() throws IOException {
+        classifier = new IntentClassifier();
+        ReflectionTestUtils.setField(classifier, "confidenceThreshold", 0.85);
+        classifier.train(IntentClassifier.loadExamples("intent/intent-examples.tsv"));
+        heldOut = IntentClassifier.loadExamples("intent/intent-heldout.tsv");
+    }
+
+    @Test
+    @DisplayName("测试典型消息的分类结果")
+    void testTypicalMessages() {
+        assertEquals(IntentClassifier.MODIFY, classifier.classify("帮我把这个方法改成递归实现").intent());
+        assertEquals(IntentClassifier.MODIFY, classifier.classify("please refactor this method").intent());
+        assertEquals(IntentClassifier.CHAT, classifier.classify("这段代码是什么意思？").intent());
+        assertEquals(IntentClassifier.CHAT, classifier.classify("what does this code do").intent());
+    }
+
+    @Test
+    @DisplayName("测试留出集上的准确率和覆盖率")
+    void testHeldOutAccuracy() {
+        int correct = 0;
+        int confident = 0;
+        int confidentCorrect = 0;
+        for (IntentClassifier.Example example : heldOut) {
+            IntentClassifier.Prediction prediction = classifier.classify(example.text());
+            boolean right = prediction.intent().equals(example.intent());
+            if (right) {
+                correct++;
+            }
+            if (classifier.isConfident(prediction)) {
+                confident++;
+                if (right) {
+                    confidentCorrect++;
+                }
+            }
+        }
+
+        double accuracy = (double) correct / heldOut.size();
+        double coverage = (double) confident / heldOut.size();
+        double localAccuracy = confident == 0 ? 0 : (double) confidentCorrect / confident;
+        System.out.printf("留出集 %d 条：整体准确率 %.1f%%，本地直接回答 %.1f%%（其中准确率 %.1f%%），其余回退到大模型%n",
+                heldOut.size(), accuracy * 100, coverage * 100, localAccuracy * 100);
+
+        assertTrue(accuracy >= 0.9, "整体准确率过低: " + accuracy);
+        assertTrue(localAccuracy >= 0.95, "高置信度结果准确率过低: " + localAccuracy);
+        assertTrue(coverage >= 0.5, "本地覆盖率过低: " + coverage);
+    }
+
+    @Test
+    @DisplayName("测试单次分类耗时")
+    void testLatency() {
+        // 预热
+        for (int i = 0; i < 2_000; i++) {
+            classifier.classify(heldOut.get(i % heldOut.size()).text());
+        }
+
+        int rounds = 20_000;
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            classifier.classify(heldOut.get(i % heldOut.size()).text());
+        }
+        double micros = (System.nanoTime() - start) / 1_000.0 / rounds;
+        System.out.printf("单次分类平均耗时 %.2f µs%n", micros);
+
+        assertTrue(micros < 1_000, "单次分类耗时过长: " + micros + " µs");
+    }
+
+    @Test
+    @DisplayName("测试未训练时不会给出高置信度结果")
+    void testUntrained() {
+        IntentClassifier untrained = new IntentClassifier();
+        ReflectionTestUtils.setField(untrained, "confidenceThreshold", 0.85);
+
+        IntentClassifier.Prediction prediction = untrained.classify("重构这段代码");
+
+        assertEquals(0.5, prediction.modifyProbability(), 1e-9);
+        assertFalse(untrained.isConfident(prediction));
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.aicodehelper.ai.listener;
+
+import com.example.aicodehelper.ai.cancel.CancellationToken;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.output.TokenUsage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * MetricsChatModelListener 测试类
+ * 通过 ChatModel 的监听器机制验证耗时、token 用量、工具调用和错误指标
+ */
+@DisplayName("模型调用指标监听器测试")
+class MetricsChatModelListenerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ModelBodyLogger bodyLogger = new ModelBodyLogger();
+    private final ChatModelListener listener = new MetricsChatModelListener(new ModelMetrics(meterRegistry), bodyLogger);
+
+    @Test
+    @DisplayName("测试成功调用的耗时、token 用量和工具调用")
+    void testSuccess() {
+        ReflectionTestUtils.setField(bodyLogger, "sampleRate", 1.0);
+        ChatModel model = model(false);
+
+        model.chat(ChatRequest.builder().messages(SystemMessage.from("未知任务"), UserMessage.from("读取文件")).build());
+
+        assertEquals(1, meterRegistry.get("ai.model.duration")
+                .tags("type", "chat", "endpoint", "unknown", "model", "qwen-max", "outcome", "success")
+                .timer().count());
+        assertEquals(120, meterRegistry.get("ai.model.tokens").tag("direction", "input").counter().count());
+        assertEquals(30, meterRegistry.get("ai.model.tokens").tag("direction", "output").counter().count());
+        assertEquals(2, meterRegistry.get("ai.model.tool.calls").counter().count());
+    }
+
+    @Test
+    @DisplayName("测试失败调用计入错误")
+    void testError() {
+        ChatModel model = model(true);
+
+        assertThrows(IllegalStateException.class, () -> model.chat(ChatRequest.builder()
+                .messages(UserMessage.from("问题")).modelName("qwen-max").build()));
+
+        assertEquals(1, meterRegistry.get("ai.model.duration").tag("outcome", "error").tag("model", "qwen-max")
+                .timer().count());
+        assertTrue(meterRegistry.find("ai.model.tokens").counters().isEmpty());
+    }
+
+    @Test
+    @DisplayName("测试被取消的调用记为 cancelled，不计入错误")
+    void testCancelled() {
+        ChatModel model = model(true);
+        CancellationToken token = new CancellationToken();
+        token.cancel("hedge-lost");
+
+        assertThrows(IllegalStateException.class, () -> CancellationToken.runWith(token, () -> model.chat(
+                ChatRequest.builder().messages(UserMessage.from("问题")).modelName("qwen-max").build())));
+
+        assertEquals(1, meterRegistry.get("ai.model.duration").tag("outcome", "cancelled").timer().count());
+        assertNull(meterRegistry.find("ai.model.duration").tag("outcome", "error").timer());
+    }
+
+    private ChatModel model(boolean failing) {
+        return new ChatModel() {
+            @Override
+            public ChatResponse doChat(ChatRequest chatRequest) {
+                if (failing) {
+                    throw new IllegalStateException("上游不可用");
+                }
+                return ChatResponse.builder()
+                        .aiMessage(AiMessage.from(List.of(
+                                ToolExecutionRequest.builder().name("readFile").arguments("{}").build(),
+                                ToolExecutionRequest.builder().name("listFiles").arguments("{}").build())))
+                        .modelName("qwen-max")
+                        .tokenUsage(new TokenUsage(120, 30))
+                        .build();
+            }
+
+            @Override
+            public List<ChatModelListener> listeners() {
+                return List.of(listener);
+            }
+        };
+    }
+}
@@ -0,0 +1,176 @@
+package com.example.aicodehelper.ai.model;
+
+import com.example.aicodehelper.ai.AiCodeHelperServiceFactory;
+import com.example.aicodehelper.ai.StatelessAiCodeHelperService;
+import com.example.aicodehelper.ai.trace.StageTracer;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.rag.content.retriever.ContentRetriever;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * CoalescingChatModel 测试类
+ * 测试相同请求合并、不同请求不合并、异常共享，以及通过 AiServices 发起的单轮调用能够合并
+ */
+@DisplayName("模型请求合并测试")
+class CoalescingChatModelTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicInteger upstreamCalls = new AtomicInteger();
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    // 模拟上游模型：等待放行后返回，便于让多个请求同时处于进行中
+    private final ChatModel upstream = new ChatModel() {
+        @Override
+        public ChatResponse chat(ChatRequest chatRequest) {
+            upstreamCalls.incrementAndGet();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            String text = ((UserMessage) chatRequest.messages().get(0)).singleText();
+            if (text.contains("失败")) {
+                throw new IllegalStateException("上游超时");
+            }
+            return ChatResponse.builder().aiMessage(AiMessage.from("回答: " + text)).build();
+        }
+    };
+
+    @Test
+    @DisplayName("测试同时到达的相同请求只调用一次上游")
+    void testIdenticalRequestsShareOneCall() throws Exception {
+        CoalescingChatModel model = new CoalescingChatModel(upstream, meterRegistry);
+        ExecutorService executor = Executors.newFixedThreadPool(10);
+        try {
+            List<Future<ChatResponse>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> model.chat(request("什么是多态"))));
+            }
+            futures.add(executor.submit(() -> model.chat(request("什么是封装"))));
+            waitForRequests(9);
+            release.countDown();
+
+            for (int i = 0; i < 8; i++) {
+                assertEquals("回答: 什么是多态", futures.get(i).get(5, TimeUnit.SECONDS).aiMessage().text());
+            }
+            assertEquals("回答: 什么是封装", futures.get(8).get(5, TimeUnit.SECONDS).aiMessage().text());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(2, upstreamCalls.get());
+        assertEquals(2, count("leader"));
+        assertEquals(7, count("follower"));
+    }
+
+    @Test
+    @DisplayName("测试上游异常传递给所有等待的请求")
+    void testErrorIsShared() throws Exception {
+        CoalescingChatModel model = new CoalescingChatModel(upstream, meterRegistry);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            List<Future<ChatResponse>> futures = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                futures.add(executor.submit(() -> model.chat(request("会失败的问题"))));
+            }
+            waitForRequests(3);
+            release.countDown();
+
+            for (Future<ChatResponse> future : futures) {
+                Exception e = assertThrows(Exception.class, () -> future.get(5, TimeUnit.SECONDS));
+                assertInstanceOf(IllegalStateException.class, e.getCause());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, upstreamCalls.get());
+
+        // 完成后不保留结果，之后的相同请求重新调用上游
+        assertThrows(IllegalStateException.class, () -> model.chat(request("会失败的问题")));
+        assertEquals(2, upstreamCalls.get());
+    }
+
+    @Test
+    @DisplayName("测试通过AiServices发起的相同单轮调用只调用一次上游")
+    void testIdenticalAiServiceCallsShareOneCall() throws Exception {
+        // 上游按最后一条用户消息回答（AiServices 的请求第一条是系统提示词）
+        ChatModel upstreamWithSystemPrompt = new ChatModel() {
+            @Override
+            public ChatResponse chat(ChatRequest chatRequest) {
+                upstreamCalls.incrementAndGet();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                UserMessage last = (UserMessage) chatRequest.messages().get(chatRequest.messages().size() - 1);
+                return ChatResponse.builder().aiMessage(AiMessage.from(last.singleText().contains("重构") ? "modify" : "代码")).build();
+            }
+        };
+        AiCodeHelperServiceFactory factory = new AiCodeHelperServiceFactory();
+        ContentRetriever noContent = query -> List.of();
+        ReflectionTestUtils.setField(factory, "myQwenChatModel", new CoalescingChatModel(upstreamWithSystemPrompt, meterRegistry));
+        ReflectionTestUtils.setField(factory, "contentRetriever", noContent);
+        ReflectionTestUtils.setField(factory, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(factory, "stageTracer", new StageTracer());
+        StatelessAiCodeHelperService service = factory.statelessAiCodeHelperService();
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> intents = new ArrayList<>();
+            List<Future<String>> modified = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                intents.add(executor.submit(() -> service.detectIntent("帮我重构这个方法")));
+                modified.add(executor.submit(() -> service.modifyCode("原始代码：class A {}").content()));
+            }
+            waitForRequests(4);
+            release.countDown();
+
+            for (int i = 0; i < 2; i++) {
+                assertEquals("modify", intents.get(i).get(5, TimeUnit.SECONDS));
+                assertEquals("代码", modified.get(i).get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(2, upstreamCalls.get(), "每组相同的调用只应调用一次上游");
+        assertEquals(2, count("follower"));
+    }
+
+    /**
+     * 等待所有请求都已进入合并层（已计入 leader 或 follower）
+     */
+    private void waitForRequests(int total) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (count("leader") + count("follower") < total && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private double count(String role) {
+        return meterRegistry.get("ai.model.coalescing").tag("type", "chat").tag("role", role).counter().count();
+    }
+
+    private static ChatRequest request(String text) {
+        return ChatRequest.builder().messages(UserMessage.from(text)).build();
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.aicodehelper.ai.model;
+
+import com.example.aicodehelper.ai.cancel.CancellationToken;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * CoalescingStreamingChatModel 测试类
+ * 测试流式片段分发给所有订阅者，以及中途加入的订阅者能收到完整回答
+ */
+@DisplayName("流式模型请求合并测试")
+class CoalescingStreamingChatModelTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicInteger upstreamCalls = new AtomicInteger();
+
+    // 模拟上游模型：保存回调和调用时绑定的取消令牌，由测试手动推送片段
+    private StreamingChatResponseHandler upstreamHandler;
+    private CancellationToken upstreamToken;
+
+    private final StreamingChatModel upstream = new StreamingChatModel() {
+        @Override
+        public void chat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+            upstreamCalls.incrementAndGet();
+            upstreamHandler = handler;
+            upstreamToken = CancellationToken.current();
+        }
+    };
+
+    @Test
+    @DisplayName("测试片段分发给所有订阅者，中途加入的订阅者先补发已生成的片段")
+    void testFanOut() {
+        CoalescingStreamingChatModel model = new CoalescingStreamingChatModel(upstream, meterRegistry);
+        RecordingHandler first = new RecordingHandler();
+        RecordingHandler second = new RecordingHandler();
+        RecordingHandler late = new RecordingHandler();
+
+        model.chat(request("什么是多态"), first);
+        model.chat(request("什么是多态"), second);
+        upstreamHandler.onPartialResponse("多态是");
+        model.chat(request("什么是多态"), late);
+        upstreamHandler.onPartialResponse("指同一方法");
+        upstreamHandler.onCompleteResponse(ChatResponse.builder().aiMessage(AiMessage.from("多态是指同一方法")).build());
+
+        assertEquals(1, upstreamCalls.get());
+        for (RecordingHandler handler : List.of(first, second, late)) {
+            assertEquals(List.of("多态是", "指同一方法"), handler.partials);
+            assertEquals("多态是指同一方法", handler.response.aiMessage().text());
+        }
+        assertEquals(2, meterRegistry.get("ai.model.coalescing").tag("type", "streaming").tag("role", "follower")
+                .counter().count());
+
+        // 完成后不保留结果
+        model.chat(request("什么是多态"), new RecordingHandler());
+        assertEquals(2, upstreamCalls.get());
+    }
+
+    @Test
+    @DisplayName("测试上游错误分发给所有订阅者，单个订阅者异常不影响其他订阅者")
+    void testErrorAndFailingSubscriber() {
+        CoalescingStreamingChatModel model = new CoalescingStreamingChatModel(upstream, meterRegistry);
+        RecordingHandler failing = new RecordingHandler() {
+            @Override
+            public void onPartialResponse(String partialResponse) {
+                throw new IllegalStateException("订阅者已关闭");
+            }
+        };
+        RecordingHandler normal = new RecordingHandler();
+
+        model.chat(request("问题"), failing);
+        model.chat(request("问题"), normal);
+        upstreamHandler.onPartialResponse("回答");
+        upstreamHandler.onError(new RuntimeException("上游断开"));
+
+        assertEquals(List.of("回答"), normal.partials);
+        assertEquals("上游断开", normal.error.getMessage());
+        assertEquals("上游断开", failing.error.getMessage());
+    }
+
+    @Test
+    @DisplayName("测试上游调用在所有订阅者都取消后才取消，已取消的调用不再接受新的订阅者")
+    void testSharedCancellation() {
+        CoalescingStreamingChatModel model = new CoalescingStreamingChatModel(upstream, meterRegistry);
+        CancellationToken first = new CancellationToken();
+        CancellationToken second = new CancellationToken();
+        CancellationToken.runWith(first, () -> model.chat(request("问题"), new RecordingHandler()));
+        CancellationToken.runWith(second, () -> model.chat(request("问题"), new RecordingHandler()));
+        CancellationToken cancelledFlight = upstreamToken;
+
+        first.cancel("client");
+        assertFalse(cancelledFlight.isCancelled());
+        second.cancel("client");
+        assertTrue(cancelledFlight.isCancelled());
+
+        // 上游还没有结束，新的相同请求重新发起调用
+        RecordingHandler late = new RecordingHandler();
+        model.chat(request("问题"), late);
+        assertEquals(2, upstreamCalls.get());
+        assertNotSame(cancelledFlight, upstreamToken);
+        upstreamHandler.onCompleteResponse(ChatResponse.builder().aiMessage(AiMessage.from("回答")).build());
+        assertEquals("回答", late.response.aiMessage().text());
+    }
+
+    private static ChatRequest request(String text) {
+        return ChatRequest.builder().messages(UserMessage.from(text)).build();
+    }
+
+    private static class RecordingHandler implements StreamingChatResponseHandler {
+        final List<String> partials = new ArrayList<>();
+        ChatResponse response;
+        Throwable error;
+
+        @Override
+        public void onPartialResponse(String partialResponse) {
+            partials.add(partialResponse);
+        }
+
+        @Override
+        public void onCompleteResponse(ChatResponse completeResponse) {
+            response = completeResponse;
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.aicodehelper.ai.model;
+
+import com.example.aicodehelper.ai.cancel.CancellationToken;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * HedgingChatModel 测试类
+ * 测试慢响应时采用对冲请求的结果、落败方上游调用的中止，以及一方失败时使用另一方的结果
+ */
+@DisplayName("模型请求对冲测试")
+class HedgingChatModelTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicInteger calls = new AtomicInteger();
+
+    @Test
+    @DisplayName("测试原始请求过慢时采用对冲请求的结果")
+    void testHedgeWins() {
+        // 第一次调用 2 秒后才返回，第二次立即返回
+        HedgingChatModel model = model(request -> {
+            int call = calls.incrementAndGet();
+            sleep(call == 1 ? 2_000 : 10);
+            return response("第 " + call + " 次调用");
+        }, 1.0);
+
+        long start = System.currentTimeMillis();
+        ChatResponse response = model.chat(request("问题"));
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertEquals("第 2 次调用", response.aiMessage().text());
+        assertTrue(elapsed < 1_000, "应采用对冲请求的结果: " + elapsed + " ms");
+        assertEquals(1, meterRegistry.get("ai.model.hedging.wins").tag("type", "chat").tag("attempt", "hedge")
+                .counter().count());
+    }
+
+    @Test
+    @DisplayName("测试对冲请求胜出后中止阻塞中的原始请求")
+    void testLoserAborted() throws InterruptedException {
+        CountDownLatch primaryAborted = new CountDownLatch(1);
+        HedgingChatModel model = model(request -> {
+            if (calls.incrementAndGet() == 2) {
+                return response("对冲请求的回答");
+            }
+            // 模拟阻塞在 HTTP 读取上的调用：不响应线程中断，只有中止上游调用（取消令牌）才会返回
+            CancellationToken token = CancellationToken.current();
+            CountDownLatch aborted = new CountDownLatch(1);
+            token.onCancel(aborted::countDown);
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (aborted.getCount() > 0 && System.currentTimeMillis() < deadline) {
+                try {
+                    aborted.await(100, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException ignored) {
+                    // 阻塞读取不受中断影响
+                }
+            }
+            if (aborted.getCount() == 0) {
+                primaryAborted.countDown();
+            }
+            throw new IllegalStateException("Canceled");
+        }, 1.0);
+
+        assertEquals("对冲请求的回答", model.chat(request("问题")).aiMessage().text());
+        assertTrue(primaryAborted.await(1, TimeUnit.SECONDS), "落败的原始请求应被中止");
+        assertEquals(1, meterRegistry.get("ai.model.hedging.latency").tag("type", "chat").tag("path", "primary")
+                .timer().count(), "被中止的原始请求也应记录（截断的）延迟");
+    }
+
+    @Test
+    @DisplayName("测试及时响应或预算不足时不发出对冲请求")
+    void testNoHedge() {
+        HedgingChatModel fast = model(request -> response("回答 " + calls.incrementAndGet()), 1.0);
+        assertEquals("回答 1", fast.chat(request("问题")).aiMessage().text());
+
+        HedgingChatModel noBudget = model(request -> {
+            calls.incrementAndGet();
+            sleep(150);
+            return response("慢回答");
+        }, 0.0);
+        assertEquals("慢回答", noBudget.chat(request("问题")).aiMessage().text());
+
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    @DisplayName("测试原始请求失败时使用对冲请求的结果")
+    void testPrimaryFails() {
+        HedgingChatModel model = model(request -> {
+            if (calls.incrementAndGet() == 1) {
+                sleep(100);
+                throw new IllegalStateException("上游超时");
+            }
+            return response("对冲请求的回答");
+        }, 1.0);
+
+        assertEquals("对冲请求的回答", model.chat(request("问题")).aiMessage().text());
+
+        HedgingChatModel failing = model(request -> {
+            throw new IllegalStateException("上游不可用");
+        }, 1.0);
+        IllegalStateException error = assertThrows(IllegalStateException.class, () -> failing.chat(request("问题")));
+        assertEquals("上游不可用", error.getMessage());
+    }
+
+    private HedgingChatModel model(Function<ChatRequest, ChatResponse> upstream, double maxExtraRatio) {
+        ChatModel delegate = new ChatModel() {
+            @Override
+            public ChatResponse chat(ChatRequest chatRequest) {
+                return upstream.apply(chatRequest);
+            }
+        };
+        ModelHedgingProperties properties = new ModelHedgingProperties();
+        properties.setInitialDelay(Duration.ofMillis(50));
+        properties.setMaxExtraRatio(maxExtraRatio);
+        return new HedgingChatModel(delegate, new HedgingPolicy(properties), meterRegistry);
+    }
+
+    private static ChatRequest request(String text) {
+        return ChatRequest.builder().messages(UserMessage.from(text)).build();
+    }
+
+    private static ChatResponse response(String text) {
+        return ChatResponse.builder().aiMessage(AiMessage.from(text)).build();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("被中断", e);
+        }
+    }
+}
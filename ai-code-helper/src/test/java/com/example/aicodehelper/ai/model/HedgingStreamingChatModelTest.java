@@ -0,0 +1,260 @@
+package com.example.aicodehelper.ai.model;
+
+import com.example.aicodehelper.ai.cancel.CancellationToken;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * HedgingStreamingChatModel 测试类
+ * 测试对冲请求的发出时机、胜出方转发、预算限制和失败处理，并模拟偶发慢响应下的尾延迟改善
+ */
+@DisplayName("流式模型请求对冲测试")
+class HedgingStreamingChatModelTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    // 模拟上游模型：保存每次调用的回调和绑定的取消令牌，由测试手动推送片段
+    private final List<StreamingChatResponseHandler> upstreamHandlers = new CopyOnWriteArrayList<>();
+    private final List<CancellationToken> upstreamTokens = new CopyOnWriteArrayList<>();
+
+    private final StreamingChatModel upstream = new StreamingChatModel() {
+        @Override
+        public void chat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+            upstreamTokens.add(CancellationToken.current());
+            upstreamHandlers.add(handler);
+        }
+    };
+
+    @Test
+    @DisplayName("测试原始请求超时未响应时发出对冲请求，只转发先返回的一方")
+    void testHedgeWins() throws InterruptedException {
+        HedgingStreamingChatModel model = model(upstream, 1.0);
+        RecordingHandler handler = new RecordingHandler();
+
+        model.chat(request("什么是多态"), handler);
+        awaitUpstreamCalls(2);
+
+        upstreamHandlers.get(1).onPartialResponse("多态是");
+        upstreamHandlers.get(0).onPartialResponse("（原始请求的片段）");
+        upstreamHandlers.get(1).onCompleteResponse(response("多态是"));
+        upstreamHandlers.get(0).onCompleteResponse(response("（原始请求的回答）"));
+
+        assertEquals(List.of("多态是"), handler.partials);
+        assertEquals("多态是", handler.response.aiMessage().text());
+        assertEquals(1, count("ai.model.hedging.wins", "attempt", "hedge"));
+    }
+
+    @Test
+    @DisplayName("测试胜出方确定后中止落败方的上游调用")
+    void testLoserAborted() throws InterruptedException {
+        HedgingStreamingChatModel model = model(upstream, 1.0);
+        RecordingHandler handler = new RecordingHandler();
+
+        model.chat(request("什么是多态"), handler);
+        awaitUpstreamCalls(2);
+        upstreamHandlers.get(1).onPartialResponse("多态是");
+
+        assertTrue(upstreamTokens.get(0).isCancelled(), "落败的原始请求应被中止");
+        assertFalse(upstreamTokens.get(1).isCancelled(), "胜出的对冲请求不应被中止");
+        // 中止引起的错误回调不影响调用方
+        upstreamHandlers.get(0).onError(new RuntimeException("Canceled"));
+        upstreamHandlers.get(1).onCompleteResponse(response("多态是"));
+        assertNull(handler.error);
+        assertEquals("多态是", handler.response.aiMessage().text());
+    }
+
+    @Test
+    @DisplayName("测试调用方取消时原始请求和对冲请求都被中止")
+    void testCallerCancelAbortsBoth() throws InterruptedException {
+        HedgingStreamingChatModel model = model(upstream, 1.0);
+        CancellationToken token = new CancellationToken();
+
+        CancellationToken.runWith(token, () -> model.chat(request("问题"), new RecordingHandler()));
+        awaitUpstreamCalls(2);
+        token.cancel("disconnect");
+
+        assertTrue(upstreamTokens.get(0).isCancelled());
+        assertTrue(upstreamTokens.get(1).isCancelled());
+    }
+
+    @Test
+    @DisplayName("测试原始请求及时响应时不发出对冲请求")
+    void testNoHedgeWhenFast() throws InterruptedException {
+        HedgingStreamingChatModel model = model(upstream, 1.0);
+        RecordingHandler handler = new RecordingHandler();
+
+        model.chat(request("问题"), handler);
+        upstreamHandlers.get(0).onPartialResponse("回答");
+        Thread.sleep(150);
+        upstreamHandlers.get(0).onCompleteResponse(response("回答"));
+
+        assertEquals(1, upstreamHandlers.size());
+        assertEquals(List.of("回答"), handler.partials);
+        assertEquals(1, count("ai.model.hedging.wins", "attempt", "primary"));
+    }
+
+    @Test
+    @DisplayName("测试预算不足时不发出对冲请求")
+    void testBudget() throws InterruptedException {
+        HedgingStreamingChatModel model = model(upstream, 0.0);
+
+        model.chat(request("问题"), new RecordingHandler());
+        Thread.sleep(150);
+
+        assertEquals(1, upstreamHandlers.size());
+        assertEquals(1, count("ai.model.hedging", "event", "budget_exhausted"));
+    }
+
+    @Test
+    @DisplayName("测试一方失败时等待另一方，全部失败才通知调用方")
+    void testErrors() throws InterruptedException {
+        HedgingStreamingChatModel model = model(upstream, 1.0);
+        RecordingHandler handler = new RecordingHandler();
+
+        model.chat(request("问题"), handler);
+        awaitUpstreamCalls(2);
+        upstreamHandlers.get(0).onError(new RuntimeException("原始请求失败"));
+        assertNull(handler.error);
+
+        upstreamHandlers.get(1).onError(new RuntimeException("对冲请求也失败"));
+        assertEquals("对冲请求也失败", handler.error.getMessage());
+    }
+
+    @Test
+    @DisplayName("测试偶发慢响应下的首 token 尾延迟")
+    void testTailLatency() throws InterruptedException {
+        // 每 25 个请求中有 1 个的原始请求首个片段延迟 500 ms，其余调用（包括对冲请求）20 ms；
+        // 与 DashScope 一样响应取消令牌：被中止的调用不再输出，只收到错误回调
+        ScheduledExecutorService upstreamTimer = Executors.newScheduledThreadPool(4);
+        Set<ChatRequest> seen = ConcurrentHashMap.newKeySet();
+        StreamingChatModel slowSometimes = new StreamingChatModel() {
+            @Override
+            public void chat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+                boolean slow = seen.add(chatRequest) && seen.size() % 25 == 0;
+                CancellationToken token = CancellationToken.current();
+                ScheduledFuture<?> reply = upstreamTimer.schedule(() -> {
+                    handler.onPartialResponse("回答");
+                    handler.onCompleteResponse(response("回答"));
+                }, slow ? 500 : 20, TimeUnit.MILLISECONDS);
+                token.onCancel(() -> {
+                    if (reply.cancel(false)) {
+                        handler.onError(new IllegalStateException("Canceled"));
+                    }
+                });
+            }
+        };
+
+        HedgingStreamingChatModel model = model(slowSometimes, 0.1);
+        int requests = 100;
+        for (int i = 0; i < requests; i++) {
+            RecordingHandler handler = new RecordingHandler();
+            model.chat(request("问题" + i), handler);
+            assertTrue(handler.done.await(2, TimeUnit.SECONDS));
+        }
+        upstreamTimer.shutdownNow();
+
+        Timer effective = meterRegistry.get("ai.model.hedging.latency").tag("path", "effective").timer();
+        Timer primary = meterRegistry.get("ai.model.hedging.latency").tag("path", "primary").timer();
+        double hedged = count("ai.model.hedging", "event", "hedged");
+
+        assertTrue(hedged > 0, "慢响应应触发对冲");
+        assertTrue(effective.max(TimeUnit.MILLISECONDS) < 300, "对冲后的最大延迟应明显低于慢响应");
+        assertTrue(hedged <= requests * 0.1, "对冲次数不应超出预算");
+        assertEquals(requests, primary.count(), "落败被中止的原始请求也应记录（截断的）延迟");
+    }
+
+    @Test
+    @DisplayName("测试对冲等待时间按延迟分位数计算")
+    void testPolicyDelay() {
+        HedgingPolicy policy = new HedgingPolicy(properties(1.0));
+        assertEquals(50, policy.hedgeDelayMillis());
+
+        for (int i = 1; i <= 100; i++) {
+            policy.recordLatency(i * 10);
+        }
+        // 第 95 百分位
+        assertEquals(950, policy.hedgeDelayMillis());
+
+        for (int i = 0; i < 200; i++) {
+            policy.recordLatency(1);
+        }
+        // 不低于下限
+        assertEquals(30, policy.hedgeDelayMillis());
+    }
+
+    private HedgingStreamingChatModel model(StreamingChatModel delegate, double maxExtraRatio) {
+        return new HedgingStreamingChatModel(delegate, new HedgingPolicy(properties(maxExtraRatio)), meterRegistry);
+    }
+
+    private static ModelHedgingProperties properties(double maxExtraRatio) {
+        ModelHedgingProperties properties = new ModelHedgingProperties();
+        properties.setInitialDelay(Duration.ofMillis(50));
+        properties.setMinDelay(Duration.ofMillis(30));
+        properties.setMaxExtraRatio(maxExtraRatio);
+        return properties;
+    }
+
+    private void awaitUpstreamCalls(int expected) throws InterruptedException {
+        for (int i = 0; i < 100 && upstreamHandlers.size() < expected; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, upstreamHandlers.size());
+    }
+
+    private double count(String name, String tag, String value) {
+        return meterRegistry.get(name).tag("type", "streaming").tag(tag, value).counter().count();
+    }
+
+    private static ChatRequest request(String text) {
+        return ChatRequest.builder().messages(UserMessage.from(text)).build();
+    }
+
+    private static ChatResponse response(String text) {
+        return ChatResponse.builder().aiMessage(AiMessage.from(text)).build();
+    }
+
+    private static class RecordingHandler implements StreamingChatResponseHandler {
+        final List<String> partials = new CopyOnWriteArrayList<>();
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile ChatResponse response;
+        volatile Throwable error;
+
+        @Override
+        public void onPartialResponse(String partialResponse) {
+            partials.add(partialResponse);
+        }
+
+        @Override
+        public void onCompleteResponse(ChatResponse completeResponse) {
+            response = completeResponse;
+            done.countDown();
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+            done.countDown();
+        }
+    }
+}
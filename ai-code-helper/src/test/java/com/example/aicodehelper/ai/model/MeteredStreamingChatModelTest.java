@@ -0,0 +1,124 @@
+package com.example.aicodehelper.ai.model;
+
+import com.example.aicodehelper.ai.listener.ModelBodyLogger;
+import com.example.aicodehelper.ai.listener.ModelMetrics;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.output.TokenUsage;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * MeteredStreamingChatModel 测试类
+ * 测试首 token 延迟、输出速度和错误指标，以及回调照常转发
+ */
+@DisplayName("流式模型调用指标测试")
+class MeteredStreamingChatModelTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ModelMetrics modelMetrics = new ModelMetrics(meterRegistry);
+
+    @Test
+    @DisplayName("测试首 token 延迟和输出速度")
+    void testTtftAndRate() {
+        // 首个片段 100 ms 后到达，之后 200 ms 输出 100 个 token
+        StreamingChatModel upstream = new StreamingChatModel() {
+            @Override
+            public void chat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+                sleep(100);
+                handler.onPartialResponse("多态");
+                sleep(200);
+                handler.onCompleteResponse(ChatResponse.builder()
+                        .aiMessage(AiMessage.from("多态是……"))
+                        .tokenUsage(new TokenUsage(50, 100))
+                        .build());
+            }
+        };
+        List<String> partials = new ArrayList<>();
+        MeteredStreamingChatModel model = new MeteredStreamingChatModel(upstream, "qwen-max", modelMetrics,
+                new ModelBodyLogger());
+
+        model.chat(ChatRequest.builder().messages(UserMessage.from("什么是多态")).build(), handler(partials));
+
+        assertEquals(List.of("多态"), partials);
+        Timer ttft = meterRegistry.get("ai.model.ttft").tag("model", "qwen-max").timer();
+        assertTrue(ttft.totalTime(TimeUnit.MILLISECONDS) >= 100);
+        DistributionSummary rate = meterRegistry.get("ai.model.tokens.per.second").summary();
+        // 100 tokens / 约 0.2 s
+        assertTrue(rate.max() > 300 && rate.max() <= 500, "输出速度: " + rate.max());
+        assertEquals(100, meterRegistry.get("ai.model.tokens").tag("type", "streaming").tag("direction", "output")
+                .counter().count());
+    }
+
+    @Test
+    @DisplayName("测试失败调用计入错误并照常通知调用方")
+    void testError() {
+        StreamingChatModel upstream = new StreamingChatModel() {
+            @Override
+            public void chat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+                throw new IllegalStateException("上游不可用");
+            }
+        };
+        List<Throwable> errors = new ArrayList<>();
+        MeteredStreamingChatModel model = new MeteredStreamingChatModel(upstream, "qwen-max", modelMetrics,
+                new ModelBodyLogger());
+
+        model.chat(ChatRequest.builder().messages(UserMessage.from("问题")).build(), new StreamingChatResponseHandler() {
+            @Override
+            public void onPartialResponse(String partialResponse) {
+            }
+
+            @Override
+            public void onCompleteResponse(ChatResponse completeResponse) {
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                errors.add(error);
+            }
+        });
+
+        assertEquals(1, errors.size());
+        assertEquals(1, meterRegistry.get("ai.model.duration").tag("type", "streaming").tag("outcome", "error")
+                .timer().count());
+    }
+
+    private static StreamingChatResponseHandler handler(List<String> partials) {
+        return new StreamingChatResponseHandler() {
+            @Override
+            public void onPartialResponse(String partialResponse) {
+                partials.add(partialResponse);
+            }
+
+            @Override
+            public void onCompleteResponse(ChatResponse completeResponse) {
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                fail(error);
+            }
+        };
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.aicodehelper.ai.model;
+
+import com.example.aicodehelper.ai.AiCodeHelperService;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.service.AiServices;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ModelRouter 测试类
+ * 使用 AiServices 生成的真实请求测试路由规则，以及主模型违反 SLO 后的降级和恢复
+ */
+@DisplayName("模型路由测试")
+class ModelRouterTest {
+
+    private static final String STUDENT_CODE = """
+            public class Student {
+                private int score;
+
+                public boolean isPassed() {
+                    return score >= 60;
+                }
+            }
+            """;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ModelRoutingProperties properties = new ModelRoutingProperties();
+    private final MutableClock clock = new MutableClock();
+    private final ModelRouter router = new ModelRouter(properties, "qwen-max", "chat", meterRegistry, clock);
+
+    @Test
+    @DisplayName("测试意图识别和短问题使用快速模型，带代码的请求使用主模型")
+    void testRules() {
+        List<ChatRequest> requests = captureRequests();
+        ChatRequest detectIntent = requests.get(0);
+        ChatRequest shortChat = requests.get(1);
+        ChatRequest modifyCode = requests.get(2);
+        ChatRequest codeQuestion = requests.get(3);
+
+        assertEquals("detectIntent", RequestFeatures.of(detectIntent).task());
+        assertEquals(RequestFeatures.TASK_CHAT, RequestFeatures.of(shortChat).task());
+        assertEquals("modifyCode", RequestFeatures.of(modifyCode).task());
+
+        assertEquals(new ModelRouter.Route("qwen-turbo", ModelRouter.REASON_TASK), router.route(detectIntent));
+        assertEquals(new ModelRouter.Route("qwen-turbo", ModelRouter.REASON_SMALL_PROMPT), router.route(shortChat));
+        assertEquals(new ModelRouter.Route("qwen-max", ModelRouter.REASON_DEFAULT), router.route(modifyCode));
+        assertEquals(new ModelRouter.Route("qwen-max", ModelRouter.REASON_DEFAULT), router.route(codeQuestion));
+        assertEquals(2, meterRegistry.get("ai.model.routing").tag("model", "qwen-max").counter().count());
+    }
+
+    @Test
+    @DisplayName("测试主模型延迟超出 SLO 后在冷却期内改用降级模型")
+    void testLatencySlo() {
+        ChatRequest large = largeRequest();
+        for (int i = 0; i < properties.getMinSamples(); i++) {
+            assertEquals("qwen-max", router.route(large).model());
+            router.record("qwen-max", 15_000, false);
+        }
+
+        assertEquals(new ModelRouter.Route("qwen-plus", ModelRouter.REASON_SLO_FALLBACK), router.route(large));
+
+        clock.millis += properties.getCooldown().toMillis() + 1;
+        assertEquals("qwen-max", router.route(large).model());
+    }
+
+    @Test
+    @DisplayName("测试主模型错误率超出 SLO 后改用降级模型，其他模型的统计不影响主模型")
+    void testErrorSlo() {
+        ChatRequest large = largeRequest();
+        for (int i = 0; i < 20; i++) {
+            router.record("qwen-turbo", 100, true);
+        }
+        assertEquals("qwen-max", router.route(large).model());
+
+        for (int i = 0; i < 7; i++) {
+            router.record("qwen-max", 1_000, false);
+        }
+        for (int i = 0; i < 3; i++) {
+            router.record("qwen-max", 1_000, true);
+        }
+
+        assertEquals("qwen-plus", router.route(large).model());
+        assertEquals(3, meterRegistry.get("ai.model.errors").tag("model", "qwen-max").counter().count());
+        assertEquals(7, meterRegistry.get("ai.model.latency").tag("model", "qwen-max").timer().count());
+    }
+
+    @Test
+    @DisplayName("测试调用失败后的降级路由")
+    void testFallbackAfterError() {
+        assertEquals(new ModelRouter.Route("qwen-plus", ModelRouter.REASON_ERROR_FALLBACK),
+                router.fallbackAfterError(new ModelRouter.Route("qwen-max", ModelRouter.REASON_DEFAULT)));
+        assertNull(router.fallbackAfterError(new ModelRouter.Route("qwen-plus", ModelRouter.REASON_SLO_FALLBACK)));
+    }
+
+    @Test
+    @DisplayName("测试代码识别")
+    void testContainsCode() {
+        assertTrue(RequestFeatures.containsCode(STUDENT_CODE));
+        assertTrue(RequestFeatures.containsCode("看看这个：```int a = 1```"));
+        assertFalse(RequestFeatures.containsCode("什么是多态？请举例说明 {重点}"));
+    }
+
+    /**
+     * 通过 AiServices 调用各方法，捕获实际发给模型的请求
+     */
+    private static List<ChatRequest> captureRequests() {
+        List<ChatRequest> requests = new ArrayList<>();
+        ChatModel capturing = new ChatModel() {
+            @Override
+            public ChatResponse chat(ChatRequest chatRequest) {
+                requests.add(chatRequest);
+                return ChatResponse.builder().aiMessage(AiMessage.from("chat")).build();
+            }
+        };
+        AiCodeHelperService service = AiServices.builder(AiCodeHelperService.class)
+                .chatModel(capturing)
+                .chatMemoryProvider(memoryId -> MessageWindowChatMemory.withMaxMessages(10))
+                .build();
+
+        service.detectIntent("帮我把这个方法改成递归");
+        service.chat("什么是多态？");
+        service.modifyCode("原始代码：\n" + STUDENT_CODE + "\n修改指令：提高及格线");
+        service.chat("这段代码有什么问题？\n" + STUDENT_CODE);
+        return requests;
+    }
+
+    private static ChatRequest largeRequest() {
+        return ChatRequest.builder().messages(UserMessage.from("解释这段代码\n" + STUDENT_CODE)).build();
+    }
+
+    private static class MutableClock extends Clock {
+        long millis = Instant.parse("2026-01-01T00:00:00Z").toEpochMilli();
+
+        @Override
+        public long millis() {
+            return millis;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+    }
+}
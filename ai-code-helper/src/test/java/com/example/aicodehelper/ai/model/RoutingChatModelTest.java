@@ -0,0 +1,226 @@
+package com.example.aicodehelper.ai.model;
+
+import com.example.aicodehelper.ai.cancel.CancellationToken;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * RoutingChatModel / RoutingStreamingChatModel 测试类
+ * 测试按路由结果分发请求，调用失败时改用降级模型，以及取消引起的失败不计入错误、不重试
+ */
+@DisplayName("模型路由分发测试")
+class RoutingChatModelTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ModelRouter router = new ModelRouter(new ModelRoutingProperties(), "qwen-max", "chat",
+            meterRegistry, Clock.systemUTC());
+    private final List<String> calledModels = new ArrayList<>();
+
+    @Test
+    @DisplayName("测试按路由结果分发，主模型失败时改用降级模型")
+    void testChatFallback() {
+        RoutingChatModel model = new RoutingChatModel(Map.of(
+                "qwen-max", chatModel("qwen-max", true),
+                "qwen-turbo", chatModel("qwen-turbo", false),
+                "qwen-plus", chatModel("qwen-plus", false)), router);
+
+        assertEquals("qwen-turbo", model.chat(request("什么是多态？")).aiMessage().text());
+        assertEquals("qwen-plus", model.chat(request(largeMessage())).aiMessage().text());
+
+        assertEquals(List.of("qwen-turbo", "qwen-max", "qwen-plus"), calledModels);
+        assertEquals(1, meterRegistry.get("ai.model.routing").tag("reason", ModelRouter.REASON_ERROR_FALLBACK)
+                .counter().count());
+    }
+
+    @Test
+    @DisplayName("测试流式调用在输出前失败时改用降级模型，输出后失败直接通知调用方")
+    void testStreamingFallback() {
+        RoutingStreamingChatModel model = new RoutingStreamingChatModel(Map.of(
+                "qwen-max", streamingModel("qwen-max", false),
+                "qwen-turbo", streamingModel("qwen-turbo", true),
+                "qwen-plus", streamingModel("qwen-plus", false)), router);
+
+        RecordingHandler beforeOutput = new RecordingHandler();
+        model.chat(request(largeMessage()), beforeOutput);
+        assertEquals(List.of("qwen-plus"), beforeOutput.partials);
+        assertEquals("qwen-plus", beforeOutput.response.aiMessage().text());
+
+        RecordingHandler afterOutput = new RecordingHandler();
+        model.chat(request("什么是多态？"), afterOutput);
+        assertEquals(List.of("qwen-turbo"), afterOutput.partials);
+        assertEquals("qwen-turbo 中途断开", afterOutput.error.getMessage());
+    }
+
+    @Test
+    @DisplayName("测试调用中途取消时不计入错误，也不改用降级模型")
+    void testChatCancelled() {
+        CancellationToken token = new CancellationToken();
+        ChatModel cancelledMidCall = new ChatModel() {
+            @Override
+            public ChatResponse chat(ChatRequest chatRequest) {
+                calledModels.add("qwen-turbo");
+                // 模拟调用过程中用户取消，上游连接被中止
+                token.cancel("disconnect");
+                throw new IllegalStateException("Canceled");
+            }
+        };
+        RoutingChatModel model = new RoutingChatModel(Map.of(
+                "qwen-max", chatModel("qwen-max", false),
+                "qwen-turbo", cancelledMidCall,
+                "qwen-plus", chatModel("qwen-plus", false)), router);
+
+        assertThrows(IllegalStateException.class,
+                () -> CancellationToken.runWith(token, () -> model.chat(request("什么是多态？"))));
+
+        assertEquals(List.of("qwen-turbo"), calledModels);
+        assertNoErrorRecorded();
+    }
+
+    @Test
+    @DisplayName("测试流式调用中途取消时不计入错误，也不改用降级模型")
+    void testStreamingCancelled() throws InterruptedException {
+        CancellationToken token = new CancellationToken();
+        CountDownLatch finished = new CountDownLatch(1);
+        StreamingChatModel cancelledMidCall = new StreamingChatModel() {
+            @Override
+            public void chat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+                calledModels.add("qwen-turbo");
+                // 取消后上游连接被中止，错误回调在 HTTP 客户端线程上到达（该线程没有绑定令牌）
+                token.cancel("disconnect");
+                new Thread(() -> {
+                    handler.onError(new IllegalStateException("Canceled"));
+                    finished.countDown();
+                }).start();
+            }
+        };
+        RoutingStreamingChatModel model = new RoutingStreamingChatModel(Map.of(
+                "qwen-max", streamingModel("qwen-max", false),
+                "qwen-turbo", cancelledMidCall,
+                "qwen-plus", streamingModel("qwen-plus", false)), router);
+        RecordingHandler handler = new RecordingHandler();
+
+        CancellationToken.runWith(token, () -> model.chat(request("什么是多态？"), handler));
+        assertTrue(finished.await(1, TimeUnit.SECONDS));
+
+        assertEquals(List.of("qwen-turbo"), calledModels);
+        assertEquals("Canceled", handler.error.getMessage());
+        assertNoErrorRecorded();
+    }
+
+    @Test
+    @DisplayName("测试流式降级重试在回调线程上发出时仍绑定调用方的令牌")
+    void testStreamingFallbackKeepsToken() throws InterruptedException {
+        CancellationToken token = new CancellationToken();
+        AtomicReference<CancellationToken> fallbackToken = new AtomicReference<>();
+        CountDownLatch finished = new CountDownLatch(1);
+        StreamingChatModel failingAsync = new StreamingChatModel() {
+            @Override
+            public void chat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+                new Thread(() -> handler.onError(new IllegalStateException("qwen-max 不可用"))).start();
+            }
+        };
+        StreamingChatModel fallback = new StreamingChatModel() {
+            @Override
+            public void chat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+                fallbackToken.set(CancellationToken.current());
+                finished.countDown();
+            }
+        };
+        RoutingStreamingChatModel model = new RoutingStreamingChatModel(Map.of(
+                "qwen-max", failingAsync,
+                "qwen-turbo", streamingModel("qwen-turbo", false),
+                "qwen-plus", fallback), router);
+
+        CancellationToken.runWith(token, () -> model.chat(request(largeMessage()), new RecordingHandler()));
+        assertTrue(finished.await(1, TimeUnit.SECONDS));
+
+        assertSame(token, fallbackToken.get(), "降级重试应能被调用方取消");
+    }
+
+    private void assertNoErrorRecorded() {
+        assertTrue(meterRegistry.find("ai.model.errors").counters().isEmpty(), "取消不应计入模型错误");
+        assertTrue(meterRegistry.find("ai.model.routing").tag("reason", ModelRouter.REASON_ERROR_FALLBACK)
+                .counters().isEmpty(), "取消后不应改用降级模型");
+    }
+
+    private ChatModel chatModel(String name, boolean failing) {
+        return new ChatModel() {
+            @Override
+            public ChatResponse chat(ChatRequest chatRequest) {
+                calledModels.add(name);
+                if (failing) {
+                    throw new IllegalStateException(name + " 不可用");
+                }
+                return ChatResponse.builder().aiMessage(AiMessage.from(name)).build();
+            }
+        };
+    }
+
+    /**
+     * 模拟流式模型：qwen-max 在输出前失败，failAfterOutput 为 true 时输出一个片段后失败
+     */
+    private static StreamingChatModel streamingModel(String name, boolean failAfterOutput) {
+        return new StreamingChatModel() {
+            @Override
+            public void chat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+                if (name.equals("qwen-max")) {
+                    handler.onError(new IllegalStateException(name + " 不可用"));
+                    return;
+                }
+                handler.onPartialResponse(name);
+                if (failAfterOutput) {
+                    handler.onError(new IllegalStateException(name + " 中途断开"));
+                } else {
+                    handler.onCompleteResponse(ChatResponse.builder().aiMessage(AiMessage.from(name)).build());
+                }
+            }
+        };
+    }
+
+    private static String largeMessage() {
+        return "解释这段代码\nint a = 1;\nint b = 2;\nint c = a + b;\n";
+    }
+
+    private static ChatRequest request(String text) {
+        return ChatRequest.builder().messages(UserMessage.from(text)).build();
+    }
+
+    private static class RecordingHandler implements StreamingChatResponseHandler {
+        final List<String> partials = new ArrayList<>();
+        volatile ChatResponse response;
+        volatile Throwable error;
+
+        @Override
+        public void onPartialResponse(String partialResponse) {
+            partials.add(partialResponse);
+        }
+
+        @Override
+        public void onCompleteResponse(ChatResponse completeResponse) {
+            response = completeResponse;
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.aicodehelper.ai.modify;
+
+import com.example.aicodehelper.ai.StatelessAiCodeHelperService;
+import com.example.aicodehelper.ai.cache.ResponseCache;
+import com.example.aicodehelper.config.BlockingSchedulers;
+import com.example.aicodehelper.dto.BatchFileResult;
+import com.example.aicodehelper.dto.BatchModifyRequest;
+import dev.langchain4j.service.Result;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * CodeModificationService 批量修改测试
+ * 使用模拟的模型调用（固定延迟），验证并发执行、并发上限和单文件失败隔离
+ */
+@DisplayName("批量代码修改测试")
+class CodeModificationServiceTest {
+
+    private static final long MODEL_DELAY_MS = 300;
+
+    private final StatelessAiCodeHelperService aiCodeHelperService = mock(StatelessAiCodeHelperService.class);
+    private final CodeModificationService service = new CodeModificationService();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger maxRunning = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(service, "statelessAiCodeHelperService", aiCodeHelperService);
+        ReflectionTestUtils.setField(service, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "responseCache", ResponseCache.disabled());
+        ReflectionTestUtils.setField(service, "patchMinLines", 80);
+        ReflectionTestUtils.setField(service, "batchConcurrency", 4);
+
+        BlockingSchedulers blockingSchedulers = new BlockingSchedulers();
+        ReflectionTestUtils.setField(blockingSchedulers, "modelThreads", 8);
+        ReflectionTestUtils.setField(blockingSchedulers, "ioThreads", 2);
+        ReflectionTestUtils.setField(blockingSchedulers, "queuedTasksPerThread", 100);
+        ReflectionTestUtils.invokeMethod(blockingSchedulers, "init");
+        ReflectionTestUtils.setField(service, "blockingSchedulers", blockingSchedulers);
+
+        when(aiCodeHelperService.modifyCode(anyString())).thenAnswer(invocation -> {
+            int now = running.incrementAndGet();
+            maxRunning.accumulateAndGet(now, Math::max);
+            try {
+                Thread.sleep(MODEL_DELAY_MS);
+            } finally {
+                running.decrementAndGet();
+            }
+            String prompt = invocation.getArgument(0);
+            if (prompt.contains("Broken.java")) {
+                throw new IllegalStateException("模型调用超时");
+            }
+            return Result.<String>builder().content("class Modified {}").build();
+        });
+    }
+
+    @Test
+    @DisplayName("测试五个文件并行修改，总耗时接近单个文件")
+    void testFilesRunConcurrently() {
+        // 预热线程池和差异计算相关的类加载，避免计入首次耗时
+        service.modifyBatch(request(1)).blockLast();
+        maxRunning.set(0);
+
+        BatchModifyRequest request = request(5);
+
+        long start = System.currentTimeMillis();
+        List<BatchFileResult> results = service.modifyBatch(request).collectList().block();
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertNotNull(results);
+        assertEquals(5, results.size());
+        assertEquals(List.of(0, 1, 2, 3, 4), results.stream().map(BatchFileResult::getIndex).sorted().toList());
+        results.forEach(result -> assertNull(result.getResult().getError()));
+        // 并发上限为 4：两轮模型调用（约 600 ms），串行则需要五轮（至少 1500 ms）
+        assertTrue(elapsed < MODEL_DELAY_MS * 5, "批量修改耗时不应接近串行: " + elapsed + " ms");
+        assertEquals(4, maxRunning.get());
+    }
+
+    @Test
+    @DisplayName("测试单个文件失败不影响其他文件")
+    void testFailureIsolated() {
+        BatchModifyRequest request = request(3);
+        request.getFiles().get(1).setFileName("Broken.java");
+        request.getFiles().add(new BatchModifyRequest.FileItem("Empty.java", " "));
+
+        List<BatchFileResult> results = service.modifyBatch(request).collectList().block();
+
+        assertNotNull(results);
+        assertEquals(4, results.size());
+        for (BatchFileResult result : results) {
+            switch (result.getIndex()) {
+                case 1 -> assertTrue(result.getResult().getError().contains("模型调用超时"));
+                case 3 -> assertEquals("原始代码不能为空", result.getResult().getError());
+                default -> assertEquals("class Modified {}", result.getResult().getModifiedCode());
+            }
+        }
+    }
+
+    private static BatchModifyRequest request(int files) {
+        BatchModifyRequest request = new BatchModifyRequest();
+        request.setInstruction("把类名改为 Modified");
+        request.setMode(CodeModificationService.MODE_FULL);
+        for (int i = 0; i < files; i++) {
+            request.getFiles().add(new BatchModifyRequest.FileItem("File" + i + ".java", "class File" + i + " {}"));
+        }
+        return request;
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.aicodehelper.ai.rag;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.segment.TextSegment;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("文档片段转换器测试")
+class DocumentSegmentTransformerTest {
+
+    private final DocumentSegmentTransformer transformer = new DocumentSegmentTransformer();
+
+    @Test
+    @DisplayName("片段前加上文件名、页码和类型，只保留来源相关的 metadata")
+    void testAddsSourceHeader() {
+        TextSegment segment = TextSegment.from("多态是指……", Metadata.from(Map.of(
+                "file_name", "Lec-05-Inheritance-and-Interfaces.pdf",
+                "page_number", "3",
+                "total_pages", "20",
+                "absolute_directory_path", "/tmp/docs")));
+
+        TextSegment result = transformer.transform(segment);
+
+        assertEquals("[Lec-05-Inheritance-and-Interfaces.pdf - 第3页 - PDF文档]\n多态是指……", result.text());
+        assertEquals("3", result.metadata().getString("page_number"));
+        assertEquals("20", result.metadata().getString("total_pages"));
+        assertNull(result.metadata().getString("absolute_directory_path"));
+    }
+
+    @Test
+    @DisplayName("缺少文件名和页码时使用默认描述")
+    void testMissingMetadata() {
+        TextSegment result = transformer.transform(TextSegment.from("内容"));
+
+        assertEquals("[未知文件 - 未知文件]\n内容", result.text());
+        assertEquals("未知文件", result.metadata().getString("file_name"));
+        assertEquals("Markdown文档", DocumentSegmentTransformer.getFileTypeFromName("java-basic-questions-01.md"));
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.aicodehelper.ai.repomap;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * RepoMapService 测试类
+ * 测试仓库地图的解析、排序、截断和增量刷新，以及非UTF-8文件的读取
+ */
+@DisplayName("仓库地图服务测试")
+class RepoMapServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @DisplayName("测试解析顶层类型和public方法签名")
+    void testParse() {
+        RepoMapService.FileEntry entry = RepoMapService.parse("src/Foo.java", List.of(
+                "package demo;",
+                "/** class Ignored in comment */",
+                "public class Foo extends Bar {",
+                "    private int count;",
+                "    public Foo(int count) {",
+                "        this.count = count;",
+                "    }",
+                "    public List<String> names(String prefix,",
+                "                              int limit) {",
+                "        return List.of(\"{\");",
+                "    }",
+                "    private void hidden() {}",
+                "    public static class Inner {",
+                "        public void deep() {}",
+                "    }",
+                "}",
+                "interface Helper {}"));
+
+        assertEquals(List.of("class Foo", "interface Helper"), entry.types);
+        assertTrue(entry.signatures.contains("public Foo(int count)"));
+        assertTrue(entry.signatures.contains("public List<String> names(String prefix, int limit)"));
+        assertFalse(entry.signatures.stream().anyMatch(s -> s.contains("hidden")), "不应包含非public方法");
+        assertFalse(entry.signatures.stream().anyMatch(s -> s.contains("deep")), "不应包含内部类的方法");
+        assertTrue(entry.identifiers.contains("Bar"));
+        assertFalse(entry.identifiers.contains("Foo"), "自身类型不算引用");
+    }
+
+    @Test
+    @DisplayName("测试按引用次数排序并截断到预算")
+    void testRenderRankingAndBudget() throws IOException {
+        writeJava("src/main/java/demo/Core.java", "public class Core { public void run() {} }");
+        writeJava("src/main/java/demo/A.java", "public class A { Core core; }");
+        writeJava("src/main/java/demo/B.java", "public class B { Core core; }");
+
+        RepoMapService.ProjectIndex index = new RepoMapService.ProjectIndex(tempDir);
+        index.refresh();
+
+        String map = RepoMapService.render(index, 1500);
+        assertTrue(map.contains("src/main/java/demo/"));
+        assertTrue(map.indexOf("Core.java") < map.indexOf("A.java"), "被引用最多的类型应排在前面");
+
+        String small = RepoMapService.render(index, 40);
+        assertTrue(small.contains("未列出"), "超出预算时应截断");
+    }
+
+    @Test
+    @DisplayName("测试增量刷新只解析变化的文件")
+    void testIncrementalRefresh() throws IOException {
+        Path a = writeJava("src/A.java", "public class A {}");
+        writeJava("src/B.java", "public class B {}");
+
+        RepoMapService.ProjectIndex index = new RepoMapService.ProjectIndex(tempDir);
+        assertTrue(index.refresh());
+        assertEquals(2, index.lastParsedCount);
+
+        assertFalse(index.refresh(), "文件未变化时不应重新解析");
+        assertEquals(0, index.lastParsedCount);
+
+        Files.writeString(a, "public class A {\n    public void added() {}\n}");
+        Files.setLastModifiedTime(a, FileTime.fromMillis(System.currentTimeMillis() + 10_000));
+        assertTrue(index.refresh());
+        assertEquals(1, index.lastParsedCount);
+        assertEquals(List.of("public void added()"), index.files.get("src/A.java").signatures);
+
+        Files.delete(a);
+        assertTrue(index.refresh(), "删除文件应视为变化");
+        assertFalse(index.files.containsKey("src/A.java"));
+    }
+
+    @Test
+    @DisplayName("测试非UTF-8编码的文件仍被解析，且未变化时不再重复读取")
+    void testNonUtf8File() throws IOException {
+        Path gbk = tempDir.resolve("src/Student.java");
+        Files.createDirectories(gbk.getParent());
+        Files.writeString(gbk, "// 学生作业\npublic class Student {\n    public String name() { return \"张三\"; }\n}",
+                Charset.forName("GBK"));
+
+        RepoMapService.ProjectIndex index = new RepoMapService.ProjectIndex(tempDir);
+        assertTrue(index.refresh());
+        assertEquals(1, index.lastParsedCount);
+        assertEquals(List.of("class Student"), index.files.get("src/Student.java").types);
+        assertEquals(List.of("public String name()"), index.files.get("src/Student.java").signatures);
+
+        assertFalse(index.refresh(), "文件未变化时不应重新读取");
+        assertEquals(0, index.lastParsedCount);
+    }
+
+    @Test
+    @DisplayName("测试遍历超过深度或文件数上限时停止并在地图中注明")
+    void testWalkLimits() throws IOException {
+        writeJava("A.java", "public class A {}");
+        writeJava("a/b/c/Deep.java", "public class Deep {}");
+        writeJava("B.java", "public class B {}");
+
+        RepoMapService.ProjectIndex shallow = new RepoMapService.ProjectIndex(tempDir, 2, 100, 100);
+        shallow.refresh();
+        assertFalse(shallow.files.containsKey("a/b/c/Deep.java"), "超过深度的文件不应被索引");
+        assertTrue(shallow.files.containsKey("A.java"));
+        assertTrue(shallow.truncated);
+        assertTrue(RepoMapService.render(shallow, 1500).contains("只索引了部分文件"));
+
+        RepoMapService.ProjectIndex few = new RepoMapService.ProjectIndex(tempDir, 20, 100, 2);
+        few.refresh();
+        assertEquals(2, few.files.size());
+        assertTrue(few.truncated);
+
+        RepoMapService.ProjectIndex full = new RepoMapService.ProjectIndex(tempDir);
+        full.refresh();
+        assertEquals(3, full.files.size());
+        assertFalse(full.truncated);
+        assertFalse(RepoMapService.render(full, 1500).contains("只索引了部分文件"));
+    }
+
+    @Test
+    @DisplayName("测试项目索引和会话发送状态按最近最少使用淘汰")
+    void testCachesAreBounded() throws IOException {
+        RepoMapService service = new RepoMapService();
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "tokenBudget", 1500);
+        ReflectionTestUtils.setField(service, "maxProjects", 2);
+        ReflectionTestUtils.setField(service, "maxConversations", 2);
+
+        for (String name : List.of("p1", "p2", "p3")) {
+            writeJava(name + "/A.java", "public class A {}");
+            assertNotNull(service.getRepoMap(tempDir.resolve(name).toString()));
+        }
+        Map<?, ?> indexes = (Map<?, ?>) ReflectionTestUtils.getField(service, "indexes");
+        assertEquals(2, indexes.size());
+        assertFalse(indexes.containsKey(tempDir.resolve("p1").toAbsolutePath().normalize().toString()),
+                "最久未使用的项目索引应被淘汰");
+
+        String project = tempDir.resolve("p3").toString();
+        assertNotNull(service.getMapIfNeeded(1, project));
+        assertNotNull(service.getMapIfNeeded(2, project));
+        assertNull(service.getMapIfNeeded(1, project), "地图已发送且未变化时不应重复发送");
+        assertNotNull(service.getMapIfNeeded(3, project));
+        Map<?, ?> sentStates = (Map<?, ?>) ReflectionTestUtils.getField(service, "sentStates");
+        assertEquals(2, sentStates.size());
+        assertFalse(sentStates.containsKey(2), "最久未使用的会话状态应被淘汰");
+        assertNotNull(service.getMapIfNeeded(2, project), "状态被淘汰的会话应重新收到地图");
+    }
+
+    private Path writeJava(String relativePath, String content) throws IOException {
+        Path file = tempDir.resolve(relativePath);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content);
+        return file;
+    }
+}
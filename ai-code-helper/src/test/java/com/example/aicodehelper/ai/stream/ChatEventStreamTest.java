@@ -0,0 +1,356 @@
+package com.example.aicodehelper.ai.stream;
+
+import com.example.aicodehelper.ai.cancel.CancellationToken;
+import com.example.aicodehelper.ai.cancel.GenerationCancelledException;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.output.FinishReason;
+import dev.langchain4j.model.output.TokenUsage;
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.content.ContentMetadata;
+import dev.langchain4j.service.tool.ToolExecution;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+import org.springframework.http.codec.ServerSentEvent;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("流式事件协议测试")
+class ChatEventStreamTest {
+
+    private final AtomicLong clock = new AtomicLong();
+    private final List<String> stalls = new ArrayList<>();
+    private final List<ChatEventStream> closed = new ArrayList<>();
+    private final CancellationToken token = new CancellationToken();
+    private ChatStreamProperties properties;
+
+    @BeforeEach
+    void setUp() {
+        // 时间均由假时钟推进：定时检查的真实周期足够长，测试中手动调用 tick()
+        properties = new ChatStreamProperties();
+        properties.setFlushInterval(Duration.ofMinutes(1));
+        properties.setFlushChars(10);
+        properties.setHeartbeatInterval(Duration.ofMinutes(5));
+        properties.setMaxBufferedChars(30);
+        properties.setStallTimeout(Duration.ofMinutes(10));
+        properties.setResumeTimeout(Duration.ofMinutes(20));
+        properties.setDisconnectCancelTimeout(Duration.ofMinutes(15));
+    }
+
+    @Test
+    @DisplayName("攒够 flush-chars 个字符时合成一个 delta 事件，换行原样保留在 JSON 中")
+    void testSizeFlush() {
+        ChatEventStream stream = newStream("req");
+        Collector collector = subscribe(stream, Long.MAX_VALUE);
+
+        stream.delta("第一行\n");
+        stream.delta("第二");
+        assertTrue(collector.events.isEmpty());
+        stream.delta("行\n第三行");
+
+        assertEquals(1, collector.events.size());
+        ServerSentEvent<Object> event = collector.events.get(0);
+        assertEquals("delta", event.event());
+        assertEquals("req:1", event.id());
+        assertEquals(Map.of("seq", 1L, "text", "第一行\n第二行\n第三行"), event.data());
+    }
+
+    @Test
+    @DisplayName("文本等待超过 flush-interval 后由定时检查发出")
+    void testTimeFlush() {
+        ChatEventStream stream = newStream("req");
+        Collector collector = subscribe(stream, Long.MAX_VALUE);
+
+        stream.delta("你好");
+        stream.tick();
+        assertTrue(collector.events.isEmpty());
+
+        clock.addAndGet(Duration.ofMinutes(1).toNanos());
+        stream.tick();
+        assertEquals(List.of("你好"), collector.texts());
+    }
+
+    @Test
+    @DisplayName("其他事件先发出之前缓冲的文本，seq 连续，done 后结束")
+    void testOrderingAndDone() {
+        ChatEventStream stream = newStream(null);
+        Collector collector = subscribe(stream, Long.MAX_VALUE);
+
+        stream.delta("先读一下");
+        stream.toolExecuted(ToolExecution.builder()
+                .request(ToolExecutionRequest.builder().name("readProjectFile").arguments("{\"path\":\"A.java\"}").build())
+                .result("class A {}")
+                .build());
+        stream.retrieved(List.of(
+                content("Lec-01.pdf", "3", 0.81234),
+                content("Lec-01.pdf", "3", 0.9),
+                content("Lec-02.pdf", null, 0.5)));
+        stream.delta("答案");
+        stream.complete(ChatResponse.builder()
+                .aiMessage(AiMessage.from("先读一下答案"))
+                .finishReason(FinishReason.STOP)
+                .tokenUsage(new TokenUsage(100, 20))
+                .build());
+
+        assertEquals(List.of("delta", "tool", "sources", "delta", "done"),
+                collector.events.stream().map(ServerSentEvent::event).toList());
+        assertEquals(List.of("1", "2", "3", "4", "5"),
+                collector.events.stream().map(ServerSentEvent::id).toList());
+        assertEquals(Map.of("seq", 2L, "name", "readProjectFile", "arguments", "{\"path\":\"A.java\"}", "resultChars", 10),
+                collector.events.get(1).data());
+        assertEquals(Map.of("seq", 3L, "sources", List.of(
+                        Map.of("file", "Lec-01.pdf", "page", "3", "score", 0.9),
+                        Map.of("file", "Lec-02.pdf", "score", 0.5))),
+                collector.events.get(2).data());
+        assertEquals(Map.of("seq", 5L, "finishReason", "STOP", "inputTokens", 100, "outputTokens", 20),
+                collector.events.get(4).data());
+        assertTrue(collector.completed);
+
+        // 结束后的回调被忽略
+        stream.delta("多余的文本");
+        assertEquals(5, collector.events.size());
+    }
+
+    @Test
+    @DisplayName("出错时发出 error 事件并结束")
+    void testError() {
+        ChatEventStream stream = newStream("req");
+        Collector collector = subscribe(stream, Long.MAX_VALUE);
+
+        stream.delta("一半");
+        stream.error(new IllegalStateException("模型调用超时"));
+
+        assertEquals(List.of("delta", "error"), collector.events.stream().map(ServerSentEvent::event).toList());
+        assertEquals(Map.of("seq", 2L, "status", "error", "error", "模型调用超时"), collector.events.get(1).data());
+        assertTrue(collector.completed);
+    }
+
+    @Test
+    @DisplayName("客户端接收慢时积压的 delta 事件合并发出，id 和 seq 取最后一个")
+    void testSlowClientMergesDeltas() {
+        ChatEventStream stream = newStream("req");
+        Collector collector = subscribe(stream, 0);
+
+        stream.delta("0123456789");
+        stream.delta("abcdefghij");
+        assertTrue(collector.events.isEmpty());
+
+        collector.request(1);
+        assertEquals(List.of("0123456789abcdefghij"), collector.texts());
+        assertEquals("req:2", collector.events.get(0).id());
+        assertTrue(stalls.isEmpty());
+    }
+
+    @Test
+    @DisplayName("重放缓冲区超过 max-buffered-chars 时先丢弃已发出的事件，未发出的积压超过上限时丢弃整个流")
+    void testBufferLimit() {
+        ChatEventStream stream = newStream("req");
+        Collector collector = subscribe(stream, 1);
+
+        stream.delta("0123456789".repeat(3));
+        stream.delta("0123456789");
+        assertTrue(stalls.isEmpty(), "已发出的事件可以丢弃");
+        assertEquals(1, collector.events.size());
+
+        stream.delta("0123456789".repeat(3));
+        assertEquals(List.of("buffer"), stalls);
+        assertEquals(List.of(stream), closed);
+        assertEquals("discarded", token.reason(), "回答未结束就被丢弃时取消生成");
+        assertTrue(collector.completed);
+        collector.request(10);
+        assertEquals(1, collector.events.size());
+
+        // 丢弃后不能续传
+        Collector resumed = resume(stream, 1);
+        assertEquals(List.of("error"), resumed.events.stream().map(ServerSentEvent::event).toList());
+        assertTrue(resumed.completed);
+    }
+
+    @Test
+    @DisplayName("有事件待发送但客户端超过 stall-timeout 未接收时结束响应")
+    void testStallTimeout() {
+        ChatEventStream stream = newStream("req");
+        Collector collector = subscribe(stream, 0);
+
+        stream.delta("0123456789");
+        clock.addAndGet(Duration.ofMinutes(9).toNanos());
+        stream.tick();
+        assertFalse(collector.completed);
+
+        clock.addAndGet(Duration.ofMinutes(1).toNanos());
+        stream.tick();
+        assertEquals(List.of("timeout"), stalls);
+        assertTrue(collector.completed);
+
+        // 只结束连接，客户端仍可续传
+        assertTrue(closed.isEmpty());
+        assertEquals(List.of("0123456789"), resume(stream, 0).texts());
+    }
+
+    @Test
+    @DisplayName("断线后模型继续生成，带 Last-Event-ID 重连从该事件之后继续接收")
+    void testResume() {
+        ChatEventStream stream = newStream("req");
+        Collector first = subscribe(stream, Long.MAX_VALUE);
+
+        stream.delta("0123456789");
+        stream.delta("abcdefghij");
+        first.dispose();
+        stream.delta("klmnopqrst");
+        stream.delta("尾");
+
+        Collector second = resume(stream, 1);
+        assertEquals(List.of("abcdefghijklmnopqrst"), second.texts());
+        assertEquals("req:3", second.events.get(0).id());
+
+        stream.complete(ChatResponse.builder().aiMessage(AiMessage.from("完整回答")).build());
+        assertEquals(List.of("delta", "delta", "done"), second.events.stream().map(ServerSentEvent::event).toList());
+        assertEquals(Map.of("seq", 4L, "text", "尾"), second.events.get(1).data());
+        assertTrue(second.completed);
+        assertEquals(List.of("0123456789", "abcdefghij"), first.texts());
+
+        // 回答结束后仍可在 resume-timeout 内重放，之后丢弃
+        assertEquals(List.of("klmnopqrst尾"), resume(stream, 2).texts().subList(0, 1));
+        clock.addAndGet(Duration.ofMinutes(20).toNanos());
+        stream.tick();
+        assertEquals(List.of(stream), closed);
+        assertEquals("error", resume(stream, 2).events.get(0).event());
+    }
+
+    @Test
+    @DisplayName("新连接结束旧连接；不在重放缓冲区范围内的 Last-Event-ID 无法续传")
+    void testReplaceConnectionAndInvalidResume() {
+        ChatEventStream stream = newStream("req");
+        Collector first = subscribe(stream, Long.MAX_VALUE);
+        stream.delta("0123456789");
+
+        Collector second = resume(stream, 0);
+        assertTrue(first.completed);
+        assertEquals(List.of("0123456789"), second.texts());
+
+        Collector future = resume(stream, 5);
+        assertEquals(Map.of("status", "error", "error", "回答已过期，无法继续接收，请重新提问", "resumable", false),
+                future.events.get(0).data());
+        assertTrue(future.completed);
+        assertFalse(second.completed);
+    }
+
+    @Test
+    @DisplayName("断开超过 disconnect-cancel-timeout 没有续传时取消生成，续传后收到 CANCELLED 的 done 事件")
+    void testDisconnectCancel() {
+        ChatEventStream stream = newStream("req");
+        Collector first = subscribe(stream, Long.MAX_VALUE);
+        stream.delta("0123456789");
+        first.dispose();
+
+        clock.addAndGet(Duration.ofMinutes(14).toNanos());
+        stream.tick();
+        assertFalse(token.isCancelled());
+
+        clock.addAndGet(Duration.ofMinutes(1).toNanos());
+        stream.tick();
+        assertEquals("disconnect", token.reason());
+
+        // 模型回调随后以取消异常结束
+        stream.error(new GenerationCancelledException("disconnect"));
+        Collector resumed = resume(stream, 1);
+        assertEquals("done", resumed.events.get(0).event());
+        assertEquals(Map.of("seq", 2L, "finishReason", "CANCELLED", "reason", "disconnect"), resumed.events.get(0).data());
+        assertTrue(resumed.completed);
+        assertTrue(closed.isEmpty());
+    }
+
+    @Test
+    @DisplayName("连接空闲超过 heartbeat-interval 时发送心跳注释")
+    void testHeartbeat() {
+        ChatEventStream stream = newStream("req");
+        Collector collector = subscribe(stream, Long.MAX_VALUE);
+
+        clock.addAndGet(Duration.ofMinutes(4).toNanos());
+        stream.tick();
+        assertTrue(collector.events.isEmpty());
+
+        clock.addAndGet(Duration.ofMinutes(1).toNanos());
+        stream.tick();
+        assertEquals(1, collector.events.size());
+        assertEquals("heartbeat", collector.events.get(0).comment());
+        assertNull(collector.events.get(0).data());
+
+        // 心跳不占用 seq
+        stream.delta("0123456789");
+        assertEquals("req:1", collector.events.get(1).id());
+    }
+
+    private ChatEventStream newStream(String requestId) {
+        return new ChatEventStream(requestId, token, properties, Schedulers.parallel(), clock::get, stalls::add, closed::add);
+    }
+
+    private static Collector subscribe(ChatEventStream stream, long initialRequest) {
+        Collector collector = new Collector(initialRequest);
+        stream.events(() -> {
+        }).subscribe(collector);
+        return collector;
+    }
+
+    private static Collector resume(ChatEventStream stream, long afterSeq) {
+        Collector collector = new Collector(Long.MAX_VALUE);
+        stream.resume(afterSeq).subscribe(collector);
+        return collector;
+    }
+
+    private static Content content(String file, String page, double score) {
+        Metadata metadata = new Metadata().put("file_name", file);
+        if (page != null) {
+            metadata.put("page_number", page);
+        }
+        return Content.from(TextSegment.from("片段", metadata), Map.of(ContentMetadata.SCORE, score));
+    }
+
+    /**
+     * 手动控制请求量的订阅者
+     */
+    private static class Collector extends BaseSubscriber<ServerSentEvent<Object>> {
+        final List<ServerSentEvent<Object>> events = new ArrayList<>();
+        final long initialRequest;
+        boolean completed;
+
+        Collector(long initialRequest) {
+            this.initialRequest = initialRequest;
+        }
+
+        @Override
+        protected void hookOnSubscribe(Subscription subscription) {
+            if (initialRequest > 0) {
+                request(initialRequest);
+            }
+        }
+
+        @Override
+        protected void hookOnNext(ServerSentEvent<Object> event) {
+            events.add(event);
+        }
+
+        @Override
+        protected void hookOnComplete() {
+            completed = true;
+        }
+
+        @SuppressWarnings("unchecked")
+        List<String> texts() {
+            return events.stream().map(event -> (String) ((Map<String, Object>) event.data()).get("text")).toList();
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.example.aicodehelper.ai.tools;
+
+import dev.langchain4j.agent.tool.ToolSpecification;
+import dev.langchain4j.agent.tool.ToolSpecifications;
+import dev.langchain4j.service.memory.ChatMemoryService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * FileReaderTool 测试类
+ * 测试批量读取、目录树和搜索工具，以及搜索结果的缓存校验
+ */
+@DisplayName("文件读取工具测试")
+class FileReaderToolTest {
+
+    private static final Object MEMORY_ID = 1;
+
+    private FileReaderTool tool;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Path pkg = tempDir.resolve("src/main/java/com/example");
+        Files.createDirectories(pkg);
+        Files.writeString(pkg.resolve("Main.java"), """
+                package com.example;
+
+                public class Main {
+                    public static void main(String[] args) {
+                        System.out.println(new Util().greet());
+                    }
+                }
+                """);
+        Files.writeString(pkg.resolve("Util.java"), """
+                package com.example;
+
+                public class Util {
+                    public String greet() {
+                        return "hello";
+                    }
+                }
+                """);
+        Files.writeString(tempDir.resolve("pom.xml"), "<project/>");
+        Files.createDirectories(tempDir.resolve("target/classes"));
+        Files.writeString(tempDir.resolve("target/classes/Main.class"), "binary");
+
+        tool = new FileReaderTool(tempDir.toString());
+    }
+
+    @Test
+    @DisplayName("测试递归列出目录树")
+    void testListProjectTree() {
+        String tree = tool.listProjectTree(MEMORY_ID, "", 6, "");
+
+        assertTrue(tree.contains("Main.java"), "目录树应包含深层文件");
+        assertTrue(tree.contains("pom.xml"));
+        assertFalse(tree.contains("Main.class"), "应跳过构建输出目录");
+    }
+
+    @Test
+    @DisplayName("测试目录树深度和扩展名过滤")
+    void testListProjectTreeWithFilter() {
+        String shallow = tool.listProjectTree(MEMORY_ID, "", 2, "");
+        assertFalse(shallow.contains("Main.java"), "深度限制应生效");
+
+        String javaOnly = tool.listProjectTree(MEMORY_ID, "src", 6, "java");
+        assertTrue(javaOnly.contains("Util.java"));
+        assertFalse(javaOnly.contains("pom.xml"), "扩展名过滤应生效");
+    }
+
+    @Test
+    @DisplayName("测试一次读取多个文件")
+    void testReadProjectFiles() {
+        String result = tool.readProjectFiles(MEMORY_ID, List.of(
+                "src/main/java/com/example/Main.java",
+                "src/main/java/com/example/Util.java"));
+
+        assertTrue(result.contains("public class Main"));
+        assertTrue(result.contains("public class Util"));
+        assertTrue(result.indexOf("Main.java") < result.indexOf("Util.java"), "结果应按请求顺序排列");
+    }
+
+    @Test
+    @DisplayName("测试读取行号范围")
+    void testReadProjectFilesWithRange() {
+        String result = tool.readProjectFiles(MEMORY_ID, List.of("src/main/java/com/example/Util.java:3-5"));
+
+        assertTrue(result.contains("   3 | public class Util"));
+        assertTrue(result.contains("   5 |         return \"hello\";"));
+        assertFalse(result.contains("package com.example"), "范围外的行不应出现");
+    }
+
+    @Test
+    @DisplayName("测试超过大小上限的文件可以按行号范围读取")
+    void testReadRangeOfLargeFile() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 1; i <= 100_000; i++) {
+            content.append("line ").append(i).append('\n');
+        }
+        Files.writeString(tempDir.resolve("big.txt"), content);
+
+        assertTrue(tool.readProjectFile(MEMORY_ID, "big.txt").contains("文件过大"));
+        String result = tool.readProjectFiles(MEMORY_ID, List.of("big.txt:50000-50002"));
+        assertTrue(result.contains("总行数: 100000（显示第 50000-50002 行）"), result);
+        assertTrue(result.contains("50000 | line 50000"));
+        assertTrue(result.contains("50002 | line 50002"));
+        assertFalse(result.contains("line 50003"));
+    }
+
+    @Test
+    @DisplayName("测试批量读取包含不存在的文件")
+    void testReadProjectFilesWithMissingFile() {
+        String result = tool.readProjectFiles(MEMORY_ID, List.of("missing.java", "pom.xml"));
+
+        assertTrue(result.contains("文件不存在: missing.java"));
+        assertTrue(result.contains("<project/>"), "其余文件应正常读取");
+    }
+
+    @Test
+    @DisplayName("测试批量读取参数中的 null 和空白项被忽略")
+    void testReadProjectFilesWithNullSpec() {
+        FileReaderTool cachedTool = new FileReaderTool(tempDir.toString(),
+                new ToolResultCache(null, new SimpleMeterRegistry(), 10, 100_000));
+        List<String> specs = Arrays.asList(null, " ", "pom.xml");
+
+        assertTrue(cachedTool.readProjectFiles(MEMORY_ID, specs).contains("<project/>"));
+        assertTrue(cachedTool.readProjectFiles(MEMORY_ID, Arrays.asList(null, "")).contains("未指定要读取的文件"));
+    }
+
+    @Test
+    @DisplayName("测试并行搜索多个文件，结果包含所有匹配的文件和行号")
+    void testSearchCodeInProject() {
+        String result = tool.searchCodeInProject(MEMORY_ID, "greet", ".java");
+
+        assertTrue(result.contains("找到 2 处匹配"), result);
+        assertTrue(result.contains("Main.java (第5行)"), result);
+        assertTrue(result.contains("Util.java (第4行)"), result);
+        assertTrue(tool.searchCodeInProject(MEMORY_ID, "notExisting", "").contains("未找到"));
+    }
+
+    @Test
+    @DisplayName("测试搜索和缓存校验都跳过构建目录，构建目录变化不使缓存失效")
+    void testSearchSkipsIgnoredDirectories() throws IOException {
+        Files.writeString(tempDir.resolve("target/classes/Generated.java"), "greet");
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        FileReaderTool cachedTool = new FileReaderTool(tempDir.toString(),
+                new ToolResultCache(null, meterRegistry, 10, 100_000));
+
+        String first = cachedTool.searchCodeInProject(MEMORY_ID, "greet", ".java");
+        assertTrue(first.contains("找到 2 处匹配"), first);
+
+        Files.writeString(tempDir.resolve("target/classes/Generated2.java"), "greet");
+        assertEquals(first, cachedTool.searchCodeInProject(MEMORY_ID, "greet", ".java"));
+        assertEquals(1, meterRegistry.get("ai.tool.cache.requests").tag("result", "hit").counter().count());
+
+        Files.writeString(tempDir.resolve("src/main/java/com/example/Other.java"), "greet");
+        assertTrue(cachedTool.searchCodeInProject(MEMORY_ID, "greet", ".java").contains("找到 3 处匹配"),
+                "源码目录变化应使缓存失效");
+    }
+
+    @Test
+    @DisplayName("测试不带会话记忆的调用（默认会话ID）不使用缓存")
+    void testDefaultMemoryIdNotCached() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        FileReaderTool cachedTool = new FileReaderTool(tempDir.toString(),
+                new ToolResultCache(null, meterRegistry, 10, 100_000));
+
+        cachedTool.readProjectFile(ChatMemoryService.DEFAULT, "pom.xml");
+        cachedTool.readProjectFile(ChatMemoryService.DEFAULT, "pom.xml");
+
+        assertEquals(0, meterRegistry.get("ai.tool.cache.requests").tag("result", "hit").counter().count());
+        assertEquals(0, meterRegistry.get("ai.tool.cache.requests").tag("result", "miss").counter().count());
+    }
+
+    @Test
+    @DisplayName("测试批量工具可生成工具规格")
+    void testToolSpecifications() {
+        List<String> names = ToolSpecifications.toolSpecificationsFrom(FileReaderTool.class).stream()
+                .map(ToolSpecification::name)
+                .toList();
+
+        assertTrue(names.contains("listProjectTree"));
+        assertTrue(names.contains("readProjectFiles"));
+    }
+}
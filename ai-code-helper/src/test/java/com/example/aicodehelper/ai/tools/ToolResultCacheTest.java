@@ -0,0 +1,119 @@
+package com.example.aicodehelper.ai.tools;
+
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.store.memory.chat.InMemoryChatMemoryStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ToolResultCache 测试类
+ * 测试按会话缓存、指纹校验、会话内引用和内存上限
+ */
+@DisplayName("工具结果缓存测试")
+class ToolResultCacheTest {
+
+    private InMemoryChatMemoryStore memoryStore;
+    private SimpleMeterRegistry meterRegistry;
+    private ToolResultCache cache;
+    private AtomicInteger executions;
+
+    @BeforeEach
+    void setUp() {
+        memoryStore = new InMemoryChatMemoryStore();
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new ToolResultCache(memoryStore, meterRegistry, 2, 1_000);
+        executions = new AtomicInteger();
+    }
+
+    @Test
+    @DisplayName("测试指纹不变时命中缓存")
+    void testHitWhenFingerprintUnchanged() {
+        assertEquals("result", read(1, "A.java", "v1", "result"));
+        assertEquals("result", read(1, "A.java", "v1", "result"));
+
+        assertEquals(1, executions.get(), "第二次调用应命中缓存");
+        assertEquals(0.5, cache.hitRate());
+        assertEquals(1.0, meterRegistry.get("ai.tool.cache.requests").tag("result", "hit").counter().count());
+    }
+
+    @Test
+    @DisplayName("测试文件变化后缓存失效")
+    void testStaleWhenFingerprintChanged() {
+        read(1, "A.java", "v1", "old");
+        assertEquals("new", read(1, "A.java", "v2", "new"));
+
+        assertEquals(2, executions.get());
+        assertEquals(1.0, meterRegistry.get("ai.tool.cache.requests").tag("result", "stale").counter().count());
+    }
+
+    @Test
+    @DisplayName("测试不同会话互相隔离")
+    void testConversationsIsolated() {
+        read(1, "A.java", "v1", "result");
+        read(2, "A.java", "v1", "result");
+
+        assertEquals(2, executions.get());
+    }
+
+    @Test
+    @DisplayName("测试结果已在会话中时返回引用")
+    void testReferenceWhenResultAlreadyInConversation() {
+        String longResult = "x".repeat(300);
+        memoryStore.updateMessages(1, List.of(
+                UserMessage.from("读一下A.java"),
+                ToolExecutionResultMessage.from("id-1", "readProjectFile", longResult)));
+
+        String result = read(1, "A.java", "v1", longResult);
+
+        assertTrue(result.startsWith("♻️"), "应返回指向已有结果的引用");
+        assertTrue(result.length() < longResult.length());
+        assertEquals(longResult, read(2, "A.java", "v1", longResult), "其他会话中没有该结果，应返回完整内容");
+    }
+
+    @Test
+    @DisplayName("测试内存上限和会话淘汰")
+    void testBoundedMemory() {
+        read(1, "A.java", "v1", "a".repeat(600));
+        read(1, "B.java", "v1", "b".repeat(600));
+        read(1, "A.java", "v1", "a".repeat(600));
+        assertEquals(3, executions.get(), "超出单会话字符上限时最早的结果应被淘汰");
+
+        read(2, "A.java", "v1", "c");
+        read(3, "A.java", "v1", "d");
+        read(1, "B.java", "v1", "b".repeat(600));
+        assertEquals(6, executions.get(), "超出会话数上限时最久未使用的会话应被淘汰");
+    }
+
+    @Test
+    @DisplayName("测试没有会话ID时不缓存")
+    void testNoMemoryId() {
+        read(null, "A.java", "v1", "result");
+        read(null, "A.java", "v1", "result");
+
+        assertEquals(2, executions.get());
+    }
+
+    @Test
+    @DisplayName("测试无法计算指纹时不缓存")
+    void testNoFingerprint() {
+        read(1, "A.java", null, "result");
+        read(1, "A.java", null, "result");
+
+        assertEquals(2, executions.get());
+    }
+
+    private String read(Object memoryId, String file, String fingerprint, String content) {
+        return cache.getOrCompute(memoryId, "readProjectFile", file, () -> fingerprint, () -> {
+            executions.incrementAndGet();
+            return content;
+        });
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.aicodehelper.ai.trace;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.query.Metadata;
+import dev.langchain4j.rag.query.Query;
+import dev.langchain4j.store.memory.chat.InMemoryChatMemoryStore;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * StageTracer 测试类
+ * 模拟一次对话请求依次经过会话记忆、RAG 检索和流式模型，检查各阶段能关联到同一请求并作为 JFR 事件发出
+ */
+@DisplayName("请求阶段追踪测试")
+class StageTracerTest {
+
+    private final StageTracer tracer = new StageTracer();
+
+    // 模拟上游模型：保存回调，由测试手动推送片段
+    private StreamingChatResponseHandler upstreamHandler;
+
+    private final StreamingChatModel upstream = new StreamingChatModel() {
+        @Override
+        public void chat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+            upstreamHandler = handler;
+        }
+    };
+
+    @Test
+    @DisplayName("测试各阶段通过会话ID和线程绑定关联到同一请求")
+    void testStagesCorrelated() {
+        TracingChatMemoryStore memoryStore = new TracingChatMemoryStore(new InMemoryChatMemoryStore(), tracer);
+        TracingContentRetriever retriever = new TracingContentRetriever(query -> {
+            // 检索内部的向量化和向量检索使用线程绑定
+            try (StageTracer.Stage ignored = tracer.beginBound("rag.embed")) {
+                return List.<Content>of();
+            }
+        }, tracer);
+        TracingStreamingChatModel model = new TracingStreamingChatModel(upstream, tracer);
+
+        RequestTrace trace = tracer.start("req-1", "chat", 1);
+        List<ChatMessage> history = memoryStore.getMessages(1);
+        retriever.retrieve(Query.from("什么是多态", Metadata.from(UserMessage.from("什么是多态"), 1, history)));
+        RecordingHandler handler = new RecordingHandler();
+        model.chat(request(), handler);
+        upstreamHandler.onPartialResponse("多态是");
+        upstreamHandler.onPartialResponse("指同一方法");
+        upstreamHandler.onCompleteResponse(ChatResponse.builder().aiMessage(AiMessage.from("多态是指同一方法")).build());
+        tracer.finish(trace);
+
+        assertEquals(List.of("多态是", "指同一方法"), handler.partials);
+        assertEquals(List.of("memory.load", "rag.embed", "rag.retrieve", "model.first-token", "model.generate"),
+                trace.spans().stream().map(RequestTrace.Span::stage).toList());
+        // 绑定已被模型调用取走
+        assertNull(tracer.takeBound());
+    }
+
+    @Test
+    @DisplayName("测试其他会话和已结束请求的阶段不被记录")
+    void testUnrelatedAndFinished() {
+        TracingChatMemoryStore memoryStore = new TracingChatMemoryStore(new InMemoryChatMemoryStore(), tracer);
+        RequestTrace trace = tracer.start("req-1", "chat", 1);
+
+        memoryStore.getMessages(2);
+        assertTrue(trace.spans().isEmpty());
+
+        memoryStore.getMessages(1);
+        tracer.finish(trace);
+        // 请求结束后，线程上残留的绑定不再被模型调用使用
+        assertNull(tracer.takeBound());
+        new TracingStreamingChatModel(upstream, tracer).chat(request(), new RecordingHandler());
+        upstreamHandler.onPartialResponse("回答");
+        assertEquals(1, trace.spans().size());
+    }
+
+    @Test
+    @DisplayName("测试耗时明细按阶段汇总")
+    void testBreakdown() throws InterruptedException {
+        RequestTrace trace = tracer.start("req-1", "chat", 1);
+        for (int i = 0; i < 3; i++) {
+            try (StageTracer.Stage ignored = tracer.begin(1, "tool.readProjectFile", false)) {
+                Thread.sleep(5);
+            }
+        }
+        try (StageTracer.Stage ignored = tracer.begin(trace, "model.generate")) {
+            Thread.sleep(20);
+        }
+        tracer.finish(trace);
+
+        String breakdown = trace.breakdown();
+        assertTrue(breakdown.matches("tool\\.readProjectFile \\d+ ms ×3, model\\.generate \\d+ ms"), breakdown);
+        assertEquals(3, trace.spans().stream().filter(span -> span.stage().startsWith("tool.")).count());
+    }
+
+    @Test
+    @DisplayName("测试关闭追踪后不记录任何阶段")
+    void testDisabled() {
+        ReflectionTestUtils.setField(tracer, "enabled", false);
+
+        RequestTrace trace = tracer.start("req-1", "chat", 1);
+        tracer.begin(1, "memory.load", true).close();
+        tracer.finish(trace);
+
+        assertNull(trace);
+        assertNull(tracer.takeBound());
+    }
+
+    @Test
+    @DisplayName("测试各阶段和整个请求作为 JFR 事件发出")
+    void testJfrEvents(@TempDir Path dir) throws Exception {
+        ReflectionTestUtils.setField(tracer, "slowRequestThreshold", Duration.ZERO);
+        Path file = dir.resolve("stages.jfr");
+
+        RequestTrace trace;
+        try (Recording recording = new Recording()) {
+            recording.enable("com.example.aicodehelper.Stage");
+            recording.start();
+            trace = tracer.start("req-7", "chat", 7);
+            tracer.begin(7, "memory.load", true).close();
+            tracer.begin(trace, "repo-map").close();
+            tracer.finish(trace);
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<String> stages = new ArrayList<>();
+        for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+            assertEquals(trace.requestId(), event.getString("requestId"));
+            assertEquals("chat", event.getString("endpoint"));
+            stages.add(event.getString("stage"));
+        }
+        assertEquals(3, stages.size());
+        assertTrue(stages.containsAll(List.of("memory.load", "repo-map", "request")), stages.toString());
+    }
+
+    private static ChatRequest request() {
+        return ChatRequest.builder().messages(UserMessage.from("什么是多态")).build();
+    }
+
+    private static class RecordingHandler implements StreamingChatResponseHandler {
+        final List<String> partials = new ArrayList<>();
+
+        @Override
+        public void onPartialResponse(String partialResponse) {
+            partials.add(partialResponse);
+        }
+
+        @Override
+        public void onCompleteResponse(ChatResponse completeResponse) {
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.aicodehelper.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * BlockingSchedulers 测试类
+ * 测试阻塞调用在专用线程池上执行并带有请求ID、流式响应在 model 线程池上订阅，以及排队已满时返回 503
+ */
+@DisplayName("阻塞调用调度器测试")
+class BlockingSchedulersTest {
+
+    private final BlockingSchedulers schedulers = new BlockingSchedulers();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(schedulers, "modelThreads", 1);
+        ReflectionTestUtils.setField(schedulers, "ioThreads", 1);
+        ReflectionTestUtils.setField(schedulers, "queuedTasksPerThread", 1);
+        ReflectionTestUtils.invokeMethod(schedulers, "init");
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReflectionTestUtils.invokeMethod(schedulers, "dispose");
+    }
+
+    @Test
+    @DisplayName("测试阻塞调用在对应线程池上执行，期间 MDC 中带有请求ID，结束后清除")
+    void testRunsOnDedicatedThreadWithRequestId() {
+        AtomicReference<String> thread = new AtomicReference<>();
+        String requestId = schedulers.callIo("req-1", () -> {
+            thread.set(Thread.currentThread().getName());
+            return RequestIdFilter.currentRequestId();
+        }).block(Duration.ofSeconds(5));
+
+        assertEquals("req-1", requestId);
+        assertTrue(thread.get().startsWith("blocking-io"), thread.get());
+        // 没有请求ID时不设置 MDC
+        assertNull(schedulers.callModel(null, () -> Thread.currentThread().getName().startsWith("blocking-model")
+                ? RequestIdFilter.currentRequestId() : "wrong-thread").block(Duration.ofSeconds(5)));
+    }
+
+    @Test
+    @DisplayName("测试流式响应在 model 线程池上订阅，元素照常发出")
+    void testSubscribeOnModel() {
+        AtomicReference<String> subscribeThread = new AtomicReference<>();
+        AtomicReference<String> subscribeRequestId = new AtomicReference<>();
+        Flux<Integer> source = Flux.defer(() -> {
+            subscribeThread.set(Thread.currentThread().getName());
+            subscribeRequestId.set(MDC.get(RequestIdFilter.MDC_KEY));
+            return Flux.range(1, 3);
+        });
+
+        List<Integer> items = schedulers.subscribeOnModel("req-2", source).collectList().block(Duration.ofSeconds(5));
+
+        assertEquals(List.of(1, 2, 3), items);
+        assertTrue(subscribeThread.get().startsWith("blocking-model"), subscribeThread.get());
+        assertEquals("req-2", subscribeRequestId.get());
+    }
+
+    @Test
+    @DisplayName("测试线程和排队都已用满时新调用以 503 失败，已接受的调用照常完成")
+    void testRejectsWhenSaturated() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        schedulers.callModel("busy", () -> {
+            started.countDown();
+            release.await();
+            return "busy";
+        }).subscribe();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // 唯一的线程被占用，继续提交直到排队已满
+        List<Throwable> errors = new CopyOnWriteArrayList<>();
+        AtomicInteger completed = new AtomicInteger();
+        for (int i = 0; i < 10; i++) {
+            schedulers.callModel("call-" + i, () -> "ok").subscribe(v -> completed.incrementAndGet(), errors::add);
+        }
+        int accepted = 10 - errors.size();
+        release.countDown();
+
+        assertTrue(accepted >= 1 && accepted < 10, "accepted " + accepted);
+        for (Throwable error : errors) {
+            ResponseStatusException e = assertInstanceOf(ResponseStatusException.class, error);
+            assertEquals(HttpStatus.SERVICE_UNAVAILABLE, e.getStatusCode());
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (completed.get() < accepted && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(accepted, completed.get());
+    }
+
+    @Test
+    @DisplayName("测试虚拟线程模式：调用在虚拟线程上执行并带有请求ID，同时执行的调用数超过上限时以 503 失败")
+    void testVirtualThreads() throws Exception {
+        BlockingSchedulers virtual = new BlockingSchedulers();
+        ReflectionTestUtils.setField(virtual, "virtualThreads", true);
+        ReflectionTestUtils.setField(virtual, "virtualMaxConcurrentCalls", 2);
+        ReflectionTestUtils.invokeMethod(virtual, "init");
+        try {
+            AtomicReference<Thread> thread = new AtomicReference<>();
+            String requestId = virtual.callModel("req-3", () -> {
+                thread.set(Thread.currentThread());
+                return RequestIdFilter.currentRequestId();
+            }).block(Duration.ofSeconds(5));
+            assertEquals("req-3", requestId);
+            assertTrue(thread.get().isVirtual());
+            assertTrue(thread.get().getName().startsWith("blocking-model"), thread.get().getName());
+
+            CountDownLatch started = new CountDownLatch(2);
+            CountDownLatch release = new CountDownLatch(1);
+            for (int i = 0; i < 2; i++) {
+                virtual.callModel("busy-" + i, () -> {
+                    started.countDown();
+                    release.await();
+                    return "busy";
+                }).subscribe();
+            }
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            ResponseStatusException e = assertThrows(ResponseStatusException.class,
+                    () -> virtual.callModel("rejected", () -> "ok").block(Duration.ofSeconds(5)));
+            assertEquals(HttpStatus.SERVICE_UNAVAILABLE, e.getStatusCode());
+            // io 调度器的上限独立计算
+            assertEquals("ok", virtual.callIo("io", () -> "ok").block(Duration.ofSeconds(5)));
+
+            release.countDown();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            String result = null;
+            while (result == null && System.nanoTime() < deadline) {
+                try {
+                    result = virtual.callModel("after", () -> "ok").block(Duration.ofSeconds(5));
+                } catch (ResponseStatusException busy) {
+                    Thread.sleep(10);
+                }
+            }
+            assertEquals("ok", result, "调用结束后应释放名额");
+        } finally {
+            ReflectionTestUtils.invokeMethod(virtual, "dispose");
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.aicodehelper.config;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ReactiveRequestIdFilter 测试类
+ * 测试 WebFlux 下沿用或生成请求ID，写入响应头和请求属性
+ */
+@DisplayName("请求关联ID过滤器（WebFlux）测试")
+class ReactiveRequestIdFilterTest {
+
+    private final ReactiveRequestIdFilter filter = new ReactiveRequestIdFilter();
+
+    @Test
+    @DisplayName("测试沿用客户端提供的请求ID并写入响应头和请求属性")
+    void testPropagatesClientId() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.post("/api/ai/chat")
+                .header(RequestIdFilter.HEADER, "3f2b6c1e-8d4a-4f6b-9a1c-0e5d7b2a9c44"));
+        AtomicReference<String> seen = new AtomicReference<>();
+
+        filter.filter(exchange, e -> {
+            seen.set(e.getAttribute(RequestIdFilter.ATTRIBUTE));
+            return Mono.empty();
+        }).block();
+
+        assertEquals("3f2b6c1e-8d4a-4f6b-9a1c-0e5d7b2a9c44", seen.get());
+        assertEquals("3f2b6c1e-8d4a-4f6b-9a1c-0e5d7b2a9c44",
+                exchange.getResponse().getHeaders().getFirst(RequestIdFilter.HEADER));
+    }
+
+    @Test
+    @DisplayName("测试非法的请求ID时生成新ID")
+    void testGeneratesId() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/api/ai/chat")
+                .header(RequestIdFilter.HEADER, "a\nb"));
+
+        filter.filter(exchange, e -> Mono.empty()).block();
+
+        String generated = exchange.getResponse().getHeaders().getFirst(RequestIdFilter.HEADER);
+        assertNotNull(generated);
+        assertNotEquals("a\nb", generated);
+        assertEquals(generated, exchange.getAttribute(RequestIdFilter.ATTRIBUTE));
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.aicodehelper.config;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * RequestIdFilter 测试类
+ * 测试沿用客户端的请求ID、非法ID时重新生成，以及请求处理期间 MDC 中的ID
+ */
+@DisplayName("请求关联ID过滤器测试")
+class RequestIdFilterTest {
+
+    private final RequestIdFilter filter = new RequestIdFilter();
+
+    @Test
+    @DisplayName("测试沿用客户端提供的请求ID并写入响应头和 MDC")
+    void testPropagatesClientId() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/ai/chat");
+        request.addHeader(RequestIdFilter.HEADER, "3f2b6c1e-8d4a-4f6b-9a1c-0e5d7b2a9c44");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        AtomicReference<String> seen = new AtomicReference<>();
+
+        filter.doFilter(request, response, new MockFilterChain() {
+            @Override
+            public void doFilter(jakarta.servlet.ServletRequest req, jakarta.servlet.ServletResponse res) {
+                seen.set(RequestIdFilter.currentRequestId());
+            }
+        });
+
+        assertEquals("3f2b6c1e-8d4a-4f6b-9a1c-0e5d7b2a9c44", seen.get());
+        assertEquals("3f2b6c1e-8d4a-4f6b-9a1c-0e5d7b2a9c44", response.getHeader(RequestIdFilter.HEADER));
+        // 请求结束后清除
+        assertNull(MDC.get(RequestIdFilter.MDC_KEY));
+    }
+
+    @Test
+    @DisplayName("测试没有或非法的请求ID时生成新ID")
+    void testGeneratesId() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/ai/chat"), response, new MockFilterChain());
+        String generated = response.getHeader(RequestIdFilter.HEADER);
+
+        assertNotNull(generated);
+        assertEquals(generated, RequestIdFilter.resolve(generated));
+        assertNotEquals("a\nb", RequestIdFilter.resolve("a\nb"));
+        assertNotEquals("x".repeat(65), RequestIdFilter.resolve("x".repeat(65)));
+        assertEquals("abc-1", RequestIdFilter.resolve(" abc-1 "));
+    }
+}
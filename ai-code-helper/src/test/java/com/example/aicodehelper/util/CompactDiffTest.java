@@ -0,0 +1,124 @@
+package com.example.aicodehelper.util;
+
+import com.example.aicodehelper.dto.CodeDiffResult;
+import com.example.aicodehelper.dto.CompactDiffResult;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * CompactDiff 测试类
+ * 测试编辑脚本的还原，以及与完整格式的响应大小、耗时对比
+ */
+@DisplayName("紧凑差异格式测试")
+class CompactDiffTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .setSerializationInclusion(JsonInclude.Include.NON_NULL);
+
+    @Test
+    @DisplayName("测试客户端可按脚本逐字节还原修改后代码")
+    void testRoundTrip() {
+        String original = studentFile(40);
+        String[] modifiedVersions = {
+                original.replace("score >= 60", "score >= 70"),
+                original + "// 末尾追加\n",
+                original.substring(0, original.length() - 1),
+                "import java.util.List;\n" + original.replace("    private int count0;\n", ""),
+                original,
+        };
+
+        for (String modified : modifiedVersions) {
+            CompactDiffResult compact = CompactDiff.from(new CodeDiffResult(original, modified, "", "Student.java"));
+
+            String rebuilt = CompactDiff.apply(original, compact.getScript());
+
+            assertEquals(modified, rebuilt);
+            assertEquals(compact.getModifiedHash(), CompactDiff.sha256(rebuilt));
+            assertEquals(CompactDiff.sha256(original), compact.getBaseHash());
+        }
+    }
+
+    @Test
+    @DisplayName("测试错误结果和非法脚本")
+    void testErrors() {
+        CodeDiffResult error = new CodeDiffResult();
+        error.setError("原始代码不能为空");
+        CompactDiffResult compact = CompactDiff.from(error);
+        assertEquals("error", compact.getStatus());
+        assertNull(compact.getScript());
+
+        assertThrows(IllegalArgumentException.class, () -> CompactDiff.apply("a\nb", "@ 5 1 0\n"));
+        assertThrows(IllegalArgumentException.class, () -> CompactDiff.apply("a\nb", "oops\n"));
+    }
+
+    @Test
+    @DisplayName("测试典型学生代码上的响应大小和耗时对比")
+    void testSizeAndLatencyComparison() throws IOException {
+        String original = studentFile(120);
+        String modified = original
+                .replace("score >= 60", "score >= 70")
+                .replace("    public void reset3() {\n", "    public void reset3() {\n        System.out.println(\"reset\");\n");
+
+        long start = System.nanoTime();
+        CodeDiffResult full = DiffUtils.compareCode(original, modified, "提高及格线", "Student.java");
+        byte[] fullJson = objectMapper.writeValueAsBytes(full);
+        long fullNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        CompactDiffResult compact = CompactDiff.from(full);
+        byte[] compactJson = objectMapper.writeValueAsBytes(compact);
+        long compactNanos = System.nanoTime() - start;
+
+        int fullGzip = gzipSize(fullJson);
+        int compactGzip = gzipSize(compactJson);
+        System.out.printf("原始代码 %d 行 / %d 字节%n", original.split("\n").length, original.length());
+        System.out.printf("完整格式: %d 字节, gzip 后 %d 字节, 构建+序列化 %.2f ms%n",
+                fullJson.length, fullGzip, fullNanos / 1e6);
+        System.out.printf("紧凑格式: %d 字节, gzip 后 %d 字节, 构建+序列化 %.2f ms%n",
+                compactJson.length, compactGzip, compactNanos / 1e6);
+
+        assertTrue(compactJson.length * 10 < fullJson.length, "紧凑格式应远小于完整格式");
+        assertTrue(compactGzip < fullGzip, "压缩后紧凑格式也应更小");
+        assertEquals(modified, CompactDiff.apply(original, compact.getScript()));
+    }
+
+    /**
+     * 生成典型的学生作业代码
+     */
+    private static String studentFile(int methods) {
+        StringBuilder code = new StringBuilder();
+        code.append("package homework;\n\n");
+        code.append("public class Student {\n");
+        for (int i = 0; i < methods / 10 + 1; i++) {
+            code.append("    private int count").append(i).append(";\n");
+        }
+        code.append("\n");
+        code.append("    public boolean isPassed(int score) {\n");
+        code.append("        return score >= 60;\n");
+        code.append("    }\n\n");
+        for (int i = 0; i < methods; i++) {
+            code.append("    public void reset").append(i).append("() {\n");
+            code.append("        // 重置第 ").append(i).append(" 个计数器\n");
+            code.append("        count").append(i % (methods / 10 + 1)).append(" = 0;\n");
+            code.append("    }\n\n");
+        }
+        code.append("}\n");
+        return code.toString();
+    }
+
+    private static int gzipSize(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        }
+        return out.size();
+    }
+}
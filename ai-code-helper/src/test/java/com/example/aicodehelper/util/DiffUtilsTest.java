@@ -0,0 +1,212 @@
+package com.example.aicodehelper.util;
+
+import com.example.aicodehelper.dto.CodeDiffResult;
+import com.example.aicodehelper.dto.CodeDiffResult.DiffHunk;
+import com.example.aicodehelper.dto.CodeDiffResult.DiffType;
+import com.example.aicodehelper.util.diff.DiffAlgorithm;
+import com.example.aicodehelper.util.diff.Edit;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * DiffUtils 测试类
+ * 测试差异块是否最小、能否还原修改后代码，以及大文件上的表现
+ */
+@DisplayName("差异比较测试")
+class DiffUtilsTest {
+
+    @Test
+    @DisplayName("测试中间插入一行只产生一个新增块")
+    void testInsertInMiddle() {
+        String original = lines(200);
+        String modified = original.replace("line 100\n", "line 100\ninserted\n");
+
+        CodeDiffResult result = DiffUtils.compareCode(original, modified);
+
+        assertEquals(1, result.getHunks().size());
+        DiffHunk hunk = result.getHunks().get(0);
+        assertEquals(DiffType.ADDED, hunk.getType());
+        assertEquals(101, hunk.getOriginalStart());
+        assertEquals(List.of("inserted"), hunk.getModifiedLinesList());
+    }
+
+    @Test
+    @DisplayName("测试多处分散修改各自成块")
+    void testScatteredChanges() {
+        String original = lines(100);
+        String modified = original
+                .replace("line 10\n", "")
+                .replace("line 50\n", "changed 50\n")
+                .replace("line 90\n", "line 90\nnew 90\n");
+
+        List<DiffHunk> hunks = DiffUtils.compareCode(original, modified).getHunks();
+
+        assertEquals(3, hunks.size());
+        assertEquals(DiffType.REMOVED, hunks.get(0).getType());
+        assertEquals(DiffType.MODIFIED, hunks.get(1).getType());
+        assertEquals(1, hunks.get(1).getOriginalLines());
+        assertEquals(DiffType.ADDED, hunks.get(2).getType());
+    }
+
+    @Test
+    @DisplayName("测试修改块包含行内差异")
+    void testLineEdits() {
+        String original = "class A {\n    int total = a + b;\n    void run() {}\n}";
+        String modified = "class A {\n    int total = a * b;\n    void run() {}\n}";
+
+        DiffHunk hunk = DiffUtils.compareCode(original, modified).getHunks().get(0);
+
+        assertEquals(1, hunk.getLineEdits().size());
+        CodeDiffResult.LineEdit lineEdit = hunk.getLineEdits().get(0);
+        assertEquals(1, lineEdit.getOriginalLine());
+        assertArrayEquals(new int[]{18, 19}, lineEdit.getOriginalRanges());
+        assertArrayEquals(new int[]{18, 19}, lineEdit.getModifiedRanges());
+
+        CodeDiffResult rewritten = DiffUtils.compareCode("int x = 1;", "System.out.println(\"hello\");");
+        assertNull(rewritten.getHunks().get(0).getLineEdits(), "完全不同的行不需要行内差异");
+    }
+
+    @Test
+    @DisplayName("测试相同代码没有差异")
+    void testIdentical() {
+        String code = lines(50);
+        assertTrue(DiffUtils.compareCode(code, code).getHunks().isEmpty());
+        assertFalse(DiffUtils.hasRealChanges(DiffUtils.compareCode(code, code)));
+    }
+
+    @ParameterizedTest
+    @EnumSource(DiffAlgorithm.class)
+    @DisplayName("测试随机输入：差异块可还原修改后代码")
+    void testRandomRoundTrip(DiffAlgorithm algorithm) {
+        Random random = new Random(42);
+        for (int round = 0; round < 300; round++) {
+            String[] a = randomLines(random, random.nextInt(40));
+            String[] b = mutate(random, a);
+
+            List<Edit> edits = algorithm.diff(a, b);
+
+            assertArrayEquals(b, apply(a, b, edits), "第 " + round + " 轮还原失败");
+            for (int i = 1; i < edits.size(); i++) {
+                Edit previous = edits.get(i - 1);
+                Edit current = edits.get(i);
+                assertTrue(previous.originalEnd() < current.originalStart()
+                        || previous.modifiedEnd() < current.modifiedStart(), "相邻编辑应已合并");
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("测试Myers算法的编辑距离最小")
+    void testMyersIsMinimal() {
+        Random random = new Random(7);
+        for (int round = 0; round < 300; round++) {
+            String[] a = randomLines(random, random.nextInt(30));
+            String[] b = mutate(random, a);
+
+            int changedLines = 0;
+            for (Edit edit : DiffAlgorithm.MYERS.diff(a, b)) {
+                changedLines += (edit.originalEnd() - edit.originalStart()) + (edit.modifiedEnd() - edit.modifiedStart());
+            }
+
+            int lcs = lcsLength(a, b);
+            assertEquals(a.length + b.length - 2 * lcs, changedLines, "第 " + round + " 轮编辑脚本不是最短的");
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(DiffAlgorithm.class)
+    @DisplayName("测试大文件上的差异块数量")
+    void testLargeInput(DiffAlgorithm algorithm) {
+        String original = lines(50_000);
+        String modified = original
+                .replace("line 100\n", "line 100 changed\n")
+                .replace("line 25000\n", "")
+                .replace("line 49000\n", "line 49000\nadded\n");
+
+        CodeDiffResult result = DiffUtils.compareCode(original, modified, "", "", algorithm);
+
+        assertEquals(3, result.getHunks().size());
+    }
+
+    private static String lines(int count) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            builder.append("line ").append(i).append('\n');
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 使用很小的字母表生成随机行，保证存在大量重复行
+     */
+    private static String[] randomLines(Random random, int count) {
+        String[] lines = new String[count];
+        for (int i = 0; i < count; i++) {
+            lines[i] = String.valueOf((char) ('a' + random.nextInt(5)));
+        }
+        return lines;
+    }
+
+    private static String[] mutate(Random random, String[] lines) {
+        List<String> result = new ArrayList<>(List.of(lines));
+        int operations = random.nextInt(6);
+        for (int i = 0; i < operations; i++) {
+            int position = result.isEmpty() ? 0 : random.nextInt(result.size());
+            switch (random.nextInt(3)) {
+                case 0 -> result.add(position, String.valueOf((char) ('a' + random.nextInt(6))));
+                case 1 -> {
+                    if (!result.isEmpty()) {
+                        result.remove(position);
+                    }
+                }
+                default -> {
+                    if (!result.isEmpty()) {
+                        result.set(position, "x");
+                    }
+                }
+            }
+        }
+        return result.toArray(new String[0]);
+    }
+
+    /**
+     * 把编辑应用到原始代码上：编辑区域的内容取自修改后代码
+     */
+    private static String[] apply(String[] original, String[] modified, List<Edit> edits) {
+        List<String> result = new ArrayList<>();
+        int position = 0;
+        for (Edit edit : edits) {
+            while (position < edit.originalStart()) {
+                result.add(original[position++]);
+            }
+            for (int j = edit.modifiedStart(); j < edit.modifiedEnd(); j++) {
+                result.add(modified[j]);
+            }
+            position = edit.originalEnd();
+        }
+        while (position < original.length) {
+            result.add(original[position++]);
+        }
+        return result.toArray(new String[0]);
+    }
+
+    private static int lcsLength(String[] a, String[] b) {
+        int[][] dp = new int[a.length + 1][b.length + 1];
+        for (int i = 1; i <= a.length; i++) {
+            for (int j = 1; j <= b.length; j++) {
+                dp[i][j] = a[i - 1].equals(b[j - 1])
+                        ? dp[i - 1][j - 1] + 1
+                        : Math.max(dp[i - 1][j], dp[i][j - 1]);
+            }
+        }
+        return dp[a.length][b.length];
+    }
+}
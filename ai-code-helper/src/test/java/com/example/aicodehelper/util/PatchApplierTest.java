@@ -0,0 +1,174 @@
+package com.example.aicodehelper.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * PatchApplier 测试类
+ * 测试编辑块解析以及精确、忽略空白、相似度三种匹配方式，以及相似度匹配的计算量上限
+ */
+@DisplayName("补丁应用测试")
+class PatchApplierTest {
+
+    private static final String ORIGINAL = String.join("\n",
+            "public class Greeter {",
+            "    private final String name;",
+            "",
+            "    public Greeter(String name) {",
+            "        this.name = name;",
+            "    }",
+            "",
+            "    public String greet() {",
+            "        return \"Hello, \" + name;",
+            "    }",
+            "}");
+
+    @Test
+    @DisplayName("测试解析多个编辑块并精确应用")
+    void testExactApply() {
+        String response = String.join("\n",
+                "<<<<<<< SEARCH",
+                "    private final String name;",
+                "=======",
+                "    private final String name;",
+                "    private int count;",
+                ">>>>>>> REPLACE",
+                "",
+                "<<<<<<< SEARCH",
+                "        return \"Hello, \" + name;",
+                "=======",
+                "        count++;",
+                "        return \"Hello, \" + name + \" #\" + count;",
+                ">>>>>>> REPLACE");
+
+        List<PatchApplier.Edit> edits = PatchApplier.parse(response);
+        assertEquals(2, edits.size());
+
+        String result = PatchApplier.apply(ORIGINAL, edits);
+        assertTrue(result.contains("    private int count;"));
+        assertTrue(result.contains("        count++;\n        return \"Hello, \" + name + \" #\" + count;"));
+        assertEquals(ORIGINAL.split("\n").length + 2, result.split("\n").length);
+    }
+
+    @Test
+    @DisplayName("测试缩进错误时按行匹配并修正缩进")
+    void testWhitespaceInsensitiveApply() {
+        List<PatchApplier.Edit> edits = List.of(new PatchApplier.Edit(
+                "public String greet() {\n    return \"Hello, \" + name;",
+                "public String greet() {\n    return \"Hi, \" + name;"));
+
+        String result = PatchApplier.apply(ORIGINAL, edits);
+
+        assertTrue(result.contains("    public String greet() {\n        return \"Hi, \" + name;"),
+                "替换内容应使用原始代码的缩进");
+    }
+
+    @Test
+    @DisplayName("测试个别字符不一致时按相似度匹配")
+    void testFuzzyApply() {
+        List<PatchApplier.Edit> edits = List.of(new PatchApplier.Edit(
+                "    public Greeter(String nane) {\n        this.name = name;\n    }",
+                "    public Greeter(String name) {\n        this.name = name.trim();\n    }"));
+
+        String result = PatchApplier.apply(ORIGINAL, edits);
+
+        assertTrue(result.contains("this.name = name.trim();"));
+        assertFalse(result.contains("nane"));
+    }
+
+    @Test
+    @DisplayName("测试大文件中首行一致的位置仍按相似度匹配")
+    void testFuzzyApplyInLargeFile() {
+        String code = largeCode(5_000) + "\n" + ORIGINAL;
+        List<PatchApplier.Edit> edits = List.of(new PatchApplier.Edit(
+                "    public String greet() {\n        return \"Helo, \" + name;\n    }",
+                "    public String greet() {\n        return \"Hi, \" + name;\n    }"));
+
+        String result = PatchApplier.apply(code, edits);
+
+        assertTrue(result.endsWith("        return \"Hi, \" + name;\n    }\n}"));
+    }
+
+    @Test
+    @DisplayName("测试相似度匹配的计算量超过上限时视为无法定位")
+    void testFuzzyWorkLimit() {
+        // 每个方法的末行都是 "}"，都是候选位置；SEARCH 块与所有方法都只有个别字符不同
+        String code = largeCode(5_000);
+        String body = "        process(\"" + "x".repeat(200) + "\");";
+        List<PatchApplier.Edit> edits = List.of(new PatchApplier.Edit(
+                "    public void metod4999() {\n" + body + "\n    }", ""));
+
+        PatchApplier.PatchFailedException e = assertThrows(PatchApplier.PatchFailedException.class,
+                () -> PatchApplier.apply(code, edits));
+        assertTrue(e.getMessage().contains("无法在原始代码中定位"), e.getMessage());
+    }
+
+    @Test
+    @DisplayName("测试首行和末行都不一致时不做相似度匹配")
+    void testFuzzyRequiresAnchor() {
+        List<PatchApplier.Edit> edits = List.of(new PatchApplier.Edit(
+                "    public Greeter(String nane) {\n        this.name = name;\n    ]",
+                "    public Greeter(String name) {\n        this.name = name.trim();\n    }"));
+
+        assertThrows(PatchApplier.PatchFailedException.class, () -> PatchApplier.apply(ORIGINAL, edits));
+    }
+
+    @Test
+    @DisplayName("测试无法定位或格式错误时抛出异常")
+    void testFailures() {
+        assertThrows(PatchApplier.PatchFailedException.class,
+                () -> PatchApplier.parse(ORIGINAL), "没有编辑块时应失败，以便回退到整文件生成");
+        assertThrows(PatchApplier.PatchFailedException.class,
+                () -> PatchApplier.parse("<<<<<<< SEARCH\nfoo\n=======\nbar"));
+        assertThrows(PatchApplier.PatchFailedException.class,
+                () -> PatchApplier.apply(ORIGINAL, List.of(new PatchApplier.Edit("int unrelated = 42;", ""))));
+    }
+
+    @Test
+    @DisplayName("测试SEARCH块在代码中出现多次时抛出异常而不是修改第一处")
+    void testDuplicatedSearchBlockFails() {
+        String code = String.join("\n",
+                "public class Counter {",
+                "    public void inc() {",
+                "        count++;",
+                "    }",
+                "",
+                "    public void incAgain() {",
+                "        count++;",
+                "    }",
+                "}");
+
+        PatchApplier.PatchFailedException exact = assertThrows(PatchApplier.PatchFailedException.class,
+                () -> PatchApplier.apply(code, List.of(new PatchApplier.Edit("        count++;", "        count += 2;"))));
+        assertTrue(exact.getMessage().contains("多次"));
+
+        // 缩进不同，精确匹配失败后逐行匹配同样找到两处
+        PatchApplier.PatchFailedException trimmed = assertThrows(PatchApplier.PatchFailedException.class,
+                () -> PatchApplier.apply(code, List.of(new PatchApplier.Edit("count++;\n}", "count += 2;\n}"))));
+        assertTrue(trimmed.getMessage().contains("多次"));
+
+        // 补充上下文使其唯一后可以应用
+        String result = PatchApplier.apply(code, List.of(new PatchApplier.Edit(
+                "    public void incAgain() {\n        count++;", "    public void incAgain() {\n        count += 2;")));
+        assertTrue(result.contains("inc() {\n        count++;"));
+        assertTrue(result.contains("incAgain() {\n        count += 2;"));
+    }
+
+    /**
+     * 生成包含 count 个方法的代码，每个方法体是一行约 200 个字符的调用
+     */
+    private static String largeCode(int count) {
+        String body = "        process(\"" + "x".repeat(199) + "\");";
+        StringBuilder code = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            code.append("    public void method").append(i).append("() {\n")
+                    .append(body).append("\n")
+                    .append("    }\n");
+        }
+        return code.toString().stripTrailing();
+    }
+}
@@ -0,0 +1,188 @@
+package com.example.aicodehelper.util;
+
+import com.example.aicodehelper.dto.CodeDiffResult;
+import com.example.aicodehelper.dto.CodeDiffResult.DiffHunk;
+import com.example.aicodehelper.dto.CodeDiffResult.DiffType;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * StreamingDiffTracker 测试类
+ * 测试流式输出过程中差异块的提前产出和最终结果
+ */
+@DisplayName("流式差异跟踪器测试")
+class StreamingDiffTrackerTest {
+
+    private static final String ORIGINAL = String.join("\n",
+            "public class Calculator {",
+            "    public int add(int a, int b) {",
+            "        return a + b;",
+            "    }",
+            "",
+            "    public int subtract(int a, int b) {",
+            "        return a - b;",
+            "    }",
+            "",
+            "    public int multiply(int a, int b) {",
+            "        return a * b;",
+            "    }",
+            "}");
+
+    @Test
+    @DisplayName("测试差异块在生成结束前产出")
+    void testHunkEmittedBeforeEnd() {
+        String modified = ORIGINAL.replace("return a + b;", "return Math.addExact(a, b);");
+        StreamingDiffTracker tracker = new StreamingDiffTracker(ORIGINAL);
+
+        List<DiffHunk> early = new ArrayList<>();
+        String[] lines = modified.split("\n");
+        // 只喂入前 8 行，此时文件还远未生成完毕
+        for (int i = 0; i < 8; i++) {
+            early.addAll(tracker.accept(lines[i] + "\n"));
+        }
+
+        assertEquals(1, early.size(), "修改处之后出现足够的相同行时应立即产出差异块");
+        DiffHunk hunk = early.get(0);
+        assertEquals(DiffType.MODIFIED, hunk.getType());
+        assertEquals(2, hunk.getOriginalStart());
+        assertEquals(List.of("        return Math.addExact(a, b);"), hunk.getModifiedLinesList());
+
+        for (int i = 8; i < lines.length; i++) {
+            early.addAll(tracker.accept(lines[i] + "\n"));
+        }
+        assertTrue(tracker.finish().isEmpty(), "剩余部分没有差异");
+    }
+
+    @Test
+    @DisplayName("测试按任意片段切分时结果与整体比较一致")
+    void testArbitraryChunksMatchFinalResult() {
+        String modified = ORIGINAL
+                .replace("return a - b;", "return a - b; // 减法")
+                .replace("    public int multiply", "    public int negate(int a) {\n        return -a;\n    }\n\n    public int multiply")
+                .replace("        return a * b;\n", "");
+
+        StreamingDiffTracker tracker = new StreamingDiffTracker(ORIGINAL);
+        List<DiffHunk> hunks = new ArrayList<>();
+        for (int i = 0; i < modified.length(); i += 7) {
+            hunks.addAll(tracker.accept(modified.substring(i, Math.min(modified.length(), i + 7))));
+        }
+        hunks.addAll(tracker.finish());
+
+        assertEquals(modified, tracker.getModifiedCode());
+        assertEquals(modified, apply(ORIGINAL, hunks), "按差异块应用到原始代码应得到修改后代码");
+
+        CodeDiffResult result = tracker.toResult("修改", "Calculator.java");
+        assertEquals(hunks.size(), result.getHunks().size());
+        assertEquals("success", result.getStatus());
+    }
+
+    @Test
+    @DisplayName("测试去除markdown代码块标记")
+    void testStripsCodeFence() {
+        String modified = ORIGINAL.replace("Calculator", "SimpleCalculator");
+        StreamingDiffTracker tracker = new StreamingDiffTracker(ORIGINAL);
+
+        List<DiffHunk> hunks = new ArrayList<>();
+        hunks.addAll(tracker.accept("```java\n"));
+        hunks.addAll(tracker.accept(modified + "\n"));
+        hunks.addAll(tracker.accept("```\n以上是修改后的代码"));
+        hunks.addAll(tracker.finish());
+
+        assertEquals(modified, tracker.getModifiedCode());
+        assertEquals(1, hunks.size());
+        assertEquals(0, hunks.get(0).getOriginalStart());
+    }
+
+    @Test
+    @DisplayName("测试文件末尾追加内容")
+    void testAppendAtEnd() {
+        String modified = ORIGINAL + "\n// end";
+        StreamingDiffTracker tracker = new StreamingDiffTracker(ORIGINAL);
+
+        assertTrue(tracker.accept(modified).isEmpty());
+        List<DiffHunk> tail = tracker.finish();
+
+        assertEquals(1, tail.size());
+        assertEquals(DiffType.ADDED, tail.get(0).getType());
+        assertEquals(List.of("// end"), tail.get(0).getModifiedLinesList());
+    }
+
+    @Test
+    @DisplayName("测试插入的方法与后续代码重复时最终结果与整体比较一致")
+    void testFinalResultRecomputedWhenInsertionRepeatsLaterLines() {
+        // 新方法的方法体与后面的 subtract 相同，贪心对齐会把插入内容错误地对到 subtract 上
+        String modified = ORIGINAL.replace("    public int subtract",
+                "    public int minus(int a, int b) {\n        return a - b;\n    }\n\n    public int subtract");
+
+        StreamingDiffTracker tracker = new StreamingDiffTracker(ORIGINAL);
+        List<DiffHunk> hunks = new ArrayList<>(tracker.accept(modified));
+        hunks.addAll(tracker.finish());
+        assertEquals(modified, apply(ORIGINAL, hunks), "预览差异块应用后仍应得到修改后代码");
+
+        CodeDiffResult result = tracker.toResult("修改", "Calculator.java");
+        CodeDiffResult expected = DiffUtils.compareCode(ORIGINAL, modified, "修改", "Calculator.java");
+        assertEquals(1, result.getHunks().size());
+        DiffHunk hunk = result.getHunks().get(0);
+        assertEquals(DiffType.ADDED, hunk.getType());
+        assertEquals(expected.getHunks().get(0).getOriginalStart(), hunk.getOriginalStart());
+        assertEquals(expected.getHunks().get(0).getModifiedStart(), hunk.getModifiedStart());
+        assertEquals(expected.getHunks().get(0).getModifiedLinesList(), hunk.getModifiedLinesList());
+        assertEquals(4, hunk.getModifiedLinesList().size());
+    }
+
+    @Test
+    @DisplayName("测试锚点在原始代码中出现多次时不提前对齐")
+    void testAmbiguousAnchorNotUsed() {
+        String original = String.join("\n",
+                "int x = 0;",
+                "log(\"start\");",
+                "step(a);",
+                "step(b);",
+                "log(\"start\");",
+                "step(a);",
+                "step(b);",
+                "done();");
+        String modified = original.replaceFirst("int x = 0;", "int x = 1;");
+
+        StreamingDiffTracker tracker = new StreamingDiffTracker(original);
+        String[] lines = modified.split("\n");
+        List<DiffHunk> early = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            early.addAll(tracker.accept(lines[i] + "\n"));
+        }
+        assertTrue(early.isEmpty(), "锚点不唯一时应等待更多行");
+
+        List<DiffHunk> hunks = new ArrayList<>(early);
+        for (int i = 4; i < lines.length; i++) {
+            hunks.addAll(tracker.accept(lines[i] + "\n"));
+        }
+        hunks.addAll(tracker.finish());
+        assertEquals(modified, apply(original, hunks));
+        assertEquals(1, tracker.toResult("修改", "A.java").getHunks().size());
+    }
+
+    /**
+     * 把差异块依次应用到原始代码上
+     */
+    private static String apply(String original, List<DiffHunk> hunks) {
+        String[] lines = original.split("\n");
+        List<String> out = new ArrayList<>();
+        int position = 0;
+        for (DiffHunk hunk : hunks) {
+            while (position < hunk.getOriginalStart()) {
+                out.add(lines[position++]);
+            }
+            out.addAll(hunk.getModifiedLinesList());
+            position += hunk.getOriginalLines();
+        }
+        while (position < lines.length) {
+            out.add(lines[position++]);
+        }
+        return String.join("\n", out);
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.aicodehelper.util;
+
+import com.example.aicodehelper.ai.cancel.CancellationToken;
+import com.example.aicodehelper.ai.cancel.GenerationCancelledException;
+import com.example.aicodehelper.config.RequestIdFilter;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * StructuredTasks 测试类
+ * 测试子任务在虚拟线程上并行执行、结果顺序、并发上限、失败传播，以及请求ID和取消令牌的继承
+ */
+@DisplayName("结构化并发工具测试")
+class StructuredTasksTest {
+
+    @Test
+    @DisplayName("测试子任务在虚拟线程上并行执行，结果按任务顺序返回")
+    void testRunsInParallelOnVirtualThreads() {
+        // 所有子任务都开始后才能结束：串行执行时会超时失败
+        CountDownLatch allStarted = new CountDownLatch(5);
+        List<Callable<String>> tasks = IntStream.range(0, 5).<Callable<String>>mapToObj(i -> () -> {
+            allStarted.countDown();
+            assertTrue(allStarted.await(5, TimeUnit.SECONDS), "子任务应并行执行");
+            assertTrue(Thread.currentThread().isVirtual());
+            return "task-" + i;
+        }).toList();
+
+        List<String> results = StructuredTasks.invokeAll("test", 5, tasks);
+
+        assertEquals(List.of("task-0", "task-1", "task-2", "task-3", "task-4"), results);
+    }
+
+    @Test
+    @DisplayName("测试同时执行的子任务数不超过上限")
+    void testParallelismLimit() {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        List<Callable<Integer>> tasks = IntStream.range(0, 20).<Callable<Integer>>mapToObj(i -> () -> {
+            peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+            Thread.sleep(5);
+            running.decrementAndGet();
+            return i;
+        }).toList();
+
+        List<Integer> results = StructuredTasks.invokeAll("test", 3, tasks);
+
+        assertEquals(20, results.size());
+        assertTrue(peak.get() <= 3, "peak " + peak.get());
+    }
+
+    @Test
+    @DisplayName("测试子任务失败时抛出其异常，返回前所有子任务都已结束")
+    void testFailurePropagates() {
+        AtomicBoolean slowFinished = new AtomicBoolean();
+        List<Callable<String>> tasks = List.of(
+                () -> {
+                    throw new IllegalArgumentException("bad file");
+                },
+                () -> {
+                    try {
+                        Thread.sleep(200);
+                    } finally {
+                        slowFinished.set(true);
+                    }
+                    return "slow";
+                });
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> StructuredTasks.invokeAll("test", 2, tasks));
+
+        assertEquals("bad file", e.getMessage());
+        assertTrue(slowFinished.get(), "其余子任务应已被取消并结束");
+    }
+
+    @Test
+    @DisplayName("测试子任务继承调用线程的请求ID和取消令牌，令牌已取消时不再执行")
+    void testInheritsRequestIdAndCancellationToken() {
+        CancellationToken token = new CancellationToken();
+        Callable<String> task = () -> MDC.get(RequestIdFilter.MDC_KEY) + "/" + (CancellationToken.current() == token);
+
+        try (MDC.MDCCloseable ignored = MDC.putCloseable(RequestIdFilter.MDC_KEY, "req-9")) {
+            CancellationToken.runWith(token, () ->
+                    assertEquals(List.of("req-9/true"), StructuredTasks.invokeAll("test", 1, List.of(task))));
+
+            token.cancel("client");
+            CancellationToken.runWith(token, () ->
+                    assertThrows(GenerationCancelledException.class,
+                            () -> StructuredTasks.invokeAll("test", 1, List.of(task))));
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.aicodehelper.util.diff;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * IntraLineDiff 测试类
+ * 测试行内字符区间、位并行 LCS 的正确性和长行的词级比较
+ */
+@DisplayName("行内差异测试")
+class IntraLineDiffTest {
+
+    @Test
+    @DisplayName("测试只标记变化的字符")
+    void testShortLine() {
+        IntraLineDiff.Spans spans = IntraLineDiff.diff("        return a + b;", "        return a * b;");
+
+        assertArrayEquals(new int[]{17, 18}, spans.original());
+        assertArrayEquals(new int[]{17, 18}, spans.modified());
+    }
+
+    @Test
+    @DisplayName("测试纯新增和多处修改")
+    void testInsertionsAndMultipleRanges() {
+        IntraLineDiff.Spans inserted = IntraLineDiff.diff("foo(a);", "foo(a, b);");
+        assertArrayEquals(new int[0], inserted.original());
+        assertArrayEquals(new int[]{5, 8}, inserted.modified());
+
+        String original = "int x = 1; int y = 2;";
+        IntraLineDiff.Spans multiple = IntraLineDiff.diff(original, "long x = 1; int y = 3;");
+        int[] ranges = multiple.original();
+        assertTrue(ranges.length >= 4, "应有多个独立的变化区间");
+        assertTrue(ranges[0] < 3, "开头的 int 应被标记");
+        assertEquals("2", original.substring(ranges[ranges.length - 2], ranges[ranges.length - 1]));
+    }
+
+    @Test
+    @DisplayName("测试位并行LCS与动态规划结果一致")
+    void testBitParallelMatchesDynamicProgramming() {
+        Random random = new Random(11);
+        for (int round = 0; round < 2000; round++) {
+            String a = randomString(random, 1 + random.nextInt(64));
+            String b = randomString(random, 1 + random.nextInt(64));
+
+            boolean[] keptA = new boolean[a.length()];
+            boolean[] keptB = new boolean[b.length()];
+            int length = IntraLineDiff.bitParallelLcs(a, b, keptA, keptB);
+
+            assertEquals(lcsLength(a, b), length, "第 " + round + " 轮 LCS 长度不一致");
+            assertEquals(kept(a, keptA), kept(b, keptB), "两侧保留的字符应构成同一个公共子序列");
+        }
+    }
+
+    @Test
+    @DisplayName("测试长行按词比较")
+    void testLongLineUsesTokens() {
+        String original = "        result = calculateTotalPrice(order.getItems(), customer.getDiscountRate(), taxPolicy);";
+        String modified = "        total = calculateTotalPrice(order.getItems(), customer.getDiscountRate(), shippingPolicy);";
+
+        IntraLineDiff.Spans spans = IntraLineDiff.diff(original, modified);
+
+        int[] ranges = spans.original();
+        assertEquals(4, ranges.length);
+        assertEquals("result", original.substring(ranges[0], ranges[1]), "应以完整的标识符为单位标记变化");
+        assertEquals("tax", original.substring(ranges[2], ranges[3]));
+        assertEquals(4, spans.modified().length);
+    }
+
+    private static String randomString(Random random, int length) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            builder.append((char) ('a' + random.nextInt(4)));
+        }
+        return builder.toString();
+    }
+
+    private static String kept(String text, boolean[] kept) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            if (kept[i]) {
+                builder.append(text.charAt(i));
+            }
+        }
+        return builder.toString();
+    }
+
+    private static int lcsLength(String a, String b) {
+        int[][] dp = new int[a.length() + 1][b.length() + 1];
+        for (int i = 1; i <= a.length(); i++) {
+            for (int j = 1; j <= b.length(); j++) {
+                dp[i][j] = a.charAt(i - 1) == b.charAt(j - 1)
+                        ? dp[i - 1][j - 1] + 1
+                        : Math.max(dp[i - 1][j], dp[i][j - 1]);
+            }
+        }
+        return dp[a.length()][b.length()];
+    }
+}
@@ -1,12 +1,18 @@
 package com.javaProgram.services;
 
 import com.intellij.openapi.application.ApplicationManager;
+import com.javaProgram.utils.CompactDiffUtil;
 import com.javaProgram.utils.HttpUtil;
 import com.javaProgram.utils.JsonUtil;
 
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * AI服务客户端（重构版）
@@ -22,12 +28,22 @@ public class AiServiceClient {
     private static final String SERVER_BASE = USE_REMOTE_SERVER ? REMOTE_SERVER : LOCAL_SERVER;
 
     private static final String BASE_URL = SERVER_BASE + "/api/ai/chat";
+    private static final String CHAT_CANCEL_URL = SERVER_BASE + "/api/ai/chat/cancel";
     private static final String MODIFY_CODE_URL = SERVER_BASE + "/api/ai/modify-code";
     private static final String MODIFY_CODE_WITH_DIFF_URL = SERVER_BASE + "/api/ai/modify-code-with-diff";
+    private static final String MODIFY_CODE_WITH_DIFF_STREAM_URL = SERVER_BASE + "/api/ai/modify-code-with-diff/stream";
+    private static final String MODIFY_CODE_WITH_DIFF_BATCH_URL = SERVER_BASE + "/api/ai/modify-code-with-diff/batch";
     private static final String DETECT_INTENT_URL = SERVER_BASE + "/api/ai/detect-intent";
+    private static final String ASSIST_URL = SERVER_BASE + "/api/ai/assist";
+
+    // 批量修改结果中的文件下标
+    private static final Pattern INDEX_PATTERN = Pattern.compile("\"index\"\\s*:\\s*(\\d+)");
 
     private int memoryId;
 
+    // 当前处理中的请求的耗时记录（队列串行处理请求，同一时间只有一个）；为 null 时不发送请求ID
+    private volatile RequestTimeline timeline;
+
     public AiServiceClient(int memoryId) {
         this.memoryId = memoryId;
     }
@@ -43,6 +59,28 @@ public class AiServiceClient {
      */
     public void sendMessage(String message, String projectPath, Consumer<String> onChunk,
             Runnable onComplete, Consumer<String> onError) {
+        sendMessage(message, projectPath, onChunk, activity -> {
+        }, onComplete, onError);
+    }
+
+    /**
+     * 发送聊天消息并流式接收响应
+     * 服务端返回带类型的事件：delta（回答片段）、tool（AI调用了工具）、sources（检索来源）、done（完成）、error（出错），
+     * 数据均为 JSON；连接中断时自动带 Last-Event-ID 重连，服务端从中断处继续发送（不会重新生成回答），
+     * 无法续传时视为回答不完整，并通知服务端取消生成（不再等服务端自己发现连接断开）
+     *
+     * @param message     用户消息
+     * @param projectPath 项目根目录路径（可选，用于AI自主读取代码）
+     * @param onChunk     接收到数据块时的回调
+     * @param onActivity  AI调用工具时的回调，接收进度描述（如"AI已读取文件 Main.java"）
+     * @param onComplete  完成时的回调
+     * @param onError     出错时的回调
+     */
+    public void sendMessage(String message, String projectPath, Consumer<String> onChunk,
+            Consumer<String> onActivity, Runnable onComplete, Consumer<String> onError) {
+
+        // 发出请求时的请求ID，放弃接收时据此取消服务端的生成
+        RequestTimeline requestTimeline = timeline;
 
         // 在后台线程执行网络请求
         executeInBackground(() -> {
@@ -50,21 +88,104 @@ public class AiServiceClient {
                 // 构建请求配置
                 HttpRequestConfig config = buildChatRequestConfig(message, projectPath);
 
-                // 执行流式请求
-                HttpUtil.executeStreamingRequest(
+                // 保证 onComplete / onError 只回调一次
+                java.util.concurrent.atomic.AtomicBoolean finished = new java.util.concurrent.atomic.AtomicBoolean(false);
+
+                // 执行可续传的流式请求，所有回调都在UI线程执行
+                HttpUtil.executeResumableEventStreamRequest(
                         config,
-                        // onChunk - 在UI线程回调
-                        chunk -> runOnUiThread(() -> onChunk.accept(chunk)),
-                        // onComplete - 在UI线程回调
-                        () -> runOnUiThread(onComplete),
-                        // onError - 在UI线程回调
-                        error -> runOnUiThread(() -> onError.accept(error)));
+                        Set.of("done", "error"),
+                        (event, data) -> {
+                            switch (event) {
+                                case "delta" -> {
+                                    String text = JsonUtil.extractStringValue(data, "text");
+                                    if (text != null && !text.isEmpty()) {
+                                        runOnUiThread(() -> onChunk.accept(text));
+                                    }
+                                }
+                                case "tool" -> {
+                                    String activity = describeToolActivity(data);
+                                    runOnUiThread(() -> onActivity.accept(activity));
+                                }
+                                case "done" -> {
+                                    // 生成被取消（如断开过久）时以 CANCELLED 结束，已收到的内容不完整
+                                    boolean cancelled = "CANCELLED".equals(JsonUtil.extractStringValue(data, "finishReason"));
+                                    if (finished.compareAndSet(false, true)) {
+                                        runOnUiThread(cancelled ? () -> onError.accept("回答已取消，内容不完整") : onComplete);
+                                    }
+                                }
+                                case "error" -> {
+                                    String error = JsonUtil.extractError(data);
+                                    if (finished.compareAndSet(false, true)) {
+                                        runOnUiThread(() -> onError.accept(error));
+                                    }
+                                }
+                                default -> {
+                                    // 忽略未知事件（如 sources）
+                                }
+                            }
+                        },
+                        attempt -> runOnUiThread(() -> onActivity.accept("连接中断，正在重新连接（第 " + attempt + " 次）...")),
+                        () -> {
+                            if (finished.compareAndSet(false, true)) {
+                                cancelChat(requestTimeline);
+                                runOnUiThread(() -> onError.accept("连接已中断，回答可能不完整"));
+                            }
+                        },
+                        error -> {
+                            if (finished.compareAndSet(false, true)) {
+                                cancelChat(requestTimeline);
+                                runOnUiThread(() -> onError.accept(error));
+                            }
+                        });
             } catch (Exception e) {
                 runOnUiThread(() -> onError.accept("请求失败: " + e.getMessage()));
             }
         });
     }
 
+    /**
+     * 通知服务端取消一次聊天生成（中止上游模型调用，已生成的部分写入会话记忆），失败时忽略
+     *
+     * @param requestTimeline 要取消的请求的耗时记录（提供请求ID），为 null 时不发送
+     */
+    public void cancelChat(RequestTimeline requestTimeline) {
+        if (requestTimeline == null) {
+            return;
+        }
+        executeInBackground(() -> {
+            // 不带耗时记录：取消请求不计入原请求的连接耗时
+            HttpRequestConfig config = new HttpRequestConfig.Builder()
+                    .url(CHAT_CANCEL_URL)
+                    .method("POST")
+                    .contentType("application/x-www-form-urlencoded; charset=UTF-8")
+                    .requestBody("memoryId=" + memoryId + "&requestId="
+                            + URLEncoder.encode(requestTimeline.getRequestId(), StandardCharsets.UTF_8))
+                    .build();
+            HttpUtil.executeRequest(
+                    config,
+                    response -> System.out.println("取消生成 " + requestTimeline.getRequestId() + ": " + response),
+                    error -> System.err.println("取消生成失败: " + error));
+        });
+    }
+
+    /**
+     * 把 tool 事件转换为进度描述
+     * 事件数据形如 {"seq":2,"name":"readProjectFile","arguments":"{\"filePath\":\"A.java\"}","resultChars":120}
+     */
+    private static String describeToolActivity(String data) {
+        String name = JsonUtil.extractStringValue(data, "name");
+        String arguments = JsonUtil.extractStringValue(data, "arguments");
+        if ("readProjectFile".equals(name)) {
+            String filePath = JsonUtil.extractStringValue(arguments, "filePath");
+            return filePath.isEmpty() ? "AI已读取项目文件，正在继续思考..." : "AI已读取文件 " + filePath + "，正在继续思考...";
+        }
+        if ("listProjectFiles".equals(name)) {
+            return "AI已查看项目结构，正在继续思考...";
+        }
+        return "AI已调用工具 " + name + "，正在继续思考...";
+    }
+
     /**
      * 请求AI修改代码
      *
@@ -110,6 +231,8 @@ public class AiServiceClient {
 
     /**
      * 请求AI修改代码（带差异比较）
+     * 优先请求紧凑格式（只返回编辑脚本），在本地还原修改后代码；
+     * 还原失败或哈希校验不一致时，回退为请求完整格式
      *
      * @param originalCode 原始代码
      * @param instruction  修改指令
@@ -122,44 +245,249 @@ public class AiServiceClient {
 
         executeInBackground(() -> {
             try {
-                // 构建请求配置
                 HttpRequestConfig config = new HttpRequestConfig.Builder()
-                        .url(MODIFY_CODE_WITH_DIFF_URL)
+                        .url(MODIFY_CODE_WITH_DIFF_URL + "?format=compact")
                         .method("POST")
                         .contentType("application/json; charset=UTF-8")
                         .requestBody(buildModifyCodeRequestBody(originalCode, instruction, fileName))
+                        .timeline(timeline)
                         .build();
 
-                // 执行请求
                 HttpUtil.executeRequest(
                         config,
-                        // onSuccess - 解析响应并在UI线程回调
                         response -> {
-                            System.out.println("=== 收到后端响应 ===");
-                            System.out.println("响应长度: " + response.length() + " 字符");
-                            System.out.println("响应前500字符: " + response.substring(0, Math.min(500, response.length())));
-                            System.out.println("==================");
-
-                            CodeDiffResult result = parseDiffResponse(response);
-                            if (result != null && result.getError() == null) {
-                                System.out.println("✓ 解析成功！");
-                                System.out.println("  原始代码长度: "
-                                        + (result.getOriginalCode() != null ? result.getOriginalCode().length() : 0));
-                                System.out.println("  修改代码长度: "
-                                        + (result.getModifiedCode() != null ? result.getModifiedCode().length() : 0));
+                            if (JsonUtil.isErrorResponse(response)) {
+                                String error = JsonUtil.extractError(response);
+                                runOnUiThread(() -> onError.accept(error));
+                                return;
+                            }
+
+                            CodeDiffResult result = rebuildFromCompact(response, originalCode, instruction, fileName);
+                            if (result != null) {
+                                System.out.println("✓ 紧凑格式还原成功，响应长度: " + response.length() + " 字符");
                                 runOnUiThread(() -> onSuccess.accept(result));
                             } else {
-                                String error = result != null ? result.getError() : "解析响应失败";
-                                System.err.println("✗ 解析失败！错误: " + error);
+                                System.err.println("紧凑格式还原失败，改为请求完整格式");
+                                requestFullDiff(originalCode, instruction, fileName, onSuccess, onError);
+                            }
+                        },
+                        error -> runOnUiThread(() -> onError.accept(error)));
+            } catch (Exception e) {
+                runOnUiThread(() -> onError.accept("请求失败: " + e.getMessage()));
+            }
+        });
+    }
+
+    /**
+     * 请求完整格式的差异结果（包含原始代码和修改后代码）
+     * 在后台线程中调用
+     */
+    private void requestFullDiff(String originalCode, String instruction, String fileName,
+            Consumer<CodeDiffResult> onSuccess, Consumer<String> onError) {
+        try {
+            // 构建请求配置
+            HttpRequestConfig config = new HttpRequestConfig.Builder()
+                    .url(MODIFY_CODE_WITH_DIFF_URL)
+                    .method("POST")
+                    .contentType("application/json; charset=UTF-8")
+                    .requestBody(buildModifyCodeRequestBody(originalCode, instruction, fileName))
+                    .timeline(timeline)
+                    .build();
+
+            // 执行请求
+            HttpUtil.executeRequest(
+                    config,
+                    // onSuccess - 解析响应并在UI线程回调
+                    response -> {
+                        System.out.println("=== 收到后端响应 ===");
+                        System.out.println("响应长度: " + response.length() + " 字符");
+                        System.out.println("响应前500字符: " + response.substring(0, Math.min(500, response.length())));
+                        System.out.println("==================");
+
+                        CodeDiffResult result = parseDiffResponse(response);
+                        if (result != null && result.getError() == null) {
+                            System.out.println("✓ 解析成功！");
+                            System.out.println("  原始代码长度: "
+                                    + (result.getOriginalCode() != null ? result.getOriginalCode().length() : 0));
+                            System.out.println("  修改代码长度: "
+                                    + (result.getModifiedCode() != null ? result.getModifiedCode().length() : 0));
+                            runOnUiThread(() -> onSuccess.accept(result));
+                        } else {
+                            String error = result != null ? result.getError() : "解析响应失败";
+                            System.err.println("✗ 解析失败！错误: " + error);
+                            runOnUiThread(() -> onError.accept(error));
+                        }
+                    },
+                    // onError - 在UI线程回调
+                    error -> {
+                        System.err.println("=== HTTP请求失败 ===");
+                        System.err.println("错误: " + error);
+                        System.err.println("==================");
+                        runOnUiThread(() -> onError.accept(error));
+                    });
+        } catch (Exception e) {
+            runOnUiThread(() -> onError.accept("请求失败: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * 根据紧凑格式响应还原差异结果
+     *
+     * @return 差异结果；基准不一致或还原后哈希校验失败时返回 null
+     */
+    private CodeDiffResult rebuildFromCompact(String response, String originalCode, String instruction,
+            String fileName) {
+        String baseHash = JsonUtil.extractStringValue(response, "baseHash");
+        String modifiedHash = JsonUtil.extractStringValue(response, "modifiedHash");
+        String script = JsonUtil.extractStringValue(response, "script");
+
+        if (baseHash.isEmpty() || !baseHash.equals(CompactDiffUtil.sha256(originalCode))) {
+            return null;
+        }
+
+        String modifiedCode = CompactDiffUtil.apply(originalCode, script);
+        if (modifiedCode == null || !modifiedHash.equals(CompactDiffUtil.sha256(modifiedCode))) {
+            return null;
+        }
+        return new CodeDiffResult(originalCode, modifiedCode, instruction, fileName);
+    }
+
+    /**
+     * 请求AI修改代码（流式差异）
+     * 后端边生成边计算差异，每个差异块稳定后立即推送，可用于提前展示修改进度
+     *
+     * @param originalCode 原始代码
+     * @param instruction  修改指令
+     * @param fileName     文件名（可选）
+     * @param onHunk       收到差异块时的回调，接收差异块描述（如"修改 2 行"）
+     * @param onSuccess    成功回调，接收完整差异结果
+     * @param onError      失败回调，接收错误信息
+     */
+    public void modifyCodeWithDiffStream(String originalCode, String instruction, String fileName,
+            Consumer<String> onHunk, Consumer<CodeDiffResult> onSuccess, Consumer<String> onError) {
+
+        executeInBackground(() -> {
+            try {
+                HttpRequestConfig config = new HttpRequestConfig.Builder()
+                        .url(MODIFY_CODE_WITH_DIFF_STREAM_URL)
+                        .method("POST")
+                        .contentType("application/json; charset=UTF-8")
+                        .requestBody(buildModifyCodeRequestBody(originalCode, instruction, fileName))
+                        .timeline(timeline)
+                        .build();
+
+                // 保证 onSuccess / onError 只回调一次
+                java.util.concurrent.atomic.AtomicBoolean finished = new java.util.concurrent.atomic.AtomicBoolean(false);
+
+                HttpUtil.executeEventStreamRequest(
+                        config,
+                        (event, data) -> {
+                            switch (event) {
+                                case "hunk" -> {
+                                    String description = JsonUtil.extractStringValue(data, "description");
+                                    runOnUiThread(() -> onHunk.accept(description));
+                                }
+                                case "summary" -> {
+                                    CodeDiffResult result = parseDiffResponse(data);
+                                    if (finished.compareAndSet(false, true)) {
+                                        if (result.getError() == null) {
+                                            runOnUiThread(() -> onSuccess.accept(result));
+                                        } else {
+                                            runOnUiThread(() -> onError.accept(result.getError()));
+                                        }
+                                    }
+                                }
+                                case "error" -> {
+                                    String error = JsonUtil.extractError(data);
+                                    if (finished.compareAndSet(false, true)) {
+                                        runOnUiThread(() -> onError.accept(error));
+                                    }
+                                }
+                                default -> {
+                                    // 忽略未知事件
+                                }
+                            }
+                        },
+                        () -> {
+                            if (finished.compareAndSet(false, true)) {
+                                runOnUiThread(() -> onError.accept("连接已结束，但未收到修改结果"));
+                            }
+                        },
+                        error -> {
+                            if (finished.compareAndSet(false, true)) {
                                 runOnUiThread(() -> onError.accept(error));
                             }
+                        });
+            } catch (Exception e) {
+                runOnUiThread(() -> onError.accept("请求失败: " + e.getMessage()));
+            }
+        });
+    }
+
+    /**
+     * 请求AI批量修改多个文件（服务端并行处理）
+     * 每个文件完成后立即回调，回调顺序为完成顺序而非请求顺序
+     *
+     * @param instruction  修改指令
+     * @param files        待修改的代码上下文列表
+     * @param onFileResult 单个文件完成回调，接收文件下标和差异结果
+     * @param onComplete   全部文件完成回调
+     * @param onError      请求失败回调，接收错误信息
+     */
+    public void modifyCodeWithDiffBatch(String instruction, List<ContextService.ContextItem> files,
+            BiConsumer<Integer, CodeDiffResult> onFileResult, Runnable onComplete, Consumer<String> onError) {
+
+        executeInBackground(() -> {
+            try {
+                HttpRequestConfig config = new HttpRequestConfig.Builder()
+                        .url(MODIFY_CODE_WITH_DIFF_BATCH_URL)
+                        .method("POST")
+                        .contentType("application/json; charset=UTF-8")
+                        .requestBody(buildBatchRequestBody(instruction, files))
+                        .timeline(timeline)
+                        .build();
+
+                // 保证 onComplete / onError 只回调一次
+                java.util.concurrent.atomic.AtomicBoolean finished = new java.util.concurrent.atomic.AtomicBoolean(false);
+
+                HttpUtil.executeEventStreamRequest(
+                        config,
+                        (event, data) -> {
+                            switch (event) {
+                                case "file" -> {
+                                    int index = extractIndex(data);
+                                    if (index < 0 || index >= files.size()) {
+                                        System.err.println("批量修改结果的文件下标无效: " + index);
+                                        return;
+                                    }
+                                    CodeDiffResult result = parseDiffResponse(data);
+                                    runOnUiThread(() -> onFileResult.accept(index, result));
+                                }
+                                case "done" -> {
+                                    if (finished.compareAndSet(false, true)) {
+                                        runOnUiThread(onComplete);
+                                    }
+                                }
+                                case "error" -> {
+                                    String error = JsonUtil.extractError(data);
+                                    if (finished.compareAndSet(false, true)) {
+                                        runOnUiThread(() -> onError.accept(error));
+                                    }
+                                }
+                                default -> {
+                                    // 忽略未知事件
+                                }
+                            }
+                        },
+                        () -> {
+                            if (finished.compareAndSet(false, true)) {
+                                runOnUiThread(() -> onError.accept("连接已结束，但部分文件未返回修改结果"));
+                            }
                         },
-                        // onError - 在UI线程回调
                         error -> {
-                            System.err.println("=== HTTP请求失败 ===");
-                            System.err.println("错误: " + error);
-                            System.err.println("==================");
-                            runOnUiThread(() -> onError.accept(error));
+                            if (finished.compareAndSet(false, true)) {
+                                runOnUiThread(() -> onError.accept(error));
+                            }
                         });
             } catch (Exception e) {
                 runOnUiThread(() -> onError.accept("请求失败: " + e.getMessage()));
@@ -167,6 +495,93 @@ public class AiServiceClient {
         });
     }
 
+    /**
+     * 统一助手请求：由服务端判断意图，在同一个连接上返回对话内容或代码修改结果
+     * 省去单独的意图识别请求
+     *
+     * @param message     用户消息
+     * @param projectPath 项目根目录路径（可选，用于AI自主读取代码）
+     * @param files       上下文代码列表
+     * @param listener    回调
+     */
+    public void assist(String message, String projectPath, List<ContextService.ContextItem> files,
+            AssistListener listener) {
+
+        executeInBackground(() -> {
+            try {
+                HttpRequestConfig config = new HttpRequestConfig.Builder()
+                        .url(ASSIST_URL)
+                        .method("POST")
+                        .contentType("application/json; charset=UTF-8")
+                        .requestBody(buildAssistRequestBody(message, projectPath, files))
+                        .timeline(timeline)
+                        .build();
+
+                // 是否已收到意图或内容；保证 onComplete / onError 只回调一次
+                java.util.concurrent.atomic.AtomicBoolean started = new java.util.concurrent.atomic.AtomicBoolean(false);
+                java.util.concurrent.atomic.AtomicBoolean finished = new java.util.concurrent.atomic.AtomicBoolean(false);
+
+                HttpUtil.executeEventStreamRequest(
+                        config,
+                        (event, data) -> {
+                            switch (event) {
+                                case "intent" -> {
+                                    started.set(true);
+                                    String intent = JsonUtil.extractStringValue(data, "intent");
+                                    runOnUiThread(() -> listener.onIntent(intent));
+                                }
+                                case "message" -> {
+                                    String content = JsonUtil.extractStringValue(data, "content");
+                                    runOnUiThread(() -> listener.onChunk(content));
+                                }
+                                case "hunk" -> {
+                                    String description = JsonUtil.extractStringValue(data, "description");
+                                    runOnUiThread(() -> listener.onHunk(description));
+                                }
+                                case "file" -> {
+                                    int index = extractIndex(data);
+                                    if (index < 0 || index >= files.size()) {
+                                        System.err.println("助手结果的文件下标无效: " + index);
+                                        return;
+                                    }
+                                    CodeDiffResult result = parseDiffResponse(data);
+                                    runOnUiThread(() -> listener.onFileResult(index, result));
+                                }
+                                case "done" -> {
+                                    if (finished.compareAndSet(false, true)) {
+                                        runOnUiThread(listener::onComplete);
+                                    }
+                                }
+                                case "error" -> {
+                                    String error = JsonUtil.extractError(data);
+                                    if (finished.compareAndSet(false, true)) {
+                                        boolean beforeOutput = !started.get();
+                                        runOnUiThread(() -> listener.onError(error, beforeOutput));
+                                    }
+                                }
+                                default -> {
+                                    // 忽略未知事件
+                                }
+                            }
+                        },
+                        () -> {
+                            if (finished.compareAndSet(false, true)) {
+                                boolean beforeOutput = !started.get();
+                                runOnUiThread(() -> listener.onError("连接已结束，但未收到完整结果", beforeOutput));
+                            }
+                        },
+                        error -> {
+                            if (finished.compareAndSet(false, true)) {
+                                boolean beforeOutput = !started.get();
+                                runOnUiThread(() -> listener.onError(error, beforeOutput));
+                            }
+                        });
+            } catch (Exception e) {
+                runOnUiThread(() -> listener.onError("请求失败: " + e.getMessage(), true));
+            }
+        });
+    }
+
     /**
      * AI意图识别
      * 判断用户消息是修改代码意图还是普通对话意图
@@ -184,6 +599,7 @@ public class AiServiceClient {
                         .method("POST")
                         .contentType("application/json; charset=UTF-8")
                         .requestBody("{\"message\":\"" + JsonUtil.escapeJson(message) + "\"}")
+                        .timeline(timeline)
                         .build();
 
                 // 执行请求
@@ -235,6 +651,7 @@ public class AiServiceClient {
                     .method("POST")
                     .contentType("application/x-www-form-urlencoded; charset=UTF-8")
                     .requestBody(requestBody.toString())
+                    .timeline(timeline)
                     .build();
 
         } catch (Exception e) {
@@ -253,6 +670,7 @@ public class AiServiceClient {
                 .method("POST")
                 .contentType("application/json; charset=UTF-8")
                 .requestBody(buildModifyCodeRequestBody(originalCode, instruction, fileName))
+                .timeline(timeline)
                 .build();
     }
 
@@ -272,6 +690,58 @@ public class AiServiceClient {
         return json.toString();
     }
 
+    /**
+     * 构建统一助手请求体
+     */
+    private String buildAssistRequestBody(String message, String projectPath, List<ContextService.ContextItem> files) {
+        StringBuilder json = new StringBuilder("{");
+        json.append("\"memoryId\":").append(memoryId).append(",");
+        json.append("\"message\":\"").append(JsonUtil.escapeJson(message)).append("\",");
+        if (projectPath != null && !projectPath.trim().isEmpty()) {
+            json.append("\"projectPath\":\"").append(JsonUtil.escapeJson(projectPath)).append("\",");
+        }
+        json.append("\"files\":[");
+        for (int i = 0; i < files.size(); i++) {
+            ContextService.ContextItem file = files.get(i);
+            if (i > 0) {
+                json.append(",");
+            }
+            json.append(JsonUtil.buildJsonObject(
+                    "fileName", file.getFileName() != null ? file.getFileName() : "",
+                    "originalCode", file.getContent()));
+        }
+        json.append("]}");
+        return json.toString();
+    }
+
+    /**
+     * 构建批量代码修改请求体
+     */
+    private String buildBatchRequestBody(String instruction, List<ContextService.ContextItem> files) {
+        StringBuilder json = new StringBuilder("{");
+        json.append("\"instruction\":\"").append(JsonUtil.escapeJson(instruction)).append("\",");
+        json.append("\"files\":[");
+        for (int i = 0; i < files.size(); i++) {
+            ContextService.ContextItem file = files.get(i);
+            if (i > 0) {
+                json.append(",");
+            }
+            json.append(JsonUtil.buildJsonObject(
+                    "fileName", file.getFileName() != null ? file.getFileName() : "",
+                    "originalCode", file.getContent()));
+        }
+        json.append("]}");
+        return json.toString();
+    }
+
+    /**
+     * 提取批量结果中的文件下标，找不到时返回 -1
+     */
+    private int extractIndex(String json) {
+        Matcher matcher = INDEX_PATTERN.matcher(json);
+        return matcher.find() ? Integer.parseInt(matcher.group(1)) : -1;
+    }
+
     /**
      * 解析差异比较响应
      */
@@ -335,4 +805,11 @@ public class AiServiceClient {
     public int getMemoryId() {
         return memoryId;
     }
+
+    /**
+     * 设置当前请求的耗时记录，之后发出的请求都带上该请求的ID（X-Request-Id）
+     */
+    public void setRequestTimeline(RequestTimeline timeline) {
+        this.timeline = timeline;
+    }
 }
@@ -0,0 +1,48 @@
+package com.javaProgram.services;
+
+/**
+ * 统一助手接口的回调
+ * 所有回调都在UI线程中执行
+ */
+public interface AssistListener {
+
+    /**
+     * 服务端判断出用户意图
+     *
+     * @param intent "modify" 或 "chat"
+     */
+    void onIntent(String intent);
+
+    /**
+     * 收到对话内容片段（对话意图）
+     */
+    void onChunk(String chunk);
+
+    /**
+     * 单个文件修改时生成了一个差异块（修改意图）
+     *
+     * @param description 差异块描述
+     */
+    void onHunk(String description);
+
+    /**
+     * 单个文件修改完成（修改意图，按完成顺序回调）
+     *
+     * @param index  文件在请求中的下标
+     * @param result 差异结果
+     */
+    void onFileResult(int index, CodeDiffResult result);
+
+    /**
+     * 整个请求处理完成
+     */
+    void onComplete();
+
+    /**
+     * 请求失败
+     *
+     * @param error        错误信息
+     * @param beforeOutput 失败时是否还没有收到任何意图或内容（此时可以改用其他方式重试）
+     */
+    void onError(String error, boolean beforeOutput);
+}
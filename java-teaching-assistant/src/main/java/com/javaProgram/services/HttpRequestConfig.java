@@ -11,6 +11,7 @@ public class HttpRequestConfig {
     private final String requestBody;
     private final int connectTimeout;
     private final int readTimeout;
+    private final RequestTimeline timeline;
 
     private HttpRequestConfig(Builder builder) {
         this.url = builder.url;
@@ -19,6 +20,7 @@ public class HttpRequestConfig {
         this.requestBody = builder.requestBody;
         this.connectTimeout = builder.connectTimeout;
         this.readTimeout = builder.readTimeout;
+        this.timeline = builder.timeline;
     }
 
     public String getUrl() {
@@ -45,6 +47,10 @@ public class HttpRequestConfig {
         return readTimeout;
     }
 
+    public RequestTimeline getTimeline() {
+        return timeline;
+    }
+
     /**
      * Builder模式构建请求配置
      */
@@ -55,6 +61,7 @@ public class HttpRequestConfig {
         private String requestBody;
         private int connectTimeout = 5000;
         private int readTimeout = 120000;
+        private RequestTimeline timeline;
 
         public Builder url(String url) {
             this.url = url;
@@ -86,6 +93,14 @@ public class HttpRequestConfig {
             return this;
         }
 
+        /**
+         * 所属请求的耗时记录（可选），设置后发送 X-Request-Id 请求头并记录连接和首个数据块时间
+         */
+        public Builder timeline(RequestTimeline timeline) {
+            this.timeline = timeline;
+            return this;
+        }
+
         public HttpRequestConfig build() {
             if (url == null || url.trim().isEmpty()) {
                 throw new IllegalArgumentException("URL不能为空");
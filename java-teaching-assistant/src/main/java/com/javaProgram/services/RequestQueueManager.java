@@ -36,10 +36,13 @@ public class RequestQueueManager {
         private final String message;
         private final List<ContextService.ContextItem> contextList;
         private final long timestamp;
+        private final RequestTimeline timeline;
         private RequestStatus status;
 
         public QueuedRequest(String message, List<ContextService.ContextItem> contextList) {
+            // 请求ID同时作为发送给服务端的关联ID（X-Request-Id）
             this.id = UUID.randomUUID().toString();
+            this.timeline = new RequestTimeline(id);
             this.message = message;
             // 创建上下文的深拷贝，避免被清除
             this.contextList = contextList != null ? new ArrayList<>(contextList) : null;
@@ -63,6 +66,13 @@ public class RequestQueueManager {
             return timestamp;
         }
 
+        /**
+         * 插件端的耗时记录（入队、连接、首个数据块、首次渲染等）
+         */
+        public RequestTimeline getTimeline() {
+            return timeline;
+        }
+
         public RequestStatus getStatus() {
             return status;
         }
@@ -126,6 +136,7 @@ public class RequestQueueManager {
         synchronized (lock) {
             if (currentRequest != null) {
                 currentRequest.setStatus(QueuedRequest.RequestStatus.COMPLETED);
+                currentRequest.getTimeline().finish("完成");
                 System.out
                         .println("请求完成: " + currentRequest.getId() + " - " + truncate(currentRequest.getMessage(), 30));
                 currentRequest = null;
@@ -142,6 +153,7 @@ public class RequestQueueManager {
         synchronized (lock) {
             if (currentRequest != null) {
                 currentRequest.setStatus(QueuedRequest.RequestStatus.FAILED);
+                currentRequest.getTimeline().finish("失败");
                 System.err
                         .println("请求失败: " + currentRequest.getId() + " - " + truncate(currentRequest.getMessage(), 30));
                 currentRequest = null;
@@ -167,6 +179,7 @@ public class RequestQueueManager {
         // 取出队列头部的请求
         currentRequest = requestQueue.poll();
         currentRequest.setStatus(QueuedRequest.RequestStatus.PROCESSING);
+        currentRequest.getTimeline().mark(RequestTimeline.STARTED);
         isProcessing = true;
 
         System.out.println("开始处理请求: " + currentRequest.getId() + " - " + truncate(currentRequest.getMessage(), 30));
@@ -0,0 +1,83 @@
+package com.javaProgram.services;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 单个请求在插件端的耗时记录
+ * 以请求ID（与发送给服务端的 X-Request-Id 相同）关联服务端日志中的各阶段耗时，
+ * 依次记录：入队 → 开始处理（排队结束）→ 收到响应头（连接）→ 收到首个数据块 → 首次渲染 → 结束
+ * 每个阶段只记录第一次发生的时间，各方法可在任意线程调用
+ */
+public class RequestTimeline {
+    public static final String STARTED = "开始处理";
+    public static final String CONNECTED = "收到响应头";
+    public static final String FIRST_CHUNK = "首个数据块";
+    public static final String FIRST_RENDER = "首次渲染";
+
+    private final String requestId;
+    private final long queuedAt = System.currentTimeMillis();
+
+    // 阶段 -> 发生时间（毫秒时间戳）
+    private final Map<String, Long> marks = new LinkedHashMap<>();
+    private boolean finished = false;
+
+    public RequestTimeline(String requestId) {
+        this.requestId = requestId;
+    }
+
+    public String getRequestId() {
+        return requestId;
+    }
+
+    /**
+     * 记录阶段发生的时间（已记录过的阶段忽略）
+     */
+    public synchronized void mark(String phase) {
+        if (!finished) {
+            marks.putIfAbsent(phase, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * 结束记录并输出耗时明细
+     *
+     * @param outcome 结果描述（如 完成 / 失败）
+     */
+    public void finish(String outcome) {
+        String summary;
+        synchronized (this) {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            summary = summary(System.currentTimeMillis());
+        }
+        System.out.println("请求 [" + requestId + "] " + outcome + "：" + summary);
+    }
+
+    /**
+     * 各阶段相对上一阶段的耗时，如 "排队 1200 ms, 收到响应头 +35 ms, 首个数据块 +2100 ms, ..., 总计 5400 ms"
+     */
+    synchronized String summary(long now) {
+        StringBuilder builder = new StringBuilder();
+        long previous = queuedAt;
+        for (Map.Entry<String, Long> entry : marks.entrySet()) {
+            if (builder.length() > 0) {
+                builder.append(", ");
+            }
+            long elapsed = entry.getValue() - previous;
+            if (STARTED.equals(entry.getKey())) {
+                builder.append("排队 ").append(elapsed).append(" ms");
+            } else {
+                builder.append(entry.getKey()).append(" +").append(elapsed).append(" ms");
+            }
+            previous = entry.getValue();
+        }
+        if (builder.length() > 0) {
+            builder.append(", ");
+        }
+        builder.append("总计 ").append(now - queuedAt).append(" ms");
+        return builder.toString();
+    }
+}
@@ -1,6 +1,7 @@
 package com.javaProgram.ui;
 
 import com.javaProgram.services.AiServiceClient;
+import com.javaProgram.services.CodeDiffResult;
 import com.javaProgram.services.ContextService;
 import com.javaProgram.ui.components.*;
 import com.javaProgram.ui.handlers.AiResponseHandler;
@@ -148,6 +149,10 @@ public class ChatToolWindowContent {
         String message = request.getMessage();
         var contextList = request.getContextList();
 
+        // 本请求发出的所有 HTTP 请求都带上请求ID，并记录连接、首个数据块和首次渲染时间
+        aiClient.setRequestTimeline(request.getTimeline());
+        responseHandler.setTimeline(request.getTimeline());
+
         // 在UI线程中执行
         SwingUtilities.invokeLater(() -> {
             // 在实际开始处理时才显示用户消息气泡
@@ -163,15 +168,99 @@ public class ChatToolWindowContent {
                 updateContextStatus();
             }
 
-            // 根据上下文判断意图
+            // 有上下文时由服务端判断意图（一次请求完成判断和对话/修改）
             if (contextList != null && !contextList.isEmpty()) {
-                detectModifyIntentWithAI(message, contextList);
+                handleAssist(message, contextList);
             } else {
                 handleNormalChat(message, contextList);
             }
         });
     }
 
+    /**
+     * 使用统一助手接口处理带上下文的消息
+     * 服务端判断意图后在同一个连接上返回对话内容或修改结果；
+     * 服务端在返回任何内容前失败时（如旧版本服务端没有该接口），回退到先识别意图再处理的方式
+     * 
+     * @param message     用户消息
+     * @param contextList 上下文列表
+     */
+    private void handleAssist(String message, java.util.List<ContextService.ContextItem> contextList) {
+        final int totalFiles = contextList.size();
+        final java.util.concurrent.atomic.AtomicInteger successCount = new java.util.concurrent.atomic.AtomicInteger(0);
+        final java.util.concurrent.atomic.AtomicInteger hunkCount = new java.util.concurrent.atomic.AtomicInteger(0);
+        final java.util.concurrent.atomic.AtomicInteger handledCount = new java.util.concurrent.atomic.AtomicInteger(0);
+        final java.util.concurrent.atomic.AtomicBoolean modifying = new java.util.concurrent.atomic.AtomicBoolean(false);
+        final java.util.concurrent.atomic.AtomicBoolean finished = new java.util.concurrent.atomic.AtomicBoolean(false);
+        Runnable finishModification = () -> {
+            if (finished.compareAndSet(false, true)) {
+                finishCodeModification(totalFiles, successCount);
+            }
+        };
+
+        aiClient.assist(message, project.getBasePath(), contextList, new com.javaProgram.services.AssistListener() {
+            @Override
+            public void onIntent(String intent) {
+                System.out.println("服务端意图判断结果: " + intent);
+                if ("modify".equals(intent)) {
+                    modifying.set(true);
+                    thinkingManager.updateMessage("AI正在修改 " + totalFiles + " 个文件...");
+                }
+            }
+
+            @Override
+            public void onChunk(String chunk) {
+                if (responseHandler.isIdle()) {
+                    thinkingManager.hide();
+                    responseHandler.startResponse();
+                }
+                responseHandler.appendChunk(chunk);
+            }
+
+            @Override
+            public void onHunk(String description) {
+                thinkingManager.updateMessage("AI正在修改文件 [" + contextList.get(0).getFileName() + "]：已生成 "
+                        + hunkCount.incrementAndGet() + " 处修改（" + description + "）");
+            }
+
+            @Override
+            public void onFileResult(int index, CodeDiffResult result) {
+                ContextService.ContextItem codeItem = contextList.get(index);
+                handleFileDiffResult(codeItem, index + 1, totalFiles, result, successCount, () -> {
+                    if (handledCount.incrementAndGet() >= totalFiles) {
+                        finishModification.run();
+                    }
+                });
+            }
+
+            @Override
+            public void onComplete() {
+                // 修改意图在最后一个文件展示完成后结束
+                if (!modifying.get()) {
+                    responseHandler.finishResponse();
+                    queueManager.completeCurrentRequest();
+                    inputPanel.requestInputFocus();
+                }
+            }
+
+            @Override
+            public void onError(String error, boolean beforeOutput) {
+                if (beforeOutput) {
+                    System.err.println("统一助手接口失败，改为先识别意图: " + error);
+                    detectModifyIntentWithAI(message, contextList);
+                } else if (modifying.get()) {
+                    responseHandler.addError("代码修改失败: " + error);
+                    finishModification.run();
+                } else {
+                    thinkingManager.hide();
+                    responseHandler.addError(error);
+                    queueManager.failCurrentRequest();
+                    inputPanel.requestInputFocus();
+                }
+            }
+        });
+    }
+
     /**
      * 使用AI进行意图识别
      * 
@@ -239,7 +328,9 @@ public class ChatToolWindowContent {
     }
 
     /**
-     * 处理代码修改流程（支持多文件，串行处理保证顺序）
+     * 处理代码修改流程（支持多文件）
+     * 单个文件使用流式差异接口，实时显示修改进度；
+     * 多个文件使用批量接口，由服务端并行修改，按完成顺序逐个展示结果
      * 
      * @param instruction 修改指令
      * @param contextList 上下文列表
@@ -254,131 +345,197 @@ public class ChatToolWindowContent {
         // 使用原子计数器追踪成功数量
         final java.util.concurrent.atomic.AtomicInteger successCount = new java.util.concurrent.atomic.AtomicInteger(0);
 
-        // 从第一个文件开始串行处理
-        processFileModification(instruction, contextList, 0, totalFiles, successCount);
+        if (totalFiles == 1) {
+            processFileModification(instruction, contextList.get(0), totalFiles, successCount);
+        } else {
+            processBatchModification(instruction, contextList, totalFiles, successCount);
+        }
     }
 
     /**
-     * 递归处理单个文件的修改（串行保证顺序）
+     * 处理单个文件的修改（流式差异）
      * 
      * @param instruction  修改指令
-     * @param contextList  上下文列表
-     * @param currentIndex 当前处理的文件索引
+     * @param codeItem     代码上下文项
      * @param totalFiles   总文件数
      * @param successCount 成功修改的文件计数器
      */
     private void processFileModification(String instruction,
-            java.util.List<ContextService.ContextItem> contextList,
-            int currentIndex,
+            ContextService.ContextItem codeItem,
             int totalFiles,
             java.util.concurrent.atomic.AtomicInteger successCount) {
 
-        // 如果所有文件都处理完了
-        if (currentIndex >= totalFiles) {
-            thinkingManager.hide();
-
-            // 显示完成摘要
-            if (successCount.get() > 0) {
-                JPanel summaryPanel = bubbleFactory.createAiMessageBubble(
-                        "✅ **代码修改完成**: 成功修改 " + successCount.get() + "/" + totalFiles + " 个文件");
-                messagePanel.addMessage(summaryPanel, true);
-            }
-
-            // 通知队列管理器完成
-            queueManager.completeCurrentRequest();
-            inputPanel.requestInputFocus();
-            return;
-        }
-
-        final ContextService.ContextItem codeItem = contextList.get(currentIndex);
-        final int fileIndex = currentIndex + 1;
-
-        // 处理当前文件
-        aiClient.modifyCodeWithDiff(
+        // 处理当前文件（流式差异：每个差异块生成后即更新进度提示）
+        final java.util.concurrent.atomic.AtomicInteger hunkCount = new java.util.concurrent.atomic.AtomicInteger(0);
+        aiClient.modifyCodeWithDiffStream(
                 codeItem.getContent(),
                 instruction,
                 codeItem.getFileName(),
+                // onHunk
+                hunkDescription -> thinkingManager.updateMessage(
+                        "AI正在修改文件 [" + codeItem.getFileName() + "]：已生成 "
+                                + hunkCount.incrementAndGet() + " 处修改（" + hunkDescription + "）"),
                 // onSuccess
-                diffResult -> {
-                    if (diffResult.hasError()) {
-                        responseHandler.addError("文件 [" + codeItem.getFileName() + "] 修改失败: " + diffResult.getError());
-                        // 继续处理下一个文件
-                        processFileModification(instruction, contextList, currentIndex + 1, totalFiles, successCount);
-                    } else if (!diffResult.hasChanges()) {
-                        JPanel noChangePanel = bubbleFactory.createAiMessageBubble(
-                                "**文件 " + fileIndex + "/" + totalFiles + "**: `" + codeItem.getFileName() +
-                                        "` - AI建议的代码与原代码相同，无需修改。");
-                        messagePanel.addMessage(noChangePanel, true);
-                        // 继续处理下一个文件
-                        processFileModification(instruction, contextList, currentIndex + 1, totalFiles, successCount);
-                    } else {
-                        // 有修改内容，处理diff
-                        successCount.incrementAndGet();
-
-                        // 在UI线程中处理
-                        com.intellij.openapi.application.ApplicationManager.getApplication().invokeLater(() -> {
-                            try {
-                                // 获取编辑器和偏移量
-                                com.intellij.openapi.editor.Editor editor = openFileAndGetEditor(codeItem);
-
-                                if (editor == null) {
-                                    responseHandler.addError("文件 [" + codeItem.getFileName() + "] 无法打开编辑器");
-                                    // 继续处理下一个文件
-                                    processFileModification(instruction, contextList, currentIndex + 1, totalFiles,
-                                            successCount);
-                                    return;
-                                }
-
-                                // 计算偏移量
-                                com.intellij.openapi.editor.Document document = editor.getDocument();
-                                int startLine = Math.max(0, codeItem.getStartLine() - 1);
-                                int endLine = Math.max(0, codeItem.getEndLine() - 1);
-                                int startOffset = document.getLineStartOffset(startLine);
-                                int endOffset = document.getLineEndOffset(endLine);
-
-                                // 打开差异查看器并获取虚拟文件
-                                com.intellij.openapi.vfs.VirtualFile diffViewerFile = IntelliJDiffViewer
-                                        .showDiffAndWaitForConfirmation(
-                                                project, diffResult, editor, startOffset, endOffset);
-
-                                if (diffViewerFile != null) {
-                                    // 使用PendingModificationManager管理修改
-                                    String modificationId = com.javaProgram.services.PendingModificationManager
-                                            .addPendingModification(project, editor, diffResult,
-                                                    startOffset, endOffset, diffViewerFile);
-
-                                    // 显示统一的确认气泡（ModificationConfirmationPanel），传递文件名
-                                    String fileName = diffResult.getFileName() != null ? diffResult.getFileName()
-                                            : codeItem.getFileName();
-                                    JPanel confirmationPanel = ModificationConfirmationPanel.create(modificationId,
-                                            fileName);
-                                    messagePanel.addMessage(confirmationPanel, true);
-                                }
-
-                                // 处理完当前文件后，继续下一个
-                                processFileModification(instruction, contextList, currentIndex + 1, totalFiles,
-                                        successCount);
-
-                            } catch (Exception ex) {
-                                System.err.println("处理文件 [" + codeItem.getFileName() + "] 修改失败: " + ex.getMessage());
-                                ex.printStackTrace();
-                                responseHandler
-                                        .addError("处理文件 [" + codeItem.getFileName() + "] 修改失败: " + ex.getMessage());
-                                // 继续处理下一个文件
-                                processFileModification(instruction, contextList, currentIndex + 1, totalFiles,
-                                        successCount);
-                            }
-                        });
-                    }
-                },
+                diffResult -> handleFileDiffResult(codeItem, 1, totalFiles, diffResult, successCount,
+                        () -> finishCodeModification(totalFiles, successCount)),
                 // onError
                 error -> {
                     responseHandler.addError("文件 [" + codeItem.getFileName() + "] 修改失败: " + error);
-                    // 继续处理下一个文件
-                    processFileModification(instruction, contextList, currentIndex + 1, totalFiles, successCount);
+                    finishCodeModification(totalFiles, successCount);
                 });
     }
 
+    /**
+     * 批量处理多个文件的修改（服务端并行）
+     * 
+     * @param instruction  修改指令
+     * @param contextList  上下文列表
+     * @param totalFiles   总文件数
+     * @param successCount 成功修改的文件计数器
+     */
+    private void processBatchModification(String instruction,
+            java.util.List<ContextService.ContextItem> contextList,
+            int totalFiles,
+            java.util.concurrent.atomic.AtomicInteger successCount) {
+
+        // 已展示结果的文件数；全部展示完或请求失败时结束（只结束一次）
+        final java.util.concurrent.atomic.AtomicInteger handledCount = new java.util.concurrent.atomic.AtomicInteger(0);
+        final java.util.concurrent.atomic.AtomicBoolean finished = new java.util.concurrent.atomic.AtomicBoolean(false);
+        Runnable finish = () -> {
+            if (finished.compareAndSet(false, true)) {
+                finishCodeModification(totalFiles, successCount);
+            }
+        };
+
+        aiClient.modifyCodeWithDiffBatch(
+                instruction,
+                contextList,
+                // onFileResult（按完成顺序回调）
+                (index, diffResult) -> {
+                    ContextService.ContextItem codeItem = contextList.get(index);
+                    thinkingManager.updateMessage("AI正在修改 " + totalFiles + " 个文件：已完成 "
+                            + (handledCount.get() + 1) + "/" + totalFiles + " [" + codeItem.getFileName() + "]");
+                    handleFileDiffResult(codeItem, index + 1, totalFiles, diffResult, successCount, () -> {
+                        if (handledCount.incrementAndGet() >= totalFiles) {
+                            finish.run();
+                        }
+                    });
+                },
+                // onComplete：所有文件结果都已收到，等待最后的结果展示完成后再结束
+                () -> System.out.println("批量修改：服务端已返回全部 " + totalFiles + " 个文件的结果"),
+                // onError
+                error -> {
+                    responseHandler.addError("批量代码修改失败: " + error);
+                    finish.run();
+                });
+    }
+
+    /**
+     * 展示单个文件的修改结果：打开差异查看器并添加确认气泡
+     * 
+     * @param codeItem     代码上下文项
+     * @param fileIndex    文件序号（从1开始）
+     * @param totalFiles   总文件数
+     * @param diffResult   差异结果
+     * @param successCount 成功修改的文件计数器
+     * @param onHandled    结果展示完成后的回调
+     */
+    private void handleFileDiffResult(ContextService.ContextItem codeItem,
+            int fileIndex,
+            int totalFiles,
+            CodeDiffResult diffResult,
+            java.util.concurrent.atomic.AtomicInteger successCount,
+            Runnable onHandled) {
+
+        if (diffResult.hasError()) {
+            responseHandler.addError("文件 [" + codeItem.getFileName() + "] 修改失败: " + diffResult.getError());
+            onHandled.run();
+            return;
+        }
+
+        if (!diffResult.hasChanges()) {
+            JPanel noChangePanel = bubbleFactory.createAiMessageBubble(
+                    "**文件 " + fileIndex + "/" + totalFiles + "**: `" + codeItem.getFileName() +
+                            "` - AI建议的代码与原代码相同，无需修改。");
+            messagePanel.addMessage(noChangePanel, true);
+            onHandled.run();
+            return;
+        }
+
+        // 有修改内容，处理diff
+        successCount.incrementAndGet();
+
+        // 在UI线程中处理
+        com.intellij.openapi.application.ApplicationManager.getApplication().invokeLater(() -> {
+            try {
+                // 获取编辑器和偏移量
+                com.intellij.openapi.editor.Editor editor = openFileAndGetEditor(codeItem);
+
+                if (editor == null) {
+                    responseHandler.addError("文件 [" + codeItem.getFileName() + "] 无法打开编辑器");
+                    onHandled.run();
+                    return;
+                }
+
+                // 计算偏移量
+                com.intellij.openapi.editor.Document document = editor.getDocument();
+                int startLine = Math.max(0, codeItem.getStartLine() - 1);
+                int endLine = Math.max(0, codeItem.getEndLine() - 1);
+                int startOffset = document.getLineStartOffset(startLine);
+                int endOffset = document.getLineEndOffset(endLine);
+
+                // 打开差异查看器并获取虚拟文件
+                com.intellij.openapi.vfs.VirtualFile diffViewerFile = IntelliJDiffViewer
+                        .showDiffAndWaitForConfirmation(
+                                project, diffResult, editor, startOffset, endOffset);
+
+                if (diffViewerFile != null) {
+                    // 使用PendingModificationManager管理修改
+                    String modificationId = com.javaProgram.services.PendingModificationManager
+                            .addPendingModification(project, editor, diffResult,
+                                    startOffset, endOffset, diffViewerFile);
+
+                    // 显示统一的确认气泡（ModificationConfirmationPanel），传递文件名
+                    String fileName = diffResult.getFileName() != null ? diffResult.getFileName()
+                            : codeItem.getFileName();
+                    JPanel confirmationPanel = ModificationConfirmationPanel.create(modificationId,
+                            fileName);
+                    messagePanel.addMessage(confirmationPanel, true);
+                }
+
+                onHandled.run();
+
+            } catch (Exception ex) {
+                System.err.println("处理文件 [" + codeItem.getFileName() + "] 修改失败: " + ex.getMessage());
+                ex.printStackTrace();
+                responseHandler
+                        .addError("处理文件 [" + codeItem.getFileName() + "] 修改失败: " + ex.getMessage());
+                onHandled.run();
+            }
+        });
+    }
+
+    /**
+     * 结束代码修改流程：显示完成摘要并通知队列管理器
+     * 
+     * @param totalFiles   总文件数
+     * @param successCount 成功修改的文件计数器
+     */
+    private void finishCodeModification(int totalFiles, java.util.concurrent.atomic.AtomicInteger successCount) {
+        thinkingManager.hide();
+
+        // 显示完成摘要
+        if (successCount.get() > 0) {
+            JPanel summaryPanel = bubbleFactory.createAiMessageBubble(
+                    "✅ **代码修改完成**: 成功修改 " + successCount.get() + "/" + totalFiles + " 个文件");
+            messagePanel.addMessage(summaryPanel, true);
+        }
+
+        // 通知队列管理器完成
+        queueManager.completeCurrentRequest();
+        inputPanel.requestInputFocus();
+    }
+
     /**
      * 打开文件并获取编辑器
      * 
@@ -439,6 +596,12 @@ public class ChatToolWindowContent {
                     }
                     responseHandler.appendChunk(chunk);
                 },
+                // onActivity：回答开始前在思考提示中显示AI读取了哪些文件
+                activity -> {
+                    if (responseHandler.isIdle()) {
+                        thinkingManager.updateMessage(activity);
+                    }
+                },
                 // onComplete
                 () -> {
                     responseHandler.finishResponse();
@@ -1,6 +1,7 @@
 package com.javaProgram.ui.handlers;
 
 import com.intellij.ui.JBColor;
+import com.javaProgram.services.RequestTimeline;
 import com.javaProgram.ui.components.MessageBubbleFactory;
 import com.javaProgram.ui.components.ChatMessagePanel;
 import com.javaProgram.utils.MarkdownToHtml;
@@ -24,11 +25,21 @@ public class AiResponseHandler {
     private static final long UPDATE_INTERVAL_MS = 100; // 每100ms最多更新一次
     private Timer updateTimer; // 定时器，用于确保最终更新
 
+    // 当前请求的耗时记录（可为 null），用于记录首次渲染时间
+    private volatile RequestTimeline timeline;
+
     public AiResponseHandler(MessageBubbleFactory bubbleFactory, ChatMessagePanel messagePanel) {
         this.bubbleFactory = bubbleFactory;
         this.messagePanel = messagePanel;
     }
 
+    /**
+     * 设置当前请求的耗时记录
+     */
+    public void setTimeline(RequestTimeline timeline) {
+        this.timeline = timeline;
+    }
+
     /**
      * 判断当前是否空闲（没有正在处理的响应）
      */
@@ -219,6 +230,7 @@ public class AiResponseHandler {
         // 在外部捕获变量的引用，避免定时器回调时访问到null
         final JEditorPane messageRef = currentAiMessage;
         final StringBuilder markdownRef = accumulatedMarkdown;
+        final RequestTimeline timelineRef = timeline;
 
         if (messageRef == null || markdownRef == null) {
             return;
@@ -248,6 +260,9 @@ public class AiResponseHandler {
                     // 强制文本区域重新计算大小和换行
                     messageRef.revalidate();
                     messageRef.repaint();
+                    if (timelineRef != null) {
+                        timelineRef.mark(RequestTimeline.FIRST_RENDER);
+                    }
 
                     // 更新面板大小
                     updatePanelSize();
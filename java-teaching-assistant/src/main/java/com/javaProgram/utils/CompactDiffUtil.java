@@ -0,0 +1,78 @@
+package com.javaProgram.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 紧凑差异格式工具类
+ * 把后端返回的按行号定位的编辑脚本应用到本地原始代码上，还原修改后代码
+ *
+ * 脚本格式：每处编辑以 "@ 原始起始行 删除行数 新增行数" 开头，后面紧跟新增的行
+ */
+public class CompactDiffUtil {
+
+    /**
+     * 应用编辑脚本
+     *
+     * @param originalCode 原始代码
+     * @param script       编辑脚本
+     * @return 修改后代码；脚本格式错误时返回 null
+     */
+    public static String apply(String originalCode, String script) {
+        try {
+            String[] originalLines = (originalCode == null ? "" : originalCode).split("\n", -1);
+            List<String> result = new ArrayList<>(originalLines.length);
+
+            String[] scriptLines = script == null || script.isEmpty() ? new String[0] : script.split("\n", -1);
+            int position = 0;
+            int i = 0;
+            // 脚本以换行结尾，最后一个元素是空串
+            while (i < scriptLines.length - 1) {
+                String[] header = scriptLines[i++].split(" ");
+                if (header.length != 4 || !header[0].equals("@")) {
+                    return null;
+                }
+                int start = Integer.parseInt(header[1]);
+                int deleteCount = Integer.parseInt(header[2]);
+                int addCount = Integer.parseInt(header[3]);
+                if (start < position || start + deleteCount > originalLines.length
+                        || i + addCount > scriptLines.length - 1) {
+                    return null;
+                }
+
+                while (position < start) {
+                    result.add(originalLines[position++]);
+                }
+                for (int k = 0; k < addCount; k++) {
+                    result.add(scriptLines[i++]);
+                }
+                position += deleteCount;
+            }
+            while (position < originalLines.length) {
+                result.add(originalLines[position++]);
+            }
+            return String.join("\n", result);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 计算文本的 SHA-256（十六进制小写）
+     */
+    public static String sha256(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(text.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : hash) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (Exception e) {
+            return "";
+        }
+    }
+}
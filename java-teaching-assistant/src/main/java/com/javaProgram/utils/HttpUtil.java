@@ -1,14 +1,23 @@
 package com.javaProgram.utils;
 
 import com.javaProgram.services.HttpRequestConfig;
+import com.javaProgram.services.RequestTimeline;
 
 import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.zip.GZIPInputStream;
 
 /**
  * HTTP工具类
@@ -16,6 +25,16 @@ import java.util.function.Consumer;
  */
 public class HttpUtil {
 
+    // 请求关联ID请求头（服务端沿用该ID记录日志，并在响应头和 SSE 事件 id 中返回）
+    public static final String REQUEST_ID_HEADER = "X-Request-Id";
+
+    // 断线续传请求头（值为收到的最后一个 SSE 事件的 id）
+    public static final String LAST_EVENT_ID_HEADER = "Last-Event-ID";
+
+    // 可续传的事件流断开后最多重连的次数，及首次重连前的等待时间（之后每次翻倍）
+    private static final int MAX_RECONNECTS = 5;
+    private static final long RECONNECT_DELAY_MS = 1000;
+
     /**
      * 执行HTTP请求并流式读取响应（用于SSE）
      *
@@ -40,12 +59,50 @@ public class HttpUtil {
             }
 
             // 检查响应状态
-            if (connection.getResponseCode() == HttpURLConnection.HTTP_OK) {
+            int responseCode = connection.getResponseCode();
+            markConnected(config, connection);
+            if (responseCode == HttpURLConnection.HTTP_OK) {
                 // 流式读取响应
-                readStreamingResponse(connection, onChunk);
+                readStreamingResponse(connection, config.getTimeline(), onChunk);
+                onComplete.run();
+            } else {
+                onError.accept("HTTP Error: " + responseCode);
+            }
+
+        } catch (Exception e) {
+            onError.accept("连接失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 执行HTTP请求并按事件读取SSE响应（支持 event: 字段）
+     * 同一事件的多行 data 会用换行拼接，空行表示事件结束
+     *
+     * @param config     请求配置
+     * @param onEvent    接收到事件时的回调（事件名，数据）；未指定事件名时为 "message"
+     * @param onComplete 完成时的回调
+     * @param onError    出错时的回调
+     */
+    public static void executeEventStreamRequest(
+            HttpRequestConfig config,
+            BiConsumer<String, String> onEvent,
+            Runnable onComplete,
+            Consumer<String> onError) {
+
+        try {
+            HttpURLConnection connection = createConnection(config);
+
+            if (config.getRequestBody() != null && !config.getRequestBody().isEmpty()) {
+                writeRequestBody(connection, config.getRequestBody());
+            }
+
+            int responseCode = connection.getResponseCode();
+            markConnected(config, connection);
+            if (responseCode == HttpURLConnection.HTTP_OK) {
+                readEventStreamResponse(connection, config.getTimeline(), onEvent, null);
                 onComplete.run();
             } else {
-                onError.accept("HTTP Error: " + connection.getResponseCode());
+                onError.accept(readErrorResponse(connection, responseCode));
             }
 
         } catch (Exception e) {
@@ -53,6 +110,86 @@ public class HttpUtil {
         }
     }
 
+    /**
+     * 执行HTTP请求并按事件读取SSE响应，连接中断时带 Last-Event-ID 自动重连，从收到的最后一个事件之后继续接收
+     * 收到 finalEvents 中的事件视为正常结束；已收到带 id 的事件后，读取出错或在结束事件前断开都会重连，
+     * 重连失败超过 MAX_RECONNECTS 次后回调 onError
+     *
+     * @param config      请求配置（每次重连都重发同一请求）
+     * @param finalEvents 表示事件流结束的事件名（如 done、error）
+     * @param onEvent     接收到事件时的回调（事件名，数据）
+     * @param onReconnect 开始重连时的回调，接收第几次重连（从 1 开始）
+     * @param onComplete  完成时的回调（包括没有收到结束事件、也无法续传的情况，由调用方判断结果是否完整）
+     * @param onError     出错时的回调
+     */
+    public static void executeResumableEventStreamRequest(
+            HttpRequestConfig config,
+            Set<String> finalEvents,
+            BiConsumer<String, String> onEvent,
+            IntConsumer onReconnect,
+            Runnable onComplete,
+            Consumer<String> onError) {
+
+        AtomicReference<String> lastEventId = new AtomicReference<>();
+        AtomicBoolean ended = new AtomicBoolean(false);
+        BiConsumer<String, String> tracking = (event, data) -> {
+            if (finalEvents.contains(event)) {
+                ended.set(true);
+            }
+            onEvent.accept(event, data);
+        };
+
+        int attempt = 0;
+        while (true) {
+            String failure;
+            try {
+                HttpURLConnection connection = createConnection(config);
+                if (lastEventId.get() != null) {
+                    connection.setRequestProperty(LAST_EVENT_ID_HEADER, lastEventId.get());
+                }
+
+                if (config.getRequestBody() != null && !config.getRequestBody().isEmpty()) {
+                    writeRequestBody(connection, config.getRequestBody());
+                }
+
+                int responseCode = connection.getResponseCode();
+                markConnected(config, connection);
+                if (responseCode != HttpURLConnection.HTTP_OK) {
+                    onError.accept(readErrorResponse(connection, responseCode));
+                    return;
+                }
+                readEventStreamResponse(connection, config.getTimeline(), tracking, lastEventId);
+                if (ended.get() || lastEventId.get() == null) {
+                    onComplete.run();
+                    return;
+                }
+                failure = "连接在回答结束前断开";
+            } catch (Exception e) {
+                if (ended.get()) {
+                    onComplete.run();
+                    return;
+                }
+                failure = "连接失败: " + e.getMessage();
+            }
+
+            // 还没有收到任何事件时无法续传；重连次数用完时放弃
+            if (lastEventId.get() == null || attempt >= MAX_RECONNECTS) {
+                onError.accept(failure);
+                return;
+            }
+            attempt++;
+            System.err.println(failure + "，第 " + attempt + " 次重连（Last-Event-ID: " + lastEventId.get() + "）");
+            onReconnect.accept(attempt);
+            try {
+                Thread.sleep(RECONNECT_DELAY_MS << (attempt - 1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                onError.accept(failure);
+                return;
+            }
+        }
+    }
+
     /**
      * 执行HTTP请求并一次性读取完整响应
      *
@@ -76,6 +213,7 @@ public class HttpUtil {
 
             // 检查响应状态
             int responseCode = connection.getResponseCode();
+            markConnected(config, connection);
             if (responseCode == HttpURLConnection.HTTP_OK) {
                 // 读取完整响应
                 String response = readFullResponse(connection);
@@ -105,6 +243,11 @@ public class HttpUtil {
         connection.setRequestProperty("Content-Type", config.getContentType());
         connection.setRequestProperty("Accept", config.getContentType());
         connection.setRequestProperty("Accept-Charset", "UTF-8");
+        // 允许服务端压缩较大的响应（读取时按 Content-Encoding 解压）
+        connection.setRequestProperty("Accept-Encoding", "gzip");
+        if (config.getTimeline() != null) {
+            connection.setRequestProperty(REQUEST_ID_HEADER, config.getTimeline().getRequestId());
+        }
 
         // 如果是POST/PUT，允许输出
         if ("POST".equals(config.getMethod()) || "PUT".equals(config.getMethod())) {
@@ -118,6 +261,31 @@ public class HttpUtil {
         return connection;
     }
 
+    /**
+     * 记录收到响应头的时间；服务端返回的请求ID与发送的不一致时（如经过代理改写）输出提示
+     */
+    private static void markConnected(HttpRequestConfig config, HttpURLConnection connection) {
+        RequestTimeline timeline = config.getTimeline();
+        if (timeline == null) {
+            return;
+        }
+        timeline.mark(RequestTimeline.CONNECTED);
+        String echoed = connection.getHeaderField(REQUEST_ID_HEADER);
+        if (echoed != null && !echoed.equals(timeline.getRequestId())) {
+            System.err.println("服务端返回的请求ID " + echoed + " 与发送的 " + timeline.getRequestId() + " 不一致");
+        }
+    }
+
+    /**
+     * 如果响应经过 gzip 压缩，包装为解压流
+     */
+    private static InputStream decode(HttpURLConnection connection, InputStream stream) throws IOException {
+        if ("gzip".equalsIgnoreCase(connection.getContentEncoding())) {
+            return new GZIPInputStream(stream);
+        }
+        return stream;
+    }
+
     /**
      * 写入请求体
      */
@@ -132,9 +300,10 @@ public class HttpUtil {
     /**
      * 流式读取响应（SSE格式）
      */
-    private static void readStreamingResponse(HttpURLConnection connection, Consumer<String> onChunk) throws Exception {
+    private static void readStreamingResponse(HttpURLConnection connection, RequestTimeline timeline,
+            Consumer<String> onChunk) throws Exception {
         try (BufferedReader reader = new BufferedReader(
-                new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+                new InputStreamReader(decode(connection, connection.getInputStream()), StandardCharsets.UTF_8))) {
 
             String line;
             while ((line = reader.readLine()) != null) {
@@ -142,6 +311,9 @@ public class HttpUtil {
                 if (line.startsWith("data:")) {
                     String data = line.substring(5).trim();
                     if (!data.isEmpty()) {
+                        if (timeline != null) {
+                            timeline.mark(RequestTimeline.FIRST_CHUNK);
+                        }
                         onChunk.accept(data);
                     }
                 }
@@ -149,13 +321,62 @@ public class HttpUtil {
         }
     }
 
+    /**
+     * 按事件读取SSE响应
+     *
+     * @param lastEventId 可选，分发事件前记录该事件的 id（没有 id 的事件不记录）
+     */
+    private static void readEventStreamResponse(HttpURLConnection connection, RequestTimeline timeline,
+            BiConsumer<String, String> onEvent, AtomicReference<String> lastEventId) throws Exception {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(decode(connection, connection.getInputStream()), StandardCharsets.UTF_8))) {
+
+            String eventName = "message";
+            String eventId = null;
+            StringBuilder data = new StringBuilder();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    // 空行：分发当前事件
+                    if (data.length() > 0) {
+                        if (timeline != null) {
+                            timeline.mark(RequestTimeline.FIRST_CHUNK);
+                        }
+                        if (lastEventId != null && eventId != null) {
+                            lastEventId.set(eventId);
+                        }
+                        onEvent.accept(eventName, data.toString());
+                    }
+                    eventName = "message";
+                    eventId = null;
+                    data.setLength(0);
+                } else if (line.startsWith("event:")) {
+                    eventName = line.substring(6).trim();
+                } else if (line.startsWith("id:")) {
+                    eventId = line.substring(3).trim();
+                } else if (line.startsWith("data:")) {
+                    if (data.length() > 0) {
+                        data.append("\n");
+                    }
+                    String value = line.substring(5);
+                    data.append(value.startsWith(" ") ? value.substring(1) : value);
+                }
+            }
+
+            // 流结束时没有空行的最后一个事件（续传模式下视为断线截断的事件，丢弃后由重连补发）
+            if (data.length() > 0 && lastEventId == null) {
+                onEvent.accept(eventName, data.toString());
+            }
+        }
+    }
+
     /**
      * 读取完整响应
      */
     private static String readFullResponse(HttpURLConnection connection) throws Exception {
         StringBuilder response = new StringBuilder();
         try (BufferedReader reader = new BufferedReader(
-                new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+                new InputStreamReader(decode(connection, connection.getInputStream()), StandardCharsets.UTF_8))) {
 
             String line;
             while ((line = reader.readLine()) != null) {
@@ -171,7 +392,7 @@ public class HttpUtil {
     private static String readErrorResponse(HttpURLConnection connection, int responseCode) {
         String error = "HTTP Error: " + responseCode;
         try (BufferedReader reader = new BufferedReader(
-                new InputStreamReader(connection.getErrorStream(), StandardCharsets.UTF_8))) {
+                new InputStreamReader(decode(connection, connection.getErrorStream()), StandardCharsets.UTF_8))) {
 
             StringBuilder errorBody = new StringBuilder();
             String line;